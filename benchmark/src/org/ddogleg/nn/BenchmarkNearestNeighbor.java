@@ -21,6 +21,8 @@ package org.ddogleg.nn;
 import org.ddogleg.Performer;
 import org.ddogleg.ProfileOperation;
 import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.nn.wrap.KdForestBbfSearch;
+import org.ddogleg.nn.wrap.KdTreeNearestNeighbor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -100,11 +102,19 @@ public class BenchmarkNearestNeighbor {
 		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(dimen);
 
 		ret.add( new Set(FactoryNearestNeighbor.exhaustive(distance),"Exhaustive"));
+		ret.add( new Set(FactoryNearestNeighbor.exhaustiveBlock(distance),"Exhaustive Block"));
 		ret.add( new Set(FactoryNearestNeighbor.kdtree(distance),"kdtree"));
 		ret.add( new Set(FactoryNearestNeighbor.kdtree(distance),"kdtree-tracking",true));
 		ret.add( new Set(FactoryNearestNeighbor.kdtree(distance,1000),"kdtree P"));
+		ret.add( new Set(FactoryNearestNeighbor.kdtreeFlat(distance,10),"kdtree flat"));
 		ret.add( new Set(FactoryNearestNeighbor.kdRandomForest(distance,200,20,5,23423432),"K-D Random Forest"));
+		KdForestBbfSearch<double[]> forestMT = (KdForestBbfSearch<double[]>)
+				FactoryNearestNeighbor.kdRandomForest(distance,200,20,5,23423432);
+		forestMT.setConcurrent(true);
+		ret.add( new Set(forestMT,"K-D Random Forest MT"));
 		ret.add( new Set(FactoryNearestNeighbor.vptree(0xDEADBEEF),"VP-Tree"));
+		ret.add( new Set(FactoryNearestNeighbor.kmeansTree(16,200,234),"K-Means Tree"));
+		ret.add( new Set(FactoryNearestNeighbor.hnsw(16,200,234),"HNSW"));
 
 		return ret;
 	}
@@ -115,11 +125,19 @@ public class BenchmarkNearestNeighbor {
 		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(dimen);
 
 		ret.add( new Search(FactoryNearestNeighbor.exhaustive(distance),"Exhaustive"));
+		ret.add( new Search(FactoryNearestNeighbor.exhaustiveBlock(distance),"Exhaustive Block"));
 		ret.add( new Search(FactoryNearestNeighbor.kdtree(distance),"kdtree"));
 		ret.add( new Search(FactoryNearestNeighbor.kdtree(distance),"kdtree-tracking",true));
 		ret.add( new Search(FactoryNearestNeighbor.kdtree(distance,1000),"kdtree P"));
+		ret.add( new Search(FactoryNearestNeighbor.kdtreeFlat(distance,10),"kdtree flat"));
 		ret.add( new Search(FactoryNearestNeighbor.kdRandomForest(distance,200,20,5,23423432),"K-D Random Forest"));
+		KdForestBbfSearch<double[]> forestMT = (KdForestBbfSearch<double[]>)
+				FactoryNearestNeighbor.kdRandomForest(distance,200,20,5,23423432);
+		forestMT.setConcurrentSearch(true);
+		ret.add( new Search(forestMT,"K-D Random Forest MT"));
 		ret.add( new Search(FactoryNearestNeighbor.vptree(0xDEADBEEF),"VP-Tree"));
+		ret.add( new Search(FactoryNearestNeighbor.kmeansTree(16,200,234),"K-Means Tree"));
+		ret.add( new Search(FactoryNearestNeighbor.hnsw(16,200,234),"HNSW"));
 
 		return ret;
 	}
@@ -157,6 +175,28 @@ public class BenchmarkNearestNeighbor {
 		}
 	}
 
+	/**
+	 * Compares construction and search speed of a K-D tree with different number of points in each leaf
+	 */
+	public void evaluateLeafSize( int dimen , int cloudSize , int searchSize ) {
+		Random rand = new Random(234);
+
+		this.dimen = dimen;
+		this.maxDistance = 10;
+		this.searchSet = createData(rand,searchSize,dimen);
+		this.cloud = createData(rand, cloudSize, dimen);
+
+		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(dimen);
+
+		System.out.println("Leaf Size: Dimen = "+dimen+"  cloud = "+cloudSize+"  search = "+searchSize);
+		for( int leafSize : new int[]{1,2,4,8,16,32} ) {
+			KdTreeNearestNeighbor<double[]> alg = new KdTreeNearestNeighbor<>(distance);
+			alg.setMaxLeafSize(leafSize);
+			ProfileOperation.printOpsPerSec(new Set(alg,"Set    leaf="+leafSize),100);
+			ProfileOperation.printOpsPerSec(new Search(alg,"Search leaf="+leafSize),100);
+		}
+	}
+
 	public static List<double[]> createData( Random rand , int size , int k ) {
 		List<double[]> ret = new ArrayList<>();
 
@@ -201,5 +241,8 @@ public class BenchmarkNearestNeighbor {
 //		app.evaluateDataSet(20,10000,10000);
 //		app.evaluateDataSet(60,10000,10000);
 		app.evaluateDataSet(120,10000,10000);
+
+//		app.evaluateLeafSize(3,100000,10000);
+//		app.evaluateLeafSize(10,100000,10000);
 	}
 }
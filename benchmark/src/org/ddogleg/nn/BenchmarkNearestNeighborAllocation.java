@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn;
+
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.FastQueue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how many bytes are allocated on the heap for each nearest-neighbor query after the search has
+ * warmed up. Requires a JVM whose ThreadMXBean implements com.sun.management.ThreadMXBean.
+ *
+ * @author Peter Abeles
+ */
+public class BenchmarkNearestNeighborAllocation {
+
+	int dimen = 3;
+	int cloudSize = 20000;
+	int numQueries = 10000;
+	int numNeighbors = 10;
+
+	List<double[]> cloud;
+	List<double[]> queries;
+
+	com.sun.management.ThreadMXBean bean =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	public BenchmarkNearestNeighborAllocation() {
+		Random rand = new Random(234);
+		cloud = createData(rand,cloudSize);
+		queries = createData(rand,numQueries);
+	}
+
+	private List<double[]> createData( Random rand , int size ) {
+		List<double[]> data = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			double[] p = new double[dimen];
+			for (int j = 0; j < dimen; j++) {
+				p[j] = rand.nextDouble()*2;
+			}
+			data.add(p);
+		}
+		return data;
+	}
+
+	public void evaluate( NearestNeighbor<double[]> alg , String name ) {
+		alg.setPoints(cloud,true);
+
+		NnData<double[]> result = new NnData<>();
+		FastQueue<NnData<double[]>> results = new FastQueue<>((Class)NnData.class,true);
+
+		// warm up so that the workspace has grown to its final size
+		for( double[] q : queries ) {
+			alg.findNearest(q,-1,result);
+			alg.findNearest(q,-1,numNeighbors,results);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = bean.getThreadAllocatedBytes(threadId);
+		for( double[] q : queries ) {
+			alg.findNearest(q,-1,result);
+		}
+		long middle = bean.getThreadAllocatedBytes(threadId);
+		for( double[] q : queries ) {
+			alg.findNearest(q,-1,numNeighbors,results);
+		}
+		long after = bean.getThreadAllocatedBytes(threadId);
+
+		System.out.printf("%-15s bytes/query: 1-NN %8.1f   %d-NN %8.1f\n",name,
+				(middle-before)/(double)numQueries,numNeighbors,(after-middle)/(double)numQueries);
+	}
+
+	public static void main( String[] args ) {
+		BenchmarkNearestNeighborAllocation app = new BenchmarkNearestNeighborAllocation();
+		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(app.dimen);
+
+		app.evaluate(FactoryNearestNeighbor.vptree(0xDEADBEEF),"VP-Tree");
+		app.evaluate(FactoryNearestNeighbor.kdtree(distance),"kdtree");
+		app.evaluate(FactoryNearestNeighbor.kdtreeFlat(distance,10),"kdtree flat");
+		app.evaluate(FactoryNearestNeighbor.exhaustiveBlock(distance),"Exhaustive Block");
+	}
+}
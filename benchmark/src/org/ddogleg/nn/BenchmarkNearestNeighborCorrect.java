@@ -19,6 +19,7 @@
 package org.ddogleg.nn;
 
 import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.nn.wrap.KdForestBbfTuner;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -70,6 +71,12 @@ public class BenchmarkNearestNeighborCorrect {
 //		ret.add( new Subject(FactoryNearestNeighbor.kdtree(5000),"kdtree P "));
 //		ret.add( new Subject(FactoryNearestNeighbor.kdtree(10000),"kdtree P "));
 
+		// select the forest's settings using a sample of the cloud
+		KdForestBbfTuner<double[]> tuner = new KdForestBbfTuner<>(distance,234);
+		KdForestBbfTuner.Configuration config = tuner.tune(cloud.subList(0,Math.min(10000,cloud.size())),0.9);
+		System.out.println("Tuned Forest: "+config);
+		ret.add( new Subject(tuner.create(config,23423432),"Tuned Forest 90%"));
+
 		return ret;
 	}
 
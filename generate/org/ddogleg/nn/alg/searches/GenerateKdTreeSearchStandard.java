@@ -0,0 +1,493 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg.searches;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Generates versions of {@link KdTreeSearch1Standard} and {@link KdTreeSearchNStandard} which are specialized
+ * for a point's array type.
+ *
+ * @author Peter Abeles
+ */
+public class GenerateKdTreeSearchStandard {
+	PrintStream out;
+
+	// suffix of the class name
+	String suffix;
+	// type of the point's array
+	String pointType;
+	// type used to sum up the squared distance
+	String sumType;
+	// applied to each array element to get its value
+	String mask;
+	// rest of the class description after the point type
+	String description;
+
+	public void generate() throws FileNotFoundException {
+		String values = " Values and\n" +
+				" * Euclidean squared distance are computed directly from the arrays instead of through\n" +
+				" * {@link org.ddogleg.nn.alg.KdTreeDistance}.";
+		setType("F64","double[]","double","",values);
+		printSearch1();
+		printSearchN();
+		setType("F32","float[]","float","",values);
+		printSearch1();
+		printSearchN();
+		setType("U8","byte[]","int","&0xFF"," Each\n" +
+				" * element is treated as an unsigned 8-bit value. Values and Euclidean squared distance are computed directly from\n" +
+				" * the arrays instead of through {@link org.ddogleg.nn.alg.KdTreeDistance}.");
+		printSearch1();
+		printSearchN();
+	}
+
+	private void setType( String suffix , String pointType , String sumType , String mask , String description ) {
+		this.suffix = suffix;
+		this.pointType = pointType;
+		this.sumType = sumType;
+		this.mask = mask;
+		this.description = description;
+	}
+
+	/**
+	 * Difference between the same element in the point and the target
+	 */
+	private String elementDiff() {
+		if( mask.isEmpty() )
+			return "point[i]-target[i]";
+		else
+			return "(point[i]"+mask+")-(target[i]"+mask+")";
+	}
+
+	private void printPreamble( String parent , String imports ) {
+		out.print("/*\n" +
+				" * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.\n" +
+				" *\n" +
+				" * This file is part of DDogleg (http://ddogleg.org).\n" +
+				" *\n" +
+				" * Licensed under the Apache License, Version 2.0 (the \"License\");\n" +
+				" * you may not use this file except in compliance with the License.\n" +
+				" * You may obtain a copy of the License at\n" +
+				" *\n" +
+				" *   http://www.apache.org/licenses/LICENSE-2.0\n" +
+				" *\n" +
+				" * Unless required by applicable law or agreed to in writing, software\n" +
+				" * distributed under the License is distributed on an \"AS IS\" BASIS,\n" +
+				" * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n" +
+				" * See the License for the specific language governing permissions and\n" +
+				" * limitations under the License.\n" +
+				" */\n" +
+				"\n" +
+				"package org.ddogleg.nn.alg.searches;\n" +
+				"\n" +
+				imports +
+				"\n" +
+				"/**\n" +
+				" * Implementation of {@link "+parent+"} which is specialized for points of type "+pointType+"."+
+				description+"\n" +
+				" *\n" +
+				" * <p>DO NOT MODIFY. AUTOGENERATED CODE. GenerateKdTreeSearchStandard</p>\n" +
+				" *\n" +
+				" * @author Peter Abeles\n" +
+				" */\n");
+	}
+
+	/**
+	 * Inner loop which computes the squared distance between 'point' and the target, stopping early once the
+	 * distance exceeds 'bound'
+	 */
+	private String distanceLoop( String bound ) {
+		return
+				"\t\tfinal "+pointType+" target = this.target;\n" +
+				"\t\tfinal int N = target.length;\n" +
+				"\t\t"+sumType+" distSq = 0;\n" +
+				"\t\t// stop once the point can't be accepted. Only checked every few elements to keep the inner loop tight\n" +
+				"\t\tfor (int i = 0; i < N && distSq <= "+bound+"; ) {\n" +
+				"\t\t\tfinal int end = Math.min(N,i+8);\n" +
+				"\t\t\tfor (; i < end; i++) {\n" +
+				"\t\t\t\t"+sumType+" d = "+elementDiff()+";\n" +
+				"\t\t\t\tdistSq += d*d;\n" +
+				"\t\t\t}\n" +
+				"\t\t}\n";
+	}
+
+	private void printSearch1() throws FileNotFoundException {
+		String className = "KdTreeSearch1Standard_"+suffix;
+		out = new PrintStream(new FileOutputStream(className + ".java"));
+
+		printPreamble("KdTreeSearch1Standard",
+				"import org.ddogleg.nn.alg.KdTree;\n" +
+				"import org.ddogleg.nn.alg.KdTreeSearch1;\n");
+
+		out.print("public class "+className+" implements KdTreeSearch1<"+pointType+"> {\n" +
+				"\n" +
+				"\t// the targeted tree\n" +
+				"\tprivate KdTree tree;\n" +
+				"\n" +
+				"\t// point being searched for\n" +
+				"\tprivate "+pointType+" target;\n" +
+				"\n" +
+				"\t// the maximum distance a neighbor is allowed to be\n" +
+				"\tprivate double maxDistanceSq = Double.MAX_VALUE;\n" +
+				"\t// the closest neighbor which has yet to be found\n" +
+				"\tprivate double bestDistanceSq;\n" +
+				"\n" +
+				"\t// the node which has been found to be the closest so far\n" +
+				"\tprivate KdTree.Node closest;\n" +
+				"\t// the closest point and its index\n" +
+				"\tprivate "+pointType+" closestPoint;\n" +
+				"\tprivate int closestIndex;\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic void setTree( KdTree tree ) {\n" +
+				"\t\tthis.tree = tree;\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic void setMaxDistance(double maxDistance ) {\n" +
+				"\t\tthis.maxDistanceSq = maxDistance ;\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic KdTree.Node findNeighbor("+pointType+" target) {\n" +
+				"\t\tif( tree.root == null )\n" +
+				"\t\t\treturn null;\n" +
+				"\n" +
+				"\t\tthis.target = target;\n" +
+				"\t\tthis.closest = null;\n" +
+				"\t\tthis.bestDistanceSq = maxDistanceSq;\n" +
+				"\n" +
+				"\t\tstepClosest(tree.root);\n" +
+				"\n" +
+				"\t\treturn closest;\n" +
+				"\t}\n" +
+				"\n" +
+				"\t/**\n" +
+				"\t * Checks to see if the point is closer than the best point found so far\n" +
+				"\t */\n" +
+				"\tprivate void checkBestDistance( KdTree.Node node , "+pointType+" point , int index ) {\n" +
+				distanceLoop("bestDistanceSq") +
+				"\t\tif( distSq <= bestDistanceSq ) {\n" +
+				"\t\t\tif( closest == null || distSq < bestDistanceSq ) {\n" +
+				"\t\t\t\tclosest = node;\n" +
+				"\t\t\t\tclosestPoint = point;\n" +
+				"\t\t\t\tclosestIndex = index;\n" +
+				"\t\t\t\tbestDistanceSq = distSq;\n" +
+				"\t\t\t}\n" +
+				"\t\t}\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic double getDistance() {\n" +
+				"\t\treturn bestDistanceSq;\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic "+pointType+" getPoint() {\n" +
+				"\t\treturn closestPoint;\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic int getIndex() {\n" +
+				"\t\treturn closestIndex;\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic KdTreeSearch1<"+pointType+"> copy() {\n" +
+				"\t\treturn new "+className+"();\n" +
+				"\t}\n" +
+				"\n" +
+				"\t/**\n" +
+				"\t * Recursive step for finding the closest point\n" +
+				"\t */\n" +
+				"\tprivate void stepClosest(KdTree.Node node) {\n" +
+				"\n" +
+				"\t\tif( node == null )\n" +
+				"\t\t\treturn;\n" +
+				"\n" +
+				"\t\tif( node.isLeaf() ) {\n" +
+				"\t\t\tif( node.isBucket() ) {\n" +
+				"\t\t\t\tfinal Object[] bucketPoints = node.bucketPoints;\n" +
+				"\t\t\t\tfor (int i = 0; i < node.bucketSize; i++) {\n" +
+				"\t\t\t\t\tcheckBestDistance(node,("+pointType+")bucketPoints[i],node.bucketIndexes[i]);\n" +
+				"\t\t\t\t}\n" +
+				"\t\t\t} else if( node.point != null ) {\n" +
+				"\t\t\t\t// a leaf can be empty.\n" +
+				"\t\t\t\tcheckBestDistance(node,("+pointType+")node.point,node.index);\n" +
+				"\t\t\t}\n" +
+				"\t\t\treturn;\n" +
+				"\t\t}\n" +
+				"\n" +
+				"\t\tfinal "+pointType+" point = ("+pointType+")node.point;\n" +
+				"\t\tcheckBestDistance(node,point,node.index);\n" +
+				"\n" +
+				"\t\t// select the most promising branch to investigate first\n" +
+				"\t\tKdTree.Node nearer,further;\n" +
+				"\n" +
+				"\t\tdouble splitValue = point[node.split]"+mask+";\n" +
+				"\t\tdouble targetAtSplit = target[node.split]"+mask+";\n" +
+				"\t\tif( targetAtSplit <= splitValue ) {\n" +
+				"\t\t\tnearer = node.left;\n" +
+				"\t\t\tfurther = node.right;\n" +
+				"\t\t} else {\n" +
+				"\t\t\tnearer = node.right;\n" +
+				"\t\t\tfurther = node.left;\n" +
+				"\t\t}\n" +
+				"\n" +
+				"\t\tstepClosest(nearer);\n" +
+				"\n" +
+				"\t\t// See if it is possible for 'further' to contain a better node\n" +
+				"\t\tdouble dx = splitValue - targetAtSplit;\n" +
+				"\t\tdouble dx2 = dx*dx;\n" +
+				"\t\tif( dx2 <= bestDistanceSq ) {\n" +
+				"\t\t\tif( closest == null || dx2 < bestDistanceSq )\n" +
+				"\t\t\t\tstepClosest(further);\n" +
+				"\t\t}\n" +
+				"\t}\n" +
+				"\n" +
+				"}\n");
+		out.close();
+	}
+
+	private void printSearchN() throws FileNotFoundException {
+		String className = "KdTreeSearchNStandard_"+suffix;
+		out = new PrintStream(new FileOutputStream(className + ".java"));
+
+		printPreamble("KdTreeSearchNStandard",
+				"import org.ddogleg.nn.alg.KdTree;\n" +
+				"import org.ddogleg.nn.alg.KdTreeResult;\n" +
+				"import org.ddogleg.nn.alg.KdTreeSearchN;\n" +
+				"import org.ddogleg.nn.alg.KdTreeSearchRadius;\n" +
+				"import org.ddogleg.struct.FastQueue;\n");
+
+		out.print("public class "+className+" implements KdTreeSearchN<"+pointType+">, KdTreeSearchRadius<"+pointType+"> {\n" +
+				"\n" +
+				"\t// the targeted tree\n" +
+				"\tprivate KdTree tree;\n" +
+				"\n" +
+				"\t// point being searched for\n" +
+				"\tprivate "+pointType+" target;\n" +
+				"\n" +
+				"\t// the maximum distance a neighbor is allowed to be\n" +
+				"\tprivate double maxDistanceSq = Double.MAX_VALUE;\n" +
+				"\t// distance of the farthest neighbor\n" +
+				"\tprivate double mostDistantNeighborSq;\n" +
+				"\t// index of most distant neighbor\n" +
+				"\tprivate int mostDistantNeighborIndex;\n" +
+				"\n" +
+				"\t// then number of nearest-neighbors it's searching for\n" +
+				"\tprivate int searchN;\n" +
+				"\n" +
+				"\t// radius search: maximum distance and the number of neighbors it stops at\n" +
+				"\tprivate double radius;\n" +
+				"\tprivate int maxResults;\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic void setTree( KdTree tree ) {\n" +
+				"\t\tthis.tree = tree;\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic void setMaxDistance(double maxDistance ) {\n" +
+				"\t\tthis.maxDistanceSq = maxDistance;\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic void findNeighbor("+pointType+" target, int searchN, FastQueue<KdTreeResult> results) {\n" +
+				"\t\tif( searchN <= 0 )\n" +
+				"\t\t\tthrow new IllegalArgumentException(\"I'm sorry, but I refuse to search for less than or equal to 0 neighbors.\");\n" +
+				"\n" +
+				"\t\tif( tree.root == null )\n" +
+				"\t\t\treturn;\n" +
+				"\n" +
+				"\t\tthis.searchN = searchN;\n" +
+				"\t\tthis.target = target;\n" +
+				"\t\tthis.mostDistantNeighborSq = maxDistanceSq;\n" +
+				"\n" +
+				"\t\tstepClosest(tree.root,results);\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic void findRadius("+pointType+" target, double radius, int maxResults, FastQueue<KdTreeResult> results) {\n" +
+				"\t\tif( radius < 0 )\n" +
+				"\t\t\tthrow new IllegalArgumentException(\"The radius must be >= 0\");\n" +
+				"\n" +
+				"\t\tif( tree.root == null )\n" +
+				"\t\t\treturn;\n" +
+				"\n" +
+				"\t\tthis.target = target;\n" +
+				"\t\tthis.radius = radius;\n" +
+				"\t\tthis.maxResults = maxResults <= 0 ? Integer.MAX_VALUE : results.size + maxResults;\n" +
+				"\n" +
+				"\t\tstepRadius(tree.root,results);\n" +
+				"\t}\n" +
+				"\n" +
+				"\t@Override\n" +
+				"\tpublic "+className+" copy() {\n" +
+				"\t\treturn new "+className+"();\n" +
+				"\t}\n" +
+				"\n" +
+				"\t/**\n" +
+				"\t * Recursive step for finding all the points inside the radius\n" +
+				"\t */\n" +
+				"\tprivate void stepRadius(KdTree.Node node , FastQueue<KdTreeResult> neighbors ) {\n" +
+				"\t\tif( node == null || neighbors.size >= maxResults )\n" +
+				"\t\t\treturn;\n" +
+				"\n" +
+				"\t\tif( node.isBucket() ) {\n" +
+				"\t\t\tfinal Object[] bucketPoints = node.bucketPoints;\n" +
+				"\t\t\tfor (int i = 0; i < node.bucketSize && neighbors.size < maxResults; i++) {\n" +
+				"\t\t\t\tcheckRadius(node,("+pointType+")bucketPoints[i],node.bucketIndexes[i],neighbors);\n" +
+				"\t\t\t}\n" +
+				"\t\t} else if( node.point != null ) {\n" +
+				"\t\t\tcheckRadius(node,("+pointType+")node.point,node.index,neighbors);\n" +
+				"\t\t}\n" +
+				"\n" +
+				"\t\tif( node.isLeaf() ) {\n" +
+				"\t\t\treturn;\n" +
+				"\t\t}\n" +
+				"\n" +
+				"\t\tKdTree.Node nearer,further;\n" +
+				"\n" +
+				"\t\tdouble splitValue = (("+pointType+")node.point)[node.split]"+mask+";\n" +
+				"\t\tdouble targetAtSplit = target[node.split]"+mask+";\n" +
+				"\t\tif( targetAtSplit <= splitValue ) {\n" +
+				"\t\t\tnearer = node.left;\n" +
+				"\t\t\tfurther = node.right;\n" +
+				"\t\t} else {\n" +
+				"\t\t\tnearer = node.right;\n" +
+				"\t\t\tfurther = node.left;\n" +
+				"\t\t}\n" +
+				"\n" +
+				"\t\tstepRadius(nearer,neighbors);\n" +
+				"\n" +
+				"\t\t// the other side can only contain a neighbor if the splitting plane is inside the radius\n" +
+				"\t\tdouble dx = splitValue - targetAtSplit;\n" +
+				"\t\tif( dx*dx <= radius ) {\n" +
+				"\t\t\tstepRadius(further,neighbors);\n" +
+				"\t\t}\n" +
+				"\t}\n" +
+				"\n" +
+				"\tprivate void checkRadius(KdTree.Node node, "+pointType+" point, int index, FastQueue<KdTreeResult> neighbors) {\n" +
+				distanceLoop("radius") +
+				"\n" +
+				"\t\tif( distSq <= radius ) {\n" +
+				"\t\t\tKdTreeResult r = neighbors.grow();\n" +
+				"\t\t\tr.distance = distSq;\n" +
+				"\t\t\tr.node = node;\n" +
+				"\t\t\tr.point = point;\n" +
+				"\t\t\tr.index = index;\n" +
+				"\t\t}\n" +
+				"\t}\n" +
+				"\n" +
+				"\t/**\n" +
+				"\t * Recursive step for finding the closest point\n" +
+				"\t */\n" +
+				"\tprivate void stepClosest(KdTree.Node node , FastQueue<KdTreeResult> neighbors ) {\n" +
+				"\n" +
+				"\t\tif( node == null )\n" +
+				"\t\t\treturn;\n" +
+				"\n" +
+				"\t\tif( node.isBucket() ) {\n" +
+				"\t\t\tfinal Object[] bucketPoints = node.bucketPoints;\n" +
+				"\t\t\tfor (int i = 0; i < node.bucketSize; i++) {\n" +
+				"\t\t\t\tcheckBestDistance(node,("+pointType+")bucketPoints[i],node.bucketIndexes[i],neighbors);\n" +
+				"\t\t\t}\n" +
+				"\t\t} else if( node.point != null ) {\n" +
+				"\t\t\tcheckBestDistance(node,("+pointType+")node.point,node.index,neighbors);\n" +
+				"\t\t}\n" +
+				"\n" +
+				"\t\tif( node.isLeaf() ) {\n" +
+				"\t\t\treturn;\n" +
+				"\t\t}\n" +
+				"\n" +
+				"\t\t// select the most promising branch to investigate first\n" +
+				"\t\tKdTree.Node nearer,further;\n" +
+				"\n" +
+				"\t\tdouble splitValue = (("+pointType+")node.point)[node.split]"+mask+";\n" +
+				"\t\tdouble targetAtSplit = target[node.split]"+mask+";\n" +
+				"\t\tif( targetAtSplit <= splitValue ) {\n" +
+				"\t\t\tnearer = node.left;\n" +
+				"\t\t\tfurther = node.right;\n" +
+				"\t\t} else {\n" +
+				"\t\t\tnearer = node.right;\n" +
+				"\t\t\tfurther = node.left;\n" +
+				"\t\t}\n" +
+				"\n" +
+				"\t\tstepClosest(nearer,neighbors);\n" +
+				"\n" +
+				"\t\t// See if it is possible for 'further' to contain a better node\n" +
+				"\t\t// Or if N matches have yet to be find, if it is possible to meet the maximum distance requirement\n" +
+				"\t\tdouble dx = splitValue - targetAtSplit;\n" +
+				"\t\tif( dx*dx <= mostDistantNeighborSq) {\n" +
+				"\t\t\tif( neighbors.size() < searchN || dx*dx < mostDistantNeighborSq) {\n" +
+				"\t\t\t\tstepClosest(further,neighbors);\n" +
+				"\t\t\t}\n" +
+				"\t\t}\n" +
+				"\t}\n" +
+				"\n" +
+				"\t/**\n" +
+				"\t * See if the point being considered is a new nearest-neighbor\n" +
+				"\t */\n" +
+				"\tprivate void checkBestDistance(KdTree.Node node, "+pointType+" point, int index, FastQueue<KdTreeResult> neighbors) {\n" +
+				distanceLoop("mostDistantNeighborSq") +
+				"\n" +
+				"\t\t// <= because multiple nodes could be at the bestDistanceSq\n" +
+				"\t\tif( distSq > mostDistantNeighborSq)\n" +
+				"\t\t\treturn;\n" +
+				"\n" +
+				"\t\tKdTreeResult r;\n" +
+				"\t\tif( neighbors.size() < searchN ) {\n" +
+				"\t\t\t// the list of nearest neighbors isn't full yet so it doesn't know what the distance will be\n" +
+				"\t\t\t// so just keep on adding them to the list until it is full\n" +
+				"\t\t\tr = neighbors.grow();\n" +
+				"\t\t} else {\n" +
+				"\t\t\t// Write over the most distant neighbor since we known this node must be closer\n" +
+				"\t\t\tr = neighbors.get(mostDistantNeighborIndex);\n" +
+				"\t\t}\n" +
+				"\t\tr.distance = distSq;\n" +
+				"\t\tr.node = node;\n" +
+				"\t\tr.point = point;\n" +
+				"\t\tr.index = index;\n" +
+				"\n" +
+				"\t\tif( neighbors.size() == searchN ) {\n" +
+				"\t\t\t// If there are multiple points then there can be more than one point with the value of\n" +
+				"\t\t\t// 'bestDistanceSq', which is why two searches are required\n" +
+				"\t\t\tmostDistantNeighborSq = -1;\n" +
+				"\t\t\tfor( int i = 0; i < searchN; i++ ) {\n" +
+				"\t\t\t\tr = neighbors.get(i);\n" +
+				"\t\t\t\tif( r.distance > mostDistantNeighborSq ) {\n" +
+				"\t\t\t\t\tmostDistantNeighborSq = r.distance;\n" +
+				"\t\t\t\t\tmostDistantNeighborIndex = i;\n" +
+				"\t\t\t\t}\n" +
+				"\t\t\t}\n" +
+				"\t\t}\n" +
+				"\t}\n" +
+				"\n" +
+				"}\n");
+		out.close();
+	}
+
+	public static void main( String args[] ) throws FileNotFoundException {
+		GenerateKdTreeSearchStandard app = new GenerateKdTreeSearchStandard();
+		app.generate();
+	}
+}
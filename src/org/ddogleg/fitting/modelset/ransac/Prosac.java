@@ -0,0 +1,498 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.fitting.modelset.ransac;
+
+import org.ddogleg.fitting.modelset.DistanceFromModel;
+import org.ddogleg.fitting.modelset.ModelGenerator;
+import org.ddogleg.fitting.modelset.ModelManager;
+import org.ddogleg.fitting.modelset.ModelMatcher;
+import org.ddogleg.sorting.QuickSort_F64;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * PROSAC, PROgressive SAmple Consensus [1], is a variant of {@link Ransac} which takes advantage of the quality
+ * of each point, e.g. the score of an association. Points are sorted from best to worst and samples are drawn from
+ * a small set of the best points which progressively grows. Points with a high quality are more likely to be
+ * inliers so a good model is often found much sooner than when sampling uniformly. Eventually it samples from
+ * all the points, just like RANSAC, so it's no worse when the quality doesn't mean anything.
+ * </p>
+ *
+ * <p>
+ * Points can be passed in already sorted with the best first, see {@link #process(List)}, or with a quality for
+ * each point, see {@link #process(List, double[])}. The growth function is from the paper using maxIterations as
+ * T<sub>N</sub>. The sample at iteration t always includes the newest point in the pool, the others are drawn
+ * from the points before it. Scoring a hypothesis stops once it can't beat the best model.
+ * </p>
+ *
+ * <p>
+ * Termination: If a confidence is specified with {@link #setConfidence(double)} then the maximality and
+ * non-randomness criteria from the paper are used. For each n, the number of samples needed from the best n points
+ * is computed using the best model's inliers among them, see {@link Ransac#computeIterations}. It stops once that
+ * many samples have been drawn from the best n points for any n where the inliers are unlikely to be a
+ * coincidence. For the non-randomness test a normal approximation to the binomial distribution is used,
+ * see {@link #setProbabilityOutlierFit(double)}. When n is all the points it's the same as {@link Ransac}.
+ * </p>
+ *
+ * <p>
+ * [1] Chum, Ondrej, and Jiri Matas. "Matching with PROSAC-progressive sample consensus." CVPR 2005
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class Prosac<Model, Point> implements ModelMatcher<Model,Point> {
+	// how many points are drawn to generate the model
+	protected int sampleSize;
+
+	// how close a point needs to be considered part of the model
+	protected double thresholdFit;
+
+	// generates an initial model given a set of points
+	protected ModelGenerator<Model,Point> modelGenerator;
+	// computes the distance a point is from the model
+	protected DistanceFromModel<Model,Point> modelDistance;
+
+	// used to randomly select points/samples
+	protected Random rand;
+
+	// list of points which are a candidate for the best fit set
+	protected List<Point> candidatePoints = new ArrayList<Point>();
+
+	// list of samples from the best fit model
+	protected List<Point> bestFitPoints = new ArrayList<Point>();
+
+	// the best model found so far
+	protected Model bestFitParam;
+	// the current model being considered
+	protected Model candidateParam;
+
+	// which iteration is it on
+	protected int iteration;
+	// the maximum number of iterations it will perform
+	protected int maxIterations;
+	// the number of iterations it will perform given the best model found so far
+	protected int iterationLimit;
+	// desired probability that an outlier free sample was drawn. If <= 0 then adaptive termination is off
+	protected double confidence = 0;
+
+	// probability that an outlier is inside the threshold of an incorrect model
+	protected double probabilityOutlierFit = 0.05;
+
+	// number of points in the set which samples are drawn from
+	protected int poolSize;
+	// The last iteration at which samples are drawn from the pool of size n. Index = n
+	protected int[] poolLastIteration = new int[1];
+	// Number of inliers in the best model among the best n points. Index = n
+	protected int[] poolInliers = new int[1];
+
+	// the data set sorted by quality, best first
+	protected List<Point> dataSet = new ArrayList<>();
+	// index of each point in dataSet in the input list
+	protected int[] sortedToInput = new int[1];
+	// used to sort the points by quality
+	protected QuickSort_F64 sorter = new QuickSort_F64();
+
+	// the set of points which were sampled
+	protected List<Point> initialSample = new ArrayList<Point>();
+	// index of sampled points
+	protected int[] sampleIndexes = new int[1];
+
+	// list of indexes converting it from match set to input list
+	protected int []matchToInput = new int[1];
+	protected int []bestMatchToInput = new int[1];
+	// list of indexes converting it from match set to the sorted list
+	protected int []matchToSorted = new int[1];
+	protected int []bestMatchToSorted = new int[1];
+
+	/**
+	 * Creates a new instance of PROSAC.  The number of points sampled will default to the
+	 * minimum number.  To override this default invoke {@link #setSampleSize(int)}.
+	 *
+	 * @param randSeed The random seed used by the random number generator.
+	 * @param modelGenerator Creates new model(s) given a small number of points.
+	 * @param modelDistance Computes the difference between a point an a model.
+	 * @param maxIterations The maximum number of iterations it will perform. Also controls how fast the pool grows.
+	 * @param thresholdFit How close of a fit a points needs to be to the model to be considered a fit.
+	 */
+	public Prosac(long randSeed,
+				  ModelManager<Model> modelManager,
+				  ModelGenerator<Model, Point> modelGenerator,
+				  DistanceFromModel<Model, Point> modelDistance,
+				  int maxIterations,
+				  double thresholdFit) {
+		this.modelGenerator = modelGenerator;
+		this.modelDistance = modelDistance;
+
+		this.rand = new Random(randSeed);
+		this.maxIterations = maxIterations;
+
+		this.bestFitParam = modelManager.createModelInstance();
+		this.candidateParam = modelManager.createModelInstance();
+
+		this.sampleSize = modelGenerator.getMinimumPoints();
+		this.thresholdFit = thresholdFit;
+	}
+
+	/**
+	 * Finds the best model. The points must already be sorted by quality with the best point first.
+	 *
+	 * @param dataSet Points sorted by quality, best first.
+	 * @return true if successful
+	 */
+	@Override
+	public boolean process(List<Point> dataSet) {
+		this.dataSet.clear();
+		this.dataSet.addAll(dataSet);
+
+		growArrays(dataSet.size());
+		for (int i = 0; i < dataSet.size(); i++) {
+			sortedToInput[i] = i;
+		}
+
+		return process();
+	}
+
+	/**
+	 * Finds the best model. The points are sorted internally using their quality. The input list isn't modified
+	 * and {@link #getInputIndex(int)} refers to its order.
+	 *
+	 * @param dataSet Points in any order
+	 * @param quality Quality of each point. A larger value is better.
+	 * @return true if successful
+	 */
+	public boolean process(List<Point> dataSet, double[] quality) {
+		if( quality.length < dataSet.size() )
+			throw new IllegalArgumentException("Quality array is smaller than the data set");
+
+		final int N = dataSet.size();
+		growArrays(N);
+
+		// sorts from smallest to largest, so the order is reversed
+		sorter.sort(quality, 0, N, sortedToInput);
+		for (int i = 0, j = N-1; i < j; i++, j--) {
+			int tmp = sortedToInput[i];
+			sortedToInput[i] = sortedToInput[j];
+			sortedToInput[j] = tmp;
+		}
+
+		this.dataSet.clear();
+		for (int i = 0; i < N; i++) {
+			this.dataSet.add(dataSet.get(sortedToInput[i]));
+		}
+
+		return process();
+	}
+
+	private void growArrays( int N ) {
+		if( N >= poolLastIteration.length ) {
+			sortedToInput = new int[ N ];
+			matchToInput = new int[ N ];
+			bestMatchToInput = new int[ N ];
+			matchToSorted = new int[ N ];
+			bestMatchToSorted = new int[ N ];
+			poolLastIteration = new int[ N+1 ];
+			poolInliers = new int[ N+1 ];
+		}
+	}
+
+	/**
+	 * Runs PROSAC on the sorted data set
+	 */
+	protected boolean process() {
+		bestFitPoints.clear();
+		iterationLimit = maxIterations;
+
+		final int N = dataSet.size();
+		final int m = sampleSize;
+
+		// see if it has the minimum number of points
+		if( N < modelGenerator.getMinimumPoints() || N < m )
+			return false;
+
+		computeGrowthFunction(N, m);
+		poolSize = m;
+
+		for (iteration = 0; iteration < iterationLimit && bestFitPoints.size() != N; iteration++) {
+			int t = iteration + 1;
+
+			// grow the pool once its samples have been used up
+			while( t > poolLastIteration[poolSize] && poolSize < N ) {
+				poolSize++;
+			}
+
+			if( poolSize == N ) {
+				// the pool has reached its maximum size. Same as RANSAC
+				drawSample(poolSize, m);
+			} else {
+				// the newest point is always included
+				drawSample(poolSize-1, m-1);
+				initialSample.add(dataSet.get(poolSize-1));
+			}
+
+			// get the candidate(s) for this sample set
+			if( modelGenerator.generate(initialSample, candidateParam ) ) {
+				// see if it can find a model better than the current best one
+				selectMatchSet(thresholdFit, candidateParam);
+
+				// save this results
+				if (bestFitPoints.size() < candidatePoints.size()) {
+					swapCandidateWithBest();
+					if( confidence > 0 )
+						updateIterationLimit();
+				}
+			}
+		}
+
+		return bestFitPoints.size() > 0;
+	}
+
+	/**
+	 * Computes the last iteration that samples are drawn from each pool size. T'<sub>n</sub> in the paper.
+	 */
+	protected void computeGrowthFunction( int N , int m ) {
+		// average number of samples drawn from the pool with T_N samples drawn in total
+		double T_n = maxIterations;
+		for (int i = 0; i < m; i++) {
+			T_n *= (m-i)/(double)(N-i);
+		}
+		poolLastIteration[m] = 1;
+		for (int n = m; n < N; n++) {
+			double T_next = T_n*(n+1)/(n+1-m);
+			poolLastIteration[n+1] = poolLastIteration[n] + (int)Math.ceil(T_next-T_n);
+			T_n = T_next;
+		}
+		// samples are drawn from all the points until it stops
+		poolLastIteration[N] = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Finds the smallest number of iterations which satisfies the maximality and non-randomness criteria
+	 * for any pool size.
+	 */
+	protected void updateIterationLimit() {
+		final int N = dataSet.size();
+		final int m = sampleSize;
+
+		// count the inliers among the best n points
+		Arrays.fill(poolInliers, 0, N+1, 0);
+		for (int i = 0; i < bestFitPoints.size(); i++) {
+			poolInliers[bestMatchToSorted[i]+1]++;
+		}
+		for (int n = 1; n <= N; n++) {
+			poolInliers[n] += poolInliers[n-1];
+		}
+
+		iterationLimit = Ransac.computeIterations(poolInliers[N], N, m, confidence, maxIterations);
+		for (int n = m+1; n < N; n++) {
+			int inliers = poolInliers[n];
+			if( inliers < minimumNonRandomInliers(n, m) )
+				continue;
+			int k = Ransac.computeIterations(inliers, n, m, confidence, maxIterations);
+			// only samples drawn when the pool was at most n count
+			if( k <= poolLastIteration[n] && k < iterationLimit )
+				iterationLimit = k;
+		}
+	}
+
+	/**
+	 * Minimum number of inliers among the best n points for it to be unlikely that an incorrect model found them
+	 * by chance. Uses a one sided 5% test with the normal approximation to the binomial distribution.
+	 */
+	protected int minimumNonRandomInliers( int n , int m ) {
+		double beta = probabilityOutlierFit;
+		double mean = (n-m)*beta;
+		double sigma = Math.sqrt((n-m)*beta*(1.0-beta));
+		return m + (int)Math.ceil(mean + 1.645*sigma);
+	}
+
+	/**
+	 * Randomly selects points from the first 'n' points without replacement using Floyd's algorithm. The data set
+	 * isn't modified so that it stays sorted.
+	 */
+	protected void drawSample( int n , int numSample ) {
+		if( sampleIndexes.length < numSample+1 )
+			sampleIndexes = new int[numSample+1];
+
+		int count = 0;
+		for (int j = n - numSample; j < n; j++) {
+			int t = rand.nextInt(j+1);
+			boolean found = false;
+			for (int k = 0; k < count && !found; k++) {
+				found = sampleIndexes[k] == t;
+			}
+			sampleIndexes[count++] = found ? j : t;
+		}
+
+		initialSample.clear();
+		for (int i = 0; i < numSample; i++) {
+			initialSample.add(dataSet.get(sampleIndexes[i]));
+		}
+	}
+
+	/**
+	 * Looks for points in the data set which closely match the current best
+	 * fit model in the optimizer. Stops early if it can't have more inliers than the best model.
+	 */
+	protected void selectMatchSet(double threshold, Model param) {
+		candidatePoints.clear();
+		modelDistance.setModel(param);
+
+		final int N = dataSet.size();
+		final int bestSize = bestFitPoints.size();
+		for (int i = 0; i < N; i++) {
+			Point point = dataSet.get(i);
+
+			double distance = modelDistance.computeDistance(point);
+			if (distance < threshold) {
+				matchToInput[candidatePoints.size()] = sortedToInput[i];
+				matchToSorted[candidatePoints.size()] = i;
+				candidatePoints.add(point);
+			} else if( candidatePoints.size() + N-i-1 <= bestSize ) {
+				// even if all the remaining points are inliers it can't be better
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Turns the current candidates into the best ones.
+	 */
+	protected void swapCandidateWithBest() {
+		List<Point> tempPts = candidatePoints;
+		candidatePoints = bestFitPoints;
+		bestFitPoints = tempPts;
+
+		int tempIndex[] = matchToInput;
+		matchToInput = bestMatchToInput;
+		bestMatchToInput = tempIndex;
+
+		tempIndex = matchToSorted;
+		matchToSorted = bestMatchToSorted;
+		bestMatchToSorted = tempIndex;
+
+		Model m = candidateParam;
+		candidateParam = bestFitParam;
+		bestFitParam = m;
+	}
+
+	@Override
+	public List<Point> getMatchSet() {
+		return bestFitPoints;
+	}
+
+	@Override
+	public int getInputIndex(int matchIndex) {
+		return bestMatchToInput[matchIndex];
+	}
+
+	@Override
+	public Model getModelParameters() {
+		return bestFitParam;
+	}
+
+	@Override
+	public double getFitQuality() {
+		return bestFitPoints.size();
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Turns on adaptive termination. See {@link Ransac#setConfidence(double)}.
+	 *
+	 * @param confidence Desired probability. Must be less than 1.
+	 */
+	public void setConfidence(double confidence) {
+		if( confidence >= 1.0 )
+			throw new IllegalArgumentException("Confidence must be less than one");
+		this.confidence = confidence;
+	}
+
+	public double getProbabilityOutlierFit() {
+		return probabilityOutlierFit;
+	}
+
+	/**
+	 * Probability that an outlier is within the fit threshold of an incorrect model. Used to decide if the
+	 * inliers among the best points could be a coincidence. The paper used 0.05 or less.
+	 */
+	public void setProbabilityOutlierFit(double probabilityOutlierFit) {
+		this.probabilityOutlierFit = probabilityOutlierFit;
+	}
+
+	/**
+	 * Number of iterations performed in the most recent call to {@link #process}
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * Number of points which samples were drawn from in the last iteration
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	@Override
+	public int getMinimumSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * Override the number of points that are sampled and used to generate models.  If this value
+	 * is not set it defaults to the minimum number.
+	 *
+	 * @param sampleSize Number of sample points.
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	public double getThresholdFit() {
+		return thresholdFit;
+	}
+
+	public void setThresholdFit(double thresholdFit) {
+		this.thresholdFit = thresholdFit;
+	}
+
+	@Override
+	public Class<Point> getPointType() {
+		return modelDistance.getPointType();
+	}
+
+	@Override
+	public Class<Model> getModelType() {
+		return modelDistance.getModelType();
+	}
+}
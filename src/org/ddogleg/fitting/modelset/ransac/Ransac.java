@@ -42,6 +42,26 @@ import java.util.Random;
  * it to any number.
  * </p>
  *
+ * <p>
+ * Adaptive Termination: If a confidence is specified with {@link #setConfidence(double)} then the number of
+ * iterations is recomputed each time a better model is found. It stops once the probability that at least one of
+ * the samples contained only inliers is greater than the confidence, using the best inlier ratio found so far
+ * as an estimate. See {@link #computeIterations}. maxIterations is still an upper limit. When the pre-test is
+ * also used, an outlier free sample only gets scored if the pre-test points are inliers too, so they are
+ * included in the sample size.
+ * </p>
+ *
+ * <p>
+ * Pre-Test: If {@link #setPreTestSize(int) preTestSize} is more than zero then the T(d,d) test [1] is applied
+ * to each hypothesis before it's scored. That many randomly selected points must all be inliers or the
+ * hypothesis is discarded. Most hypotheses are bad and this avoids scoring them against every point. Scoring of
+ * a hypothesis also stops once it's impossible for it to have more inliers than the best model.
+ * </p>
+ *
+ * <p>
+ * [1] Chum, Ondrej, and Jiri Matas. "Randomized RANSAC with T(d,d) test." BMVC 2002
+ * </p>
+ *
  * @author Peter Abeles
  */
 public class Ransac<Model, Point> implements ModelMatcher<Model,Point> {
@@ -70,8 +90,16 @@ public class Ransac<Model, Point> implements ModelMatcher<Model,Point> {
 	// the current model being considered
 	protected Model candidateParam;
 
+	// which iteration is it on
+	protected int iteration;
 	// the maximum number of iterations it will perform
 	protected int maxIterations;
+	// the number of iterations it will perform given the best model found so far
+	protected int iterationLimit;
+	// desired probability that an outlier free sample was drawn. If <= 0 then adaptive termination is off
+	protected double confidence = 0;
+	// number of random points which must be inliers before a hypothesis is scored. If <= 0 there is no pre-test
+	protected int preTestSize = 0;
 
 	// copy of the input data set so that it can be modified
 	protected List<Point> dataSet = new ArrayList<>();
@@ -129,19 +157,24 @@ public class Ransac<Model, Point> implements ModelMatcher<Model,Point> {
 
 		// iterate until it has exhausted all iterations or stop if the entire data set
 		// is in the inlier set
-		for (int i = 0; i < maxIterations && bestFitPoints.size() != dataSet.size(); i++) {
+		for (iteration = 0; iteration < iterationLimit && bestFitPoints.size() != dataSet.size(); iteration++) {
 			// sample the a small set of points
 			randomDraw(dataSet, sampleSize, initialSample, rand);
 			
 			// get the candidate(s) for this sample set
 			if( modelGenerator.generate(initialSample, candidateParam ) ) {
 
+				// quickly discard bad hypotheses
+				if( preTestSize > 0 && !preTest(dataSet, thresholdFit, candidateParam) )
+					continue;
+
 				// see if it can find a model better than the current best one
 				selectMatchSet(_dataSet, thresholdFit, candidateParam);
 
 				// save this results
 				if (bestFitPoints.size() < candidatePoints.size()) {
 					swapCandidateWithBest();
+					updateIterationLimit();
 				}
 			}
 		}
@@ -154,6 +187,7 @@ public class Ransac<Model, Point> implements ModelMatcher<Model,Point> {
 	 */
 	public void initialize( List<Point> dataSet ) {
 		bestFitPoints.clear();
+		iterationLimit = maxIterations;
 
 		if( dataSet.size() > matchToInput.length ) {
 			matchToInput = new int[ dataSet.size() ];
@@ -161,6 +195,41 @@ public class Ransac<Model, Point> implements ModelMatcher<Model,Point> {
 		}
 	}
 
+	/**
+	 * If adaptive termination is turned on, recompute the number of iterations using the best inlier set
+	 */
+	protected void updateIterationLimit() {
+		if( confidence > 0 )
+			iterationLimit = computeIterations(bestFitPoints.size(),dataSet.size(),
+					sampleSize+Math.max(0,preTestSize),confidence,maxIterations);
+	}
+
+	/**
+	 * Computes the number of iterations needed to draw at least one sample with no outliers with the specified
+	 * probability. k = log(1-p)/log(1-w<sup>n</sup>), where w is the fraction of inliers and n the sample size.
+	 *
+	 * @param numInliers Number of inliers in the best model
+	 * @param numPoints Total number of points
+	 * @param sampleSize Number of points in each sample, plus the number of pre-test points if there is a pre-test
+	 * @param confidence Desired probability of drawing an outlier free sample. 0 &lt; p &lt; 1
+	 * @param maxIterations Upper limit on the number of iterations
+	 * @return Number of iterations
+	 */
+	public static int computeIterations( int numInliers , int numPoints , int sampleSize ,
+										 double confidence , int maxIterations ) {
+		if( numInliers >= numPoints )
+			return Math.min(1,maxIterations);
+
+		double probGoodSample = Math.pow(numInliers/(double)numPoints,sampleSize);
+		double denominator = Math.log1p(-probGoodSample);
+		// the sample is almost certain to have an outlier
+		if( denominator == 0 )
+			return maxIterations;
+
+		double k = Math.ceil(Math.log1p(-confidence)/denominator);
+		return k >= maxIterations ? maxIterations : (int)k;
+	}
+
 	/**
 	 * Performs a random draw in the dataSet.  When an element is selected it is moved to the end of the list
 	 * so that it can't be selected again.
@@ -186,9 +255,24 @@ public class Ransac<Model, Point> implements ModelMatcher<Model,Point> {
 		}
 	}
 
+	/**
+	 * T(d,d) test. Checks to see if randomly selected points are all inliers.
+	 *
+	 * @return true if all the points are inliers
+	 */
+	protected boolean preTest(List<Point> dataSet, double threshold, Model param) {
+		modelDistance.setModel(param);
+		for (int i = 0; i < preTestSize; i++) {
+			Point point = dataSet.get(rand.nextInt(dataSet.size()));
+			if( !(modelDistance.computeDistance(point) < threshold) )
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Looks for points in the data set which closely match the current best
-	 * fit model in the optimizer.
+	 * fit model in the optimizer. Stops early if it can't have more inliers than the best model.
 	 *
 	 * @param dataSet The points being considered
 	 */
@@ -197,13 +281,18 @@ public class Ransac<Model, Point> implements ModelMatcher<Model,Point> {
 		candidatePoints.clear();
 		modelDistance.setModel(param);
 
-		for (int i = 0; i < dataSet.size(); i++) {
+		final int N = dataSet.size();
+		final int bestSize = bestFitPoints.size();
+		for (int i = 0; i < N; i++) {
 			Point point = dataSet.get(i);
 
 			double distance = modelDistance.computeDistance(point);
 			if (distance < threshold) {
 				matchToInput[candidatePoints.size()] = i;
 				candidatePoints.add(point);
+			} else if( candidatePoints.size() + N-i-1 <= bestSize ) {
+				// even if all the remaining points are inliers it can't be better
+				break;
 			}
 		}
 	}
@@ -253,6 +342,41 @@ public class Ransac<Model, Point> implements ModelMatcher<Model,Point> {
 		this.maxIterations = maxIterations;
 	}
 
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Turns on adaptive termination. It will stop once the probability that an outlier free sample has been
+	 * drawn is greater than the confidence, e.g. 0.99. If &le; 0 then it always runs for maxIterations.
+	 *
+	 * @param confidence Desired probability. Must be less than 1.
+	 */
+	public void setConfidence(double confidence) {
+		if( confidence >= 1.0 )
+			throw new IllegalArgumentException("Confidence must be less than one");
+		this.confidence = confidence;
+	}
+
+	public int getPreTestSize() {
+		return preTestSize;
+	}
+
+	/**
+	 * Number of randomly selected points which must be inliers before a hypothesis is scored. 1 or 2 is typical.
+	 * If &le; 0 then the pre-test is turned off.
+	 */
+	public void setPreTestSize(int preTestSize) {
+		this.preTestSize = preTestSize;
+	}
+
+	/**
+	 * Number of iterations performed in the most recent call to {@link #process}
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
 	@Override
 	public int getMinimumSize() {
 		return sampleSize;
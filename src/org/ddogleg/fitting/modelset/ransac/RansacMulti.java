@@ -42,6 +42,10 @@ import java.util.Random;
  * To change the default behavior of the class for specific applications the child class can override internal
  * functions.  Suggestions are shown below.
  * </p>
+ * <p>
+ * Adaptive Termination: See {@link Ransac}. The sample size of the best model's type is used.
+ * </p>
+ *
  * <ul>
  * <li>{@link #checkExitIteration}: Override to provide custom logic for when the RANSAC iteration should stop</li>
  * <li>{@link #selectMatchSet}: Override to provide custom for how the inlier set is found.  Be sure to
@@ -82,6 +86,10 @@ public class RansacMulti<Point> implements ModelMatcherMulti<Point> {
 	protected int iteration;
 	// the maximum number of iterations it will perform
 	protected int maxIterations;
+	// the number of iterations it will perform given the best model found so far
+	protected int iterationLimit;
+	// desired probability that an outlier free sample was drawn. If <= 0 then adaptive termination is off
+	protected double confidence = 0;
 
 	// the set of points which were initially sampled
 	protected FastQueue<Point> initialSample;
@@ -173,6 +181,10 @@ public class RansacMulti<Point> implements ModelMatcherMulti<Point> {
 						objectCandidateParam.set(j,objectParam.get(j));
 						objectParam.set(j,param);
 						setBestModel(param);
+						if( confidence > 0 ) {
+							iterationLimit = Ransac.computeIterations(bestFitPoints.size(),dataSet.size(),
+									model.sampleSize,confidence,maxIterations);
+						}
 					}
 				}
 			}
@@ -186,13 +198,15 @@ public class RansacMulti<Point> implements ModelMatcherMulti<Point> {
 	 * a custom behavior.  The default code is shown below:
 	 *
 	 * <pre>
-	 * {@code iteration < maxIterations && bestFitPoints.size() != dataSet.size()}
+	 * {@code iteration < iterationLimit && bestFitPoints.size() != dataSet.size()}
 	 * </pre>
 	 *
+	 * iterationLimit is maxIterations unless adaptive termination is turned on.
+	 *
 	 * @return if true RANSAC should continue iterating if false then RANSAC will stop.
 	 */
 	protected boolean checkExitIteration() {
-		return iteration < maxIterations && bestFitPoints.size() != dataSet.size();
+		return iteration < iterationLimit && bestFitPoints.size() != dataSet.size();
 	}
 
 	/**
@@ -200,6 +214,7 @@ public class RansacMulti<Point> implements ModelMatcherMulti<Point> {
 	 */
 	protected void initialize( List<Point> dataSet ) {
 		bestFitPoints.clear();
+		iterationLimit = maxIterations;
 
 		if( dataSet.size() > matchToInput.length ) {
 			matchToInput = new int[ dataSet.size() ];
@@ -211,7 +226,7 @@ public class RansacMulti<Point> implements ModelMatcherMulti<Point> {
 	 * Exhaustively searches through the list of points contained in 'dataSet' for the set of inliers which match
 	 * the provided model.  It keeps track of the mapping between the index of the inlier list and the 'dataSet' list
 	 * using the matchToInput[] array.   If there is no corresponding (can't happen by default) match then -1
-	 * should be set in matchToInput..
+	 * should be set in matchToInput..  Stops early if it can't have more inliers than the best model.
 	 *
 	 * @param modelDistance Computes
 	 */
@@ -221,13 +236,18 @@ public class RansacMulti<Point> implements ModelMatcherMulti<Point> {
 		candidatePoints.clear();
 		modelDistance.setModel(param);
 
-		for (int i = 0; i < dataSet.size(); i++) {
+		final int N = dataSet.size();
+		final int bestSize = bestFitPoints.size();
+		for (int i = 0; i < N; i++) {
 			Point point = dataSet.get(i);
 
 			double distance = modelDistance.computeDistance(point);
 			if (distance < threshold) {
 				matchToInput[candidatePoints.size()] = i;
 				candidatePoints.add(point);
+			} else if( candidatePoints.size() + N-i-1 <= bestSize ) {
+				// even if all the remaining points are inliers it can't be better
+				break;
 			}
 		}
 	}
@@ -283,6 +303,21 @@ public class RansacMulti<Point> implements ModelMatcherMulti<Point> {
 		this.maxIterations = maxIterations;
 	}
 
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Turns on adaptive termination. See {@link Ransac#setConfidence(double)}.
+	 *
+	 * @param confidence Desired probability. Must be less than 1.
+	 */
+	public void setConfidence(double confidence) {
+		if( confidence >= 1.0 )
+			throw new IllegalArgumentException("Confidence must be less than one");
+		this.confidence = confidence;
+	}
+
 	protected List<Point> getCandidatePoints() {
 		return candidatePoints;
 	}
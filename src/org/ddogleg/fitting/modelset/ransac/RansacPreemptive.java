@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.fitting.modelset.ransac;
+
+import org.ddogleg.fitting.modelset.DistanceFromModel;
+import org.ddogleg.fitting.modelset.ModelGenerator;
+import org.ddogleg.fitting.modelset.ModelManager;
+import org.ddogleg.fitting.modelset.ModelMatcher;
+import org.ddogleg.struct.Stoppable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * Preemptive RANSAC [1] for when a model must be found within a fixed amount of time. A fixed number of hypotheses
+ * are generated up front and then scored breadth first. All the surviving hypotheses are scored against a block of
+ * points, then they are sorted and only the best ones are kept. After the i<sup>th</sup> block the number of
+ * hypotheses is M*2<sup>-i</sup>, where M is the initial number. This continues until one hypothesis remains,
+ * all the points have been used, or it has been stopped.
+ * </p>
+ *
+ * <p>
+ * Processing can be stopped by a time limit, see {@link #setTimeLimit(long)}, or by calling {@link #requestStop()}
+ * from another thread. When stopped, the hypothesis with the highest score so far is returned. If it was stopped
+ * before any hypotheses were generated then {@link #process} fails. Once a hypothesis has been selected its inlier
+ * set is found using all the points, this last step is not interrupted.
+ * </p>
+ *
+ * <p>
+ * The score of a hypothesis is the number of inliers in the points it has been scored against. Points are
+ * considered in a random order so that each block is a random sample of the data set.
+ * </p>
+ *
+ * <p>
+ * [1] Nistér, David. "Preemptive RANSAC for live structure and motion estimation." ICCV 2003
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class RansacPreemptive<Model, Point> implements ModelMatcher<Model,Point>, Stoppable {
+	// how many points are drawn to generate the model
+	protected int sampleSize;
+
+	// how close a point needs to be considered part of the model
+	protected double thresholdFit;
+
+	// generates an initial model given a set of points
+	protected ModelGenerator<Model,Point> modelGenerator;
+	// computes the distance a point is from the model
+	protected DistanceFromModel<Model,Point> modelDistance;
+	// creates new models
+	protected ModelManager<Model> modelManager;
+
+	// used to randomly select points/samples
+	protected Random rand;
+
+	// number of hypotheses which are generated
+	protected int numHypotheses;
+	// number of points each hypothesis is scored against before it's pruned
+	protected int blockSize;
+	// maximum amount of time it can run for in nanoseconds. If <= 0 there is no limit
+	protected long timeLimit = 0;
+	// if true then a request to stop has been made
+	protected volatile boolean stopRequested = false;
+
+	// storage for all the hypotheses
+	protected List<Model> hypotheses = new ArrayList<>();
+	// number of hypotheses which were generated
+	protected int totalGenerated;
+	// score of each hypothesis
+	protected int[] scores = new int[1];
+	// index of hypotheses which have not been pruned, sorted by score after each block
+	protected int[] active = new int[1];
+	// number of active hypotheses
+	protected int numActive;
+	// number of points which the active hypotheses have been scored against
+	protected int numScored;
+
+	// copy of the input data set so that it can be modified
+	protected List<Point> dataSet = new ArrayList<>();
+	// the set of points which were initially sampled
+	protected List<Point> initialSample = new ArrayList<>();
+
+	// the best model found
+	protected Model bestFitParam;
+	// list of inliers to the best fit model
+	protected List<Point> bestFitPoints = new ArrayList<>();
+	// list of indexes converting it from match set to input list
+	protected int[] bestMatchToInput = new int[1];
+
+	/**
+	 * Creates a new instance of preemptive RANSAC.  The number of points sampled will default to the
+	 * minimum number.  To override this default invoke {@link #setSampleSize(int)}.
+	 *
+	 * @param randSeed The random seed used by the random number generator.
+	 * @param modelGenerator Creates new model(s) given a small number of points.
+	 * @param modelDistance Computes the difference between a point an a model.
+	 * @param numHypotheses Number of hypotheses which are generated. Nistér used 500.
+	 * @param blockSize Number of points a hypothesis is scored against before the worst half are pruned. Nistér used 100.
+	 * @param thresholdFit How close of a fit a points needs to be to the model to be considered a fit.
+	 */
+	public RansacPreemptive(long randSeed,
+							ModelManager<Model> modelManager,
+							ModelGenerator<Model, Point> modelGenerator,
+							DistanceFromModel<Model, Point> modelDistance,
+							int numHypotheses, int blockSize,
+							double thresholdFit) {
+		if( numHypotheses <= 0 )
+			throw new IllegalArgumentException("Number of hypotheses must be more than zero");
+		if( blockSize <= 0 )
+			throw new IllegalArgumentException("Block size must be more than zero");
+
+		this.modelManager = modelManager;
+		this.modelGenerator = modelGenerator;
+		this.modelDistance = modelDistance;
+
+		this.rand = new Random(randSeed);
+		this.numHypotheses = numHypotheses;
+		this.blockSize = blockSize;
+
+		this.bestFitParam = modelManager.createModelInstance();
+
+		this.sampleSize = modelGenerator.getMinimumPoints();
+		this.thresholdFit = thresholdFit;
+	}
+
+	@Override
+	public boolean process(List<Point> _dataSet) {
+		stopRequested = false;
+		final long deadline = System.nanoTime() + timeLimit;
+
+		bestFitPoints.clear();
+		totalGenerated = 0;
+		numActive = 0;
+		numScored = 0;
+
+		// see if it has the minimum number of points
+		if (_dataSet.size() < modelGenerator.getMinimumPoints() )
+			return false;
+
+		// the data set will be modified so a copy is needed. Otherwise indexes of match set will not
+		// be correct
+		dataSet.clear();
+		dataSet.addAll(_dataSet);
+
+		generateHypotheses(deadline);
+		if( numActive == 0 )
+			return false;
+
+		// random order of the points so that each block is a random sample
+		for (int i = dataSet.size()-1; i > 0; i--) {
+			int j = rand.nextInt(i+1);
+			dataSet.set(i, dataSet.set(j, dataSet.get(i)));
+		}
+
+		while( numActive > 1 && numScored < dataSet.size() && !isStopped(deadline) ) {
+			scoreBlock();
+
+			// prune the worst hypotheses
+			int stage = (numScored+blockSize-1)/blockSize;
+			numActive = Math.min(numActive, Math.max(1, stage < 31 ? totalGenerated >> stage : 0));
+		}
+
+		modelManager.copyModel(hypotheses.get(active[0]), bestFitParam);
+		selectMatchSet(_dataSet, thresholdFit, bestFitParam);
+
+		return bestFitPoints.size() > 0;
+	}
+
+	/**
+	 * Generates the hypotheses from randomly selected points
+	 */
+	protected void generateHypotheses( long deadline ) {
+		while( hypotheses.size() < numHypotheses )
+			hypotheses.add(modelManager.createModelInstance());
+		if( scores.length < numHypotheses ) {
+			scores = new int[ numHypotheses ];
+			active = new int[ numHypotheses ];
+		}
+
+		for (int i = 0; i < numHypotheses && !isStopped(deadline); i++) {
+			Ransac.randomDraw(dataSet, sampleSize, initialSample, rand);
+
+			if( modelGenerator.generate(initialSample, hypotheses.get(totalGenerated)) ) {
+				scores[totalGenerated] = 0;
+				active[numActive++] = totalGenerated++;
+			}
+		}
+	}
+
+	/**
+	 * Scores all the active hypotheses against the next block of points then sorts them by score
+	 */
+	protected void scoreBlock() {
+		final int end = Math.min(dataSet.size(), numScored+blockSize);
+
+		for (int i = 0; i < numActive; i++) {
+			int which = active[i];
+			modelDistance.setModel(hypotheses.get(which));
+
+			int score = 0;
+			for (int j = numScored; j < end; j++) {
+				if( modelDistance.computeDistance(dataSet.get(j)) < thresholdFit )
+					score++;
+			}
+			scores[which] += score;
+		}
+		numScored = end;
+
+		// insertion sort. Best score first and ties are broken by the order they were generated
+		for (int i = 1; i < numActive; i++) {
+			int which = active[i];
+			int j = i-1;
+			while( j >= 0 && isBetter(which, active[j]) ) {
+				active[j+1] = active[j];
+				j--;
+			}
+			active[j+1] = which;
+		}
+	}
+
+	private boolean isBetter( int a , int b ) {
+		return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+	}
+
+	/**
+	 * Checks to see if it has been requested to stop or if it has run out of time
+	 */
+	protected boolean isStopped( long deadline ) {
+		return stopRequested || (timeLimit > 0 && System.nanoTime() - deadline >= 0);
+	}
+
+	/**
+	 * Finds all the points which are inliers to the selected model
+	 */
+	protected void selectMatchSet(List<Point> dataSet, double threshold, Model param) {
+		if( bestMatchToInput.length < dataSet.size() )
+			bestMatchToInput = new int[ dataSet.size() ];
+
+		modelDistance.setModel(param);
+		for (int i = 0; i < dataSet.size(); i++) {
+			Point point = dataSet.get(i);
+
+			if( modelDistance.computeDistance(point) < threshold ) {
+				bestMatchToInput[bestFitPoints.size()] = i;
+				bestFitPoints.add(point);
+			}
+		}
+	}
+
+	@Override
+	public void requestStop() {
+		stopRequested = true;
+	}
+
+	@Override
+	public boolean isStopRequested() {
+		return stopRequested;
+	}
+
+	@Override
+	public List<Point> getMatchSet() {
+		return bestFitPoints;
+	}
+
+	@Override
+	public int getInputIndex(int matchIndex) {
+		return bestMatchToInput[matchIndex];
+	}
+
+	@Override
+	public Model getModelParameters() {
+		return bestFitParam;
+	}
+
+	@Override
+	public double getFitQuality() {
+		return bestFitPoints.size();
+	}
+
+	/**
+	 * Number of hypotheses which were generated in the most recent call to {@link #process}
+	 */
+	public int getTotalGenerated() {
+		return totalGenerated;
+	}
+
+	/**
+	 * Number of points the selected hypothesis was scored against before it was selected
+	 */
+	public int getNumScored() {
+		return numScored;
+	}
+
+	public int getNumHypotheses() {
+		return numHypotheses;
+	}
+
+	public void setNumHypotheses(int numHypotheses) {
+		this.numHypotheses = numHypotheses;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Maximum amount of time {@link #process} can spend generating and scoring hypotheses. Finding the inlier set
+	 * of the selected hypothesis is done after and isn't included.
+	 *
+	 * @param nanoseconds Time limit in nanoseconds. If &le; 0 then there is no limit.
+	 */
+	public void setTimeLimit(long nanoseconds) {
+		this.timeLimit = nanoseconds;
+	}
+
+	@Override
+	public int getMinimumSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * Override the number of points that are sampled and used to generate models.  If this value
+	 * is not set it defaults to the minimum number.
+	 *
+	 * @param sampleSize Number of sample points.
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	public double getThresholdFit() {
+		return thresholdFit;
+	}
+
+	public void setThresholdFit(double thresholdFit) {
+		this.thresholdFit = thresholdFit;
+	}
+
+	@Override
+	public Class<Point> getPointType() {
+		return modelDistance.getPointType();
+	}
+
+	@Override
+	public Class<Model> getModelType() {
+		return modelDistance.getModelType();
+	}
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.fitting.modelset.ransac;
+
+import org.ddogleg.fitting.modelset.DistanceFromModel;
+import org.ddogleg.fitting.modelset.ModelGenerator;
+import org.ddogleg.fitting.modelset.ModelManager;
+import org.ddogleg.fitting.modelset.ModelMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * Concurrent implementation of {@link Ransac}. Hypotheses are generated and scored in parallel inside a
+ * {@link ForkJoinPool}. {@link ModelGenerator} and {@link DistanceFromModel} have internal state, so each thread
+ * gets its own instances which are created by the provided factories.
+ * </p>
+ *
+ * <p>
+ * The results are the same for a given seed no matter how many threads are used. The random numbers used to draw
+ * the sample for iteration 'i' only depend on the seed and 'i'. Iterations are evaluated in blocks. After each
+ * block, the hypotheses are considered in the order of their iteration and the first one with the most inliers
+ * is kept. Adaptive termination, see {@link Ransac#setConfidence(double)}, is applied in the same order, so
+ * iterations past the limit in a block are ignored.
+ * </p>
+ *
+ * <p>
+ * The T(d,d) pre-test and early stopping when scoring work the same as in {@link Ransac}. See
+ * {@link #setPreTestSize(int)}. When scoring, the best model from previous blocks is used to decide if a
+ * hypothesis can still win.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class Ransac_MT<Model, Point> implements ModelMatcher<Model,Point> {
+	// how many points are drawn to generate the model
+	protected int sampleSize;
+
+	// how close a point needs to be considered part of the model
+	protected double thresholdFit;
+
+	// creates instances of the generator and distance for each thread
+	protected Supplier<ModelGenerator<Model,Point>> factoryGenerator;
+	protected Supplier<DistanceFromModel<Model,Point>> factoryDistance;
+	protected ModelManager<Model> modelManager;
+	// used to find the inliers of the best model
+	protected DistanceFromModel<Model,Point> modelDistance;
+
+	// seed which the random numbers for each iteration are derived from
+	protected long randSeed;
+
+	// the maximum number of iterations it will perform
+	protected int maxIterations;
+	// desired probability that an outlier free sample was drawn. If <= 0 then adaptive termination is off
+	protected double confidence = 0;
+	// number of random points which must be inliers before a hypothesis is scored. If <= 0 there is no pre-test
+	protected int preTestSize = 0;
+	// which iteration is it on
+	protected int iteration;
+
+	// number of iterations which are evaluated at once
+	protected int blockSize = 64;
+
+	// pool the hypotheses are evaluated in
+	protected ForkJoinPool pool;
+
+	// storage for each thread
+	protected ConcurrentLinkedQueue<Worker> workers = new ConcurrentLinkedQueue<>();
+
+	// results for each iteration in a block
+	protected List<Model> blockModels = new ArrayList<>();
+	protected int[] blockInliers = new int[0];
+
+	// the input data set
+	protected List<Point> dataSet;
+
+	// list of samples from the best fit model
+	protected List<Point> bestFitPoints = new ArrayList<>();
+	// the best model found so far
+	protected Model bestFitParam;
+	protected int bestInliers;
+	// number of inliers in the best model before the current block. Hypotheses need more inliers to win
+	protected int blockBestInliers;
+	// list of indexes converting it from match set to input list
+	protected int []bestMatchToInput = new int[1];
+
+	/**
+	 * Creates a new instance of the ransac algorithm.  The number of points sampled will default to the
+	 * minimum number.  To override this default invoke {@link #setSampleSize(int)}.
+	 *
+	 * @param randSeed The random seed used by the random number generator.
+	 * @param modelManager Creates and copies models
+	 * @param factoryGenerator Creates a new model generator for each thread
+	 * @param factoryDistance Creates a new model distance for each thread
+	 * @param maxIterations The maximum number of iterations the RANSAC algorithm will perform.
+	 * @param thresholdFit How close of a fit a points needs to be to the model to be considered a fit.
+	 * @param pool The pool which hypotheses are evaluated inside of
+	 */
+	public Ransac_MT(long randSeed,
+					 ModelManager<Model> modelManager,
+					 Supplier<ModelGenerator<Model,Point>> factoryGenerator,
+					 Supplier<DistanceFromModel<Model,Point>> factoryDistance,
+					 int maxIterations,
+					 double thresholdFit,
+					 ForkJoinPool pool ) {
+		this.randSeed = randSeed;
+		this.modelManager = modelManager;
+		this.factoryGenerator = factoryGenerator;
+		this.factoryDistance = factoryDistance;
+		this.maxIterations = maxIterations;
+		this.thresholdFit = thresholdFit;
+		this.pool = pool;
+
+		this.modelDistance = factoryDistance.get();
+		this.bestFitParam = modelManager.createModelInstance();
+
+		Worker w = new Worker();
+		this.sampleSize = w.generator.getMinimumPoints();
+		workers.add(w);
+	}
+
+	/**
+	 * Hypotheses are evaluated in {@link ForkJoinPool#commonPool()}
+	 */
+	public Ransac_MT(long randSeed,
+					 ModelManager<Model> modelManager,
+					 Supplier<ModelGenerator<Model,Point>> factoryGenerator,
+					 Supplier<DistanceFromModel<Model,Point>> factoryDistance,
+					 int maxIterations,
+					 double thresholdFit ) {
+		this(randSeed,modelManager,factoryGenerator,factoryDistance,maxIterations,thresholdFit,
+				ForkJoinPool.commonPool());
+	}
+
+	@Override
+	public boolean process(List<Point> dataSet) {
+		bestFitPoints.clear();
+		bestInliers = 0;
+		iteration = 0;
+
+		// see if it has the minimum number of points
+		if( dataSet.size() < sampleSize )
+			return false;
+
+		this.dataSet = dataSet;
+		while( blockModels.size() < blockSize )
+			blockModels.add(modelManager.createModelInstance());
+		if( blockInliers.length < blockSize )
+			blockInliers = new int[blockSize];
+
+		try {
+			int iterationLimit = maxIterations;
+			for (int blockStart = 0; blockStart < iterationLimit && bestInliers != dataSet.size();
+				 blockStart += blockSize) {
+				final int idx0 = blockStart;
+				final int idx1 = Math.min(iterationLimit, blockStart + blockSize);
+				blockBestInliers = bestInliers;
+				pool.submit(() -> IntStream.range(idx0, idx1).parallel().forEach(i -> evaluate(i, i - idx0))).join();
+
+				// select the best in the same order as a single thread would have
+				for (int i = idx0; i < idx1 && i < iterationLimit && bestInliers != dataSet.size(); i++) {
+					iteration = i + 1;
+					int inliers = blockInliers[i - idx0];
+					if( inliers <= bestInliers )
+						continue;
+					bestInliers = inliers;
+					modelManager.copyModel(blockModels.get(i - idx0), bestFitParam);
+					if( confidence > 0 ) {
+						// a hypothesis is only scored if the pre-test points are also inliers
+						iterationLimit = Ransac.computeIterations(bestInliers, dataSet.size(),
+								sampleSize + Math.max(0, preTestSize), confidence, maxIterations);
+					}
+				}
+			}
+
+			if( bestInliers == 0 )
+				return false;
+
+			selectMatchSet(dataSet, bestFitParam);
+		} finally {
+			this.dataSet = null;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Generates and scores the hypothesis for the specified iteration
+	 *
+	 * @param iteration Which iteration
+	 * @param slot Where the results are saved in the block
+	 */
+	protected void evaluate( int iteration , int slot ) {
+		Worker w = workers.poll();
+		if( w == null )
+			w = new Worker();
+
+		try {
+			w.rand.setSeed(iterationSeed(randSeed,iteration));
+			w.sample(dataSet, sampleSize);
+
+			Model model = blockModels.get(slot);
+			if( w.generator.generate(w.sample, model) && preTest(w, model) ) {
+				blockInliers[slot] = countInliers(w.distance, model);
+			} else {
+				blockInliers[slot] = 0;
+			}
+		} finally {
+			workers.add(w);
+		}
+	}
+
+	/**
+	 * T(d,d) test. Checks to see if randomly selected points are all inliers.
+	 *
+	 * @return true if all the points are inliers
+	 */
+	protected boolean preTest( Worker w , Model model ) {
+		w.distance.setModel(model);
+		for (int i = 0; i < preTestSize; i++) {
+			Point point = dataSet.get(w.rand.nextInt(dataSet.size()));
+			if( !(w.distance.computeDistance(point) < thresholdFit) )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the number of points which are inliers. Stops early if it can't beat the best model from the
+	 * previous blocks, in which case the returned count is incomplete.
+	 */
+	protected int countInliers( DistanceFromModel<Model,Point> distance , Model model ) {
+		distance.setModel(model);
+		final int N = dataSet.size();
+		int total = 0;
+		for (int i = 0; i < N; i++) {
+			if( distance.computeDistance(dataSet.get(i)) < thresholdFit )
+				total++;
+			else if( total + N-i-1 <= blockBestInliers )
+				break;
+		}
+		return total;
+	}
+
+	/**
+	 * Finds the inliers of the best model
+	 */
+	protected void selectMatchSet( List<Point> dataSet , Model param ) {
+		if( bestMatchToInput.length < dataSet.size() )
+			bestMatchToInput = new int[dataSet.size()];
+
+		bestFitPoints.clear();
+		modelDistance.setModel(param);
+		for (int i = 0; i < dataSet.size(); i++) {
+			Point point = dataSet.get(i);
+			if( modelDistance.computeDistance(point) < thresholdFit ) {
+				bestMatchToInput[bestFitPoints.size()] = i;
+				bestFitPoints.add(point);
+			}
+		}
+	}
+
+	/**
+	 * Computes the seed for an iteration by mixing the bits of the seed and iteration (SplitMix64). Similar seeds
+	 * in {@link Random} produce similar initial values, which is avoided here.
+	 */
+	static long iterationSeed( long seed , int iteration ) {
+		long z = seed + (iteration+1)*0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Storage used by a single thread
+	 */
+	protected class Worker {
+		ModelGenerator<Model,Point> generator = factoryGenerator.get();
+		DistanceFromModel<Model,Point> distance = factoryDistance.get();
+		Random rand = new Random();
+		List<Point> sample = new ArrayList<>();
+		int[] indexes = new int[0];
+
+		/**
+		 * Randomly selects points without replacement using Floyd's algorithm. The input list isn't modified.
+		 */
+		void sample( List<Point> dataSet , int numSample ) {
+			if( indexes.length < numSample )
+				indexes = new int[numSample];
+			int N = dataSet.size();
+			int count = 0;
+			for (int j = N - numSample; j < N; j++) {
+				int t = rand.nextInt(j+1);
+				boolean found = false;
+				for (int k = 0; k < count && !found; k++) {
+					found = indexes[k] == t;
+				}
+				indexes[count++] = found ? j : t;
+			}
+
+			sample.clear();
+			for (int i = 0; i < numSample; i++) {
+				sample.add(dataSet.get(indexes[i]));
+			}
+		}
+	}
+
+	@Override
+	public List<Point> getMatchSet() {
+		return bestFitPoints;
+	}
+
+	@Override
+	public int getInputIndex(int matchIndex) {
+		return bestMatchToInput[matchIndex];
+	}
+
+	@Override
+	public Model getModelParameters() {
+		return bestFitParam;
+	}
+
+	@Override
+	public double getFitQuality() {
+		return bestFitPoints.size();
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Turns on adaptive termination. See {@link Ransac#setConfidence(double)}.
+	 *
+	 * @param confidence Desired probability. Must be less than 1.
+	 */
+	public void setConfidence(double confidence) {
+		if( confidence >= 1.0 )
+			throw new IllegalArgumentException("Confidence must be less than one");
+		this.confidence = confidence;
+	}
+
+	public int getPreTestSize() {
+		return preTestSize;
+	}
+
+	/**
+	 * Number of randomly selected points which must be inliers before a hypothesis is scored. See
+	 * {@link Ransac#setPreTestSize(int)}.
+	 */
+	public void setPreTestSize(int preTestSize) {
+		this.preTestSize = preTestSize;
+	}
+
+	/**
+	 * Number of iterations performed in the most recent call to {@link #process}
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Number of iterations which are evaluated in parallel before the best is selected. Larger blocks have less
+	 * overhead but more hypotheses past the adaptive termination limit are wasted. Doesn't change the results.
+	 */
+	public void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public int getMinimumSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * Override the number of points that are sampled and used to generate models.  If this value
+	 * is not set it defaults to the minimum number.
+	 *
+	 * @param sampleSize Number of sample points.
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	public double getThresholdFit() {
+		return thresholdFit;
+	}
+
+	public void setThresholdFit(double thresholdFit) {
+		this.thresholdFit = thresholdFit;
+	}
+
+	@Override
+	public Class<Point> getPointType() {
+		return modelDistance.getPointType();
+	}
+
+	@Override
+	public Class<Model> getModelType() {
+		return modelDistance.getModelType();
+	}
+}
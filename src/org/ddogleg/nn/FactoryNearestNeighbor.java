@@ -20,13 +20,23 @@ package org.ddogleg.nn;
 
 import org.ddogleg.nn.alg.AxisSplitRuleRandomK;
 import org.ddogleg.nn.alg.AxisSplitterMedian;
+import org.ddogleg.nn.alg.DistanceMetric;
+import org.ddogleg.nn.alg.HierarchicalKMeansTree;
+import org.ddogleg.nn.alg.HnswIndex;
+import org.ddogleg.nn.alg.IvfPqIndex;
 import org.ddogleg.nn.alg.KdTreeDistance;
+import org.ddogleg.nn.alg.KdTreeFlatConstructor;
+import org.ddogleg.nn.alg.MultiIndexHashing;
 import org.ddogleg.nn.alg.VpTree;
+import org.ddogleg.nn.alg.searches.KdTreeFlatSearch;
 import org.ddogleg.nn.alg.searches.KdTreeSearch1Bbf;
 import org.ddogleg.nn.alg.searches.KdTreeSearchNBbf;
 import org.ddogleg.nn.wrap.KdForestBbfSearch;
+import org.ddogleg.nn.wrap.KdTreeDynamicNearestNeighbor;
+import org.ddogleg.nn.wrap.KdTreeFlatNearestNeighbor;
 import org.ddogleg.nn.wrap.KdTreeNearestNeighbor;
 import org.ddogleg.nn.wrap.WrapExhaustiveNeighbor;
+import org.ddogleg.nn.wrap.WrapExhaustiveNeighborBlock;
 
 import java.util.Random;
 
@@ -47,13 +57,13 @@ public class FactoryNearestNeighbor {
 	 * @param distance Specifies how distance is computed between two points.
 	 * @return {@link NearestNeighbor} implementation
 	 */
-	public static <P> NearestNeighbor<P> kdtree( KdTreeDistance<P> distance ) {
+	public static <P> NearestNeighborRadius<P> kdtree( KdTreeDistance<P> distance ) {
 		return new KdTreeNearestNeighbor<>(distance);
 	}
 
 	/**
 	 * Performs an approximate {@link NearestNeighbor} search using K-D tree.  Node are searched in Best-Bin-First
-	 * order.  Distance measure is Euclidean squared.
+	 * order.  Distance measure is Euclidean squared. Radius searches are exact.
 	 *
 	 * @see KdTreeNearestNeighbor
 	 * @see KdTreeSearch1Bbf
@@ -64,9 +74,41 @@ public class FactoryNearestNeighbor {
 	 * @param distance Specifies how distance is computed between two points.
 	 * @return {@link NearestNeighbor} implementation
 	 */
-	public static <P> NearestNeighbor<P> kdtree( KdTreeDistance<P> distance , int maxNodesSearched ) {
+	public static <P> NearestNeighborRadius<P> kdtree( KdTreeDistance<P> distance , int maxNodesSearched ) {
 		return new KdTreeNearestNeighbor<P>(new KdTreeSearch1Bbf<>(distance,maxNodesSearched),
-				new KdTreeSearchNBbf<>(distance,maxNodesSearched),new AxisSplitterMedian<>(distance));
+				new KdTreeSearchNBbf<>(distance,maxNodesSearched),KdTreeNearestNeighbor.createSearchRadius(distance),
+				new AxisSplitterMedian<>(distance));
+	}
+
+	/**
+	 * Performs an optimal {@link NearestNeighbor} search using a compact K-D tree stored in primitive arrays.
+	 * Points are copied into the tree and stored in leaves. Distance measure is Euclidean squared.
+	 *
+	 * @see KdTreeFlatNearestNeighbor
+	 * @see org.ddogleg.nn.alg.KdTreeFlat
+	 *
+	 * @param <P> Point type.
+	 * @param distance Specifies how the values in a point are accessed.
+	 * @param maxLeafSize Maximum number of points in a leaf. Try 10.
+	 * @return {@link NearestNeighbor} implementation
+	 */
+	public static <P> NearestNeighbor<P> kdtreeFlat( KdTreeDistance<P> distance , int maxLeafSize ) {
+		return new KdTreeFlatNearestNeighbor<>(new KdTreeFlatConstructor<>(distance,maxLeafSize),
+				new KdTreeFlatSearch<>(distance));
+	}
+
+	/**
+	 * Performs an optimal {@link NearestNeighbor} search using a set of K-D trees which can have points added and
+	 * removed without being rebuilt from scratch. Distance measure is Euclidean squared.
+	 *
+	 * @see KdTreeDynamicNearestNeighbor
+	 *
+	 * @param <P> Point type.
+	 * @param distance Specifies how distance is computed between two points.
+	 * @return {@link KdTreeDynamicNearestNeighbor}
+	 */
+	public static <P> KdTreeDynamicNearestNeighbor<P> kdtreeDynamic( KdTreeDistance<P> distance ) {
+		return new KdTreeDynamicNearestNeighbor<>(distance);
 	}
 
 	/**
@@ -95,6 +137,51 @@ public class FactoryNearestNeighbor {
 				new AxisSplitterMedian<>(distance,new AxisSplitRuleRandomK(rand,numConsiderSplit)));
 	}
 
+	/**
+	 * Approximate {@link NearestNeighbor} search using a hierarchical k-means tree. Often better than K-D trees for
+	 * high dimensional points. Distance measure is Euclidean squared.
+	 *
+	 * @see HierarchicalKMeansTree
+	 *
+	 * @param branchFactor Number of children each branch is split into. Try 16
+	 * @param maxChecks Maximum number of points checked when searching. Controls speed and accuracy. If &le; 0 then
+	 *                  the search is exact.
+	 * @param randomSeed Seed used by k-means
+	 * @return {@link NearestNeighbor} implementation
+	 */
+	public static NearestNeighbor<double[]> kmeansTree( int branchFactor , int maxChecks , long randomSeed ) {
+		return new HierarchicalKMeansTree(branchFactor,maxChecks,randomSeed);
+	}
+
+	/**
+	 * Approximate {@link NearestNeighbor} search using a Hierarchical Navigable Small World graph. Fast and accurate
+	 * for high dimensional points. Points can be added concurrently with {@link HnswIndex#add} while searching.
+	 * Distance measure is Euclidean squared.
+	 *
+	 * @see HnswIndex
+	 *
+	 * @param maxNeighbors Maximum number of neighbors a node has in each layer. Try 16
+	 * @param efConstruction Number of candidates considered when adding a point. Try 200
+	 * @param randomSeed Seed used to select each point's level
+	 * @return {@link HnswIndex}
+	 */
+	public static HnswIndex hnsw( int maxNeighbors , int efConstruction , long randomSeed ) {
+		return new HnswIndex(maxNeighbors,efConstruction,randomSeed);
+	}
+
+	/**
+	 * Associates two lists of points using the ratio test and/or mutual test. Both lists are searched using
+	 * an exact K-D tree.
+	 *
+	 * @see NearestNeighborAssociator
+	 *
+	 * @param distance Specifies how distance is computed between two points.
+	 * @return {@link NearestNeighborAssociator}
+	 */
+	public static <P> NearestNeighborAssociator<P> associator( KdTreeDistance<P> distance ) {
+		return new NearestNeighborAssociator<>(kdtree(distance),kdtree(distance));
+	}
+
 	/**
 	 * Performs an optimal {@link NearestNeighbor} by exhaustively consider all possible solutions.
 	 * Distance measure is Euclidean squared.
@@ -104,10 +191,52 @@ public class FactoryNearestNeighbor {
 	 * @param distance Specifies how distance is computed between two points.
 	 * @return {@link NearestNeighbor} implementation
 	 */
-	public static  <P> NearestNeighbor<P> exhaustive(KdTreeDistance<P> distance) {
+	public static  <P> NearestNeighborRadius<P> exhaustive(KdTreeDistance<P> distance) {
 		return new WrapExhaustiveNeighbor<>(distance);
 	}
 
+	/**
+	 * Performs an optimal {@link NearestNeighbor} by exhaustively consider all possible solutions. Points are
+	 * copied into a single array and processed by a fast kernel. Best for high dimensional points.
+	 * Distance measure is Euclidean squared.
+	 *
+	 * @see org.ddogleg.nn.alg.ExhaustiveNeighborBlock
+	 *
+	 * @param distance Specifies how the values in a point are accessed.
+	 * @return {@link NearestNeighbor} implementation
+	 */
+	public static  <P> NearestNeighbor<P> exhaustiveBlock(KdTreeDistance<P> distance) {
+		return new WrapExhaustiveNeighborBlock<>(distance);
+	}
+
+	/**
+	 * Approximate {@link NearestNeighbor} search for very large sets of points. Points are stored in an inverted
+	 * file and compressed using product quantization. Distance measure is an approximation of Euclidean squared.
+	 *
+	 * @see IvfPqIndex
+	 *
+	 * @param numLists Number of lists in the inverted file. Try sqrt(number of points)
+	 * @param numSubspaces Number of bytes used to encode each point.
+	 * @param numProbe Number of lists which are searched. Controls speed and accuracy.
+	 * @param randomSeed Seed used when learning the quantizers
+	 * @return {@link NearestNeighbor} implementation
+	 */
+	public static NearestNeighbor<double[]> ivfpq( int numLists , int numSubspaces , int numProbe , long randomSeed ) {
+		return new IvfPqIndex(numLists,numSubspaces,numProbe,randomSeed);
+	}
+
+	/**
+	 * Exact {@link NearestNeighbor} search for binary descriptors stored in long[] using multi-index hashing.
+	 * Distance is the Hamming distance.
+	 *
+	 * @see MultiIndexHashing
+	 *
+	 * @return {@link NearestNeighbor} implementation
+	 */
+	public static NearestNeighbor<long[]> hamming() {
+		return new MultiIndexHashing();
+	}
+
 	/**
 	 * {@link VpTree Vantage point} tree implementation for nearest neighbor search.  Slower than KD-Tree on
 	 * random data, but faster than it for some pathological cases.
@@ -117,7 +246,23 @@ public class FactoryNearestNeighbor {
 	 * @param randSeed Random seed
 	 * @return {@link NearestNeighbor} implementation
 	 */
-	public static NearestNeighbor<double[]> vptree( long randSeed ) {
-		return new VpTree(randSeed);
+	public static NearestNeighborRadius<double[]> vptree( long randSeed ) {
+		return VpTree.euclidean(randSeed);
+	}
+
+	/**
+	 * {@link VpTree Vantage point} tree for any type of point where the distance between points is a metric.
+	 * Distance is computed by the metric.
+	 *
+	 * @see VpTree
+	 * @see DistanceMetric
+	 *
+	 * @param metric Distance between two points
+	 * @param randSeed Random seed
+	 * @param <P> Point type.
+	 * @return {@link NearestNeighbor} implementation
+	 */
+	public static <P> NearestNeighborRadius<P> vptree( DistanceMetric<P> metric , long randSeed ) {
+		return new VpTree<>(metric,randSeed);
 	}
 }
@@ -34,6 +34,13 @@ import java.util.List;
  * to be modified, then pass in a copy instead.  This restriction reduced memory overhead significantly.
  * </p>
  *
+ * <p>
+ * Concurrency: The findNearest() functions in this interface use internal storage and are not thread safe. To search
+ * from multiple threads, call {@link #createSearch()} once for each thread. Each {@link Search} has its own
+ * workspace and only reads the data structure created by {@link #setPoints}, which must not be called while
+ * searches are being performed.
+ * </p>
+ *
  * @author Peter Abeles
  */
 public interface NearestNeighbor<P> {
@@ -77,4 +84,32 @@ public interface NearestNeighbor<P> {
 	 * @param results (Output) Storage for the result. Reset() is called. Must support grow() function.
 	 */
 	void findNearest( P point , double maxDistance , int numNeighbors , FastQueue<NnData<P>> results );
+
+	/**
+	 * Creates a new search which can be used to find the nearest neighbors of the points specified in the most
+	 * recent call to {@link #setPoints}. The search has its own internal workspace, allowing it to be used
+	 * concurrently with searches created by other threads.
+	 *
+	 * @return A new search instance.
+	 */
+	Search<P> createSearch();
+
+	/**
+	 * Searches the set of points in the parent {@link NearestNeighbor} for the nearest neighbors. Instances are
+	 * light weight and should not be shared between threads. See {@link NearestNeighbor#findNearest} for a
+	 * description of each function's parameters.
+	 *
+	 * @param <P> Point type
+	 */
+	interface Search<P> {
+		/**
+		 * @see NearestNeighbor#findNearest(Object, double, NnData)
+		 */
+		boolean findNearest( P point , double maxDistance , NnData<P> result );
+
+		/**
+		 * @see NearestNeighbor#findNearest(Object, double, int, FastQueue)
+		 */
+		void findNearest( P point , double maxDistance , int numNeighbors , FastQueue<NnData<P>> results );
+	}
 }
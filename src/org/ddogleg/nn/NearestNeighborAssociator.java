@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn;
+
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>
+ * Associates points in a source list with points in a destination list using nearest-neighbor search. Each
+ * source point is matched to its closest destination point. Matches can then be filtered with these tests:
+ * </p>
+ * <ul>
+ * <li>Ratio test: The distance of the best match divided by the distance of the second best must be
+ * &le; ratioTest. Ambiguous matches are removed [1].</li>
+ * <li>Mutual: The source point must also be the closest point to its destination point.</li>
+ * </ul>
+ * <p>
+ * A destination point is matched to at most one source point. When mutual is false and several source points
+ * match the same destination point, only the closest is kept.
+ * </p>
+ *
+ * <p>
+ * Searches are done in parallel with {@link NearestNeighborBatch}. Results are written into primitive arrays
+ * to avoid creating an {@link NnData} for every match. The ratio test uses the distances returned by the
+ * {@link NearestNeighbor}. Most implementations return Euclidean distance squared, so the ratio needs to be
+ * squared too.
+ * </p>
+ *
+ * <p>
+ * [1] Lowe, David G. "Distinctive image features from scale-invariant keypoints." IJCV 60.2 (2004)
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class NearestNeighborAssociator<P> {
+
+	// searches for source points in the destination list
+	NearestNeighborBatch<P> forward;
+	NearestNeighbor<P> nnDst;
+	// searches for destination points in the source list. Used for the mutual test
+	NearestNeighborBatch<P> backward;
+	NearestNeighbor<P> nnSrc;
+
+	// the maximum allowed ratio between the best and second best distance
+	double ratioTest = 1.0;
+	// if true then the source point must be the closest to its destination point
+	boolean mutual = false;
+	// maximum distance a match can be. If <= 0 then there is no limit
+	double maxDistance = -1;
+
+	// results of the searches
+	NnBatchResults resultsForward = new NnBatchResults();
+	NnBatchResults resultsBackward = new NnBatchResults();
+
+	// for each destination point, the source point which matched it or -1
+	GrowQueue_I32 dstToSrc = new GrowQueue_I32();
+	GrowQueue_F64 dstDistance = new GrowQueue_F64();
+	// destination points which have been matched and need to be checked with the mutual test
+	List<P> matchedDst = new ArrayList<>();
+	GrowQueue_I32 matchedDstIndex = new GrowQueue_I32();
+	// for each source point, the destination point it's matched to or -1
+	GrowQueue_I32 srcToDst = new GrowQueue_I32();
+
+	/**
+	 * Configures the associator
+	 *
+	 * @param nnDst Nearest-neighbor used to search the destination points. See {@link FactoryNearestNeighbor}
+	 * @param nnSrc Nearest-neighbor used to search the source points. Only used if mutual is true.
+	 * @param pool Pool which searches are done inside of
+	 */
+	public NearestNeighborAssociator( NearestNeighbor<P> nnDst , NearestNeighbor<P> nnSrc , ForkJoinPool pool ) {
+		this.nnDst = nnDst;
+		this.nnSrc = nnSrc;
+		this.forward = new NearestNeighborBatch<>(nnDst,pool);
+		this.backward = new NearestNeighborBatch<>(nnSrc,pool);
+	}
+
+	/**
+	 * Searches are done in {@link ForkJoinPool#commonPool()}
+	 */
+	public NearestNeighborAssociator( NearestNeighbor<P> nnDst , NearestNeighbor<P> nnSrc ) {
+		this(nnDst,nnSrc,ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Associates the two lists of points. Matches are sorted by source index.
+	 *
+	 * @param src (Input) Source points
+	 * @param dst (Input) Destination points
+	 * @param matchSrc (Output) Index of the source point in each match
+	 * @param matchDst (Output) Index of the destination point in each match
+	 * @param matchDistance (Output) Distance between the points in each match. Can be null.
+	 */
+	public void associate( List<P> src , List<P> dst ,
+						   GrowQueue_I32 matchSrc , GrowQueue_I32 matchDst , GrowQueue_F64 matchDistance ) {
+		matchSrc.reset();
+		matchDst.reset();
+		if( matchDistance != null )
+			matchDistance.reset();
+		if( src.isEmpty() || dst.isEmpty() )
+			return;
+
+		// find the best destination point for each source point. The second best is needed by the ratio test
+		// no matter how far away it is, so the search is only limited by maxDistance when there's no ratio test
+		int numNeighbors = ratioTest < 1.0 ? 2 : 1;
+		double maxDistance = this.maxDistance <= 0 ? Double.MAX_VALUE : this.maxDistance;
+		nnDst.setPoints(dst,true);
+		forward.findNearest(src,numNeighbors == 2 ? Double.MAX_VALUE : maxDistance,numNeighbors,resultsForward);
+
+		// keep the best source point for each destination point
+		dstToSrc.resize(dst.size());
+		dstToSrc.fill(-1);
+		dstDistance.resize(dst.size());
+		for (int i = 0; i < src.size(); i++) {
+			int count = resultsForward.getCount(i);
+			if( count == 0 )
+				continue;
+			double best = resultsForward.getDistance(i,0);
+			if( best > maxDistance )
+				continue;
+			if( numNeighbors == 2 && count == 2 && best > ratioTest*resultsForward.getDistance(i,1) )
+				continue;
+
+			int j = resultsForward.getIndex(i,0);
+			if( dstToSrc.data[j] == -1 || best < dstDistance.data[j] ) {
+				dstToSrc.data[j] = i;
+				dstDistance.data[j] = best;
+			}
+		}
+
+		if( mutual ) {
+			// see if the source point is the closest to each matched destination point
+			matchedDst.clear();
+			matchedDstIndex.reset();
+			for (int j = 0; j < dst.size(); j++) {
+				if( dstToSrc.data[j] == -1 )
+					continue;
+				matchedDst.add(dst.get(j));
+				matchedDstIndex.add(j);
+			}
+
+			nnSrc.setPoints(src,true);
+			backward.findNearest(matchedDst,maxDistance,1,resultsBackward);
+			for (int k = 0; k < matchedDstIndex.size; k++) {
+				int j = matchedDstIndex.data[k];
+				if( resultsBackward.getCount(k) == 0 || resultsBackward.getIndex(k,0) != dstToSrc.data[j] )
+					dstToSrc.data[j] = -1;
+			}
+			matchedDst.clear();
+		}
+
+		// sort the matches by source index
+		srcToDst.resize(src.size());
+		srcToDst.fill(-1);
+		for (int j = 0; j < dst.size(); j++) {
+			int i = dstToSrc.data[j];
+			if( i >= 0 )
+				srcToDst.data[i] = j;
+		}
+		for (int i = 0; i < src.size(); i++) {
+			int j = srcToDst.data[i];
+			if( j < 0 )
+				continue;
+			matchSrc.add(i);
+			matchDst.add(j);
+			if( matchDistance != null )
+				matchDistance.add(dstDistance.data[j]);
+		}
+	}
+
+	public double getRatioTest() {
+		return ratioTest;
+	}
+
+	/**
+	 * Specifies the ratio test threshold. A match is discarded if the best distance is greater than ratioTest
+	 * times the second best distance. Set to 1.0 or more to turn off.
+	 */
+	public void setRatioTest(double ratioTest) {
+		this.ratioTest = ratioTest;
+	}
+
+	public boolean isMutual() {
+		return mutual;
+	}
+
+	/**
+	 * If true then a source point and its destination point must be each other's closest point
+	 */
+	public void setMutual(boolean mutual) {
+		this.mutual = mutual;
+	}
+
+	public double getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * Maximum distance two points in a match can be apart. If &le; 0 then there is no limit. Only the best match
+	 * is checked against it, the second best used by the ratio test can be any distance away.
+	 */
+	public void setMaxDistance(double maxDistance) {
+		this.maxDistance = maxDistance;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn;
+
+import org.ddogleg.struct.FastQueue;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>
+ * Searches for the nearest-neighbors of a list of points at once and writes the results into {@link NnBatchResults}.
+ * The list of queries is recursively split into blocks which are searched in a {@link ForkJoinPool}. Each block
+ * is searched with a {@link NearestNeighbor.Search} created by {@link NearestNeighbor#createSearch()}, which are
+ * recycled between blocks and between calls.
+ * </p>
+ *
+ * <p>
+ * The index of each neighbor is taken from {@link NnData#index}, so {@link NearestNeighbor#setPoints} must
+ * be called with trackIndices set to true. Do not call setPoints() while a batch search is being performed.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class NearestNeighborBatch<P> {
+
+	// the nearest neighbor data structure which is searched
+	NearestNeighbor<P> nn;
+
+	// the pool which the searches are run inside of
+	ForkJoinPool pool;
+
+	// If there are fewer than this number of queries in a block it will not be split any more
+	int minBlockSize = 100;
+
+	// recycled workspace. Each block takes one workspace and returns it when it is done
+	ConcurrentLinkedQueue<Workspace> unused = new ConcurrentLinkedQueue<>();
+
+	// search parameters for the current batch
+	List<P> queries;
+	double maxDistance;
+	int numNeighbors;
+	NnBatchResults results;
+
+	/**
+	 * Configures the batch search
+	 *
+	 * @param nn The nearest-neighbor that is searched. setPoints() must be called before a search.
+	 * @param pool The pool which the searches are performed inside of.
+	 */
+	public NearestNeighborBatch(NearestNeighbor<P> nn, ForkJoinPool pool) {
+		this.nn = nn;
+		this.pool = pool;
+	}
+
+	/**
+	 * Performs the searches in {@link ForkJoinPool#commonPool()}.
+	 */
+	public NearestNeighborBatch(NearestNeighbor<P> nn) {
+		this(nn,ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Searches for the N nearest-neighbors for every point in the list.
+	 *
+	 * @param queries (Input) List of points which are being searched for.
+	 * @param maxDistance (Input) Maximum distance a neighbor can be from a point. See {@link NearestNeighbor#findNearest}
+	 * @param numNeighbors (Input) The number of neighbors it will search for.
+	 * @param results (Output) Storage for the results. Reshaped to fit the queries.
+	 */
+	public void findNearest( List<P> queries , double maxDistance , int numNeighbors , NnBatchResults results ) {
+		if( numNeighbors <= 0 )
+			throw new IllegalArgumentException("numNeighbors must be at least 1");
+
+		results.reshape(queries.size(),numNeighbors);
+
+		this.queries = queries;
+		this.maxDistance = maxDistance;
+		this.numNeighbors = numNeighbors;
+		this.results = results;
+
+		try {
+			pool.invoke(new BlockTask(0, queries.size()));
+		} finally {
+			this.queries = null;
+			this.results = null;
+		}
+	}
+
+	/**
+	 * Searches a block of queries
+	 *
+	 * @param idx0 First query in the block, inclusive
+	 * @param idx1 Last query in the block, exclusive
+	 */
+	void searchBlock( int idx0 , int idx1 ) {
+		Workspace work = unused.poll();
+		if( work == null )
+			work = new Workspace(nn.createSearch());
+
+		final int numNeighbors = this.numNeighbors;
+		final int[] indexes = results.indexes.data;
+		final double[] distances = results.distances.data;
+
+		for (int query = idx0; query < idx1; query++) {
+			if( numNeighbors == 1 ) {
+				work.found.reset();
+				if( !work.search.findNearest(queries.get(query),maxDistance,work.found.grow()) ) {
+					work.found.reset();
+				}
+			} else {
+				work.search.findNearest(queries.get(query), maxDistance, numNeighbors, work.found);
+			}
+
+			// Save the results in order of closest to farthest. N is typically small so use insertion sort
+			int start = query*numNeighbors;
+			int count = Math.min(work.found.size,numNeighbors);
+			for (int i = 0; i < count; i++) {
+				NnData<P> d = work.found.get(i);
+				int j = start + i;
+				while( j > start && distances[j-1] > d.distance ) {
+					distances[j] = distances[j-1];
+					indexes[j] = indexes[j-1];
+					j--;
+				}
+				distances[j] = d.distance;
+				indexes[j] = d.index;
+			}
+			for (int i = count; i < numNeighbors; i++) {
+				indexes[start+i] = -1;
+				distances[start+i] = Double.NaN;
+			}
+			results.counts.data[query] = count;
+		}
+
+		unused.add(work);
+	}
+
+	/**
+	 * Recursively splits the set of queries into two blocks until the block is small enough to process
+	 */
+	@SuppressWarnings("serial")
+	class BlockTask extends RecursiveAction {
+		int idx0, idx1;
+
+		BlockTask(int idx0, int idx1) {
+			this.idx0 = idx0;
+			this.idx1 = idx1;
+		}
+
+		@Override
+		protected void compute() {
+			if( idx1-idx0 <= minBlockSize ) {
+				searchBlock(idx0,idx1);
+			} else {
+				int middle = (idx0+idx1)/2;
+				invokeAll(new BlockTask(idx0,middle), new BlockTask(middle,idx1));
+			}
+		}
+	}
+
+	/**
+	 * Storage used by a single thread
+	 */
+	class Workspace {
+		NearestNeighbor.Search<P> search;
+		@SuppressWarnings("unchecked")
+		FastQueue<NnData<P>> found = new FastQueue<>((Class<NnData<P>>)(Class<?>)NnData.class,true);
+
+		Workspace(NearestNeighbor.Search<P> search) {
+			this.search = search;
+		}
+	}
+
+	public int getMinBlockSize() {
+		return minBlockSize;
+	}
+
+	/**
+	 * Specifies the minimum number of queries in a block. Smaller blocks will balance the load better but
+	 * have more overhead.
+	 */
+	public void setMinBlockSize(int minBlockSize) {
+		this.minBlockSize = minBlockSize;
+	}
+
+	public NearestNeighbor<P> getNearestNeighbor() {
+		return nn;
+	}
+}
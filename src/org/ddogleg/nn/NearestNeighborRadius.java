@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn;
+
+import org.ddogleg.struct.FastQueue;
+
+/**
+ * <p>
+ * {@link NearestNeighbor} which can also find every point within a radius of a point, i.e. a range query. Unlike
+ * {@link #findNearest(Object, double, int, FastQueue)} the number of neighbors does not need to be known in advance.
+ * </p>
+ *
+ * <p>
+ * The radius is measured using the same distance as the maximum distance in findNearest(). See the implementation's
+ * documentation. Euclidean distance squared is common.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public interface NearestNeighborRadius<P> extends NearestNeighbor<P> {
+
+	/**
+	 * Finds all the points which are within the radius of the specified point.
+	 *
+	 * @param point (Input) A point being searched for.
+	 * @param radius (Input) Maximum distance (inclusive, e.g. d &le; radius) a neighbor can be from point.
+	 *               Must be &ge; 0.
+	 * @param maxResults (Input) The search stops once this many neighbors have been found, in which case which
+	 *                   neighbors are returned is implementation dependent. Values &le; 0 mean there is no limit.
+	 * @param sorted (Input) If true the results will be sorted from closest to farthest.
+	 * @param results (Output) Storage for the result. Reset() is called. Must support grow() function.
+	 */
+	void findRadius( P point , double radius , int maxResults , boolean sorted , FastQueue<NnData<P>> results );
+
+	@Override
+	SearchRadius<P> createSearch();
+
+	/**
+	 * {@link Search} which can also perform radius searches. See {@link NearestNeighborRadius#findRadius}.
+	 *
+	 * @param <P> Point type
+	 */
+	interface SearchRadius<P> extends Search<P> {
+		/**
+		 * @see NearestNeighborRadius#findRadius(Object, double, int, boolean, FastQueue)
+		 */
+		void findRadius( P point , double radius , int maxResults , boolean sorted , FastQueue<NnData<P>> results );
+	}
+}
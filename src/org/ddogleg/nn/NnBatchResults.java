@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn;
+
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+
+/**
+ * Results from a batch of nearest-neighbor searches stored in primitive arrays. The neighbors of query 'i' are
+ * stored at elements i*numNeighbors to (i+1)*numNeighbors-1 and are sorted from closest to farthest. If fewer
+ * than numNeighbors were found then the remaining elements have an index of -1 and a distance of NaN.
+ *
+ * @see NearestNeighborBatch
+ *
+ * @author Peter Abeles
+ */
+public class NnBatchResults {
+	/** The maximum number of neighbors found for each query */
+	public int numNeighbors;
+	/** Number of queries */
+	public int numQueries;
+	/** Index of each neighbor in the original list of points. */
+	public GrowQueue_I32 indexes = new GrowQueue_I32();
+	/** Distance of each neighbor from the query */
+	public GrowQueue_F64 distances = new GrowQueue_F64();
+	/** Number of neighbors which were actually found for each query */
+	public GrowQueue_I32 counts = new GrowQueue_I32();
+
+	/**
+	 * Resizes internal arrays for the specified number of queries and neighbors
+	 */
+	public void reshape( int numQueries , int numNeighbors ) {
+		this.numQueries = numQueries;
+		this.numNeighbors = numNeighbors;
+		indexes.resize(numQueries*numNeighbors);
+		distances.resize(numQueries*numNeighbors);
+		counts.resize(numQueries);
+	}
+
+	/**
+	 * Returns the index of the k-th closest neighbor for the specified query
+	 */
+	public int getIndex( int query , int k ) {
+		return indexes.data[query*numNeighbors+k];
+	}
+
+	/**
+	 * Returns the distance of the k-th closest neighbor for the specified query
+	 */
+	public double getDistance( int query , int k ) {
+		return distances.data[query*numNeighbors+k];
+	}
+
+	/**
+	 * Returns the number of neighbors which were found for the specified query
+	 */
+	public int getCount( int query ) {
+		return counts.data[query];
+	}
+}
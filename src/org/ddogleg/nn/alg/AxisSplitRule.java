@@ -38,4 +38,10 @@ public interface AxisSplitRule {
 	 * @return The selected split axis
 	 */
 	int select( double []variance );
+
+	/**
+	 * Creates a new instance with the same configuration and independent internal state. Used when constructing
+	 * trees in multiple threads.
+	 */
+	AxisSplitRule copy();
 }
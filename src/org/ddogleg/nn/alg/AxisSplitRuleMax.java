@@ -45,4 +45,9 @@ public class AxisSplitRuleMax implements AxisSplitRule {
 
 		return split;
 	}
+
+	@Override
+	public AxisSplitRule copy() {
+		return new AxisSplitRuleMax();
+	}
 }
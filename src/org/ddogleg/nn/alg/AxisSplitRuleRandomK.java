@@ -73,4 +73,13 @@ public class AxisSplitRuleRandomK implements AxisSplitRule {
 		// select on of the largests
 		return indexes[ rand.nextInt(actualConsiderSplit) ];
 	}
+
+	/**
+	 * Creates a copy which has its own random number generator. The seed comes from this instance's random
+	 * number generator, so copies are deterministic.
+	 */
+	@Override
+	public AxisSplitRule copy() {
+		return new AxisSplitRuleRandomK(new Random(rand.nextLong()),numConsiderSplit);
+	}
 }
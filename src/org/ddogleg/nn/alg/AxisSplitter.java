@@ -67,4 +67,10 @@ public interface AxisSplitter<P> {
 	 * Number of elements in a point
 	 */
 	int getPointLength();
+
+	/**
+	 * Creates a new instance with the same configuration and independent internal state. Used when constructing
+	 * trees in multiple threads.
+	 */
+	AxisSplitter<P> copy();
 }
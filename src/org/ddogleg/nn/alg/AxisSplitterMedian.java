@@ -139,6 +139,18 @@ public class AxisSplitterMedian<P> implements AxisSplitter<P> {
 		return N;
 	}
 
+	/**
+	 * Distance used to access the values in a point
+	 */
+	public KdTreeDistance<P> getDistance() {
+		return distance;
+	}
+
+	@Override
+	public AxisSplitter<P> copy() {
+		return new AxisSplitterMedian<>(distance,splitRule.copy());
+	}
+
 	/**
 	 * Select the maximum variance as the split
 	 */
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+/**
+ * Computes the distance between two points in a metric space. The distance must be non-negative, symmetric, zero
+ * only when the points are the same, and satisfy the triangle inequality. Unlike {@link KdTreeDistance} the
+ * points don't need to be tuples.
+ *
+ * @author Peter Abeles
+ */
+public interface DistanceMetric<P> {
+	/**
+	 * Computes the distance between the two input points
+	 * @param a point
+	 * @param b point
+	 * @return distance
+	 */
+	double distance( P a , P b );
+}
@@ -18,7 +18,7 @@
 
 package org.ddogleg.nn.alg;
 
-import org.ddogleg.sorting.QuickSelect;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
 import org.ddogleg.struct.GrowQueue_F64;
 import org.ddogleg.struct.GrowQueue_I32;
 
@@ -37,9 +37,8 @@ public class ExhaustiveNeighbor<P> {
 	// the distance to the closest node found so far
 	double bestDistance;
 
-	GrowQueue_F64 distances = new GrowQueue_F64();
-	GrowQueue_I32 indexes = new GrowQueue_I32();
-	GrowQueue_I32 indexesSort = new GrowQueue_I32();
+	// the N closest points found so far. The farthest is used to discard points early
+	BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
 
 	KdTreeDistance<P> distance;
 
@@ -74,7 +73,7 @@ public class ExhaustiveNeighbor<P> {
 		for( int i = 0; i < points.size(); i++ ) {
 			P c = points.get(i);
 
-			double distanceC = distance.distance(p,c);
+			double distanceC = distance.distance(p,c,bestDistance);
 
 			if( distanceC <= bestDistance ) {
 				bestDistance = distanceC;
@@ -92,40 +91,66 @@ public class ExhaustiveNeighbor<P> {
 	 * @param p A point.
 	 * @param maxDistance The maximum distance (Euclidean squared) the neighbor can be.
 	 * @param numNeighbors the requested number of nearest neighbors it should search for
-	 * @param outputIndex Storage for the index of the closest elements
+	 * @param outputIndex Storage for the index of the closest elements. Sorted from closest to farthest.
 	 * @param outputDistance Storage for the distance of the closest elements
 	 */
 	public void findClosestN( P p , double maxDistance , int numNeighbors ,
 							  GrowQueue_I32 outputIndex ,
 							  GrowQueue_F64 outputDistance ) {
+		if( numNeighbors <= 0 )
+			return;
 
-		// Compute the distance of each point and save the ones within range
-		distances.reset();
-		indexes.reset();
+		heap.reset(numNeighbors);
 
 		for( int i = 0; i < points.size(); i++ ) {
 			P c = points.get(i);
 
-			double distanceC = distance.distance(p,c);
-
-			if( distanceC <= maxDistance ) {
-				distances.add(distanceC);
-				indexes.add(i);
+			// once N points have been found, a point needs to be closer than the farthest of them
+			if( heap.isFull() ) {
+				double distanceC = distance.distance(p,c,heap.getTopValue());
+				if( distanceC < heap.getTopValue() )
+					heap.replaceTop(i,distanceC);
+			} else {
+				double distanceC = distance.distance(p,c,maxDistance);
+				if( distanceC <= maxDistance )
+					heap.push(i,distanceC);
 			}
 		}
 
-		// find the N closest elements
-		numNeighbors = Math.min(distances.size,numNeighbors);
-		if( numNeighbors == 0 )
-			return;
-
-		indexesSort.resize(distances.size);
-		QuickSelect.selectIndex(distances.data,numNeighbors-1,distances.size,indexesSort.data);
+		heap.sortAscending();
+		for( int i = 0; i < heap.size; i++ ) {
+			outputIndex.add( heap.index[i] );
+			outputDistance.add( heap.value[i] );
+		}
+	}
 
-		for( int i = 0; i < numNeighbors; i++ ) {
-			int index = indexes.get(indexesSort.get(i));
-			outputIndex.add( index );
-			outputDistance.add( distances.get( indexesSort.get(i) ) );
+	/**
+	 * Finds all the points which are within the radius of 'p'. Results are added to the output in the order the
+	 * points are in the list.
+	 *
+	 * @param p A point.
+	 * @param radius The maximum distance (Euclidean squared) a neighbor can be. Inclusive.
+	 * @param maxResults The search stops once this many neighbors have been found. No limit if {@code <=} 0
+	 * @param outputIndex Storage for the index of the neighbors
+	 * @param outputDistance Storage for the distance of the neighbors
+	 */
+	public void findRadius( P p , double radius , int maxResults ,
+							GrowQueue_I32 outputIndex ,
+							GrowQueue_F64 outputDistance ) {
+		if( radius < 0 )
+			throw new IllegalArgumentException("The radius must be >= 0");
+		if( maxResults <= 0 )
+			maxResults = Integer.MAX_VALUE;
+
+		int found = 0;
+		for( int i = 0; i < points.size() && found < maxResults; i++ ) {
+			double distanceC = distance.distance(p,points.get(i),radius);
+
+			if( distanceC <= radius ) {
+				outputIndex.add(i);
+				outputDistance.add(distanceC);
+				found++;
+			}
 		}
 	}
 
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Exhaustive nearest-neighbor search where the points have been copied into a single array in row-major order.
+ * Compared to {@link ExhaustiveNeighbor} memory is read sequentially and the distance is computed by an unrolled
+ * loop with independent sums, which is much faster for high dimensional points. Distance is always Euclidean
+ * squared and computed from values read using {@link KdTreeDistance#valueAt}.
+ * </p>
+ *
+ * <p>
+ * Many queries can be processed at once with {@link #findClosest(List, double, GrowQueue_I32, GrowQueue_F64)}.
+ * Queries and points are broken up into blocks and every query in a block is compared against a block of
+ * points while it's still in the cache.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class ExhaustiveNeighborBlock<P> {
+
+	// used to read values from a point
+	KdTreeDistance<P> distance;
+
+	// Points in row-major order
+	double[] data;
+	// number of points in data
+	int numPoints;
+	// number of elements in a point
+	int N;
+
+	// number of queries and points in a block
+	int blockQueries = 16;
+	int blockPoints = 256;
+
+	// the distance to the closest point found so far
+	double bestDistance;
+
+	// values of the queries being processed
+	double[] query = new double[0];
+	// best point and distance for each query in a block
+	int[] blockBestIndex = new int[0];
+	double[] blockBestDistance = new double[0];
+
+	// max heap containing the N nearest-neighbors found so far
+	BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+
+	public ExhaustiveNeighborBlock( KdTreeDistance<P> distance ) {
+		this.distance = distance;
+		this.N = distance.length();
+	}
+
+	/**
+	 * Copies the points into a row-major array
+	 *
+	 * @param points (Input) points
+	 * @param data (Output) array containing the points
+	 */
+	public void convert( List<P> points , GrowQueue_F64 data ) {
+		data.resize(points.size()*N);
+		for (int i = 0, idx = 0; i < points.size(); i++) {
+			P p = points.get(i);
+			for (int j = 0; j < N; j++) {
+				data.data[idx++] = distance.valueAt(p,j);
+			}
+		}
+	}
+
+	/**
+	 * Specifies the points which are searched. A reference to the data is saved.
+	 *
+	 * @param data Array created by {@link #convert}
+	 */
+	public void setPoints( GrowQueue_F64 data ) {
+		this.data = data.data;
+		this.numPoints = data.size/N;
+	}
+
+	/**
+	 * Finds the index of the point which has the smallest Euclidean distance to 'p' and is {@code <=} maxDistance
+	 * away.
+	 *
+	 * @param p A point.
+	 * @param maxDistance The maximum distance (Euclidean squared) the neighbor can be.
+	 * @return Index of the closest point or -1 if none are within the maximum distance.
+	 */
+	public int findClosest( P p , double maxDistance ) {
+		setQuery(p,0);
+
+		int best = -1;
+		bestDistance = maxDistance;
+		for (int i = 0; i < numPoints; i++) {
+			double d = distanceSq(data,i*N,query,0,N);
+			if( d <= bestDistance ) {
+				if( best == -1 || d < bestDistance ) {
+					bestDistance = d;
+					best = i;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the N closest points to 'p' which are {@code <=} maxDistance away. The output is not sorted.
+	 *
+	 * @param p A point.
+	 * @param maxDistance The maximum distance (Euclidean squared) the neighbor can be.
+	 * @param numNeighbors the requested number of nearest neighbors it should search for
+	 * @param outputIndex Storage for the index of the closest elements
+	 * @param outputDistance Storage for the distance of the closest elements
+	 */
+	public void findClosestN( P p , double maxDistance , int numNeighbors ,
+							  GrowQueue_I32 outputIndex ,
+							  GrowQueue_F64 outputDistance ) {
+		if( numNeighbors <= 0 )
+			throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+
+		setQuery(p,0);
+
+		heap.reset(numNeighbors);
+
+		for (int i = 0; i < numPoints; i++) {
+			double d = distanceSq(data,i*N,query,0,N);
+			if( !heap.isFull() ) {
+				if( d <= maxDistance )
+					heap.push(i,d);
+			} else if( d < heap.getTopValue() ) {
+				heap.replaceTop(i,d);
+			}
+		}
+
+		for (int i = 0; i < heap.size; i++) {
+			outputIndex.add(heap.index[i]);
+			outputDistance.add(heap.value[i]);
+		}
+	}
+
+	/**
+	 * Finds the closest point to each query. Queries and points are processed in blocks to reduce cache misses.
+	 *
+	 * @param queries (Input) Points whose nearest-neighbor is being searched for
+	 * @param maxDistance The maximum distance (Euclidean squared) the neighbor can be.
+	 * @param outputIndex (Output) Index of the closest point to each query or -1 if there is none.
+	 * @param outputDistance (Output) Distance to the closest point or NaN if there is none.
+	 */
+	public void findClosest( List<P> queries , double maxDistance ,
+							 GrowQueue_I32 outputIndex , GrowQueue_F64 outputDistance ) {
+		final int numQueries = queries.size();
+		outputIndex.resize(numQueries);
+		outputDistance.resize(numQueries);
+
+		if( blockBestIndex.length < blockQueries ) {
+			blockBestIndex = new int[blockQueries];
+			blockBestDistance = new double[blockQueries];
+		}
+
+		for (int q0 = 0; q0 < numQueries; q0 += blockQueries) {
+			final int q1 = Math.min(numQueries,q0+blockQueries);
+			for (int q = q0; q < q1; q++) {
+				setQuery(queries.get(q),q-q0);
+				blockBestIndex[q-q0] = -1;
+				blockBestDistance[q-q0] = maxDistance;
+			}
+
+			for (int p0 = 0; p0 < numPoints; p0 += blockPoints) {
+				final int p1 = Math.min(numPoints,p0+blockPoints);
+				for (int q = 0; q < q1-q0; q++) {
+					int best = blockBestIndex[q];
+					double bestDistance = blockBestDistance[q];
+					for (int i = p0; i < p1; i++) {
+						double d = distanceSq(data,i*N,query,q*N,N);
+						if( d <= bestDistance ) {
+							if( best == -1 || d < bestDistance ) {
+								bestDistance = d;
+								best = i;
+							}
+						}
+					}
+					blockBestIndex[q] = best;
+					blockBestDistance[q] = bestDistance;
+				}
+			}
+
+			for (int q = q0; q < q1; q++) {
+				int best = blockBestIndex[q-q0];
+				outputIndex.data[q] = best;
+				outputDistance.data[q] = best == -1 ? Double.NaN : blockBestDistance[q-q0];
+			}
+		}
+	}
+
+	/**
+	 * Euclidean squared distance between two points inside of arrays. The loop is unrolled and uses four
+	 * independent sums so that the CPU can compute them in parallel.
+	 */
+	public static double distanceSq( double[] a , int offsetA , double[] b , int offsetB , int N ) {
+		double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+		int i = 0;
+		for (; i+3 < N; i += 4) {
+			double d0 = a[offsetA+i  ] - b[offsetB+i  ];
+			double d1 = a[offsetA+i+1] - b[offsetB+i+1];
+			double d2 = a[offsetA+i+2] - b[offsetB+i+2];
+			double d3 = a[offsetA+i+3] - b[offsetB+i+3];
+			sum0 += d0*d0;
+			sum1 += d1*d1;
+			sum2 += d2*d2;
+			sum3 += d3*d3;
+		}
+		for (; i < N; i++) {
+			double d = a[offsetA+i] - b[offsetB+i];
+			sum0 += d*d;
+		}
+		return (sum0+sum1) + (sum2+sum3);
+	}
+
+	/**
+	 * Copies the query's values into the query array
+	 */
+	private void setQuery( P p , int which ) {
+		int length = blockQueries*N;
+		if( query.length < length )
+			query = new double[length];
+		int offset = which*N;
+		for (int j = 0; j < N; j++) {
+			query[offset+j] = distance.valueAt(p,j);
+		}
+	}
+
+	public double getBestDistance() {
+		return bestDistance;
+	}
+
+	public int getBlockQueries() {
+		return blockQueries;
+	}
+
+	/**
+	 * Number of queries which are processed together in a block
+	 */
+	public void setBlockQueries(int blockQueries) {
+		if( blockQueries < 1 )
+			throw new IllegalArgumentException("Must be at least 1");
+		this.blockQueries = blockQueries;
+	}
+
+	public int getBlockPoints() {
+		return blockPoints;
+	}
+
+	/**
+	 * Number of points which are processed together in a block
+	 */
+	public void setBlockPoints(int blockPoints) {
+		if( blockPoints < 1 )
+			throw new IllegalArgumentException("Must be at least 1");
+		this.blockPoints = blockPoints;
+	}
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.clustering.FactoryClustering;
+import org.ddogleg.clustering.kmeans.StandardKMeans_F64;
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.MinHeap_F64;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * Hierarchical k-means tree [1] for approximate {@link NearestNeighbor} search. Each branch divides its points into
+ * clusters using {@link StandardKMeans_F64} and has a child for each cluster. Clusters which have the
+ * branch factor or fewer points become leaves. Searches traverse the tree in best-bin-first order, like
+ * {@link org.ddogleg.nn.alg.searches.KdTreeSearchBestBinFirst}, where clusters with centers closer to the point
+ * are searched first. The search stops after the specified number of points have been checked. If there is no
+ * limit the search is exact, since clusters are pruned using the distance to their center and their radius.
+ * </p>
+ *
+ * <p>
+ * Often performs better than K-D trees for high dimensional points, such as image descriptors. If concurrent
+ * then sub-trees are constructed in parallel. Distance is Euclidean squared.
+ * </p>
+ *
+ * <p>
+ * [1] Muja, Marius, and David G. Lowe. "Fast approximate nearest neighbors with automatic algorithm configuration."
+ * VISAPP (1) 2.331-340 (2009): 2.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class HierarchicalKMeansTree implements NearestNeighbor<double[]> {
+
+	// number of children each branch is split into
+	int branchFactor;
+	// maximum number of points checked. If <= 0 then there is no limit
+	int maxChecks;
+	// maximum number of k-means iterations
+	int maxIterations = 10;
+	// sets with more points than this are constructed in their own task when concurrent
+	int minConcurrentSize = 2000;
+	// if true sub-trees are constructed concurrently
+	boolean concurrent = false;
+
+	long randomSeed;
+
+	// number of elements in each point
+	int N;
+	// Reference to the input points
+	List<double[]> points;
+	Node root;
+
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch = new InternalSearch();
+
+	/**
+	 * Configures the tree
+	 *
+	 * @param branchFactor Number of children each branch is split into. Try 16
+	 * @param maxChecks Maximum number of points checked when searching. If &le; 0 then the search is exact.
+	 * @param randomSeed Seed used by k-means
+	 */
+	public HierarchicalKMeansTree( int branchFactor , int maxChecks , long randomSeed ) {
+		if( branchFactor < 2 )
+			throw new IllegalArgumentException("Branch factor must be at least 2");
+		this.branchFactor = branchFactor;
+		this.maxChecks = maxChecks;
+		this.randomSeed = randomSeed;
+	}
+
+	@Override
+	public void setPoints(List<double[]> points, boolean trackIndices) {
+		this.points = points;
+		this.root = null;
+		if( points.isEmpty() )
+			return;
+		this.N = points.get(0).length;
+
+		int[] indexes = new int[points.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = i;
+		}
+
+		ConstructTask task = new ConstructTask(indexes,randomSeed);
+		if( concurrent )
+			root = ForkJoinPool.commonPool().invoke(task);
+		else
+			root = task.compute();
+	}
+
+	/**
+	 * Constructs the sub-tree for a set of points. The random seed for each child is selected before the children
+	 * are constructed, so the tree is the same when constructed concurrently.
+	 */
+	@SuppressWarnings("serial")
+	private class ConstructTask extends RecursiveTask<Node> {
+		int[] indexes;
+		long seed;
+
+		ConstructTask(int[] indexes, long seed) {
+			this.indexes = indexes;
+			this.seed = seed;
+		}
+
+		@Override
+		protected Node compute() {
+			Node node = new Node();
+			node.center = mean(indexes);
+			node.radius = radius(node.center,indexes);
+
+			if( indexes.length <= branchFactor ) {
+				node.indexes = indexes;
+				return node;
+			}
+
+			int[][] clusters = cluster(indexes,seed);
+			if( clusters.length <= 1 ) {
+				// all the points are identical and can't be split
+				node.indexes = indexes;
+				return node;
+			}
+
+			Random rand = new Random(seed);
+			List<ConstructTask> tasks = new ArrayList<>();
+			for (int i = 0; i < clusters.length; i++) {
+				tasks.add(new ConstructTask(clusters[i],rand.nextLong()));
+			}
+
+			node.children = new Node[clusters.length];
+			if( concurrent && indexes.length > minConcurrentSize ) {
+				invokeAll(tasks);
+				for (int i = 0; i < tasks.size(); i++) {
+					node.children[i] = tasks.get(i).join();
+				}
+			} else {
+				for (int i = 0; i < tasks.size(); i++) {
+					node.children[i] = tasks.get(i).compute();
+				}
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * Divides the points into clusters using k-means. Empty clusters are discarded.
+	 */
+	private int[][] cluster( int[] indexes , long seed ) {
+		List<double[]> subset = new ArrayList<>(indexes.length);
+		for (int i = 0; i < indexes.length; i++) {
+			subset.add(points.get(indexes[i]));
+		}
+
+		StandardKMeans_F64 kmeans = FactoryClustering.kMeans_F64(null,maxIterations,maxIterations,1e-8);
+		kmeans.init(N,seed);
+		kmeans.process(subset,branchFactor);
+		FastQueue<double[]> means = kmeans.getClusterMeans();
+
+		// assign each point to the closest mean
+		int[] labels = new int[indexes.length];
+		int[] counts = new int[means.size];
+		for (int i = 0; i < indexes.length; i++) {
+			double[] p = subset.get(i);
+			int best = 0;
+			double bestDistance = Double.MAX_VALUE;
+			for (int j = 0; j < means.size; j++) {
+				double d = ExhaustiveNeighborBlock.distanceSq(p,0,means.get(j),0,N);
+				if( d < bestDistance ) {
+					bestDistance = d;
+					best = j;
+				}
+			}
+			labels[i] = best;
+			counts[best]++;
+		}
+
+		int numClusters = 0;
+		int[] clusterIndex = new int[means.size];
+		for (int i = 0; i < counts.length; i++) {
+			clusterIndex[i] = counts[i] > 0 ? numClusters++ : -1;
+		}
+
+		int[][] clusters = new int[numClusters][];
+		int[] sizes = new int[numClusters];
+		for (int i = 0; i < counts.length; i++) {
+			if( counts[i] > 0 )
+				clusters[clusterIndex[i]] = new int[counts[i]];
+		}
+		for (int i = 0; i < indexes.length; i++) {
+			int c = clusterIndex[labels[i]];
+			clusters[c][sizes[c]++] = indexes[i];
+		}
+		return clusters;
+	}
+
+	private double[] mean( int[] indexes ) {
+		double[] mean = new double[N];
+		for (int i = 0; i < indexes.length; i++) {
+			double[] p = points.get(indexes[i]);
+			for (int j = 0; j < N; j++) {
+				mean[j] += p[j];
+			}
+		}
+		for (int j = 0; j < N; j++) {
+			mean[j] /= indexes.length;
+		}
+		return mean;
+	}
+
+	/**
+	 * Euclidean distance from the center to the farthest point
+	 */
+	private double radius( double[] center , int[] indexes ) {
+		double max = 0;
+		for (int i = 0; i < indexes.length; i++) {
+			max = Math.max(max,ExhaustiveNeighborBlock.distanceSq(center,0,points.get(indexes[i]),0,N));
+		}
+		return Math.sqrt(max);
+	}
+
+	@Override
+	public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(double[] point, double maxDistance, int numNeighbors, FastQueue<NnData<double[]>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<double[]> createSearch() {
+		return new InternalSearch();
+	}
+
+	/**
+	 * Searches the tree using its own workspace. The tree is only read.
+	 */
+	private class InternalSearch implements Search<double[]> {
+		// Priority queue of nodes which still need to be searched. Nodes with closer centers are searched
+		// first. The index refers to queueNodes
+		MinHeap_F64 queue = new MinHeap_F64();
+		// nodes which have been added to the queue in this search
+		List<Node> queueNodes = new ArrayList<>();
+
+		// max heap of the k nearest neighbors found so far
+		BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+		// maximum distance a neighbor can be
+		double maxDistance;
+
+		// number of points which have been checked
+		int numChecks;
+
+		@Override
+		public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+			search(point, maxDistance < 0 ? Double.MAX_VALUE : maxDistance, 1);
+			if( heap.isEmpty() )
+				return false;
+			result.index = heap.getTopIndex();
+			result.point = points.get(result.index);
+			result.distance = heap.getTopValue();
+			return true;
+		}
+
+		@Override
+		public void findNearest(double[] point, double maxDistance, int numNeighbors,
+								FastQueue<NnData<double[]>> results) {
+			if( numNeighbors <= 0 )
+				throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+			results.reset();
+			search(point, maxDistance <= 0 ? Double.MAX_VALUE : maxDistance, numNeighbors);
+
+			heap.sortAscending();
+			results.resize(heap.size);
+			for (int i = 0; i < heap.size; i++) {
+				NnData<double[]> r = results.get(i);
+				r.index = heap.index[i];
+				r.point = points.get(r.index);
+				r.distance = heap.value[i];
+			}
+		}
+
+		private void search( double[] target , double maxDistance , int k ) {
+			this.maxDistance = maxDistance;
+			heap.reset(k);
+			queue.reset();
+			queueNodes.clear();
+			numChecks = 0;
+			if( root == null )
+				return;
+
+			int limit = maxChecks <= 0 ? Integer.MAX_VALUE : maxChecks;
+
+			searchNode(target,root);
+			while( !queue.isEmpty() && (numChecks < limit || !heap.isFull()) ) {
+				double distanceSq = queue.getTopValue();
+				Node node = queueNodes.get(queue.pop());
+
+				// use new information to prune nodes
+				if( closest(node,distanceSq) <= bound() )
+					searchNode(target,node);
+			}
+		}
+
+		/**
+		 * Traverse a node down to a leaf. Children which are not traversed are added to the priority queue.
+		 */
+		private void searchNode( double[] target , Node node ) {
+			while( node.children != null ) {
+				Node best = null;
+				double bestDistance = Double.MAX_VALUE;
+				for (int i = 0; i < node.children.length; i++) {
+					Node c = node.children[i];
+					double d = ExhaustiveNeighborBlock.distanceSq(target,0,c.center,0,N);
+					if( d < bestDistance ) {
+						if( best != null )
+							addToQueue(best,bestDistance);
+						best = c;
+						bestDistance = d;
+					} else {
+						addToQueue(c,d);
+					}
+				}
+				node = best;
+			}
+
+			// check every point in the leaf
+			final int[] indexes = node.indexes;
+			for (int i = 0; i < indexes.length; i++) {
+				double d = ExhaustiveNeighborBlock.distanceSq(target,0,points.get(indexes[i]),0,N);
+				if( !heap.isFull() ) {
+					if( d <= maxDistance )
+						heap.push(indexes[i],d);
+				} else if( d < heap.getTopValue() ) {
+					heap.replaceTop(indexes[i],d);
+				}
+			}
+			numChecks += indexes.length;
+		}
+
+		/**
+		 * Adds the node to the queue if it could contain a neighbor
+		 *
+		 * @param distanceSq Euclidean distance squared from the target to the node's center
+		 */
+		private void addToQueue( Node node , double distanceSq ) {
+			if( closest(node,distanceSq) <= bound() ) {
+				queue.push(queueNodes.size(),distanceSq);
+				queueNodes.add(node);
+			}
+		}
+
+		/**
+		 * Closest a point inside of the node can be to the target, Euclidean squared
+		 *
+		 * @param distanceSq Euclidean distance squared from the target to the node's center
+		 */
+		private double closest( Node node , double distanceSq ) {
+			double d = Math.sqrt(distanceSq) - node.radius;
+			return d <= 0 ? 0 : d*d;
+		}
+
+		/**
+		 * The farthest a point can be and still be a neighbor
+		 */
+		private double bound() {
+			return heap.isFull() ? heap.getTopValue() : maxDistance;
+		}
+	}
+
+	/**
+	 * Node in the tree. Branches have children and leaves have points.
+	 */
+	static class Node {
+		// mean of all the points in the sub-tree
+		double[] center;
+		// Euclidean distance from the center to the farthest point in the sub-tree
+		double radius;
+		// children of a branch. null for leaves
+		Node[] children;
+		// index of each point in a leaf
+		int[] indexes;
+	}
+
+	public int getMaxChecks() {
+		return maxChecks;
+	}
+
+	/**
+	 * Maximum number of points checked when searching. If &le; 0 then the search is exact.
+	 */
+	public void setMaxChecks(int maxChecks) {
+		this.maxChecks = maxChecks;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
+	/**
+	 * Specifies if sub-trees should be constructed concurrently. Takes effect the next time {@link #setPoints}
+	 * is called.
+	 */
+	public void setConcurrent(boolean concurrent) {
+		this.concurrent = concurrent;
+	}
+}
@@ -0,0 +1,568 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.MinHeap_F64;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * Approximate {@link NearestNeighbor} search using a Hierarchical Navigable Small World (HNSW) graph [1]. Each point
+ * is a node in a hierarchy of proximity graphs. The number of nodes in each layer decreases exponentially. A search
+ * starts at the top layer and greedily moves towards the point. The closest node found becomes the start of the
+ * search in the layer below. In the bottom layer, which contains every point, a best-first search is done which
+ * keeps track of the best {@link #getEfSearch() efSearch} candidates. Works well for high dimensional points.
+ * Distance is Euclidean squared.
+ * </p>
+ *
+ * <p>
+ * Concurrency: Points can be added by several threads at the same time using {@link #add}. Searches do not lock and
+ * can be performed while points are being added. This is possible because a node's list of neighbors is never
+ * modified once published. Instead, a new list is created and swapped in atomically. The graph is also constructed
+ * concurrently in {@link #setPoints} if {@link #setConcurrent concurrent} is true, in which case the graph can be
+ * slightly different each time.
+ * </p>
+ *
+ * <p>
+ * [1] Malkov, Yu A., and D. A. Yashunin. "Efficient and robust approximate nearest neighbor search using
+ * hierarchical navigable small world graphs." IEEE PAMI (2018)
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class HnswIndex implements NearestNeighbor<double[]> {
+
+	// maximum number of neighbors in layers above 0
+	final int maxNeighbors;
+	// maximum number of neighbors in layer 0
+	final int maxNeighbors0;
+	// number of candidates considered when adding a node
+	final int efConstruction;
+	// number of candidates considered when searching
+	int efSearch = 50;
+	// normalization factor for selecting a node's level
+	final double levelScale;
+
+	// If true the graph is constructed concurrently in setPoints()
+	boolean concurrent = false;
+
+	// Used to select each node's level
+	final Random rand;
+
+	// Nodes in the graph. Only replaced while holding 'lock'. A node is stored before any other node links to it.
+	volatile Node[] nodes = new Node[0];
+	// number of nodes
+	final AtomicInteger size = new AtomicInteger();
+	// node where searches start from. null if the graph is empty
+	volatile Entry entry;
+	final Object lock = new Object();
+
+	// workspace for adding nodes in each thread
+	final ThreadLocal<Workspace> addWorkspace = ThreadLocal.withInitial(Workspace::new);
+
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch = new InternalSearch();
+
+	/**
+	 * Configures the graph
+	 *
+	 * @param maxNeighbors Maximum number of neighbors a node has in each layer. Twice this in layer 0. Try 16
+	 * @param efConstruction Number of candidates considered when adding a node. Try 200
+	 * @param randomSeed Seed used to select each node's level
+	 */
+	public HnswIndex( int maxNeighbors , int efConstruction , long randomSeed ) {
+		if( maxNeighbors < 2 )
+			throw new IllegalArgumentException("maxNeighbors must be at least 2");
+		if( efConstruction < 1 )
+			throw new IllegalArgumentException("efConstruction must be positive");
+		this.maxNeighbors = maxNeighbors;
+		this.maxNeighbors0 = 2*maxNeighbors;
+		this.efConstruction = efConstruction;
+		this.levelScale = 1.0/Math.log(maxNeighbors);
+		this.rand = new Random(randomSeed);
+	}
+
+	/**
+	 * Discards the previous graph and adds all the points. The index of a point is its index in the list.
+	 */
+	@Override
+	public void setPoints(List<double[]> points, boolean trackIndices) {
+		final int total = points.size();
+		synchronized (lock) {
+			entry = null;
+			size.set(total);
+			int[] levels = new int[total];
+			for (int i = 0; i < total; i++) {
+				levels[i] = selectLevel();
+			}
+			Node[] nodes = new Node[total];
+			for (int i = 0; i < total; i++) {
+				nodes[i] = new Node(points.get(i),levels[i]);
+			}
+			this.nodes = nodes;
+		}
+
+		if( concurrent ) {
+			IntStream.range(0,total).parallel().forEach(i -> insert(i,addWorkspace.get()));
+		} else {
+			Workspace workspace = addWorkspace.get();
+			for (int i = 0; i < total; i++) {
+				insert(i,workspace);
+			}
+		}
+	}
+
+	/**
+	 * Adds a point to the graph. Thread safe and can be called while other threads are searching.
+	 *
+	 * @param point The point. Not copied.
+	 * @return index of the point
+	 */
+	public int add( double[] point ) {
+		int id;
+		synchronized (lock) {
+			id = size.getAndIncrement();
+			Node[] nodes = this.nodes;
+			if( id >= nodes.length ) {
+				nodes = Arrays.copyOf(nodes,Math.max(16,nodes.length*2));
+			}
+			nodes[id] = new Node(point,selectLevel());
+			this.nodes = nodes;
+		}
+		insert(id,addWorkspace.get());
+		return id;
+	}
+
+	/**
+	 * Number of points in the graph
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	private int selectLevel() {
+		return (int)(-Math.log(1.0-rand.nextDouble())*levelScale);
+	}
+
+	/**
+	 * Connects the node to the graph
+	 */
+	private void insert( int id , Workspace ws ) {
+		Node node = nodes[id];
+
+		// the first node becomes the entry point
+		Entry ep = entry;
+		if( ep == null ) {
+			synchronized (lock) {
+				if( entry == null ) {
+					entry = new Entry(id,node.level);
+					return;
+				}
+				ep = entry;
+			}
+		}
+
+		// A node above the top level becomes the new entry point. The lock is held while it's connected so that
+		// a second node above the old top level can't be linked using the old entry point, which would leave one
+		// of them out of the layers in between. This is rare since few nodes have a high level.
+		if( node.level > ep.level ) {
+			synchronized (lock) {
+				ep = entry;
+				if( node.level > ep.level ) {
+					connect(id,ws,ep);
+					entry = new Entry(id,node.level);
+					return;
+				}
+			}
+		}
+
+		connect(id,ws,ep);
+	}
+
+	/**
+	 * Links the node to its neighbors in each layer, starting the search at the entry point
+	 */
+	private void connect( int id , Workspace ws , Entry ep ) {
+		Node node = nodes[id];
+		double[] q = node.point;
+		int current = ep.node;
+		double currentDistance = distance(q,current);
+
+		// greedy search through the layers above the node's level
+		for (int layer = ep.level; layer > node.level; layer--) {
+			current = ws.greedy(q,current,layer);
+			currentDistance = distance(q,current);
+		}
+
+		for (int layer = Math.min(node.level,ep.level); layer >= 0; layer--) {
+			ws.searchLayer(q,current,currentDistance,efConstruction,layer);
+			int maxM = layer == 0 ? maxNeighbors0 : maxNeighbors;
+
+			// candidates sorted from closest to farthest. Another thread could have already linked to this node
+			ws.sortResults();
+			ws.removeSorted(id);
+			int[] selected = ws.selectNeighbors(ws.sortedId,ws.sortedDistance,ws.sortedSize,maxNeighbors);
+			// other threads could have already linked to the node in this layer
+			addNeighbors(ws,id,selected,layer,maxM);
+
+			// closest candidate is the start of the next layer's search. If the only candidate was the node itself
+			// then keep searching from the current point
+			if( ws.sortedSize > 0 ) {
+				current = ws.sortedId[0];
+				currentDistance = ws.sortedDistance[0];
+			}
+
+			// link the neighbors back to the new node
+			int[] self = new int[]{id};
+			for (int i = 0; i < selected.length; i++) {
+				addNeighbors(ws,selected[i],self,layer,maxM);
+			}
+		}
+	}
+
+	/**
+	 * Adds 'ids' to the neighbors of 'target'. If there are too many neighbors then the best are selected.
+	 */
+	private void addNeighbors( Workspace ws , int target , int[] ids , int layer , int maxM ) {
+		Node node = nodes[target];
+		synchronized (node) {
+			int[] old = node.neighbors.get(layer);
+			int[] updated = Arrays.copyOf(old,old.length+ids.length);
+			int total = old.length;
+			for (int i = 0; i < ids.length; i++) {
+				boolean duplicate = false;
+				for (int j = 0; j < old.length && !duplicate; j++) {
+					duplicate = old[j] == ids[i];
+				}
+				if( !duplicate )
+					updated[total++] = ids[i];
+			}
+
+			if( total <= maxM ) {
+				updated = total == updated.length ? updated : Arrays.copyOf(updated,total);
+			} else {
+				// sort the candidates by distance from the target node
+				ws.sortedSize = 0;
+				ws.growSorted(total);
+				for (int i = 0; i < total; i++) {
+					int c = updated[i];
+					double d = distance(node.point,c);
+					int j = ws.sortedSize++;
+					while( j > 0 && ws.sortedDistance[j-1] > d ) {
+						ws.sortedDistance[j] = ws.sortedDistance[j-1];
+						ws.sortedId[j] = ws.sortedId[j-1];
+						j--;
+					}
+					ws.sortedDistance[j] = d;
+					ws.sortedId[j] = c;
+				}
+				updated = ws.selectNeighbors(ws.sortedId,ws.sortedDistance,ws.sortedSize,maxM);
+			}
+			node.neighbors.set(layer,updated);
+		}
+	}
+
+	private double distance( double[] q , int id ) {
+		return ExhaustiveNeighborBlock.distanceSq(q,0,nodes[id].point,0,q.length);
+	}
+
+	@Override
+	public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(double[] point, double maxDistance, int numNeighbors, FastQueue<NnData<double[]>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<double[]> createSearch() {
+		return new InternalSearch();
+	}
+
+	/**
+	 * Searches the graph using its own workspace. The graph is only read and no locks are used.
+	 */
+	private class InternalSearch implements Search<double[]> {
+		Workspace ws = new Workspace();
+
+		@Override
+		public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+			if( !search(point,1) )
+				return false;
+			if( maxDistance >= 0 && ws.sortedDistance[0] > maxDistance )
+				return false;
+			result.index = ws.sortedId[0];
+			result.point = nodes[result.index].point;
+			result.distance = ws.sortedDistance[0];
+			return true;
+		}
+
+		@Override
+		public void findNearest(double[] point, double maxDistance, int numNeighbors,
+								FastQueue<NnData<double[]>> results) {
+			if( numNeighbors <= 0 )
+				throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+			results.reset();
+			if( !search(point,numNeighbors) )
+				return;
+
+			if( maxDistance <= 0 )
+				maxDistance = Double.MAX_VALUE;
+			int total = Math.min(numNeighbors,ws.sortedSize);
+			for (int i = 0; i < total && ws.sortedDistance[i] <= maxDistance; i++) {
+				NnData<double[]> r = results.grow();
+				r.index = ws.sortedId[i];
+				r.point = nodes[r.index].point;
+				r.distance = ws.sortedDistance[i];
+			}
+		}
+
+		/**
+		 * Searches for the closest nodes. Results are sorted and stored in the workspace.
+		 *
+		 * @return false if the graph is empty
+		 */
+		private boolean search( double[] q , int k ) {
+			Entry ep = entry;
+			if( ep == null )
+				return false;
+
+			int current = ep.node;
+			for (int layer = ep.level; layer > 0; layer--) {
+				current = ws.greedy(q,current,layer);
+			}
+			ws.searchLayer(q,current,distance(q,current),Math.max(efSearch,k),0);
+			ws.sortResults();
+			return true;
+		}
+	}
+
+	/**
+	 * Storage for searching the graph
+	 */
+	class Workspace {
+		// marks nodes which have been visited in the current search
+		int[] visited = new int[0];
+		int stamp = 0;
+
+		// min heap of candidates which still need to be expanded
+		final MinHeap_F64 candidate = new MinHeap_F64();
+
+		// max heap of the closest nodes found so far
+		final BoundedMaxHeap_F64 result = new BoundedMaxHeap_F64();
+
+		// results sorted from closest to farthest
+		int sortedSize;
+		int[] sortedId = new int[16];
+		double[] sortedDistance = new double[16];
+
+		/**
+		 * Moves to the neighbor closest to q until no neighbor is closer
+		 */
+		int greedy( double[] q , int current , int layer ) {
+			double currentDistance = distance(q,current);
+			boolean changed = true;
+			while( changed ) {
+				changed = false;
+				int[] neighbors = nodes[current].neighbors.get(layer);
+				for (int i = 0; i < neighbors.length; i++) {
+					double d = distance(q,neighbors[i]);
+					if( d < currentDistance ) {
+						currentDistance = d;
+						current = neighbors[i];
+						changed = true;
+					}
+				}
+			}
+			return current;
+		}
+
+		/**
+		 * Best first search of a single layer. The 'ef' closest nodes are saved in the result heap
+		 */
+		void searchLayer( double[] q , int start , double startDistance , int ef , int layer ) {
+			// new nodes can be added while searching
+			Node[] nodes = HnswIndex.this.nodes;
+			if( visited.length < nodes.length ) {
+				visited = new int[nodes.length];
+				stamp = 0;
+			}
+			if( ++stamp == 0 ) {
+				Arrays.fill(visited,0);
+				stamp = 1;
+			}
+
+			candidate.reset();
+			result.reset(ef);
+			visited[start] = stamp;
+			candidate.push(start,startDistance);
+			result.push(start,startDistance);
+
+			while( !candidate.isEmpty() ) {
+				double d = candidate.getTopValue();
+				int c = candidate.pop();
+				if( result.isFull() && d > result.getTopValue() )
+					break;
+
+				int[] neighbors = nodes[c].neighbors.get(layer);
+				for (int i = 0; i < neighbors.length; i++) {
+					int n = neighbors[i];
+					if( n >= nodes.length ) {
+						// node was added after the search started
+						nodes = HnswIndex.this.nodes;
+						if( visited.length < nodes.length )
+							visited = Arrays.copyOf(visited,nodes.length);
+					}
+					if( visited[n] == stamp )
+						continue;
+					visited[n] = stamp;
+
+					double dn = ExhaustiveNeighborBlock.distanceSq(q,0,nodes[n].point,0,q.length);
+					if( result.offer(n,dn) )
+						candidate.push(n,dn);
+				}
+			}
+		}
+
+		/**
+		 * Moves the results into the sorted arrays
+		 */
+		void sortResults() {
+			result.sortAscending();
+			growSorted(result.size);
+			sortedSize = result.size;
+			System.arraycopy(result.index,0,sortedId,0,result.size);
+			System.arraycopy(result.value,0,sortedDistance,0,result.size);
+		}
+
+		/**
+		 * Removes the node from the sorted results, if present
+		 */
+		void removeSorted( int id ) {
+			int count = 0;
+			for (int i = 0; i < sortedSize; i++) {
+				if( sortedId[i] == id )
+					continue;
+				sortedId[count] = sortedId[i];
+				sortedDistance[count++] = sortedDistance[i];
+			}
+			sortedSize = count;
+		}
+
+		/**
+		 * Selects neighbors using the heuristic in [1]. A candidate is only selected if it's closer to the node
+		 * than to any of the already selected neighbors. This keeps the graph connected when points are clustered.
+		 *
+		 * @param ids Candidates sorted from closest to farthest
+		 */
+		int[] selectNeighbors( int[] ids , double[] distances , int size , int maxM ) {
+			int[] selected = new int[Math.min(size,maxM)];
+			int count = 0;
+			for (int i = 0; i < size && count < maxM; i++) {
+				double[] c = nodes[ids[i]].point;
+				boolean good = true;
+				for (int j = 0; j < count; j++) {
+					if( ExhaustiveNeighborBlock.distanceSq(c,0,nodes[selected[j]].point,0,c.length) < distances[i] ) {
+						good = false;
+						break;
+					}
+				}
+				if( good )
+					selected[count++] = ids[i];
+			}
+			return count == selected.length ? selected : Arrays.copyOf(selected,count);
+		}
+
+		void growSorted( int length ) {
+			if( sortedId.length < length ) {
+				sortedId = Arrays.copyOf(sortedId,length);
+				sortedDistance = Arrays.copyOf(sortedDistance,length);
+			}
+		}
+	}
+
+	/**
+	 * A point in the graph
+	 */
+	static class Node {
+		final double[] point;
+		// highest layer the node is in
+		final int level;
+		// neighbors in each layer. A list is never modified after it has been set, allowing lock free reads
+		final AtomicReferenceArray<int[]> neighbors;
+
+		Node( double[] point , int level ) {
+			this.point = point;
+			this.level = level;
+			this.neighbors = new AtomicReferenceArray<>(level+1);
+			for (int i = 0; i <= level; i++) {
+				neighbors.set(i,new int[0]);
+			}
+		}
+	}
+
+	/**
+	 * Where searches start from
+	 */
+	static class Entry {
+		final int node;
+		// highest layer in the graph
+		final int level;
+
+		Entry(int node, int level) {
+			this.node = node;
+			this.level = level;
+		}
+	}
+
+	public int getEfSearch() {
+		return efSearch;
+	}
+
+	/**
+	 * Number of candidates considered when searching. Larger values are slower and more accurate. At least
+	 * the number of neighbors is always used.
+	 */
+	public void setEfSearch(int efSearch) {
+		this.efSearch = efSearch;
+	}
+
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
+	/**
+	 * Specifies if the graph should be constructed concurrently in {@link #setPoints}.
+	 */
+	public void setConcurrent(boolean concurrent) {
+		this.concurrent = concurrent;
+	}
+}
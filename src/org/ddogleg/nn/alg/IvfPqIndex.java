@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.clustering.FactoryClustering;
+import org.ddogleg.clustering.kmeans.StandardKMeans_F64;
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_I32;
+import org.ddogleg.struct.GrowQueue_I8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * Approximate {@link NearestNeighbor} search for very large sets of points using an inverted file with product
+ * quantization (IVF-PQ) [1]. A coarse quantizer, learned with {@link StandardKMeans_F64}, assigns every point to
+ * a list. The residual between the point and its list's centroid is compressed using a {@link ProductQuantizer}.
+ * Only the point's index and a few bytes for the code are stored in the list. A search visits the lists with the
+ * closest centroids and approximates the distance to each point in them using a look up table.
+ * </p>
+ *
+ * <p>
+ * If {@link #train} has not been called then the quantizers are learned from a random sample of the points passed
+ * to {@link #setPoints}. The list of points is only read to return the point associated with a result, so it can
+ * load points from disk on demand. Distance is an approximation of Euclidean squared.
+ * </p>
+ *
+ * <p>
+ * [1] Jegou, Herve, Matthijs Douze, and Cordelia Schmid. "Product quantization for nearest neighbor search."
+ * IEEE PAMI 33.1 (2011)
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class IvfPqIndex implements NearestNeighbor<double[]> {
+
+	// number of lists in the inverted file
+	int numLists;
+	// number of bytes in a code
+	int numSubspaces;
+	// number of lists searched
+	int numProbe;
+	// maximum number of points used to learn the quantizers
+	int maxTraining = 10000;
+	// k-means parameters
+	int maxIterations = 30;
+	Random rand;
+
+	// centroid of each list in row-major order
+	double[] centroids = new double[0];
+	int dimension;
+	// encodes the residuals
+	ProductQuantizer quantizer;
+	boolean trained = false;
+
+	// index and code of every point in each list
+	List<GrowQueue_I32> listIndexes = new ArrayList<>();
+	List<GrowQueue_I8> listCodes = new ArrayList<>();
+
+	// Reference to the input points
+	List<double[]> points;
+
+	// search used by the findNearest() functions in this class
+	private InternalSearch internalSearch = new InternalSearch();
+
+	/**
+	 * Configures the index
+	 *
+	 * @param numLists Number of lists in the inverted file. Try sqrt(number of points)
+	 * @param numSubspaces Number of bytes used to encode a point
+	 * @param numProbe Number of lists which are searched. Controls speed and accuracy.
+	 * @param randomSeed Seed used when learning the quantizers
+	 */
+	public IvfPqIndex( int numLists , int numSubspaces , int numProbe , long randomSeed ) {
+		if( numLists < 1 || numSubspaces < 1 || numProbe < 1 )
+			throw new IllegalArgumentException("All parameters must be positive");
+		this.numLists = numLists;
+		this.numSubspaces = numSubspaces;
+		this.numProbe = numProbe;
+		this.rand = new Random(randomSeed);
+		this.quantizer = new ProductQuantizer(randomSeed);
+	}
+
+	/**
+	 * Learns the coarse quantizer and product quantizer
+	 *
+	 * @param samples Representative set of points
+	 */
+	public void train( List<double[]> samples ) {
+		if( samples.isEmpty() )
+			throw new IllegalArgumentException("No training points");
+		dimension = samples.get(0).length;
+		int numLists = Math.min(this.numLists,samples.size());
+
+		StandardKMeans_F64 kmeans = FactoryClustering.kMeans_F64(null,maxIterations,maxIterations,1e-8);
+		kmeans.init(dimension,rand.nextLong());
+		kmeans.process(samples,numLists);
+		FastQueue<double[]> means = kmeans.getClusterMeans();
+		centroids = new double[numLists*dimension];
+		for (int i = 0; i < numLists; i++) {
+			System.arraycopy(means.get(i),0,centroids,i*dimension,dimension);
+		}
+
+		// the product quantizer is learned from the residuals
+		List<double[]> residuals = new ArrayList<>();
+		for (int i = 0; i < samples.size(); i++) {
+			double[] p = samples.get(i);
+			double[] r = new double[dimension];
+			computeResidual(p,closestList(p),r);
+			residuals.add(r);
+		}
+		quantizer.setMaxIterations(maxIterations);
+		quantizer.train(residuals,dimension,Math.min(numSubspaces,dimension),256);
+		trained = true;
+	}
+
+	@Override
+	public void setPoints(List<double[]> points, boolean trackIndices) {
+		this.points = points;
+		for (int i = 0; i < listIndexes.size(); i++) {
+			listIndexes.get(i).reset();
+			listCodes.get(i).reset();
+		}
+		if( points.isEmpty() )
+			return;
+
+		if( !trained ) {
+			if( points.size() <= maxTraining ) {
+				train(points);
+			} else {
+				List<double[]> samples = new ArrayList<>();
+				for (int i = 0; i < maxTraining; i++) {
+					samples.add(points.get(rand.nextInt(points.size())));
+				}
+				train(samples);
+			}
+		}
+
+		final int numLists = centroids.length/dimension;
+		while( listIndexes.size() < numLists ) {
+			listIndexes.add(new GrowQueue_I32());
+			listCodes.add(new GrowQueue_I8());
+		}
+
+		final int codeLength = quantizer.getNumSubspaces();
+		double[] residual = new double[dimension];
+		for (int i = 0; i < points.size(); i++) {
+			double[] p = points.get(i);
+			int list = closestList(p);
+			computeResidual(p,list,residual);
+
+			GrowQueue_I8 codes = listCodes.get(list);
+			int offset = codes.size;
+			codes.extend(offset+codeLength);
+			quantizer.encode(residual,codes.data,offset);
+			listIndexes.get(list).add(i);
+		}
+	}
+
+	/**
+	 * Returns the list whose centroid is the closest to the point
+	 */
+	int closestList( double[] p ) {
+		final int numLists = centroids.length/dimension;
+		int best = 0;
+		double bestDistance = Double.MAX_VALUE;
+		for (int i = 0; i < numLists; i++) {
+			double d = ExhaustiveNeighborBlock.distanceSq(centroids,i*dimension,p,0,dimension);
+			if( d < bestDistance ) {
+				bestDistance = d;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	void computeResidual( double[] p , int list , double[] residual ) {
+		final int offset = list*dimension;
+		for (int i = 0; i < dimension; i++) {
+			residual[i] = p[i] - centroids[offset+i];
+		}
+	}
+
+	@Override
+	public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(double[] point, double maxDistance, int numNeighbors, FastQueue<NnData<double[]>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<double[]> createSearch() {
+		return new InternalSearch();
+	}
+
+	public boolean isTrained() {
+		return trained;
+	}
+
+	public int getNumProbe() {
+		return numProbe;
+	}
+
+	/**
+	 * Number of lists which are searched. Larger values are slower and more accurate.
+	 */
+	public void setNumProbe(int numProbe) {
+		if( numProbe < 1 )
+			throw new IllegalArgumentException("Must search at least one list");
+		this.numProbe = numProbe;
+	}
+
+	public int getMaxTraining() {
+		return maxTraining;
+	}
+
+	/**
+	 * Maximum number of points which are sampled to learn the quantizers when {@link #train} hasn't been called
+	 */
+	public void setMaxTraining(int maxTraining) {
+		this.maxTraining = maxTraining;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Number of k-means iterations used when learning the quantizers
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	public ProductQuantizer getQuantizer() {
+		return quantizer;
+	}
+
+	/**
+	 * Searches the inverted file using its own workspace. The index is only read.
+	 */
+	private class InternalSearch implements Search<double[]> {
+		// distance to each list's centroid and the lists which are being probed
+		double[] listDistance = new double[0];
+		int[] probeList = new int[0];
+
+		double[] residual = new double[0];
+		double[] table = new double[0];
+
+		double maxDistanceSq;
+
+		// max heap containing the N nearest-neighbors found so far
+		BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+
+		@Override
+		public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+			search(point,maxDistance < 0 ? Double.MAX_VALUE : maxDistance,1);
+			if( heap.isEmpty() )
+				return false;
+			result.point = points.get(heap.getTopIndex());
+			result.index = heap.getTopIndex();
+			result.distance = heap.getTopValue();
+			return true;
+		}
+
+		@Override
+		public void findNearest(double[] point, double maxDistance, int numNeighbors,
+								FastQueue<NnData<double[]>> results) {
+			if( numNeighbors <= 0 )
+				throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+			results.reset();
+			search(point,maxDistance <= 0 ? Double.MAX_VALUE : maxDistance,numNeighbors);
+			for (int i = 0; i < heap.size; i++) {
+				NnData<double[]> r = results.grow();
+				r.point = points.get(heap.index[i]);
+				r.index = heap.index[i];
+				r.distance = heap.value[i];
+			}
+		}
+
+		private void search( double[] target , double maxDistanceSq , int searchN ) {
+			this.maxDistanceSq = maxDistanceSq;
+			heap.reset(searchN);
+			if( points == null || points.isEmpty() )
+				return;
+
+			final int numLists = centroids.length/dimension;
+			final int numProbe = Math.min(IvfPqIndex.this.numProbe,numLists);
+			final int codeLength = quantizer.getNumSubspaces();
+			if( listDistance.length < numLists ) {
+				listDistance = new double[numLists];
+			}
+			if( probeList.length < numProbe )
+				probeList = new int[numProbe];
+			if( residual.length < dimension )
+				residual = new double[dimension];
+			if( table.length < codeLength*quantizer.getNumCodes() )
+				table = new double[codeLength*quantizer.getNumCodes()];
+
+			selectLists(target,numLists,numProbe);
+
+			for (int i = 0; i < numProbe; i++) {
+				int list = probeList[i];
+				GrowQueue_I32 indexes = listIndexes.get(list);
+				if( indexes.size == 0 )
+					continue;
+				byte[] codes = listCodes.get(list).data;
+
+				computeResidual(target,list,residual);
+				quantizer.computeTable(residual,table);
+
+				for (int j = 0; j < indexes.size; j++) {
+					double d = quantizer.distance(table,codes,j*codeLength);
+					if( !heap.isFull() ) {
+						if( d <= maxDistanceSq )
+							heap.push(indexes.data[j],d);
+					} else if( d < heap.getTopValue() ) {
+						heap.replaceTop(indexes.data[j],d);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Selects the lists with the closest centroids using an insertion sort
+		 */
+		private void selectLists( double[] target , int numLists , int numProbe ) {
+			int found = 0;
+			for (int i = 0; i < numLists; i++) {
+				double d = ExhaustiveNeighborBlock.distanceSq(centroids,i*dimension,target,0,dimension);
+				if( found == numProbe && d >= listDistance[found-1] )
+					continue;
+
+				int j = found < numProbe ? found++ : found-1;
+				while( j > 0 && listDistance[j-1] > d ) {
+					listDistance[j] = listDistance[j-1];
+					probeList[j] = probeList[j-1];
+					j--;
+				}
+				listDistance[j] = d;
+				probeList[j] = i;
+			}
+		}
+	}
+}
@@ -0,0 +1,583 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+import org.ddogleg.struct.MinHeap_F64;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Read only forest of {@link KdTree K-D trees} which is searched directly from a {@link ByteBuffer}, typically a
+ * memory mapped file. Loading a mapped index takes almost no time and when several processes map the same file
+ * the operating system shares its pages between them. Points must be double[] and distance is Euclidean squared.
+ * </p>
+ *
+ * <p>
+ * Create the file with {@link #save} using trees from {@link KdTreeConstructor}, e.g. from
+ * {@link org.ddogleg.nn.wrap.KdForestBbfSearch#getForest()}, then load it with {@link #load}. Points which are
+ * shared between trees are only stored once. If the number of nodes searched is limited then the forest is
+ * searched using best-bin-first, otherwise the search is exact.
+ * </p>
+ *
+ * <p>
+ * Since the points are not stored as double[], each result contains a newly declared copy of its point.
+ * {@link #setPoints} is not supported. Files are limited to 2 GB.
+ * </p>
+ *
+ * <p>
+ * Files are written in the native byte order so that reading a value from the mapped buffer doesn't need to swap
+ * its bytes. The byte order is stored in the header by MAGIC, which is written in the same order as the rest of
+ * the file, so files are readable on any machine.
+ * </p>
+ *
+ * <pre>
+ * File Format, byte order given by MAGIC:
+ * int: MAGIC, VERSION, N, numPoints, numTrees, numNodes, numBucketRefs, maxNodesSearched
+ * int[numTrees]: root node of each tree, -1 if empty
+ * padding to 8-byte alignment
+ * double[numPoints*N]: points
+ * double[numNodes]: split value of each node
+ * int[numPoints]: index of each point in the original list
+ * int[numNodes] for each of: point, split axis, left, right, first bucket reference, bucket size
+ * int[numBucketRefs]: points in buckets
+ * </pre>
+ *
+ * @author Peter Abeles
+ */
+public class KdForestMapped implements NearestNeighbor<double[]> {
+
+	/** Identifies the file type. "DDKF" */
+	public static final int MAGIC = 0x44444B46;
+	public static final int VERSION = 1;
+
+	// Number of elements in each point
+	int N;
+	int numPoints;
+
+	// root node of each tree
+	int[] roots;
+
+	// maximum number of nodes searched. Integer.MAX_VALUE for an exact search
+	int maxNodesSearched;
+
+	// points in the forest and their index in the original list
+	DoubleBuffer points;
+	IntBuffer pointIndex;
+
+	// Description of each node. Point is -1 if there is none. Axis is -1 for leaves.
+	// Children are -1 if there is none.
+	DoubleBuffer nodeSplit;
+	IntBuffer nodePoint;
+	IntBuffer nodeAxis;
+	IntBuffer nodeLeft;
+	IntBuffer nodeRight;
+	IntBuffer nodeBucketBegin;
+	IntBuffer nodeBucketSize;
+	IntBuffer bucketRefs;
+
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch;
+
+	/**
+	 * Reads the forest from the buffer. The buffer's contents are referenced, not copied.
+	 *
+	 * @param buffer Buffer containing a forest created by {@link #save}. Its position is ignored.
+	 */
+	public KdForestMapped( ByteBuffer buffer ) {
+		buffer = fileOrder(buffer,MAGIC,"Not a K-D forest file");
+		if( buffer.getInt(4) != VERSION )
+			throw new IllegalArgumentException("Unsupported version "+buffer.getInt(4));
+
+		N = buffer.getInt(8);
+		numPoints = buffer.getInt(12);
+		int numTrees = buffer.getInt(16);
+		int numNodes = buffer.getInt(20);
+		int numBucketRefs = buffer.getInt(24);
+		maxNodesSearched = buffer.getInt(28);
+
+		roots = new int[numTrees];
+		for (int i = 0; i < numTrees; i++) {
+			roots[i] = buffer.getInt(32+i*4);
+		}
+
+		long offset = align8(32+numTrees*4L);
+		points = doubles(buffer,offset,(long)numPoints*N); offset += (long)numPoints*N*8;
+		nodeSplit = doubles(buffer,offset,numNodes); offset += numNodes*8L;
+		pointIndex = ints(buffer,offset,numPoints); offset += numPoints*4L;
+		nodePoint = ints(buffer,offset,numNodes); offset += numNodes*4L;
+		nodeAxis = ints(buffer,offset,numNodes); offset += numNodes*4L;
+		nodeLeft = ints(buffer,offset,numNodes); offset += numNodes*4L;
+		nodeRight = ints(buffer,offset,numNodes); offset += numNodes*4L;
+		nodeBucketBegin = ints(buffer,offset,numNodes); offset += numNodes*4L;
+		nodeBucketSize = ints(buffer,offset,numNodes); offset += numNodes*4L;
+		bucketRefs = ints(buffer,offset,numBucketRefs);
+
+		internalSearch = new InternalSearch();
+	}
+
+	/**
+	 * Memory maps the file and searches it directly
+	 *
+	 * @param file File created by {@link #save}
+	 * @return The forest
+	 */
+	public static KdForestMapped load( File file ) throws IOException {
+		return new KdForestMapped(map(file));
+	}
+
+	/**
+	 * Saves the forest to a file which can be loaded by {@link #load}.
+	 *
+	 * @param forest Trees which are to be saved. Points must be double[].
+	 * @param maxNodesSearched Maximum number of nodes searched. If &le; 0 then the search will be exact.
+	 * @param file Where the forest is saved to
+	 */
+	public static void save( KdTree[] forest , int maxNodesSearched , File file ) throws IOException {
+		try( OutputStream out = new FileOutputStream(file) ) {
+			save(forest,maxNodesSearched,out);
+		}
+	}
+
+	/**
+	 * Writes the forest to a stream. See {@link #save(KdTree[], int, File)}
+	 *
+	 * @throws IllegalArgumentException If the file would be larger than 2 GB
+	 */
+	public static void save( KdTree[] forest , int maxNodesSearched , OutputStream stream ) throws IOException {
+		Flattened f = new Flattened();
+		f.N = forest.length > 0 ? forest[0].N : 0;
+		int[] roots = new int[forest.length];
+		for (int i = 0; i < forest.length; i++) {
+			roots[i] = forest[i].root == null ? -1 : f.add(forest[i].root);
+		}
+
+		int numNodes = f.nodeAxis.size;
+		checkFileSize(align8(32+roots.length*4L) + (f.points.size+(long)numNodes)*8 +
+				(f.pointIndex.size + numNodes*6L + f.bucketRefs.size)*4);
+
+		NativeWriter out = new NativeWriter(stream);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(f.N);
+		out.writeInt(f.pointIndex.size);
+		out.writeInt(forest.length);
+		out.writeInt(numNodes);
+		out.writeInt(f.bucketRefs.size);
+		out.writeInt(maxNodesSearched <= 0 ? Integer.MAX_VALUE : maxNodesSearched);
+		for (int i = 0; i < roots.length; i++) {
+			out.writeInt(roots[i]);
+		}
+		out.align8();
+
+		out.writeDoubles(f.points);
+		out.writeDoubles(f.nodeSplit);
+		out.writeInts(f.pointIndex);
+		out.writeInts(f.nodePoint);
+		out.writeInts(f.nodeAxis);
+		out.writeInts(f.nodeLeft);
+		out.writeInts(f.nodeRight);
+		out.writeInts(f.nodeBucketBegin);
+		out.writeInts(f.nodeBucketSize);
+		out.writeInts(f.bucketRefs);
+		out.flush();
+	}
+
+	static long align8( long offset ) {
+		return (offset+7)/8*8;
+	}
+
+	/**
+	 * Makes sure a file of this size can be mapped into a single buffer
+	 */
+	static void checkFileSize( long size ) {
+		if( size > Integer.MAX_VALUE )
+			throw new IllegalArgumentException("Too large to save. Files are limited to 2 GB, size = "+size);
+	}
+
+	/**
+	 * Memory maps the entire file
+	 */
+	static ByteBuffer map( File file ) throws IOException {
+		try( RandomAccessFile raf = new RandomAccessFile(file,"r") ) {
+			FileChannel channel = raf.getChannel();
+			if( channel.size() > Integer.MAX_VALUE )
+				throw new IOException("Files larger than 2 GB can't be mapped. "+file.getPath());
+			return channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+		}
+	}
+
+	/**
+	 * Returns a view of the buffer which has the file's byte order. The byte order is found by checking which
+	 * one the magic number was written in.
+	 */
+	static ByteBuffer fileOrder( ByteBuffer buffer , int magic , String message ) {
+		if( buffer.limit() < 8 )
+			throw new IllegalArgumentException(message);
+		ByteBuffer b = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		if( b.getInt(0) == magic )
+			return b;
+		b.order(ByteOrder.LITTLE_ENDIAN);
+		if( b.getInt(0) == magic )
+			return b;
+		throw new IllegalArgumentException(message);
+	}
+
+	static DoubleBuffer doubles( ByteBuffer buffer , long offset , long length ) {
+		return slice(buffer,offset,length*8).asDoubleBuffer();
+	}
+
+	static IntBuffer ints( ByteBuffer buffer , long offset , long length ) {
+		return slice(buffer,offset,length*4).asIntBuffer();
+	}
+
+	/**
+	 * Returns the bytes in the specified range with the buffer's byte order
+	 */
+	private static ByteBuffer slice( ByteBuffer buffer , long offset , long numBytes ) {
+		if( offset < 0 || numBytes < 0 || offset+numBytes > buffer.limit() )
+			throw new IllegalArgumentException("File is truncated or its header is corrupt");
+		ByteBuffer b = buffer.duplicate();
+		b.position((int)offset);
+		b.limit((int)(offset+numBytes));
+		return b.slice().order(buffer.order());
+	}
+
+	/**
+	 * Writes values in the native byte order. The stream's position is tracked so that padding can be added.
+	 */
+	static class NativeWriter {
+		final OutputStream out;
+		final ByteBuffer buffer = ByteBuffer.allocate(8192).order(ByteOrder.nativeOrder());
+		long position;
+
+		NativeWriter( OutputStream out ) {
+			this.out = out;
+		}
+
+		void writeInt( int value ) throws IOException {
+			if( buffer.remaining() < 4 )
+				flush();
+			buffer.putInt(value);
+			position += 4;
+		}
+
+		void writeDouble( double value ) throws IOException {
+			if( buffer.remaining() < 8 )
+				flush();
+			buffer.putDouble(value);
+			position += 8;
+		}
+
+		void writeInts( GrowQueue_I32 values ) throws IOException {
+			for (int i = 0; i < values.size; i++) {
+				writeInt(values.data[i]);
+			}
+		}
+
+		void writeDoubles( GrowQueue_F64 values ) throws IOException {
+			for (int i = 0; i < values.size; i++) {
+				writeDouble(values.data[i]);
+			}
+		}
+
+		/**
+		 * Writes zeros until the position is a multiple of 8
+		 */
+		void align8() throws IOException {
+			while( position % 8 != 0 ) {
+				if( !buffer.hasRemaining() )
+					flush();
+				buffer.put((byte)0);
+				position++;
+			}
+		}
+
+		void flush() throws IOException {
+			out.write(buffer.array(),0,buffer.position());
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Converts the graph of nodes into arrays. Each point is only stored once.
+	 */
+	private static class Flattened {
+		int N;
+		Map<Object,Integer> pointToRow = new IdentityHashMap<>();
+		GrowQueue_F64 points = new GrowQueue_F64();
+		GrowQueue_I32 pointIndex = new GrowQueue_I32();
+
+		GrowQueue_F64 nodeSplit = new GrowQueue_F64();
+		GrowQueue_I32 nodePoint = new GrowQueue_I32();
+		GrowQueue_I32 nodeAxis = new GrowQueue_I32();
+		GrowQueue_I32 nodeLeft = new GrowQueue_I32();
+		GrowQueue_I32 nodeRight = new GrowQueue_I32();
+		GrowQueue_I32 nodeBucketBegin = new GrowQueue_I32();
+		GrowQueue_I32 nodeBucketSize = new GrowQueue_I32();
+		GrowQueue_I32 bucketRefs = new GrowQueue_I32();
+
+		/**
+		 * Adds the node and all its children
+		 *
+		 * @return index of the node
+		 */
+		int add( KdTree.Node node ) {
+			int index = nodeAxis.size;
+			nodeSplit.add(node.isLeaf() ? 0 : ((double[])node.point)[node.split]);
+			nodePoint.add(node.isBucket() || node.point == null ? -1 : row(node.point,node.index));
+			nodeAxis.add(node.split);
+			nodeLeft.add(-1);
+			nodeRight.add(-1);
+			nodeBucketBegin.add(bucketRefs.size);
+			nodeBucketSize.add(node.bucketSize);
+			for (int i = 0; i < node.bucketSize; i++) {
+				bucketRefs.add(row(node.bucketPoints[i],node.bucketIndexes[i]));
+			}
+
+			if( !node.isLeaf() ) {
+				// compute the child before saving it. The array can change while adding the child
+				if( node.left != null ) {
+					int child = add(node.left);
+					nodeLeft.data[index] = child;
+				}
+				if( node.right != null ) {
+					int child = add(node.right);
+					nodeRight.data[index] = child;
+				}
+			}
+			return index;
+		}
+
+		/**
+		 * Returns the row the point is stored at, adding it if needed
+		 */
+		int row( Object point , int index ) {
+			Integer row = pointToRow.get(point);
+			if( row != null )
+				return row;
+			double[] p = (double[])point;
+			if( p.length != N )
+				throw new IllegalArgumentException("Point has an unexpected length");
+			row = pointIndex.size;
+			pointToRow.put(point,row);
+			pointIndex.add(index);
+			for (int i = 0; i < N; i++) {
+				points.add(p[i]);
+			}
+			return row;
+		}
+	}
+
+	/**
+	 * Not supported. The forest is read only.
+	 */
+	@Override
+	public void setPoints(List<double[]> points, boolean trackIndices) {
+		throw new IllegalArgumentException("The mapped forest is read only. Save a new forest instead.");
+	}
+
+	@Override
+	public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(double[] point, double maxDistance, int numNeighbors, FastQueue<NnData<double[]>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<double[]> createSearch() {
+		return new InternalSearch();
+	}
+
+	/**
+	 * Searches the forest using its own workspace. The buffers are only read.
+	 */
+	private class InternalSearch implements Search<double[]> {
+		// point being searched for
+		double[] target;
+
+		// Priority queue of nodes which still need to be searched and the closest they can be
+		MinHeap_F64 queue = new MinHeap_F64();
+
+		// max heap of the k nearest neighbors found so far. Index is the point's row
+		BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+		// maximum distance a neighbor can be
+		double maxDistance;
+
+		// points which have been checked in the current search. A point can be in more than one tree
+		int[] visited = new int[numPoints];
+		int stamp = 0;
+
+		@Override
+		public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+			search(point, maxDistance < 0 ? Double.MAX_VALUE : maxDistance, 1);
+			if( heap.isEmpty() )
+				return false;
+			result.point = copyPoint(heap.getTopIndex());
+			result.index = pointIndex.get(heap.getTopIndex());
+			result.distance = heap.getTopValue();
+			return true;
+		}
+
+		@Override
+		public void findNearest(double[] point, double maxDistance, int numNeighbors,
+								FastQueue<NnData<double[]>> results) {
+			if( numNeighbors <= 0 )
+				throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+			results.reset();
+			search(point, maxDistance <= 0 ? Double.MAX_VALUE : maxDistance, numNeighbors);
+
+			heap.sortAscending();
+			results.resize(heap.size);
+			for (int i = 0; i < heap.size; i++) {
+				NnData<double[]> r = results.get(i);
+				r.point = copyPoint(heap.index[i]);
+				r.index = pointIndex.get(heap.index[i]);
+				r.distance = heap.value[i];
+			}
+		}
+
+		private void search( double[] target , double maxDistance , int k ) {
+			if( target.length != N )
+				throw new IllegalArgumentException("Point has an unexpected length");
+			this.target = target;
+			this.maxDistance = maxDistance;
+			heap.reset(k);
+			queue.reset();
+			if( ++stamp == 0 ) {
+				Arrays.fill(visited,0);
+				stamp = 1;
+			}
+
+			// start the search from the root of each tree
+			for (int i = 0; i < roots.length; i++) {
+				if( roots[i] >= 0 )
+					searchNode(roots[i]);
+			}
+
+			// search the most promising nodes until there are none left or the limit has been reached
+			int numNodesSearched = 0;
+			while( !queue.isEmpty() && numNodesSearched++ < maxNodesSearched ) {
+				double closest = queue.getTopValue();
+				int node = queue.pop();
+
+				// use new information to prune nodes
+				if( closest <= bound() )
+					searchNode(node);
+			}
+		}
+
+		/**
+		 * Traverse a node down to a leaf. Unexplored branches are added to the priority queue.
+		 */
+		private void searchNode( int node ) {
+			while( node >= 0 ) {
+				int row = nodePoint.get(node);
+				if( row >= 0 )
+					checkPoint(row);
+				int bucketSize = nodeBucketSize.get(node);
+				if( bucketSize > 0 ) {
+					int begin = nodeBucketBegin.get(node);
+					for (int i = 0; i < bucketSize; i++) {
+						checkPoint(bucketRefs.get(begin+i));
+					}
+				}
+
+				int axis = nodeAxis.get(node);
+				if( axis < 0 )
+					break;
+
+				// select the most promising branch to investigate first
+				int nearer,further;
+				double dx = nodeSplit.get(node) - target[axis];
+				if( dx >= 0 ) {
+					nearer = nodeLeft.get(node);
+					further = nodeRight.get(node);
+				} else {
+					nearer = nodeRight.get(node);
+					further = nodeLeft.get(node);
+				}
+
+				// See if it is possible for 'further' to contain a better point
+				if( further >= 0 && dx*dx <= bound() ) {
+					queue.push(further,dx*dx);
+				}
+
+				node = nearer;
+			}
+		}
+
+		/**
+		 * See if the point is one of the k-nearest neighbors
+		 */
+		private void checkPoint( int row ) {
+			if( visited[row] == stamp )
+				return;
+			visited[row] = stamp;
+
+			final double[] target = this.target;
+			final int offset = row*N;
+			double distance = 0;
+			for (int i = 0; i < N; i++) {
+				double d = points.get(offset+i) - target[i];
+				distance += d*d;
+			}
+
+			if( !heap.isFull() ) {
+				if( distance <= maxDistance )
+					heap.push(row,distance);
+			} else if( distance < heap.getTopValue() ) {
+				heap.replaceTop(row,distance);
+			}
+		}
+
+		/**
+		 * The farthest a point can be and still be a neighbor
+		 */
+		private double bound() {
+			return heap.isFull() ? heap.getTopValue() : maxDistance;
+		}
+
+		private double[] copyPoint( int row ) {
+			double[] p = new double[N];
+			for (int i = 0; i < N; i++) {
+				p[i] = points.get(row*N+i);
+			}
+			return p;
+		}
+	}
+}
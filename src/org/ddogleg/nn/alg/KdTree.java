@@ -18,6 +18,11 @@
 
 package org.ddogleg.nn.alg;
 
+import org.ddogleg.struct.GrowQueue_I32;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
 /**
  * <p>
  * K-D Tree is short for k-dimensional tree and is a binary tree data structure used for quickly finding the
@@ -28,6 +33,8 @@ package org.ddogleg.nn.alg;
  * </p>
  *
  * <p>NOTE: If multiple points have identical values then there will be a node for each point.</p>
+ * <p>NOTE: If the tree was constructed with a maximum leaf size larger than one then a leaf can contain a bucket
+ * of points instead of a single point. See {@link Node#bucketSize}.</p>
  * <p>NOTE: If there is more than one point with an identical value to the node's point, then the identical points
  * can go in either the left or right branches.</p>
  *
@@ -70,6 +77,12 @@ public class KdTree {
 		public Node left;
 		/** Branch &ge; point[split] */
 		public Node right;
+		/** Points in a leaf's bucket. Only the first {@link #bucketSize} elements are used. */
+		public Object[] bucketPoints;
+		/** Optional index associated with each point in the bucket */
+		public int[] bucketIndexes;
+		/** Number of points in the bucket. If zero then the node's point is stored in {@link #point} */
+		public int bucketSize;
 
 		public Node( double[] point , int index ) {
 			this.point = point;
@@ -91,6 +104,31 @@ public class KdTree {
 		public boolean isLeaf() {
 			return split == -1;
 		}
+
+		/**
+		 * Returns true if this node is a leaf containing a bucket of points
+		 */
+		public boolean isBucket() {
+			return bucketSize > 0;
+		}
+
+		/**
+		 * Copies the points into the bucket. Arrays are only declared if they are too small.
+		 *
+		 * @param points (Input) Points in the bucket
+		 * @param indexes (Input) Optional index of each point. If null then all indexes are set to -1.
+		 */
+		public void setBucket( List<?> points , @Nullable GrowQueue_I32 indexes ) {
+			bucketSize = points.size();
+			if( bucketPoints == null || bucketPoints.length < bucketSize ) {
+				bucketPoints = new Object[bucketSize];
+				bucketIndexes = new int[bucketSize];
+			}
+			for (int i = 0; i < bucketSize; i++) {
+				bucketPoints[i] = points.get(i);
+				bucketIndexes[i] = indexes == null ? -1 : indexes.get(i);
+			}
+		}
 	}
 
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.struct.FastQueue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Bounded collection of the K closest points found so far which multiple threads can add to at the same time
+ * without locking. Used to merge the results of searches which are run concurrently on different trees.
+ * </p>
+ *
+ * <p>
+ * The results are stored in an immutable snapshot which is replaced using compare-and-set. Most points are
+ * farther than the current threshold and are rejected after a single volatile read. A point is only ever
+ * added once, even if it's found by several trees at the same time.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeConcurrentTopK {
+
+	// the current set of results
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+	/**
+	 * Removes all results. Must not be called while other threads are adding points.
+	 *
+	 * @param k Maximum number of results
+	 * @param maxDistance Points farther than this are never accepted
+	 */
+	public void reset( int k , double maxDistance ) {
+		if( k <= 0 )
+			throw new IllegalArgumentException("k must be positive");
+		snapshot.set(new Snapshot(k,maxDistance));
+	}
+
+	/**
+	 * Distance which a point must be within to be accepted. This value only decreases as points are added.
+	 */
+	public double getThreshold() {
+		return snapshot.get().threshold();
+	}
+
+	/**
+	 * Checks to see if a point at this distance could be accepted
+	 */
+	public boolean canImprove( double distance ) {
+		return snapshot.get().canImprove(distance);
+	}
+
+	/**
+	 * Adds the point if it's one of the K closest seen so far. Thread safe.
+	 *
+	 * @param node Node which contains the point
+	 * @param point The point
+	 * @param index Index of the point
+	 * @param distance Distance of the point from the target
+	 * @return true if it was added
+	 */
+	public boolean offer( KdTree.Node node , Object point , int index , double distance ) {
+		while( true ) {
+			Snapshot s = snapshot.get();
+			if( !s.canImprove(distance) || s.contains(point) )
+				return false;
+			if( snapshot.compareAndSet(s,s.insert(node,point,index,distance)) )
+				return true;
+		}
+	}
+
+	/**
+	 * Number of points found
+	 */
+	public int size() {
+		return snapshot.get().size;
+	}
+
+	/**
+	 * Copies the results into the output, sorted from closest to farthest
+	 *
+	 * @param results (Output) storage for the results. Is reset.
+	 */
+	public void getResults( FastQueue<KdTreeResult> results ) {
+		Snapshot s = snapshot.get();
+		results.reset();
+		for (int i = 0; i < s.size; i++) {
+			KdTreeResult r = results.grow();
+			r.node = s.nodes[i];
+			r.point = s.points[i];
+			r.index = s.indexes[i];
+			r.distance = s.distances[i];
+		}
+	}
+
+	/**
+	 * Immutable set of results sorted from closest to farthest
+	 */
+	private static class Snapshot {
+		final int k;
+		final double maxDistance;
+		final int size;
+		final KdTree.Node[] nodes;
+		final Object[] points;
+		final int[] indexes;
+		final double[] distances;
+
+		Snapshot( int k , double maxDistance ) {
+			this(k,maxDistance,0);
+		}
+
+		Snapshot( int k , double maxDistance , int size ) {
+			this.k = k;
+			this.maxDistance = maxDistance;
+			this.size = size;
+			this.nodes = new KdTree.Node[size];
+			this.points = new Object[size];
+			this.indexes = new int[size];
+			this.distances = new double[size];
+		}
+
+		double threshold() {
+			return size < k ? maxDistance : distances[size-1];
+		}
+
+		boolean canImprove( double distance ) {
+			// <= because multiple points could be at the maximum distance
+			if( size < k )
+				return distance <= maxDistance;
+			return distance < distances[size-1];
+		}
+
+		boolean contains( Object point ) {
+			for (int i = 0; i < size; i++) {
+				if( points[i] == point )
+					return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Creates a new snapshot with the point inserted. The farthest point is dropped if there are too many.
+		 */
+		Snapshot insert( KdTree.Node node , Object point , int index , double distance ) {
+			Snapshot s = new Snapshot(k,maxDistance,Math.min(k,size+1));
+
+			// location the point is inserted at
+			int location = 0;
+			while( location < size && distances[location] <= distance )
+				location++;
+
+			System.arraycopy(nodes,0,s.nodes,0,location);
+			System.arraycopy(points,0,s.points,0,location);
+			System.arraycopy(indexes,0,s.indexes,0,location);
+			System.arraycopy(distances,0,s.distances,0,location);
+
+			s.nodes[location] = node;
+			s.points[location] = point;
+			s.indexes[location] = index;
+			s.distances[location] = distance;
+
+			int remaining = s.size-location-1;
+			System.arraycopy(nodes,location,s.nodes,location+1,remaining);
+			System.arraycopy(points,location,s.points,location+1,remaining);
+			System.arraycopy(indexes,location,s.indexes,location+1,remaining);
+			System.arraycopy(distances,location,s.distances,location+1,remaining);
+
+			return s;
+		}
+	}
+}
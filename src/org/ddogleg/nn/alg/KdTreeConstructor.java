@@ -29,6 +29,10 @@ import java.util.List;
  *
  * A child node can be null if it is a leaf and there was no data in that direction.
  *
+ * By default every node contains a single point. If the maximum leaf size is set to a value larger than one then
+ * a set with that many points or fewer will be saved in a leaf's bucket instead of being split further. This
+ * creates a shallower tree with fewer nodes. Leaf buckets are searched exhaustively.
+ *
  * WARNING: A reference to the input points is saved.  Do not modify the input until the K-D Tree is no longer needed.
  * This reduced memory overhead significantly.
  *
@@ -42,6 +46,9 @@ public class KdTreeConstructor<P> {
 	// Used to recycles memory and avoid GC calls
 	KdTreeMemory<P> memory;
 
+	// Sets of points this size or smaller are put into a leaf's bucket
+	int maxLeafSize = 1;
+
 	/**
 	 * Constructor which allows for maximum configurable.
 	 *
@@ -81,15 +88,20 @@ public class KdTreeConstructor<P> {
 
 		KdTree tree = memory.requestTree(splitter.getPointLength());
 
-		if( points.size() == 1 ) {
-			tree.root = createLeaf(points,indexes);
-		} else if( points.size() > 1 ) {
-			tree.root = computeBranch(points, indexes );
+		if( points.size() > 0 ) {
+			tree.root = computeRoot(points, indexes );
 		}
 
 		return tree;
 	}
 
+	/**
+	 * Computes the root node of the tree. Will not be called if there are no points.
+	 */
+	protected KdTree.Node computeRoot(List<P> points, GrowQueue_I32 indexes) {
+		return computeChild(points,indexes);
+	}
+
 	/**
 	 * Given the data inside this particular node, select a point for the node and
 	 * compute the node's children
@@ -138,6 +150,8 @@ public class KdTreeConstructor<P> {
 			return null;
 		if( points.size() == 1 ) {
 			return createLeaf(points,indexes);
+		} else if( points.size() <= maxLeafSize ) {
+			return memory.requestBucket(points,indexes);
 		} else {
 			return computeBranch(points,indexes);
 		}
@@ -150,4 +164,19 @@ public class KdTreeConstructor<P> {
 		int index = indexes == null ? -1 : indexes.get(0);
 		return memory.requestNode(points.get(0),index);
 	}
+
+	public int getMaxLeafSize() {
+		return maxLeafSize;
+	}
+
+	/**
+	 * Specifies the maximum number of points in a leaf.
+	 *
+	 * @param maxLeafSize Maximum number of points in a leaf. If 1 then each node has one point. Must be &ge; 1.
+	 */
+	public void setMaxLeafSize(int maxLeafSize) {
+		if( maxLeafSize < 1 )
+			throw new IllegalArgumentException("maxLeafSize must be at least 1");
+		this.maxLeafSize = maxLeafSize;
+	}
 }
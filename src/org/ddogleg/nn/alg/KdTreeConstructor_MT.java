@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.struct.GrowQueue_I32;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * Concurrent implementation of {@link KdTreeConstructor}. After a set of points has been split, the left
+ * sub-tree is constructed in a new fork-join task while the right is constructed in the current task. Once a set
+ * has fewer than {@link #getMinParallelSize()} points it is constructed in a single thread. Each task has its own
+ * copy of the {@link AxisSplitter}, see {@link AxisSplitter#copy()}. The same tree is produced regardless
+ * of the number of threads, but it can differ from the tree produced by {@link KdTreeConstructor} if the split
+ * rule is random.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeConstructor_MT<P> extends KdTreeConstructor<P> {
+
+	// the pool which tasks are run inside of
+	ForkJoinPool pool;
+
+	// sets with fewer than this number of points are constructed in a single thread
+	int minParallelSize = 1000;
+
+	/**
+	 * Constructor which allows for maximum configurable.
+	 *
+	 * @param memory Used to recycle data
+	 * @param splitter Splits the points. A copy is made for each task.
+	 * @param pool The pool which tasks are run inside of.
+	 */
+	public KdTreeConstructor_MT(KdTreeMemory<P> memory, AxisSplitter<P> splitter, ForkJoinPool pool) {
+		super(memory, splitter);
+		this.pool = pool;
+	}
+
+	/**
+	 * Runs inside of {@link ForkJoinPool#commonPool()}
+	 */
+	public KdTreeConstructor_MT(KdTreeMemory<P> memory, AxisSplitter<P> splitter) {
+		this(memory, splitter, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates canonical K-D Tree by selecting the maximum variance axis and splitting the points at the median.
+	 */
+	public KdTreeConstructor_MT( KdTreeDistance<P> distance ) {
+		this(new KdTreeMemory<>(), new AxisSplitterMedian<>(distance, new AxisSplitRuleMax()));
+	}
+
+	@Override
+	protected KdTree.Node computeRoot(List<P> points, GrowQueue_I32 indexes) {
+		ChildTask task = new ChildTask(points,indexes,splitter.copy());
+		// If called from inside a fork-join task, such as when building a forest, run in that pool
+		if( ForkJoinTask.inForkJoinPool() )
+			return task.invoke();
+		else
+			return pool.invoke(task);
+	}
+
+	/**
+	 * Computes the node for a set of points and its children.
+	 */
+	@SuppressWarnings("serial")
+	class ChildTask extends RecursiveTask<KdTree.Node> {
+		List<P> points;
+		GrowQueue_I32 indexes;
+		AxisSplitter<P> splitter;
+
+		ChildTask(List<P> points, GrowQueue_I32 indexes, AxisSplitter<P> splitter) {
+			this.points = points;
+			this.indexes = indexes;
+			this.splitter = splitter;
+		}
+
+		@Override
+		protected KdTree.Node compute() {
+			if( points.size() < minParallelSize || points.size() <= maxLeafSize ) {
+				KdTreeConstructor<P> alg = new KdTreeConstructor<>(memory,splitter);
+				alg.maxLeafSize = maxLeafSize;
+				return alg.computeChild(points,indexes);
+			}
+
+			// declare storage for the split data
+			List<P> left = new ArrayList<>(points.size()/2);
+			List<P> right = new ArrayList<>(points.size()/2);
+			GrowQueue_I32 leftIndexes,rightIndexes;
+
+			if( indexes == null ) {
+				leftIndexes = null; rightIndexes = null;
+			} else {
+				leftIndexes = new GrowQueue_I32(points.size()/2);
+				rightIndexes = new GrowQueue_I32(points.size()/2);
+			}
+
+			// perform the splitting
+			splitter.splitData(points,indexes,left,leftIndexes,right,rightIndexes);
+
+			KdTree.Node node = memory.requestNode();
+
+			node.split = splitter.getSplitAxis();
+			node.point = splitter.getSplitPoint();
+			node.index = splitter.getSplitIndex();
+
+			// free memory
+			points = null; indexes = null;
+
+			// the copy is made here, and not inside the new task, so that the results are deterministic
+			ChildTask leftTask = new ChildTask(left,leftIndexes,splitter.copy());
+			leftTask.fork();
+			node.right = new ChildTask(right,rightIndexes,splitter).compute();
+			node.left = leftTask.join();
+
+			return node;
+		}
+	}
+
+	public int getMinParallelSize() {
+		return minParallelSize;
+	}
+
+	/**
+	 * Sets with fewer than this number of points are constructed in a single thread.
+	 */
+	public void setMinParallelSize(int minParallelSize) {
+		this.minParallelSize = minParallelSize;
+	}
+}
@@ -32,6 +32,20 @@ public interface KdTreeDistance<P> {
 	 */
 	double distance(P a , P b );
 
+	/**
+	 * Computes the distance between the two input points but can stop early once it's known that the distance is
+	 * greater than 'bound'. Searches use this to quickly discard points which can't be better than what has
+	 * already been found.
+	 *
+	 * @param a point
+	 * @param b point
+	 * @param bound Upper limit on distances of interest
+	 * @return The distance if it's &le; bound. Otherwise a value which is &gt; bound.
+	 */
+	default double distance(P a , P b , double bound ) {
+		return distance(a,b);
+	}
+
 	/**
 	 * Returns the value of an element in the point
 	 * @param point (Input) the point
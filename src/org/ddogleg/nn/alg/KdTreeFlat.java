@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+
+/**
+ * <p>
+ * Compact K-D Tree where the tree and the points are stored in contiguous primitive arrays instead of a graph of
+ * {@link KdTree.Node}. This reduces memory and improves cache locality when searching. Only leaves contain points.
+ * Each leaf references a block of points which have been copied into {@link #points} and reordered so that all the
+ * points inside a sub-tree are next to each other.
+ * </p>
+ *
+ * <p>
+ * Nodes are stored in depth first order. The left child of a branch is always the node which comes after it, the
+ * right child is specified by {@link #right}. All points in a sub-tree are inside the range
+ * [{@link #begin},{@link #end}). Points in the left branch have a value &le; the split value along the split axis
+ * and points in the right branch have a value &ge; the split value.
+ * </p>
+ *
+ * @see KdTreeFlatConstructor
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeFlat {
+
+	/** Number of elements/dimension in each point */
+	public int N;
+
+	/** Number of nodes in the tree */
+	public int numNodes;
+
+	/** Axis a node is split along. -1 for leafs */
+	public GrowQueue_I32 axis = new GrowQueue_I32();
+	/** Value along the axis which the node was split at */
+	public GrowQueue_F64 split = new GrowQueue_F64();
+	/** Index of the right child in a branch. The left child is always the next node. */
+	public GrowQueue_I32 right = new GrowQueue_I32();
+	/** Index of the first point in a node's subtree */
+	public GrowQueue_I32 begin = new GrowQueue_I32();
+	/** Index of the last point in a node's subtree, exclusive */
+	public GrowQueue_I32 end = new GrowQueue_I32();
+
+	/** Number of points in the tree */
+	public int numPoints;
+	/** Value of each point. Point 'i' has its elements stored from i*N to (i+1)*N-1 */
+	public GrowQueue_F64 points = new GrowQueue_F64();
+	/** Index of each point in the original list of points */
+	public GrowQueue_I32 indexes = new GrowQueue_I32();
+
+	public KdTreeFlat( int N ) {
+		this.N = N;
+	}
+
+	public KdTreeFlat() {
+	}
+
+	/**
+	 * Discards all nodes and points
+	 */
+	public void reset() {
+		numNodes = 0;
+		numPoints = 0;
+		axis.reset();
+		split.reset();
+		right.reset();
+		begin.reset();
+		end.reset();
+		points.reset();
+		indexes.reset();
+	}
+
+	/**
+	 * Adds a new node to the end of the list
+	 *
+	 * @return index of the new node
+	 */
+	public int addNode( int axis , double split , int begin , int end ) {
+		this.axis.add(axis);
+		this.split.add(split);
+		this.right.add(-1);
+		this.begin.add(begin);
+		this.end.add(end);
+		return numNodes++;
+	}
+
+	public boolean isLeaf( int node ) {
+		return axis.data[node] == -1;
+	}
+
+	/**
+	 * Returns the value of an element in a point
+	 *
+	 * @param point Index of the point in the tree
+	 * @param index Which element in the point
+	 */
+	public double valueAt( int point , int index ) {
+		return points.data[point*N+index];
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+
+import java.util.List;
+
+/**
+ * Creates a {@link KdTreeFlat} from a list of points. The values of each point are copied into the tree using
+ * {@link KdTreeDistance#valueAt}. Nodes are split at the median along the axis selected by the {@link AxisSplitRule}
+ * until a node has {@link #getMaxLeafSize()} or fewer points.
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeFlatConstructor<P> {
+
+	// used to access the values of a point
+	KdTreeDistance<P> distance;
+
+	// using each axis's variance, selects which axis to split along
+	AxisSplitRule splitRule;
+
+	// a node with this number of points or fewer will be a leaf
+	int maxLeafSize;
+
+	// Number of elements/axes in each data point
+	int N;
+
+	// storage for variance calculation
+	double[] mean;
+	double[] var;
+
+	// the order of the points after they have been sorted into the tree. Also the point's original index
+	GrowQueue_I32 order = new GrowQueue_I32();
+	// workspace for reordering the points
+	GrowQueue_F64 work = new GrowQueue_F64();
+
+	// tree being constructed
+	KdTreeFlat tree;
+	// original unsorted points in the tree
+	double[] values;
+
+	/**
+	 * Constructor which allows for maximum configurability.
+	 *
+	 * @param distance Used to access the values of each point.
+	 * @param splitRule Selects which axis to split along.
+	 * @param maxLeafSize Maximum number of points in a leaf. Must be &ge; 1
+	 */
+	public KdTreeFlatConstructor(KdTreeDistance<P> distance, AxisSplitRule splitRule, int maxLeafSize) {
+		if( maxLeafSize < 1 )
+			throw new IllegalArgumentException("maxLeafSize must be at least 1");
+		this.distance = distance;
+		this.splitRule = splitRule;
+		this.maxLeafSize = maxLeafSize;
+		this.N = distance.length();
+		this.mean = new double[N];
+		this.var = new double[N];
+		splitRule.setDimension(N);
+	}
+
+	/**
+	 * Splits along the axis with the largest variance.
+	 */
+	public KdTreeFlatConstructor(KdTreeDistance<P> distance, int maxLeafSize) {
+		this(distance, new AxisSplitRuleMax(), maxLeafSize);
+	}
+
+	/**
+	 * Creates a tree from the list of points. The tree does not reference the list.
+	 *
+	 * @param points (Input) Points which are to be put into the tree
+	 * @param tree (Output) Storage for the tree. Reset and reused.
+	 */
+	public void construct( List<P> points , KdTreeFlat tree ) {
+		this.tree = tree;
+		tree.reset();
+		tree.N = N;
+
+		final int numPoints = points.size();
+
+		// copy the values of each point
+		work.resize(numPoints*N);
+		values = work.data;
+		order.resize(numPoints);
+		for (int i = 0, idx = 0; i < numPoints; i++) {
+			P p = points.get(i);
+			for (int j = 0; j < N; j++) {
+				values[idx++] = distance.valueAt(p,j);
+			}
+			order.data[i] = i;
+		}
+
+		if( numPoints > 0 )
+			computeNode(0, numPoints);
+
+		// copy the points into the tree in the new order
+		tree.numPoints = numPoints;
+		tree.points.resize(numPoints*N);
+		tree.indexes.setTo(order);
+		for (int i = 0; i < numPoints; i++) {
+			System.arraycopy(values,order.data[i]*N,tree.points.data,i*N,N);
+		}
+
+		this.tree = null;
+		this.values = null;
+	}
+
+	/**
+	 * Creates a node for the points in the range [i0,i1) and all its children
+	 *
+	 * @return index of the node
+	 */
+	int computeNode( int i0 , int i1 ) {
+		if( i1-i0 <= maxLeafSize ) {
+			return tree.addNode(-1,0,i0,i1);
+		}
+
+		computeAxisVariance(i0, i1);
+		int axis = splitRule.select(var);
+
+		// sort until the median is found
+		int median = (i0+i1)/2;
+		select(i0,i1,median,axis);
+		double splitValue = values[order.data[median]*N+axis];
+
+		int node = tree.addNode(axis,splitValue,i0,i1);
+		computeNode(i0,median);
+		// the array can be reallocated while computing the child. Don't combine into one line
+		int right = computeNode(median,i1);
+		tree.right.data[node] = right;
+		return node;
+	}
+
+	/**
+	 * Computes the variance along each axis for points in the range [i0,i1)
+	 */
+	private void computeAxisVariance( int i0 , int i1 ) {
+		for( int j = 0; j < N; j++ ) {
+			mean[j] = 0;
+			var[j] = 0;
+		}
+
+		for (int i = i0; i < i1; i++) {
+			int idx = order.data[i]*N;
+			for (int j = 0; j < N; j++) {
+				mean[j] += values[idx+j];
+			}
+		}
+		for( int j = 0; j < N; j++ ) {
+			mean[j] /= (i1-i0);
+		}
+
+		for (int i = i0; i < i1; i++) {
+			int idx = order.data[i]*N;
+			for (int j = 0; j < N; j++) {
+				double d = mean[j] - values[idx+j];
+				var[j] += d*d;
+			}
+		}
+	}
+
+	/**
+	 * Partially sorts the points in the range [i0,i1) so that point k has the k-th smallest value along
+	 * the axis. Points before k will be &le; and points after &ge;.
+	 */
+	private void select( int i0 , int i1 , int k , int axis ) {
+		final int[] order = this.order.data;
+		int l = i0, r = i1-1;
+
+		while( r > l ) {
+			double pivot = values[order[(l+r)>>>1]*N+axis];
+			int i = l, j = r;
+			while( i <= j ) {
+				while( values[order[i]*N+axis] < pivot ) i++;
+				while( values[order[j]*N+axis] > pivot ) j--;
+				if( i <= j ) {
+					int tmp = order[i];
+					order[i] = order[j];
+					order[j] = tmp;
+					i++; j--;
+				}
+			}
+			if( k <= j )
+				r = j;
+			else if( k >= i )
+				l = i;
+			else
+				break;
+		}
+	}
+
+	public int getMaxLeafSize() {
+		return maxLeafSize;
+	}
+}
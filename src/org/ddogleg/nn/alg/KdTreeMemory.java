@@ -18,11 +18,16 @@
 
 package org.ddogleg.nn.alg;
 
+import org.ddogleg.struct.GrowQueue_I32;
+
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * Memory management for recycling KdTree data structures.
+ * Memory management for recycling KdTree data structures. All functions are synchronized so that trees
+ * can be constructed and recycled from multiple threads.
  *
  * @author Peter Abeles
  */
@@ -39,7 +44,7 @@ public class KdTreeMemory<P> {
 	 * Returns a new node.  All object references can be assumed to be null.
 	 * @return
 	 */
-	public KdTree.Node requestNode() {
+	public synchronized KdTree.Node requestNode() {
 		if( unusedNodes.isEmpty() )
 			return new KdTree.Node();
 		return unusedNodes.remove( unusedNodes.size()-1);
@@ -57,7 +62,22 @@ public class KdTreeMemory<P> {
 		return n;
 	}
 
-	public KdTree requestTree( int N ) {
+	/**
+	 * Request a leaf node which contains a bucket of points.
+	 *
+	 * @param points Points in the bucket
+	 * @param indexes (Optional) Index associated with each point. Can be null.
+	 */
+	public KdTree.Node requestBucket(List<P> points , @Nullable GrowQueue_I32 indexes ) {
+		KdTree.Node n = requestNode();
+		n.point = null;
+		n.index = -1;
+		n.split = -1;
+		n.setBucket(points,indexes);
+		return n;
+	}
+
+	public synchronized KdTree requestTree( int N ) {
 		if( unusedTrees.isEmpty() )
 			return new KdTree(N);
 		KdTree tree = unusedTrees.remove( unusedTrees.size()-1);
@@ -65,15 +85,19 @@ public class KdTreeMemory<P> {
 		return tree;
 	}
 
-	public void recycle( KdTree.Node node ) {
+	public synchronized void recycle( KdTree.Node node ) {
 		// null to avoid potential memory leaks
 		node.point = null;
 		node.left = null;
 		node.right = null;
+		if( node.bucketSize > 0 ) {
+			Arrays.fill(node.bucketPoints,0,node.bucketSize,null);
+			node.bucketSize = 0;
+		}
 		unusedNodes.add(node);
 	}
 
-	public void recycleGraph( KdTree tree ) {
+	public synchronized void recycleGraph( KdTree tree ) {
 		if( tree.root != null ) {
 			// step through the graph and recycle each node
 			open.add(tree.root);
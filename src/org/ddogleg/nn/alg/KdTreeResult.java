@@ -24,6 +24,11 @@ package org.ddogleg.nn.alg;
  * @author Peter Abeles
  */
 public class KdTreeResult {
+	/** The node which contains the point */
 	public KdTree.Node node;
+	/** The point which was found. Same as node.point unless the node is a leaf with a bucket */
+	public Object point;
+	/** Index associated with the point */
+	public int index;
 	public double distance;
 }
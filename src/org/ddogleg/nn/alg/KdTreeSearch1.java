@@ -42,14 +42,32 @@ public interface KdTreeSearch1<P> {
 	 * then return null.
 	 *
 	 * @param target Point whose nearest neighbor is being searched for
-	 * @return The closest point or null if there is none.
+	 * @return The node containing the closest point or null if there is none.
 	 */
 	KdTree.Node findNeighbor(P target);
 
+	/**
+	 * Returns the closest point. Same as the node's point unless the node is a leaf with a bucket.
+	 */
+	P getPoint();
+
+	/**
+	 * Returns the index associated with the closest point.
+	 */
+	int getIndex();
+
 	/**
 	 * Returns the distance of the closest node.
 	 *
 	 * @return distance to closest node.
 	 */
 	double getDistance();
+
+	/**
+	 * Creates a new instance of this search with the same configuration but independent internal state. Used
+	 * to search the same tree from multiple threads.
+	 *
+	 * @return A new search. The tree is not copied and must be specified.
+	 */
+	KdTreeSearch1<P> copy();
 }
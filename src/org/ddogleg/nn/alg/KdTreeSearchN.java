@@ -47,5 +47,13 @@ public interface KdTreeSearchN<P> {
 	 * @param results Storage for the found neighbors.
 	 */
 	void findNeighbor(P target, int searchN, FastQueue<KdTreeResult> results);
+
+	/**
+	 * Creates a new instance of this search with the same configuration but independent internal state. Used
+	 * to search the same tree from multiple threads.
+	 *
+	 * @return A new search. The tree is not copied and must be specified.
+	 */
+	KdTreeSearchN<P> copy();
 }
 
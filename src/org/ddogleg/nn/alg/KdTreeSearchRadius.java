@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.struct.FastQueue;
+
+/**
+ * Interface for searching a single tree for all the points within a radius.
+ *
+ * @author Peter Abeles
+ */
+public interface KdTreeSearchRadius<P> {
+
+	/**
+	 * Specifies the tree which is to be searched
+	 */
+	void setTree(KdTree tree);
+
+	/**
+	 * Searches for all the points within the radius of the target. The results are added to the 'results' list
+	 * in no particular order.
+	 *
+	 * @param target Point whose neighbors are being searched for
+	 * @param radius Maximum distance (inclusive) a neighbor can be from the target. Must be {@code >=} 0
+	 * @param maxResults The search stops once this many neighbors have been found. If {@code <=} 0 there is no limit.
+	 * @param results Storage for the found neighbors.
+	 */
+	void findRadius(P target, double radius, int maxResults, FastQueue<KdTreeResult> results);
+
+	/**
+	 * Creates a new instance of this search with the same configuration but independent internal state. Used
+	 * to search the same tree from multiple threads.
+	 *
+	 * @return A new search. The tree is not copied and must be specified.
+	 */
+	KdTreeSearchRadius<P> copy();
+}
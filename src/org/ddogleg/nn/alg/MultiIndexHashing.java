@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.FastQueue;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Exact nearest-neighbor search for binary descriptors using Hamming distance and multi-index hashing [1]. Each
+ * descriptor is a bit string stored in a long[] and all descriptors must have the same length.  The bit string is
+ * broken up into m disjoint substrings and a table is created for each substring.  If two descriptors are within a
+ * Hamming distance of r then at least one of their substrings must be within a distance of floor(r/m). The search
+ * looks up all the entries in each table whose substring is within a distance of 0, 1, 2, ... from the target's
+ * substring and stops once the neighbors found can't be improved upon. If it becomes more expensive than checking
+ * every descriptor then the remaining descriptors are checked exhaustively.
+ * </p>
+ *
+ * <p>
+ * Each table is an array of sorted keys, where the upper 32-bits are the substring and the lower 32-bits are the
+ * descriptor's index. Substrings are at most 32-bits long. Distance is the number of bits which are different.
+ * A negative maximum distance means there is no limit.
+ * </p>
+ *
+ * <p>
+ * [1] Norouzi, Mohammad, Ali Punjani, and David J. Fleet. "Fast search in hamming space with multi-index hashing."
+ * CVPR 2012
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class MultiIndexHashing implements NearestNeighbor<long[]> {
+
+	// Reference to the descriptors
+	List<long[]> points;
+
+	// number of substrings. If zero then it's selected automatically
+	int numTables = 0;
+
+	// first bit and number of bits in each substring
+	int[] subStart = new int[0];
+	int[] subLength = new int[0];
+	// sorted table for each substring.  upper 32-bits are the substring and lower 32-bits are the index
+	long[][] tables = new long[0][];
+
+	// search used by the findNearest() functions in this class
+	private InternalSearch internalSearch = new InternalSearch();
+
+	/**
+	 * Creates a search which selects the number of substrings automatically
+	 */
+	public MultiIndexHashing() {
+	}
+
+	/**
+	 * Creates a search with the specified number of substrings
+	 *
+	 * @param numTables Number of substrings the bit string is broken up into. If zero it's selected automatically.
+	 */
+	public MultiIndexHashing( int numTables ) {
+		setNumTables(numTables);
+	}
+
+	@Override
+	public void setPoints(List<long[]> points, boolean trackIndices) {
+		this.points = points;
+		if( points.isEmpty() ) {
+			tables = new long[0][];
+			return;
+		}
+
+		int numBits = points.get(0).length*64;
+
+		// Substrings with a length of about log2(number of points) are recommended in the paper
+		int m;
+		if( numTables > 0 ) {
+			m = numTables;
+		} else {
+			int length = (int)Math.round(Math.log(points.size())/Math.log(2));
+			length = Math.max(8,Math.min(32,length));
+			m = (numBits+length-1)/length;
+		}
+		m = Math.max(m,(numBits+31)/32);
+		m = Math.min(m,numBits);
+
+		subStart = new int[m];
+		subLength = new int[m];
+		for (int i = 0; i < m; i++) {
+			subStart[i] = (int)((long)i*numBits/m);
+			subLength[i] = (int)((long)(i+1)*numBits/m) - subStart[i];
+		}
+
+		tables = new long[m][];
+		for (int t = 0; t < m; t++) {
+			long[] table = tables[t] = new long[points.size()];
+			for (int i = 0; i < points.size(); i++) {
+				long[] p = points.get(i);
+				if( p.length*64 != numBits )
+					throw new IllegalArgumentException("All descriptors must have the same length");
+				table[i] = extract(p,subStart[t],subLength[t]) << 32 | i;
+			}
+			Arrays.sort(table);
+		}
+	}
+
+	/**
+	 * Hamming distance between two bit strings
+	 */
+	public static int hamming( long[] a , long[] b ) {
+		int total = 0;
+		for (int i = 0; i < a.length; i++) {
+			total += Long.bitCount(a[i] ^ b[i]);
+		}
+		return total;
+	}
+
+	/**
+	 * Extracts a sequence of bits from the bit string
+	 *
+	 * @param bits bit string
+	 * @param start index of the first bit
+	 * @param length number of bits. Must be {@code <= 32}
+	 * @return the bits with the first bit being the least significant bit
+	 */
+	static long extract( long[] bits , int start , int length ) {
+		int word = start >>> 6;
+		int offset = start & 63;
+		long value = bits[word] >>> offset;
+		if( offset + length > 64 )
+			value |= bits[word+1] << (64-offset);
+		return value & ((1L << length)-1);
+	}
+
+	@Override
+	public boolean findNearest(long[] point, double maxDistance, NnData<long[]> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(long[] point, double maxDistance, int numNeighbors, FastQueue<NnData<long[]>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<long[]> createSearch() {
+		return new InternalSearch();
+	}
+
+	public int getNumTables() {
+		return numTables;
+	}
+
+	/**
+	 * Specifies the number of substrings. Call before {@link #setPoints}.
+	 *
+	 * @param numTables Number of substrings. If zero it's selected automatically.
+	 */
+	public void setNumTables(int numTables) {
+		if( numTables < 0 )
+			throw new IllegalArgumentException("Number of tables can't be negative");
+		this.numTables = numTables;
+	}
+
+	/**
+	 * Searches the tables using its own workspace.  The tables are only read.
+	 */
+	private class InternalSearch implements Search<long[]> {
+		// the target and its substrings
+		long[] target;
+		long[] targetSub = new long[0];
+
+		// marks descriptors which have already been checked during this search
+		int[] checked = new int[0];
+		int stamp;
+
+		// descriptors farther away than this are ignored
+		int maxDistance;
+
+		// number of table look ups and descriptors checked
+		double cost;
+
+		// max heap containing the N nearest-neighbors found so far. Hamming distances are exact as a double
+		BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+
+		@Override
+		public boolean findNearest(long[] point, double maxDistance, NnData<long[]> result) {
+			search(point,maxDistance,1);
+			if( heap.isEmpty() )
+				return false;
+			result.point = points.get(heap.getTopIndex());
+			result.index = heap.getTopIndex();
+			result.distance = heap.getTopValue();
+			return true;
+		}
+
+		@Override
+		public void findNearest(long[] point, double maxDistance, int numNeighbors, FastQueue<NnData<long[]>> results) {
+			if( numNeighbors <= 0 )
+				throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+			results.reset();
+			search(point,maxDistance,numNeighbors);
+			for (int i = 0; i < heap.size; i++) {
+				NnData<long[]> r = results.grow();
+				r.point = points.get(heap.index[i]);
+				r.index = heap.index[i];
+				r.distance = heap.value[i];
+			}
+		}
+
+		private void search( long[] target , double distanceLimit , int searchN ) {
+			this.target = target;
+			this.maxDistance = distanceLimit < 0 ? Integer.MAX_VALUE : (int)Math.min(Integer.MAX_VALUE,distanceLimit);
+			heap.reset(searchN);
+
+			final int m = tables.length;
+			if( m == 0 )
+				return;
+
+			final int numPoints = points.size();
+			if( checked.length < numPoints ) {
+				checked = new int[numPoints];
+				stamp = 0;
+			}
+			if( ++stamp == Integer.MAX_VALUE ) {
+				Arrays.fill(checked,0);
+				stamp = 1;
+			}
+
+			if( targetSub.length < m )
+				targetSub = new long[m];
+			int maxLength = 0;
+			for (int t = 0; t < m; t++) {
+				targetSub[t] = extract(target,subStart[t],subLength[t]);
+				maxLength = Math.max(maxLength,subLength[t]);
+			}
+
+			cost = 0;
+			for (int radius = 0; radius <= maxLength; radius++) {
+				// switch to an exhaustive search if looking up every substring would be more expensive
+				double lookups = 0;
+				for (int t = 0; t < m; t++) {
+					lookups += combinations(subLength[t],radius);
+				}
+				if( cost + lookups > numPoints ) {
+					checkAll();
+					return;
+				}
+				cost += lookups;
+
+				for (int t = 0; t < m; t++) {
+					if( radius <= subLength[t] )
+						enumerate(t,targetSub[t],0,radius);
+				}
+
+				// All descriptors within this distance have been found
+				long found = (long)m*(radius+1)-1;
+				if( maxDistance <= found )
+					return;
+				if( heap.isFull() && heap.getTopValue() <= found )
+					return;
+			}
+		}
+
+		/**
+		 * Looks up all the substrings which differ from 'key' at 'remaining' bits with an index of at least 'first'
+		 */
+		private void enumerate( int table , long key , int first , int remaining ) {
+			if( remaining == 0 ) {
+				lookup(table,key);
+				return;
+			}
+			final int length = subLength[table];
+			for (int bit = first; bit <= length-remaining; bit++) {
+				enumerate(table,key ^ (1L << bit),bit+1,remaining-1);
+			}
+		}
+
+		/**
+		 * Checks every descriptor in the table with the substring
+		 */
+		private void lookup( int table , long key ) {
+			final long[] entries = tables[table];
+			final long lower = key << 32;
+
+			// find the first element which is >= lower
+			int low = 0, high = entries.length;
+			while( low < high ) {
+				int mid = (low+high) >>> 1;
+				if( entries[mid] < lower )
+					low = mid+1;
+				else
+					high = mid;
+			}
+
+			for (int i = low; i < entries.length && (entries[i] >>> 32) == key; i++) {
+				check((int)entries[i]);
+			}
+		}
+
+		private void checkAll() {
+			for (int i = 0; i < points.size(); i++) {
+				check(i);
+			}
+		}
+
+		private void check( int index ) {
+			if( checked[index] == stamp )
+				return;
+			checked[index] = stamp;
+			cost++;
+
+			int d = hamming(points.get(index),target);
+			if( !heap.isFull() ) {
+				if( d <= maxDistance )
+					heap.push(index,d);
+			} else if( d < heap.getTopValue() ) {
+				heap.replaceTop(index,d);
+			}
+		}
+	}
+
+	/**
+	 * Number of ways k elements can be selected from n
+	 */
+	static double combinations( int n , int k ) {
+		if( k > n )
+			return 0;
+		double total = 1;
+		for (int i = 0; i < k; i++) {
+			total = total*(n-i)/(i+1);
+		}
+		return total;
+	}
+}
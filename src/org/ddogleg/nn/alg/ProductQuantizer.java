@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.clustering.FactoryClustering;
+import org.ddogleg.clustering.kmeans.StandardKMeans_F64;
+import org.ddogleg.struct.FastQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Product quantization [1] compresses a vector by splitting it into sub-vectors and replacing each sub-vector with
+ * the index of the closest centroid from its subspace's codebook. Codebooks are learned with
+ * {@link StandardKMeans_F64}. Each code is stored in a byte so there can be at most 256 centroids in a codebook.
+ * Distance between a vector and a code is computed using a look up table of the squared distance between the
+ * vector and each centroid, see {@link #computeTable} and {@link #distance}.
+ * </p>
+ *
+ * <p>
+ * [1] Jegou, Herve, Matthijs Douze, and Cordelia Schmid. "Product quantization for nearest neighbor search."
+ * IEEE PAMI 33.1 (2011)
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class ProductQuantizer {
+
+	// number of elements in a vector
+	int dimension;
+	// first element and number of elements in each subspace
+	int[] subStart = new int[0];
+	int[] subLength = new int[0];
+	// number of centroids in each codebook
+	int numCodes;
+	// centroids for each subspace in row-major order
+	double[][] codebooks = new double[0][];
+
+	// k-means parameters
+	int maxIterations = 30;
+	long randomSeed;
+
+	public ProductQuantizer( long randomSeed ) {
+		this.randomSeed = randomSeed;
+	}
+
+	/**
+	 * Learns the codebook for each subspace
+	 *
+	 * @param vectors Training vectors
+	 * @param dimension Number of elements in a vector
+	 * @param numSubspaces Number of subspaces the vector is split into. This is the number of bytes in a code.
+	 * @param numCodes Maximum number of centroids in each codebook. Must be {@code <= 256}.
+	 */
+	public void train( List<double[]> vectors , int dimension , int numSubspaces , int numCodes ) {
+		if( numCodes < 1 || numCodes > 256 )
+			throw new IllegalArgumentException("Number of codes must be from 1 to 256");
+		if( numSubspaces < 1 || numSubspaces > dimension )
+			throw new IllegalArgumentException("Number of subspaces must be from 1 to the dimension");
+		if( vectors.isEmpty() )
+			throw new IllegalArgumentException("No training vectors");
+
+		this.dimension = dimension;
+		this.numCodes = Math.min(numCodes,vectors.size());
+
+		subStart = new int[numSubspaces];
+		subLength = new int[numSubspaces];
+		codebooks = new double[numSubspaces][];
+		for (int m = 0; m < numSubspaces; m++) {
+			subStart[m] = m*dimension/numSubspaces;
+			subLength[m] = (m+1)*dimension/numSubspaces - subStart[m];
+		}
+
+		List<double[]> subVectors = new ArrayList<>();
+		for (int m = 0; m < numSubspaces; m++) {
+			final int start = subStart[m];
+			final int length = subLength[m];
+			subVectors.clear();
+			for (int i = 0; i < vectors.size(); i++) {
+				double[] sub = new double[length];
+				System.arraycopy(vectors.get(i),start,sub,0,length);
+				subVectors.add(sub);
+			}
+
+			StandardKMeans_F64 kmeans = FactoryClustering.kMeans_F64(null,maxIterations,maxIterations,1e-8);
+			kmeans.init(length,randomSeed+m);
+			kmeans.process(subVectors,this.numCodes);
+
+			FastQueue<double[]> means = kmeans.getClusterMeans();
+			double[] codebook = codebooks[m] = new double[this.numCodes*length];
+			for (int k = 0; k < this.numCodes; k++) {
+				System.arraycopy(means.get(k),0,codebook,k*length,length);
+			}
+		}
+	}
+
+	/**
+	 * Encodes the vector by selecting the closest centroid in each subspace
+	 *
+	 * @param vector (Input) vector
+	 * @param code (Output) array the code is written to
+	 * @param offset Index of the code's first byte in the array
+	 */
+	public void encode( double[] vector , byte[] code , int offset ) {
+		for (int m = 0; m < codebooks.length; m++) {
+			final double[] codebook = codebooks[m];
+			final int start = subStart[m];
+			final int length = subLength[m];
+
+			int best = 0;
+			double bestDistance = Double.MAX_VALUE;
+			for (int k = 0; k < numCodes; k++) {
+				double d = 0;
+				for (int i = 0; i < length; i++) {
+					double e = vector[start+i] - codebook[k*length+i];
+					d += e*e;
+				}
+				if( d < bestDistance ) {
+					bestDistance = d;
+					best = k;
+				}
+			}
+			code[offset+m] = (byte)best;
+		}
+	}
+
+	/**
+	 * Reconstructs an approximation of the encoded vector
+	 *
+	 * @param code (Input) array containing the code
+	 * @param offset Index of the code's first byte in the array
+	 * @param vector (Output) the vector
+	 */
+	public void decode( byte[] code , int offset , double[] vector ) {
+		for (int m = 0; m < codebooks.length; m++) {
+			final int length = subLength[m];
+			int k = code[offset+m] & 0xFF;
+			System.arraycopy(codebooks[m],k*length,vector,subStart[m],length);
+		}
+	}
+
+	/**
+	 * Computes the squared distance between the vector and every centroid in each subspace
+	 *
+	 * @param vector (Input) vector
+	 * @param table (Output) Table with {@link #getNumSubspaces()}*{@link #getNumCodes()} elements.
+	 */
+	public void computeTable( double[] vector , double[] table ) {
+		for (int m = 0; m < codebooks.length; m++) {
+			final double[] codebook = codebooks[m];
+			final int start = subStart[m];
+			final int length = subLength[m];
+			for (int k = 0; k < numCodes; k++) {
+				double d = 0;
+				for (int i = 0; i < length; i++) {
+					double e = vector[start+i] - codebook[k*length+i];
+					d += e*e;
+				}
+				table[m*numCodes+k] = d;
+			}
+		}
+	}
+
+	/**
+	 * Squared distance between the vector used to compute the table and the encoded vector.
+	 *
+	 * @param table Table from {@link #computeTable}
+	 * @param code array containing the code
+	 * @param offset Index of the code's first byte in the array
+	 */
+	public double distance( double[] table , byte[] code , int offset ) {
+		final int numSubspaces = codebooks.length;
+		double sum = 0;
+		for (int m = 0, tableOffset = 0; m < numSubspaces; m++, tableOffset += numCodes) {
+			sum += table[tableOffset + (code[offset+m] & 0xFF)];
+		}
+		return sum;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	public int getNumSubspaces() {
+		return codebooks.length;
+	}
+
+	public int getNumCodes() {
+		return numCodes;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Number of k-means iterations used to learn each codebook
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+}
@@ -15,16 +15,18 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.ddogleg.nn.alg;
 
-import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NearestNeighborRadius;
 import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.alg.distance.MetricEuclidean_F64;
+import org.ddogleg.sorting.QuickSortComparator;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
 import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_F64;
 import org.ddogleg.struct.GrowQueue_I32;
 
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.Random;
 
 /**
@@ -42,6 +44,19 @@ import java.util.Random;
  * </p>
  *
  * <p>
+ * Any type of point can be searched as long as the distance between points is a {@link DistanceMetric}, e.g.
+ * Hamming distance between binary descriptors or the edit distance between strings. There is a specialized
+ * implementation for {@link MetricEuclidean_F64} which computes the distance directly.  For backwards
+ * compatibility, with the Euclidean metric the maximum distance and the distance of each result are Euclidean
+ * squared. For all other metrics they are the distance computed by the metric.
+ * </p>
+ *
+ * <p>
+ * Nodes are stored in arrays and each search has its own node stack and binary heap, so once a search's
+ * workspace has grown to the needed size no memory is allocated while searching.
+ * </p>
+ *
+ * <p>
  * [1] Peter N. Yianilo "Data Structures and Algorithms for Nearest Neighbor Search in General Metric Spaces"<br>
  *     http://aidblab.cse.iitm.ac.in/cs625/vptree.pdf<br>
  * [2] Steve Hanov.  see http://stevehanov.ca/blog/index.php?id=130<br>
@@ -49,38 +64,58 @@ import java.util.Random;
  *
  * @author Karel Petránek
  */
-public class VpTree implements NearestNeighbor<double[]> {
-	GrowQueue_I32 indexes;
-	private double[][] items;
-	private Node root;
+public class VpTree<P> implements NearestNeighborRadius<P> {
+	GrowQueue_I32 indexes = new GrowQueue_I32();
+	Object[] items = new Object[0];
 	private Random random;
 
+	// distance between two points
+	private DistanceMetric<P> metric;
+	// true if the metric is Euclidean and the specialized code can be used
+	boolean euclidean;
+
+	// Nodes in the tree. Each node is a vantage point which separates the points closer than the threshold (left)
+	// from the ones which are farther away (right).  The root is node 0 and -1 indicates no child.
+	// index of the node's point in items
+	final GrowQueue_I32 nodeItem = new GrowQueue_I32();
+	final GrowQueue_F64 nodeThreshold = new GrowQueue_F64();
+	final GrowQueue_I32 nodeLeft = new GrowQueue_I32();
+	final GrowQueue_I32 nodeRight = new GrowQueue_I32();
+
+	// search used by the findNearest() functions in this class
+	private InternalSearch internalSearch = new InternalSearch();
+
 	/**
 	 * Constructor
 	 *
+	 * @param metric Distance between two points
 	 * @param randSeed Random seed
 	 */
-   public VpTree( long randSeed ) {
+	public VpTree( DistanceMetric<P> metric , long randSeed ) {
+		this.metric = metric;
+		this.euclidean = metric.getClass() == MetricEuclidean_F64.class;
 		random = new Random(randSeed);
-   }
+	}
 
-	@Override
-	public void findNearest(double[] target, double maxDistance,
-							int numNeighbors, FastQueue<NnData<double[]>> results)
-	{
-		results.reset();
-		PriorityQueue<HeapItem> heap = search(target, maxDistance < 0 ? Double.POSITIVE_INFINITY : Math.sqrt(maxDistance), numNeighbors);
-
-		while (!heap.isEmpty()) {
-			final HeapItem heapItem = heap.poll();
-			NnData<double[]> objects = new NnData<>();
-			objects.index = indexes.get(heapItem.index);
-			objects.point = items[heapItem.index];
-			objects.distance = heapItem.dist * heapItem.dist; // squared distance is expected
-			results.add(objects);
-		}
+	/**
+	 * Constructor which uses {@link MetricEuclidean_F64}. P must be double[] since the type can't be checked.
+	 *
+	 * @param randSeed Random seed
+	 * @deprecated Use {@link #euclidean(long)} which is type safe
+	 */
+	@Deprecated
+	@SuppressWarnings("unchecked")
+	public VpTree( long randSeed ) {
+		this((DistanceMetric<P>)(DistanceMetric<?>)new MetricEuclidean_F64(),randSeed);
+	}
 
-		results.reverse();
+	/**
+	 * Creates a tree for double[] points which uses {@link MetricEuclidean_F64}
+	 *
+	 * @param randSeed Random seed
+	 */
+	public static VpTree<double[]> euclidean( long randSeed ) {
+		return new VpTree<>(new MetricEuclidean_F64(),randSeed);
 	}
 
 	/**
@@ -88,15 +123,18 @@ public class VpTree implements NearestNeighbor<double[]> {
 	 * them according to a random pivot.
 	 * @param lower start of range
 	 * @param upper end of range (exclusive)
-	 * @return root of the tree or null if lower == upper
+	 * @return index of the root node or -1 if lower == upper
 	 */
-	private Node buildFromPoints(int lower, int upper) {
+	private int buildFromPoints(int lower, int upper) {
 		if (upper == lower) {
-			return null;
+			return -1;
 		}
 
-		final Node node = new Node();
-		node.index = lower;
+		final int node = nodeItem.size;
+		nodeItem.add(lower);
+		nodeThreshold.add(0);
+		nodeLeft.add(-1);
+		nodeRight.add(-1);
 
 		if (upper - lower > 1) {
 
@@ -112,16 +150,17 @@ public class VpTree implements NearestNeighbor<double[]> {
 			nthElement(lower + 1, upper, median, items[lower]);
 
 			// what was the median?
-			node.threshold = distance(items[lower], items[median]);
+			nodeThreshold.data[node] = distance(items[lower], items[median]);
 
-			node.index = lower;
-			node.left = buildFromPoints(lower + 1, median);
-			node.right = buildFromPoints(median, upper);
+			// The arrays can be reallocated while the children are built, so don't save a reference to them
+			int left = buildFromPoints(lower + 1, median);
+			int right = buildFromPoints(median, upper);
+			nodeLeft.data[node] = left;
+			nodeRight.data[node] = right;
 		}
 
 		return node;
 	}
-
 	/**
 	 * Ensures that the n-th element is in a correct position in the list based on
 	 * the distance from origin.
@@ -130,7 +169,7 @@ public class VpTree implements NearestNeighbor<double[]> {
 	 * @param n element to put in the right position
 	 * @param origin origin to compute the distance to
 	 */
-	private void nthElement(int left, int right, int n, double[] origin) {
+	private void nthElement(int left, int right, int n, Object origin) {
 		int npos = partitionItems(left, right, n, origin);
 		if (npos < n)
 			nthElement(npos + 1, right, n, origin);
@@ -146,7 +185,7 @@ public class VpTree implements NearestNeighbor<double[]> {
 	 * @param origin origin to compute the distance to
 	 * @return index of the pivot
 	 */
-	private int partitionItems(int left, int right, int pivot, double[] origin) {
+	private int partitionItems(int left, int right, int pivot, Object origin) {
 		double pivotDistance = distance(origin, items[pivot]);
 		listSwap(items, pivot, right - 1);
 		listSwap(indexes, pivot, right - 1);
@@ -182,6 +221,23 @@ public class VpTree implements NearestNeighbor<double[]> {
 		list.data[b] = tmp;
 	}
 
+	/**
+	 * Points are stored in an Object[] since an array of P can't be created. Everything in it is a P.
+	 */
+	@SuppressWarnings("unchecked")
+	private P point( Object o ) {
+		return (P)o;
+	}
+
+	/**
+	 * Compute the distance between p1 and p2 using the metric
+	 */
+	private double distance(Object p1, Object p2) {
+		if (euclidean)
+			return distance((double[]) p1, (double[]) p2);
+		return metric.distance(point(p1), point(p2));
+	}
+
 	/**
 	 * Compute the Euclidean distance between p1 and p2.
 	 * @param p1 first point
@@ -203,138 +259,238 @@ public class VpTree implements NearestNeighbor<double[]> {
 		}
 	}
 
-	/**
-	 * Recursively search for the k nearest neighbors to target.
-	 * @param target target point
-	 * @param maxDistance maximum distance
-	 * @param k number of neighbors to find
-	 */
-	private PriorityQueue<HeapItem> search(final double[] target, double maxDistance, final int k) {
-		PriorityQueue<HeapItem> heap = new PriorityQueue<HeapItem>();
-		if (root == null) {
-			return heap;
+	@Override
+	public void setPoints(List<P> points, boolean trackIndicies) {
+		// Make a copy because we mutate the lists
+		this.items = points.toArray();
+		indexes.resize(points.size());
+		for (int i = 0; i < points.size(); i++) {
+			indexes.data[i] = i;
 		}
 
-		double tau = maxDistance;
-		final FastQueue<Node> nodes = new FastQueue<Node>(20, Node.class, false);
-		nodes.add(root);
-
-		while (nodes.size() > 0) {
-			final Node node = nodes.removeTail();
-			final double dist = distance(items[node.index], target);
+		nodeItem.reset();
+		nodeThreshold.reset();
+		nodeLeft.reset();
+		nodeRight.reset();
+		buildFromPoints(0, items.length);
+	}
 
-			if (dist <= tau) {
-				if (heap.size() == k) {
-					heap.poll();
-				}
-				heap.add(new HeapItem(node.index, dist));
-				if (heap.size() == k) {
-					tau = heap.element().dist;
-				}
-			}
+	@Override
+	public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
 
-			if (node.left != null && dist - tau <= node.threshold) {
-				nodes.add(node.left);
-			}
+	@Override
+	public void findNearest(P target, double maxDistance,
+							int numNeighbors, FastQueue<NnData<P>> results) {
+		internalSearch.findNearest(target,maxDistance,numNeighbors,results);
+	}
 
-			if (node.right != null && dist + tau >= node.threshold) {
-				nodes.add(node.right);
-			}
-		}
+	@Override
+	public void findRadius(P point, double radius, int maxResults, boolean sorted, FastQueue<NnData<P>> results) {
+		internalSearch.findRadius(point,radius,maxResults,sorted,results);
+	}
 
-		return heap;
+	@Override
+	public SearchRadius<P> createSearch() {
+		return new InternalSearch();
 	}
 
 	/**
-	 * Equivalent to the above search method to find one nearest neighbor.
-	 * It is faster as it does not need to allocate and use the heap data structure.
-	 * @param target target point
-	 * @param maxDistance maximum distance
-	 * @param result information about the nearest point (output parameter)
-	 * @return true if a nearest point was found within maxDistance
+	 * Searches the tree using its own workspace.  The tree is only read.
 	 */
-	private boolean searchNearest(final double[] target, double maxDistance, NnData<double[]> result) {
-		if (root == null) {
-			return false;
+	private class InternalSearch implements SearchRadius<P> {
+		// stack of nodes which still need to be searched
+		final GrowQueue_I32 nodes = new GrowQueue_I32();
+
+		// max heap of the k nearest neighbors found so far. Distance is computed by the metric.
+		final BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+
+		// sorts the results of a radius search by distance
+		QuickSortComparator<NnData<P>> sorter = new QuickSortComparator<>((a,b)->Double.compare(a.distance,b.distance));
+
+		@Override
+		public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+			boolean r = searchNearest(point, toMetric(maxDistance), result);
+			result.distance = fromMetric(result.distance);
+			return r;
 		}
 
-		double tau = maxDistance;
-		final FastQueue<Node> nodes = new FastQueue<Node>(20, Node.class, false);
-		nodes.add(root);
-		result.distance = Double.POSITIVE_INFINITY;
-		boolean found = false;
-
-		while (nodes.size() > 0) {
-			final Node node = nodes.getTail();
-			nodes.removeTail();
-			final double dist = distance(items[node.index], target);
-
-			if (dist <= tau && dist < result.distance) {
-				result.distance = dist;
-				result.index = indexes.data[node.index];
-				result.point = items[node.index];
-				tau = dist;
-				found = true;
+		@Override
+		public void findNearest(P target, double maxDistance,
+								int numNeighbors, FastQueue<NnData<P>> results)
+		{
+			results.reset();
+			search(target, toMetric(maxDistance), numNeighbors);
+
+			heap.sortAscending();
+			results.resize(heap.size);
+			for (int i = 0; i < heap.size; i++) {
+				NnData<P> r = results.get(i);
+				r.index = indexes.data[heap.index[i]];
+				r.point = point(items[heap.index[i]]);
+				r.distance = fromMetric(heap.value[i]);
 			}
+		}
 
-			if (node.left != null && dist - tau <= node.threshold) {
-				nodes.add(node.left);
+		@Override
+		public void findRadius(P target, double radius, int maxResults, boolean sorted, FastQueue<NnData<P>> results) {
+			if (radius < 0)
+				throw new IllegalArgumentException("The radius must be >= 0");
+			results.reset();
+			if (nodeItem.size == 0) {
+				return;
 			}
+			if (maxResults <= 0)
+				maxResults = Integer.MAX_VALUE;
+
+			final int[] nodeItem = VpTree.this.nodeItem.data;
+			final double[] nodeThreshold = VpTree.this.nodeThreshold.data;
+			final int[] nodeLeft = VpTree.this.nodeLeft.data;
+			final int[] nodeRight = VpTree.this.nodeRight.data;
+
+			final double tau = toMetric(radius);
+			nodes.reset();
+			nodes.add(0);
+
+			while (nodes.size > 0 && results.size < maxResults) {
+				final int node = nodes.pop();
+				final int item = nodeItem[node];
+				final double dist = distance(items[item], target);
+
+				if (dist <= tau) {
+					NnData<P> r = results.grow();
+					r.index = indexes.data[item];
+					r.point = point(items[item]);
+					r.distance = fromMetric(dist);
+				}
+
+				final double threshold = nodeThreshold[node];
+				if (nodeLeft[node] != -1 && dist - tau <= threshold) {
+					nodes.add(nodeLeft[node]);
+				}
 
-			if (node.right != null && dist + tau >= node.threshold) {
-				nodes.add(node.right);
+				if (nodeRight[node] != -1 && dist + tau >= threshold) {
+					nodes.add(nodeRight[node]);
+				}
 			}
+
+			if (sorted)
+				sorter.sort(results.data, results.size);
 		}
 
-		return found;
-	}
+		/**
+		 * Search for the k nearest neighbors to target. Results are stored in the heap.
+		 * @param target target point
+		 * @param maxDistance maximum distance
+		 * @param k number of neighbors to find
+		 */
+		private void search(final P target, double maxDistance, final int k) {
+			heap.reset(k);
+			if (nodeItem.size == 0) {
+				return;
+			}
 
-	@SuppressWarnings("unchecked")
-	@Override
-	public void setPoints(List<double[]> points, boolean trackIndicies) {
-		// Make a copy because we mutate the lists
-		this.items = points.toArray(new double[0][]);
-		this.indexes = new GrowQueue_I32();
-		indexes.resize(points.size());
-		for (int i = 0; i < points.size(); i++) {
-			indexes.data[i] = i;
+			final int[] nodeItem = VpTree.this.nodeItem.data;
+			final double[] nodeThreshold = VpTree.this.nodeThreshold.data;
+			final int[] nodeLeft = VpTree.this.nodeLeft.data;
+			final int[] nodeRight = VpTree.this.nodeRight.data;
+
+			double tau = maxDistance;
+			nodes.reset();
+			nodes.add(0);
+
+			while (nodes.size > 0) {
+				final int node = nodes.pop();
+				final int item = nodeItem[node];
+				final double dist = distance(items[item], target);
+
+				if (dist <= tau) {
+					if (heap.isFull()) {
+						heap.replaceTop(item, dist);
+					} else {
+						heap.push(item, dist);
+					}
+					if (heap.isFull()) {
+						tau = heap.getTopValue();
+					}
+				}
+
+				final double threshold = nodeThreshold[node];
+				if (nodeLeft[node] != -1 && dist - tau <= threshold) {
+					nodes.add(nodeLeft[node]);
+				}
+
+				if (nodeRight[node] != -1 && dist + tau >= threshold) {
+					nodes.add(nodeRight[node]);
+				}
+			}
 		}
 
-		this.root = buildFromPoints(0, items.length);
-	}
+		/**
+		 * Equivalent to the above search method to find one nearest neighbor.
+		 * It is faster as it does not need to use the heap data structure.
+		 * @param target target point
+		 * @param maxDistance maximum distance
+		 * @param result information about the nearest point (output parameter)
+		 * @return true if a nearest point was found within maxDistance
+		 */
+		private boolean searchNearest(final P target, double maxDistance, NnData<P> result) {
+			if (nodeItem.size == 0) {
+				return false;
+			}
 
-	@Override
-	public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
-		boolean r = searchNearest(point, maxDistance < 0 ? Double.POSITIVE_INFINITY : Math.sqrt(maxDistance), result);
-		result.distance *= result.distance; // Callee expects squared distance
-		return r;
-	}
+			final int[] nodeItem = VpTree.this.nodeItem.data;
+			final double[] nodeThreshold = VpTree.this.nodeThreshold.data;
+			final int[] nodeLeft = VpTree.this.nodeLeft.data;
+			final int[] nodeRight = VpTree.this.nodeRight.data;
+
+			double tau = maxDistance;
+			nodes.reset();
+			nodes.add(0);
+			result.distance = Double.POSITIVE_INFINITY;
+			boolean found = false;
+
+			while (nodes.size > 0) {
+				final int node = nodes.pop();
+				final int item = nodeItem[node];
+				final double dist = distance(items[item], target);
+
+				if (dist <= tau && dist < result.distance) {
+					result.distance = dist;
+					result.index = indexes.data[item];
+					result.point = point(items[item]);
+					tau = dist;
+					found = true;
+				}
 
-	/**
-	 * Separates the points to "closer than the threshold" (left) and "farther than the threshold" (right).
-	 */
-	private static class Node {
-		int index;
-		double threshold;
-		Node left;
-		Node right;
-	}
+				final double threshold = nodeThreshold[node];
+				if (nodeLeft[node] != -1 && dist - tau <= threshold) {
+					nodes.add(nodeLeft[node]);
+				}
 
-	/**
-	 * Holds possible candidates for nearest neighbors during the search.
-	 */
-	private static class HeapItem implements Comparable<HeapItem> {
-		int index;
-		double dist;
+				if (nodeRight[node] != -1 && dist + tau >= threshold) {
+					nodes.add(nodeRight[node]);
+				}
+			}
 
-		HeapItem(int index, double dist) {
-			this.index = index;
-			this.dist = dist;
+			return found;
 		}
 
-		@Override
-		public int compareTo(HeapItem o) {
-			return (int) Math.signum(o.dist - dist);
+		/**
+		 * Converts the user's maximum distance into the metric's units. Negative means there is no limit.
+		 */
+		private double toMetric(double maxDistance) {
+			if (maxDistance < 0)
+				return Double.POSITIVE_INFINITY;
+			return euclidean ? Math.sqrt(maxDistance) : maxDistance;
+		}
+
+		/**
+		 * Converts a distance computed by the metric into the distance returned to the user
+		 */
+		private double fromMetric(double distance) {
+			return euclidean ? distance * distance : distance; // squared Euclidean distance is expected
 		}
 	}
-}
\ No newline at end of file
+}
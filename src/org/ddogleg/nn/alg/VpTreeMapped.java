@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_I32;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import static org.ddogleg.nn.alg.KdForestMapped.align8;
+import static org.ddogleg.nn.alg.KdForestMapped.checkFileSize;
+import static org.ddogleg.nn.alg.KdForestMapped.doubles;
+import static org.ddogleg.nn.alg.KdForestMapped.ints;
+
+/**
+ * <p>
+ * Read only {@link VpTree} which is searched directly from a {@link ByteBuffer}, typically a memory mapped file.
+ * See {@link KdForestMapped} for the motivation. Only trees with double[] points that use
+ * {@link org.ddogleg.nn.alg.distance.MetricEuclidean_F64} can be saved. Just like {@link VpTree}, the maximum
+ * distance and the distance of each result are Euclidean squared.
+ * </p>
+ *
+ * <p>
+ * Since the points are not stored as double[], each result contains a newly declared copy of its point.
+ * {@link #setPoints} is not supported. Files are limited to 2 GB. Like {@link KdForestMapped}, files are
+ * written in the native byte order.
+ * </p>
+ *
+ * <pre>
+ * File Format, byte order given by MAGIC:
+ * int: MAGIC, VERSION, N, numItems, numNodes
+ * padding to 8-byte alignment
+ * double[numItems*N]: points
+ * double[numNodes]: threshold of each node
+ * int[numItems]: index of each point in the original list
+ * int[numNodes] for each of: point, left, right
+ * </pre>
+ *
+ * @author Peter Abeles
+ */
+public class VpTreeMapped implements NearestNeighbor<double[]> {
+
+	/** Identifies the file type. "DDVP" */
+	public static final int MAGIC = 0x44445650;
+	public static final int VERSION = 1;
+
+	// Number of elements in each point
+	int N;
+
+	DoubleBuffer items;
+	IntBuffer indexes;
+
+	// Nodes in the tree. The root is node 0 and -1 indicates no child.
+	int numNodes;
+	DoubleBuffer nodeThreshold;
+	IntBuffer nodeItem;
+	IntBuffer nodeLeft;
+	IntBuffer nodeRight;
+
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch;
+
+	/**
+	 * Reads the tree from the buffer. The buffer's contents are referenced, not copied.
+	 *
+	 * @param buffer Buffer containing a tree created by {@link #save}. Its position is ignored.
+	 */
+	public VpTreeMapped( ByteBuffer buffer ) {
+		buffer = KdForestMapped.fileOrder(buffer,MAGIC,"Not a VP tree file");
+		if( buffer.getInt(4) != VERSION )
+			throw new IllegalArgumentException("Unsupported version "+buffer.getInt(4));
+
+		N = buffer.getInt(8);
+		int numItems = buffer.getInt(12);
+		numNodes = buffer.getInt(16);
+
+		long offset = align8(20);
+		items = doubles(buffer,offset,(long)numItems*N); offset += (long)numItems*N*8;
+		nodeThreshold = doubles(buffer,offset,numNodes); offset += numNodes*8L;
+		indexes = ints(buffer,offset,numItems); offset += numItems*4L;
+		nodeItem = ints(buffer,offset,numNodes); offset += numNodes*4L;
+		nodeLeft = ints(buffer,offset,numNodes); offset += numNodes*4L;
+		nodeRight = ints(buffer,offset,numNodes);
+
+		internalSearch = new InternalSearch();
+	}
+
+	/**
+	 * Memory maps the file and searches it directly
+	 *
+	 * @param file File created by {@link #save}
+	 * @return The tree
+	 */
+	public static VpTreeMapped load( File file ) throws IOException {
+		return new VpTreeMapped(KdForestMapped.map(file));
+	}
+
+	/**
+	 * Saves the tree to a file which can be loaded by {@link #load}.
+	 *
+	 * @param tree The tree. Must use the Euclidean metric.
+	 * @param file Where the tree is saved to
+	 */
+	public static void save( VpTree<double[]> tree , File file ) throws IOException {
+		try( OutputStream out = new FileOutputStream(file) ) {
+			save(tree,out);
+		}
+	}
+
+	/**
+	 * Writes the tree to a stream. See {@link #save(VpTree, File)}
+	 *
+	 * @throws IllegalArgumentException If the file would be larger than 2 GB
+	 */
+	public static void save( VpTree<double[]> tree , OutputStream stream ) throws IOException {
+		if( !tree.euclidean )
+			throw new IllegalArgumentException("Only trees which use MetricEuclidean_F64 can be saved");
+
+		Object[] items = tree.items;
+		int N = items.length > 0 ? ((double[])items[0]).length : 0;
+		int numNodes = tree.nodeItem.size;
+		checkFileSize(align8(20) + ((long)items.length*N + numNodes)*8 + (items.length + numNodes*3L)*4);
+
+		KdForestMapped.NativeWriter out = new KdForestMapped.NativeWriter(stream);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(N);
+		out.writeInt(items.length);
+		out.writeInt(numNodes);
+		out.align8();
+
+		for (int i = 0; i < items.length; i++) {
+			double[] p = (double[])items[i];
+			if( p.length != N )
+				throw new IllegalArgumentException("Point has an unexpected length");
+			for (int j = 0; j < N; j++) {
+				out.writeDouble(p[j]);
+			}
+		}
+		out.writeDoubles(tree.nodeThreshold);
+		out.writeInts(tree.indexes);
+		out.writeInts(tree.nodeItem);
+		out.writeInts(tree.nodeLeft);
+		out.writeInts(tree.nodeRight);
+		out.flush();
+	}
+
+	/**
+	 * Not supported. The tree is read only.
+	 */
+	@Override
+	public void setPoints(List<double[]> points, boolean trackIndices) {
+		throw new IllegalArgumentException("The mapped tree is read only. Save a new tree instead.");
+	}
+
+	@Override
+	public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(double[] point, double maxDistance, int numNeighbors, FastQueue<NnData<double[]>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<double[]> createSearch() {
+		return new InternalSearch();
+	}
+
+	/**
+	 * Searches the tree using its own workspace. The buffers are only read.
+	 */
+	private class InternalSearch implements Search<double[]> {
+		// stack of nodes which still need to be searched
+		final GrowQueue_I32 nodes = new GrowQueue_I32();
+
+		// max heap of the k nearest neighbors found so far. Distance is Euclidean.
+		final BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+
+		@Override
+		public boolean findNearest(double[] point, double maxDistance, NnData<double[]> result) {
+			search(point, maxDistance < 0 ? Double.POSITIVE_INFINITY : Math.sqrt(maxDistance), 1);
+			if( heap.isEmpty() )
+				return false;
+			result.point = copyPoint(heap.getTopIndex());
+			result.index = indexes.get(heap.getTopIndex());
+			double d = heap.getTopValue();
+			result.distance = d*d; // squared distance is expected
+			return true;
+		}
+
+		@Override
+		public void findNearest(double[] point, double maxDistance, int numNeighbors,
+								FastQueue<NnData<double[]>> results) {
+			if( numNeighbors <= 0 )
+				throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+			results.reset();
+			search(point, maxDistance < 0 ? Double.POSITIVE_INFINITY : Math.sqrt(maxDistance), numNeighbors);
+
+			heap.sortAscending();
+			results.resize(heap.size);
+			for (int i = 0; i < heap.size; i++) {
+				NnData<double[]> r = results.get(i);
+				r.point = copyPoint(heap.index[i]);
+				r.index = indexes.get(heap.index[i]);
+				r.distance = heap.value[i]*heap.value[i];
+			}
+		}
+
+		/**
+		 * Search for the k nearest neighbors to target. Results are stored in the heap.
+		 */
+		private void search( final double[] target , double maxDistance , final int k ) {
+			heap.reset(k);
+			if( numNodes == 0 )
+				return;
+			if( target.length != N )
+				throw new IllegalArgumentException("Point has an unexpected length");
+
+			double tau = maxDistance;
+			nodes.reset();
+			nodes.add(0);
+
+			while( nodes.size > 0 ) {
+				final int node = nodes.pop();
+				final int item = nodeItem.get(node);
+				final double dist = distance(item, target);
+
+				if( dist <= tau ) {
+					if( heap.isFull() ) {
+						heap.replaceTop(item, dist);
+					} else {
+						heap.push(item, dist);
+					}
+					if( heap.isFull() ) {
+						tau = heap.getTopValue();
+					}
+				}
+
+				final double threshold = nodeThreshold.get(node);
+				final int left = nodeLeft.get(node);
+				final int right = nodeRight.get(node);
+				if( left != -1 && dist - tau <= threshold ) {
+					nodes.add(left);
+				}
+
+				if( right != -1 && dist + tau >= threshold ) {
+					nodes.add(right);
+				}
+			}
+		}
+
+		/**
+		 * Euclidean distance between the target and a point in the tree
+		 */
+		private double distance( int item , double[] target ) {
+			final int offset = item*N;
+			double sum = 0;
+			for (int i = 0; i < N; i++) {
+				double d = items.get(offset+i) - target[i];
+				sum += d*d;
+			}
+			return Math.sqrt(sum);
+		}
+
+		private double[] copyPoint( int item ) {
+			double[] p = new double[N];
+			for (int i = 0; i < N; i++) {
+				p[i] = items.get(item*N+i);
+			}
+			return p;
+		}
+	}
+}
@@ -46,6 +46,23 @@ public class KdTreeEuclideanSq_F64 implements KdTreeDistance<double[]> {
 		return sum;
 	}
 
+	@Override
+	public double distance(double[] a, double[] b, double bound) {
+		double sum = 0;
+
+		final int N = a.length;
+		// the bound is only checked every few elements to keep the inner loop tight
+		for (int i = 0; i < N && sum <= bound; ) {
+			final int end = Math.min(N,i+8);
+			for (; i < end; i++) {
+				double d = a[i]-b[i];
+				sum += d*d;
+			}
+		}
+
+		return sum;
+	}
+
 	@Override
 	public double valueAt(double[] point, int index) {
 		return point[index];
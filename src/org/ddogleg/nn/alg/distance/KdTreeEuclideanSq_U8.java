@@ -46,6 +46,23 @@ public class KdTreeEuclideanSq_U8 implements KdTreeDistance<byte[]> {
 		return sum;
 	}
 
+	@Override
+	public double distance(byte[] a, byte[] b, double bound) {
+		int sum = 0;
+
+		final int N = a.length;
+		// the bound is only checked every few elements to keep the inner loop tight
+		for (int i = 0; i < N && sum <= bound; ) {
+			final int end = Math.min(N,i+8);
+			for (; i < end; i++) {
+				double d = (a[i]&0xFF)-(b[i]&0xFF);
+				sum += d*d;
+			}
+		}
+
+		return sum;
+	}
+
 	@Override
 	public double valueAt(byte[] point, int index) {
 		return point[index]&0xFF;
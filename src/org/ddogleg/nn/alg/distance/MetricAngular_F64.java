@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg.distance;
+
+import org.ddogleg.nn.alg.DistanceMetric;
+
+/**
+ * Angle in radians between two vectors. A zero length vector has no direction, so it's treated as a
+ * single point which is &pi;/2 from every non-zero vector and 0 from itself. Angles between non-zero vectors
+ * are at most &pi; so this keeps the triangle inequality and d(x,x) = 0, which the {@link DistanceMetric}
+ * searches rely on.
+ *
+ * @author Peter Abeles
+ */
+public class MetricAngular_F64 implements DistanceMetric<double[]> {
+	@Override
+	public double distance(double[] a, double[] b) {
+		double dot = 0, normA = 0, normB = 0;
+		for (int i = 0; i < a.length; i++) {
+			dot += a[i]*b[i];
+			normA += a[i]*a[i];
+			normB += b[i]*b[i];
+		}
+		if( normA == 0 || normB == 0 )
+			return normA == normB ? 0 : Math.PI/2;
+		double cos = dot/Math.sqrt(normA*normB);
+		// round off error can push it outside the valid range
+		return Math.acos(Math.max(-1.0,Math.min(1.0,cos)));
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg.searches;
+
+import org.ddogleg.nn.alg.KdTreeDistance;
+import org.ddogleg.nn.alg.KdTreeFlat;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+
+/**
+ * <p>
+ * Exact nearest-neighbor search for {@link KdTreeFlat}. The nearer child is always searched first and the other
+ * child is only searched if it could contain a closer point. Instead of recursion the unexplored nodes are saved
+ * on a stack along with the closest distance any point inside of them could be from the target. Distance is
+ * Euclidean squared.
+ * </p>
+ *
+ * <p>
+ * Points are identified using their index inside the tree. Use {@link KdTreeFlat#indexes} to look up the original
+ * index.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeFlatSearch<P> {
+
+	// the targeted tree
+	KdTreeFlat tree;
+
+	// used to read the target's values
+	KdTreeDistance<P> distance;
+
+	// the maximum distance a neighbor is allowed to be
+	double maxDistanceSq = Double.MAX_VALUE;
+
+	// point being searched for
+	double[] target = new double[0];
+
+	// stack of nodes that still need to be searched and the closest a point in them can be
+	GrowQueue_I32 stackNode = new GrowQueue_I32();
+	GrowQueue_F64 stackBound = new GrowQueue_F64();
+
+	// the closest point found and its distance
+	int bestPoint;
+	double bestDistanceSq;
+
+	// max heap containing the N nearest-neighbors found so far
+	BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+
+	public KdTreeFlatSearch( KdTreeDistance<P> distance ) {
+		this.distance = distance;
+	}
+
+	public void setTree( KdTreeFlat tree ) {
+		this.tree = tree;
+	}
+
+	/**
+	 * Specifies the greatest distance it will search
+	 *
+	 * @param maxDistance Maximum distance (Euclidean squared) a closest point can be
+	 */
+	public void setMaxDistance( double maxDistance ) {
+		this.maxDistanceSq = maxDistance;
+	}
+
+	/**
+	 * Searches for the nearest neighbor to the target.
+	 *
+	 * @param target Point whose nearest neighbor is being searched for
+	 * @return index of the closest point inside the tree or -1 if none are within the maximum distance
+	 */
+	public int findNeighbor( P target ) {
+		bestPoint = -1;
+		bestDistanceSq = maxDistanceSq;
+
+		if( tree.numNodes == 0 )
+			return -1;
+
+		setTarget(target);
+		search(true);
+
+		return bestPoint;
+	}
+
+	/**
+	 * Distance of the closest point found by {@link #findNeighbor(Object)}
+	 */
+	public double getDistance() {
+		return bestDistanceSq;
+	}
+
+	/**
+	 * Searches for the N nearest-neighbors to the target. The output is not sorted.
+	 *
+	 * @param target Point whose nearest neighbor is being searched for
+	 * @param searchN Number of closest points it will find.  Must be {@code >=} 1
+	 * @param outputPoints (Output) index of each neighbor inside the tree
+	 * @param outputDistances (Output) distance of each neighbor
+	 */
+	public void findNeighbor( P target , int searchN , GrowQueue_I32 outputPoints , GrowQueue_F64 outputDistances ) {
+		if( searchN <= 0 )
+			throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+
+		outputPoints.reset();
+		outputDistances.reset();
+
+		if( tree.numNodes == 0 )
+			return;
+
+		heap.reset(searchN);
+
+		setTarget(target);
+		search(false);
+
+		for (int i = 0; i < heap.size; i++) {
+			outputPoints.add(heap.index[i]);
+			outputDistances.add(heap.value[i]);
+		}
+	}
+
+	private void setTarget( P target ) {
+		final int N = tree.N;
+		if( this.target.length != N )
+			this.target = new double[N];
+		for (int i = 0; i < N; i++) {
+			this.target[i] = distance.valueAt(target,i);
+		}
+	}
+
+	/**
+	 * Searches the tree using a stack
+	 *
+	 * @param single true if searching for the single best or false for N-best
+	 */
+	private void search( boolean single ) {
+		final int[] axis = tree.axis.data;
+		final double[] split = tree.split.data;
+		final int[] right = tree.right.data;
+
+		stackNode.reset();
+		stackBound.reset();
+		stackNode.add(0);
+		stackBound.add(0);
+
+		while( stackNode.size > 0 ) {
+			int node = stackNode.pop();
+			double bound = stackBound.pop();
+
+			// use new information to prune nodes
+			if( !canImprove(bound,single) )
+				continue;
+
+			// descend down to a leaf
+			while( axis[node] != -1 ) {
+				double dx = target[axis[node]] - split[node];
+				int nearer,further;
+				if( dx <= 0 ) {
+					nearer = node+1;
+					further = right[node];
+				} else {
+					nearer = right[node];
+					further = node+1;
+				}
+
+				// See if it is possible for 'further' to contain a better point
+				double furtherBound = Math.max(bound,dx*dx);
+				if( canImprove(furtherBound,single) ) {
+					stackNode.add(further);
+					stackBound.add(furtherBound);
+				}
+				node = nearer;
+			}
+
+			if( single )
+				checkLeaf1(node);
+			else
+				checkLeafN(node);
+		}
+	}
+
+	/**
+	 * Checks to see if it is possible for this distance to improve upon the current best
+	 */
+	private boolean canImprove( double distanceSq , boolean single ) {
+		if( single ) {
+			if( distanceSq <= bestDistanceSq )
+				return bestPoint == -1 || distanceSq < bestDistanceSq;
+			return false;
+		} else if( !heap.isFull() ) {
+			return distanceSq <= maxDistanceSq;
+		} else {
+			return distanceSq < heap.getTopValue();
+		}
+	}
+
+	/**
+	 * Searches all the points in a leaf for the nearest-neighbor
+	 */
+	private void checkLeaf1( int node ) {
+		final int N = tree.N;
+		final double[] points = tree.points.data;
+		final int end = tree.end.data[node];
+		for (int i = tree.begin.data[node]; i < end; i++) {
+			double d = distanceSq(points,i*N,N,bestDistanceSq);
+			if( d <= bestDistanceSq ) {
+				if( bestPoint == -1 || d < bestDistanceSq ) {
+					bestDistanceSq = d;
+					bestPoint = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Searches all the points in a leaf for the N nearest-neighbors
+	 */
+	private void checkLeafN( int node ) {
+		final int N = tree.N;
+		final double[] points = tree.points.data;
+		final int end = tree.end.data[node];
+		for (int i = tree.begin.data[node]; i < end; i++) {
+			double d = distanceSq(points,i*N,N,heap.isFull() ? heap.getTopValue() : maxDistanceSq);
+			if( !heap.isFull() ) {
+				if( d <= maxDistanceSq )
+					heap.push(i,d);
+			} else if( d < heap.getTopValue() ) {
+				heap.replaceTop(i,d);
+			}
+		}
+	}
+
+	/**
+	 * Euclidean distance squared to the target. Once the sum is more than the bound it stops early and returns
+	 * a value which is still more than the bound.
+	 */
+	private double distanceSq( double[] points , int offset , int N , double bound ) {
+		double sum = 0;
+		// the bound is only checked every few elements to keep the inner loop tight
+		for (int j = 0; j < N && sum <= bound; ) {
+			final int end = Math.min(N,j+8);
+			for (; j < end; j++) {
+				double d = points[offset+j] - target[j];
+				sum += d*d;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Creates a new instance of this search with the same configuration but independent internal state.
+	 */
+	public KdTreeFlatSearch<P> copy() {
+		return new KdTreeFlatSearch<>(distance);
+	}
+}
@@ -33,6 +33,9 @@ public class KdTreeSearch1Bbf<P> extends KdTreeSearchBestBinFirst<P> implements
 
 	// the best node so far
 	private KdTree.Node bestNode;
+	// the best point so far and its index
+	private Object bestPoint;
+	private int bestIndex;
 
 	/**
 	 * Configures the search
@@ -58,16 +61,43 @@ public class KdTreeSearch1Bbf<P> extends KdTreeSearchBestBinFirst<P> implements
 		return bestDistanceSq;
 	}
 
+	@Override
+	public P getPoint() {
+		return (P)bestPoint;
+	}
+
+	@Override
+	public int getIndex() {
+		return bestIndex;
+	}
+
+	@Override
+	public KdTreeSearch1<P> copy() {
+		return new KdTreeSearch1Bbf<>(distance,maxNodesSearched);
+	}
+
 	/**
 	 * Checks to see if the current node's point is the closet point found so far
 	 */
 	@Override
 	protected void checkBestDistance(KdTree.Node node, P target) {
-		double distanceSq = distance.distance((P)node.point,target);
+		if( node.isBucket() ) {
+			for (int i = 0; i < node.bucketSize; i++) {
+				checkBestDistance(node,node.bucketPoints[i],node.bucketIndexes[i],target);
+			}
+		} else {
+			checkBestDistance(node,node.point,node.index,target);
+		}
+	}
+
+	private void checkBestDistance(KdTree.Node node, Object point, int index, P target) {
+		double distanceSq = distance.distance((P)point,target,bestDistanceSq);
 		if( distanceSq <= bestDistanceSq ) {
 			if( bestNode == null || distanceSq < bestDistanceSq ) {
 				bestDistanceSq = distanceSq;
 				bestNode = node;
+				bestPoint = point;
+				bestIndex = index;
 			}
 		}
 	}
@@ -46,6 +46,9 @@ public class KdTreeSearch1Standard<P> implements KdTreeSearch1<P> {
 
 	// the node which has been found to be the closest so far
 	private KdTree.Node closest;
+	// the closest point and its index
+	private Object closestPoint;
+	private int closestIndex;
 
 	KdTreeDistance<P> distance;
 
@@ -88,11 +91,41 @@ public class KdTreeSearch1Standard<P> implements KdTreeSearch1<P> {
 		return closest;
 	}
 
+	/**
+	 * Checks to see if the point is closer than the best point found so far
+	 */
+	private void checkBestDistance( KdTree.Node node , Object point , int index ) {
+		double distSq = distance.distance((P)point,target,bestDistanceSq);
+		if( distSq <= bestDistanceSq ) {
+			if( closest == null || distSq < bestDistanceSq ) {
+				closest = node;
+				closestPoint = point;
+				closestIndex = index;
+				bestDistanceSq = distSq;
+			}
+		}
+	}
+
 	@Override
 	public double getDistance() {
 		return bestDistanceSq;
 	}
 
+	@Override
+	public P getPoint() {
+		return (P)closestPoint;
+	}
+
+	@Override
+	public int getIndex() {
+		return closestIndex;
+	}
+
+	@Override
+	public KdTreeSearch1<P> copy() {
+		return new KdTreeSearch1Standard<>(distance);
+	}
+
 	/**
 	 * Recursive step for finding the closest point
 	 */
@@ -102,25 +135,17 @@ public class KdTreeSearch1Standard<P> implements KdTreeSearch1<P> {
 			return;
 
 		if( node.isLeaf() ) {
-			// a leaf can be empty.
-			if( node.point != null ) {
-				double distSq = distance.distance((P)node.point,target);
-				if( distSq <= bestDistanceSq ) {
-					if( closest == null || distSq < bestDistanceSq ) {
-						closest = node;
-						bestDistanceSq = distSq;
-					}
+			if( node.isBucket() ) {
+				for (int i = 0; i < node.bucketSize; i++) {
+					checkBestDistance(node,node.bucketPoints[i],node.bucketIndexes[i]);
 				}
+			} else if( node.point != null ) {
+				// a leaf can be empty.
+				checkBestDistance(node,node.point,node.index);
 			}
 			return;
 		} else {
-			double distSq = distance.distance((P)node.point,target);
-			if( distSq <= bestDistanceSq ) {
-				if( closest == null || distSq < bestDistanceSq ) {
-					closest = node;
-					bestDistanceSq = distSq;
-				}
-			}
+			checkBestDistance(node,node.point,node.index);
 		}
 
 		// select the most promising branch to investigate first
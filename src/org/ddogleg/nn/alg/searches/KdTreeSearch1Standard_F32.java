@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg.searches;
+
+import org.ddogleg.nn.alg.KdTree;
+import org.ddogleg.nn.alg.KdTreeSearch1;
+
+/**
+ * Implementation of {@link KdTreeSearch1Standard} which is specialized for points of type float[]. Values and
+ * Euclidean squared distance are computed directly from the arrays instead of through
+ * {@link org.ddogleg.nn.alg.KdTreeDistance}.
+ *
+ * <p>DO NOT MODIFY. AUTOGENERATED CODE. GenerateKdTreeSearchStandard</p>
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeSearch1Standard_F32 implements KdTreeSearch1<float[]> {
+
+	// the targeted tree
+	private KdTree tree;
+
+	// point being searched for
+	private float[] target;
+
+	// the maximum distance a neighbor is allowed to be
+	private double maxDistanceSq = Double.MAX_VALUE;
+	// the closest neighbor which has yet to be found
+	private double bestDistanceSq;
+
+	// the node which has been found to be the closest so far
+	private KdTree.Node closest;
+	// the closest point and its index
+	private float[] closestPoint;
+	private int closestIndex;
+
+	@Override
+	public void setTree( KdTree tree ) {
+		this.tree = tree;
+	}
+
+	@Override
+	public void setMaxDistance(double maxDistance ) {
+		this.maxDistanceSq = maxDistance ;
+	}
+
+	@Override
+	public KdTree.Node findNeighbor(float[] target) {
+		if( tree.root == null )
+			return null;
+
+		this.target = target;
+		this.closest = null;
+		this.bestDistanceSq = maxDistanceSq;
+
+		stepClosest(tree.root);
+
+		return closest;
+	}
+
+	/**
+	 * Checks to see if the point is closer than the best point found so far
+	 */
+	private void checkBestDistance( KdTree.Node node , float[] point , int index ) {
+		final float[] target = this.target;
+		final int N = target.length;
+		float distSq = 0;
+		// stop once the point can't be accepted. Only checked every few elements to keep the inner loop tight
+		for (int i = 0; i < N && distSq <= bestDistanceSq; ) {
+			final int end = Math.min(N,i+8);
+			for (; i < end; i++) {
+				float d = point[i]-target[i];
+				distSq += d*d;
+			}
+		}
+		if( distSq <= bestDistanceSq ) {
+			if( closest == null || distSq < bestDistanceSq ) {
+				closest = node;
+				closestPoint = point;
+				closestIndex = index;
+				bestDistanceSq = distSq;
+			}
+		}
+	}
+
+	@Override
+	public double getDistance() {
+		return bestDistanceSq;
+	}
+
+	@Override
+	public float[] getPoint() {
+		return closestPoint;
+	}
+
+	@Override
+	public int getIndex() {
+		return closestIndex;
+	}
+
+	@Override
+	public KdTreeSearch1<float[]> copy() {
+		return new KdTreeSearch1Standard_F32();
+	}
+
+	/**
+	 * Recursive step for finding the closest point
+	 */
+	private void stepClosest(KdTree.Node node) {
+
+		if( node == null )
+			return;
+
+		if( node.isLeaf() ) {
+			if( node.isBucket() ) {
+				final Object[] bucketPoints = node.bucketPoints;
+				for (int i = 0; i < node.bucketSize; i++) {
+					checkBestDistance(node,(float[])bucketPoints[i],node.bucketIndexes[i]);
+				}
+			} else if( node.point != null ) {
+				// a leaf can be empty.
+				checkBestDistance(node,(float[])node.point,node.index);
+			}
+			return;
+		}
+
+		final float[] point = (float[])node.point;
+		checkBestDistance(node,point,node.index);
+
+		// select the most promising branch to investigate first
+		KdTree.Node nearer,further;
+
+		double splitValue = point[node.split];
+		double targetAtSplit = target[node.split];
+		if( targetAtSplit <= splitValue ) {
+			nearer = node.left;
+			further = node.right;
+		} else {
+			nearer = node.right;
+			further = node.left;
+		}
+
+		stepClosest(nearer);
+
+		// See if it is possible for 'further' to contain a better node
+		double dx = splitValue - targetAtSplit;
+		double dx2 = dx*dx;
+		if( dx2 <= bestDistanceSq ) {
+			if( closest == null || dx2 < bestDistanceSq )
+				stepClosest(further);
+		}
+	}
+
+}
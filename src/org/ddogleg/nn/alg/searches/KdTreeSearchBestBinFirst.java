@@ -50,7 +50,7 @@ import java.util.PriorityQueue;
 public abstract class KdTreeSearchBestBinFirst<P> {
 
 	// the maximum number of nodes it will search
-	private int maxNodesSearched;
+	protected int maxNodesSearched;
 
 	// dimension of point
 	protected int N;
@@ -60,19 +60,33 @@ public class KdTreeSearchNBbf<P> extends KdTreeSearchBestBinFirst<P> implements
 		_findClosest(target);
 	}
 
+	@Override
+	public KdTreeSearchN<P> copy() {
+		return new KdTreeSearchNBbf<>(distance,maxNodesSearched);
+	}
+
 	/**
 	 * Checks to see if the current node's point is the closet point found so far
 	 */
 	protected void checkBestDistance(KdTree.Node node, P target) {
+		if( node.isBucket() ) {
+			for (int i = 0; i < node.bucketSize; i++) {
+				checkBestDistance(node,node.bucketPoints[i],node.bucketIndexes[i],target);
+			}
+		} else {
+			checkBestDistance(node,node.point,node.index,target);
+		}
+	}
 
-		double distanceSq = distance.distance((P)node.point,target);
+	private void checkBestDistance(KdTree.Node node, Object point, int index, P target) {
+		double distanceSq = distance.distance((P)point,target,bestDistanceSq);
 		// <= because multiple nodes could be at the bestDistanceSq
 		if( distanceSq <= bestDistanceSq ) {
 
 			// see if the node is already in the list.  This is possible because there can be multiple trees
 			for( int i = 0; i < neighbors.size(); i++ ) {
 				KdTreeResult r = neighbors.get(i);
-				if( r.node.point == node.point )
+				if( r.point == point )
 					return;
 			}
 
@@ -82,6 +96,8 @@ public class KdTreeSearchNBbf<P> extends KdTreeSearchBestBinFirst<P> implements
 				KdTreeResult r = neighbors.grow();
 				r.distance = distanceSq;
 				r.node = node;
+				r.point = point;
+				r.index = index;
 				if( neighbors.size() == searchN ) {
 
 					// find the most distant node
@@ -101,6 +117,8 @@ public class KdTreeSearchNBbf<P> extends KdTreeSearchBestBinFirst<P> implements
 					KdTreeResult r = neighbors.get(i);
 					if( r.distance == bestDistanceSq ) {
 						r.node = node;
+						r.point = point;
+						r.index = index;
 						r.distance = distanceSq;
 						break;
 					}
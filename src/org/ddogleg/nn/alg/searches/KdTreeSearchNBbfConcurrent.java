@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg.searches;
+
+import org.ddogleg.nn.alg.KdTree;
+import org.ddogleg.nn.alg.KdTreeConcurrentTopK;
+import org.ddogleg.nn.alg.KdTreeDistance;
+
+/**
+ * Best-bin-first search which adds the points it finds to a {@link KdTreeConcurrentTopK} that's shared with other
+ * searches. Each thread searches its own tree with its own instance of this class. Branches are pruned using the
+ * shared threshold, so a good point found by one tree speeds up the search of the others.
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeSearchNBbfConcurrent<P> extends KdTreeSearchBestBinFirst<P> {
+
+	// where the results from all the searches are stored
+	private KdTreeConcurrentTopK results;
+
+	/**
+	 * Configures the search
+	 *
+	 * @param maxNodesSearched Maximum number of nodes it will search.  Used to limit CPU time.
+	 */
+	public KdTreeSearchNBbfConcurrent(KdTreeDistance<P> distance, int maxNodesSearched) {
+		super(distance,maxNodesSearched);
+	}
+
+	/**
+	 * Searches for the closest points
+	 *
+	 * @param target The point being searched for
+	 * @param results Shared storage for results. Must already be reset.
+	 */
+	public void findNeighbor( P target , KdTreeConcurrentTopK results ) {
+		this.results = results;
+		_findClosest(target);
+		this.results = null;
+	}
+
+	public void setMaxNodesSearched( int maxNodesSearched ) {
+		this.maxNodesSearched = maxNodesSearched;
+	}
+
+	@Override
+	protected void checkBestDistance(KdTree.Node node, P target) {
+		if( node.isBucket() ) {
+			for (int i = 0; i < node.bucketSize; i++) {
+				checkBestDistance(node,node.bucketPoints[i],node.bucketIndexes[i],target);
+			}
+		} else if( node.point != null ) {
+			checkBestDistance(node,node.point,node.index,target);
+		}
+	}
+
+	private void checkBestDistance(KdTree.Node node, Object point, int index, P target) {
+		double distanceSq = distance.distance((P)point,target,results.getThreshold());
+		results.offer(node,point,index,distanceSq);
+	}
+
+	@Override
+	protected boolean canImprove(double distanceSq) {
+		return results.canImprove(distanceSq);
+	}
+
+	public KdTreeSearchNBbfConcurrent<P> copy() {
+		return new KdTreeSearchNBbfConcurrent<>(distance,maxNodesSearched);
+	}
+}
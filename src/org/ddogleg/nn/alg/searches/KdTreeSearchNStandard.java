@@ -22,15 +22,17 @@ import org.ddogleg.nn.alg.KdTree;
 import org.ddogleg.nn.alg.KdTreeDistance;
 import org.ddogleg.nn.alg.KdTreeResult;
 import org.ddogleg.nn.alg.KdTreeSearchN;
+import org.ddogleg.nn.alg.KdTreeSearchRadius;
 import org.ddogleg.struct.FastQueue;
 
 /**
  * Standard algorithm for searching a {@link KdTree} for the nearest-neighbor of a search.
- * This is an adaptation of {@link KdTreeSearch1Standard} for N-nearest-neighbors.
+ * This is an adaptation of {@link KdTreeSearch1Standard} for N-nearest-neighbors. Can also find all the
+ * neighbors within a radius.
  *
  * @author Peter Abeles
  */
-public class KdTreeSearchNStandard<P> implements KdTreeSearchN<P> {
+public class KdTreeSearchNStandard<P> implements KdTreeSearchN<P>, KdTreeSearchRadius<P> {
 
 	// the targeted tree
 	private KdTree tree;
@@ -48,6 +50,10 @@ public class KdTreeSearchNStandard<P> implements KdTreeSearchN<P> {
 	// then number of nearest-neighbors it's searching for
 	private int searchN;
 
+	// radius search: maximum distance and the number of neighbors it stops at
+	private double radius;
+	private int maxResults;
+
 	KdTreeDistance<P> distance;
 
 	public KdTreeSearchNStandard(KdTreeDistance<P> distance) {
@@ -91,6 +97,85 @@ public class KdTreeSearchNStandard<P> implements KdTreeSearchN<P> {
 		stepClosest(tree.root,results);
 	}
 
+	/**
+	 * Finds all the nodes which are within the radius of 'target'.
+	 *
+	 * @param target A point
+	 * @param radius Maximum distance (Euclidean squared) a neighbor can be
+	 * @param maxResults The search stops after this many neighbors are found. No limit if {@code <=} 0
+	 * @param results Storage for the found neighbors
+	 */
+	@Override
+	public void findRadius(P target, double radius, int maxResults, FastQueue<KdTreeResult> results) {
+		if( radius < 0 )
+			throw new IllegalArgumentException("The radius must be >= 0");
+
+		if( tree.root == null )
+			return;
+
+		this.target = target;
+		this.radius = radius;
+		this.maxResults = maxResults <= 0 ? Integer.MAX_VALUE : results.size + maxResults;
+
+		stepRadius(tree.root,results);
+	}
+
+	@Override
+	public KdTreeSearchNStandard<P> copy() {
+		return new KdTreeSearchNStandard<>(distance);
+	}
+
+	/**
+	 * Recursive step for finding all the points inside the radius
+	 */
+	private void stepRadius(KdTree.Node node , FastQueue<KdTreeResult> neighbors ) {
+		if( node == null || neighbors.size >= maxResults )
+			return;
+
+		if( node.isBucket() ) {
+			for (int i = 0; i < node.bucketSize && neighbors.size < maxResults; i++) {
+				checkRadius(node,node.bucketPoints[i],node.bucketIndexes[i],neighbors);
+			}
+		} else if( node.point != null ) {
+			checkRadius(node,node.point,node.index,neighbors);
+		}
+
+		if( node.isLeaf() ) {
+			return;
+		}
+
+		KdTree.Node nearer,further;
+
+		double splitValue = distance.valueAt((P)node.point, node.split );
+		double targetAtSplit = distance.valueAt(target,node.split);
+		if( targetAtSplit<= splitValue ) {
+			nearer = node.left;
+			further = node.right;
+		} else {
+			nearer = node.right;
+			further = node.left;
+		}
+
+		stepRadius(nearer,neighbors);
+
+		// the other side can only contain a neighbor if the splitting plane is inside the radius
+		double dx = splitValue - targetAtSplit;
+		if( dx*dx <= radius ) {
+			stepRadius(further,neighbors);
+		}
+	}
+
+	private void checkRadius(KdTree.Node node, Object point, int index, FastQueue<KdTreeResult> neighbors) {
+		double distSq = distance.distance((P)point,target,radius);
+		if( distSq <= radius ) {
+			KdTreeResult r = neighbors.grow();
+			r.distance = distSq;
+			r.node = node;
+			r.point = point;
+			r.index = index;
+		}
+	}
+
 	/**
 	 * Recursive step for finding the closest point
 	 */
@@ -135,7 +220,17 @@ public class KdTreeSearchNStandard<P> implements KdTreeSearchN<P> {
 	 * See if the node being considered is a new nearest-neighbor
 	 */
 	private void checkBestDistance(KdTree.Node node, FastQueue<KdTreeResult> neighbors) {
-		double distSq = distance.distance((P)node.point,target);
+		if( node.isBucket() ) {
+			for (int i = 0; i < node.bucketSize; i++) {
+				checkBestDistance(node,node.bucketPoints[i],node.bucketIndexes[i],neighbors);
+			}
+		} else {
+			checkBestDistance(node,node.point,node.index,neighbors);
+		}
+	}
+
+	private void checkBestDistance(KdTree.Node node, Object point, int index, FastQueue<KdTreeResult> neighbors) {
+		double distSq = distance.distance((P)point,target,mostDistantNeighborSq);
 		// <= because multiple nodes could be at the bestDistanceSq
 		if( distSq <= mostDistantNeighborSq) {
 			if( neighbors.size() < searchN ) {
@@ -144,6 +239,8 @@ public class KdTreeSearchNStandard<P> implements KdTreeSearchN<P> {
 				KdTreeResult r = neighbors.grow();
 				r.distance = distSq;
 				r.node = node;
+				r.point = point;
+				r.index = index;
 				if( neighbors.size() == searchN ) {
 					// find the most distant
 					mostDistantNeighborSq = -1;
@@ -167,6 +264,8 @@ public class KdTreeSearchNStandard<P> implements KdTreeSearchN<P> {
 				// and update the maximum distance
 				KdTreeResult r = neighbors.get(mostDistantNeighborIndex);
 				r.node = node;
+				r.point = point;
+				r.index = index;
 				r.distance = distSq;
 
 				// If there are multiple points then there can be more than one point with the value of
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg.searches;
+
+import org.ddogleg.nn.alg.KdTree;
+import org.ddogleg.nn.alg.KdTreeResult;
+import org.ddogleg.nn.alg.KdTreeSearchN;
+import org.ddogleg.nn.alg.KdTreeSearchRadius;
+import org.ddogleg.struct.FastQueue;
+
+/**
+ * Implementation of {@link KdTreeSearchNStandard} which is specialized for points of type float[]. Values and
+ * Euclidean squared distance are computed directly from the arrays instead of through
+ * {@link org.ddogleg.nn.alg.KdTreeDistance}.
+ *
+ * <p>DO NOT MODIFY. AUTOGENERATED CODE. GenerateKdTreeSearchStandard</p>
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeSearchNStandard_F32 implements KdTreeSearchN<float[]>, KdTreeSearchRadius<float[]> {
+
+	// the targeted tree
+	private KdTree tree;
+
+	// point being searched for
+	private float[] target;
+
+	// the maximum distance a neighbor is allowed to be
+	private double maxDistanceSq = Double.MAX_VALUE;
+	// distance of the farthest neighbor
+	private double mostDistantNeighborSq;
+	// index of most distant neighbor
+	private int mostDistantNeighborIndex;
+
+	// then number of nearest-neighbors it's searching for
+	private int searchN;
+
+	// radius search: maximum distance and the number of neighbors it stops at
+	private double radius;
+	private int maxResults;
+
+	@Override
+	public void setTree( KdTree tree ) {
+		this.tree = tree;
+	}
+
+	@Override
+	public void setMaxDistance(double maxDistance ) {
+		this.maxDistanceSq = maxDistance;
+	}
+
+	@Override
+	public void findNeighbor(float[] target, int searchN, FastQueue<KdTreeResult> results) {
+		if( searchN <= 0 )
+			throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+
+		if( tree.root == null )
+			return;
+
+		this.searchN = searchN;
+		this.target = target;
+		this.mostDistantNeighborSq = maxDistanceSq;
+
+		stepClosest(tree.root,results);
+	}
+
+	@Override
+	public void findRadius(float[] target, double radius, int maxResults, FastQueue<KdTreeResult> results) {
+		if( radius < 0 )
+			throw new IllegalArgumentException("The radius must be >= 0");
+
+		if( tree.root == null )
+			return;
+
+		this.target = target;
+		this.radius = radius;
+		this.maxResults = maxResults <= 0 ? Integer.MAX_VALUE : results.size + maxResults;
+
+		stepRadius(tree.root,results);
+	}
+
+	@Override
+	public KdTreeSearchNStandard_F32 copy() {
+		return new KdTreeSearchNStandard_F32();
+	}
+
+	/**
+	 * Recursive step for finding all the points inside the radius
+	 */
+	private void stepRadius(KdTree.Node node , FastQueue<KdTreeResult> neighbors ) {
+		if( node == null || neighbors.size >= maxResults )
+			return;
+
+		if( node.isBucket() ) {
+			final Object[] bucketPoints = node.bucketPoints;
+			for (int i = 0; i < node.bucketSize && neighbors.size < maxResults; i++) {
+				checkRadius(node,(float[])bucketPoints[i],node.bucketIndexes[i],neighbors);
+			}
+		} else if( node.point != null ) {
+			checkRadius(node,(float[])node.point,node.index,neighbors);
+		}
+
+		if( node.isLeaf() ) {
+			return;
+		}
+
+		KdTree.Node nearer,further;
+
+		double splitValue = ((float[])node.point)[node.split];
+		double targetAtSplit = target[node.split];
+		if( targetAtSplit <= splitValue ) {
+			nearer = node.left;
+			further = node.right;
+		} else {
+			nearer = node.right;
+			further = node.left;
+		}
+
+		stepRadius(nearer,neighbors);
+
+		// the other side can only contain a neighbor if the splitting plane is inside the radius
+		double dx = splitValue - targetAtSplit;
+		if( dx*dx <= radius ) {
+			stepRadius(further,neighbors);
+		}
+	}
+
+	private void checkRadius(KdTree.Node node, float[] point, int index, FastQueue<KdTreeResult> neighbors) {
+		final float[] target = this.target;
+		final int N = target.length;
+		float distSq = 0;
+		// stop once the point can't be accepted. Only checked every few elements to keep the inner loop tight
+		for (int i = 0; i < N && distSq <= radius; ) {
+			final int end = Math.min(N,i+8);
+			for (; i < end; i++) {
+				float d = point[i]-target[i];
+				distSq += d*d;
+			}
+		}
+
+		if( distSq <= radius ) {
+			KdTreeResult r = neighbors.grow();
+			r.distance = distSq;
+			r.node = node;
+			r.point = point;
+			r.index = index;
+		}
+	}
+
+	/**
+	 * Recursive step for finding the closest point
+	 */
+	private void stepClosest(KdTree.Node node , FastQueue<KdTreeResult> neighbors ) {
+
+		if( node == null )
+			return;
+
+		if( node.isBucket() ) {
+			final Object[] bucketPoints = node.bucketPoints;
+			for (int i = 0; i < node.bucketSize; i++) {
+				checkBestDistance(node,(float[])bucketPoints[i],node.bucketIndexes[i],neighbors);
+			}
+		} else if( node.point != null ) {
+			checkBestDistance(node,(float[])node.point,node.index,neighbors);
+		}
+
+		if( node.isLeaf() ) {
+			return;
+		}
+
+		// select the most promising branch to investigate first
+		KdTree.Node nearer,further;
+
+		double splitValue = ((float[])node.point)[node.split];
+		double targetAtSplit = target[node.split];
+		if( targetAtSplit <= splitValue ) {
+			nearer = node.left;
+			further = node.right;
+		} else {
+			nearer = node.right;
+			further = node.left;
+		}
+
+		stepClosest(nearer,neighbors);
+
+		// See if it is possible for 'further' to contain a better node
+		// Or if N matches have yet to be find, if it is possible to meet the maximum distance requirement
+		double dx = splitValue - targetAtSplit;
+		if( dx*dx <= mostDistantNeighborSq) {
+			if( neighbors.size() < searchN || dx*dx < mostDistantNeighborSq) {
+				stepClosest(further,neighbors);
+			}
+		}
+	}
+
+	/**
+	 * See if the point being considered is a new nearest-neighbor
+	 */
+	private void checkBestDistance(KdTree.Node node, float[] point, int index, FastQueue<KdTreeResult> neighbors) {
+		final float[] target = this.target;
+		final int N = target.length;
+		float distSq = 0;
+		// stop once the point can't be accepted. Only checked every few elements to keep the inner loop tight
+		for (int i = 0; i < N && distSq <= mostDistantNeighborSq; ) {
+			final int end = Math.min(N,i+8);
+			for (; i < end; i++) {
+				float d = point[i]-target[i];
+				distSq += d*d;
+			}
+		}
+
+		// <= because multiple nodes could be at the bestDistanceSq
+		if( distSq > mostDistantNeighborSq)
+			return;
+
+		KdTreeResult r;
+		if( neighbors.size() < searchN ) {
+			// the list of nearest neighbors isn't full yet so it doesn't know what the distance will be
+			// so just keep on adding them to the list until it is full
+			r = neighbors.grow();
+		} else {
+			// Write over the most distant neighbor since we known this node must be closer
+			r = neighbors.get(mostDistantNeighborIndex);
+		}
+		r.distance = distSq;
+		r.node = node;
+		r.point = point;
+		r.index = index;
+
+		if( neighbors.size() == searchN ) {
+			// If there are multiple points then there can be more than one point with the value of
+			// 'bestDistanceSq', which is why two searches are required
+			mostDistantNeighborSq = -1;
+			for( int i = 0; i < searchN; i++ ) {
+				r = neighbors.get(i);
+				if( r.distance > mostDistantNeighborSq ) {
+					mostDistantNeighborSq = r.distance;
+					mostDistantNeighborIndex = i;
+				}
+			}
+		}
+	}
+
+}
@@ -23,13 +23,24 @@ import org.ddogleg.nn.NnData;
 import org.ddogleg.nn.alg.*;
 import org.ddogleg.nn.alg.searches.KdTreeSearch1Bbf;
 import org.ddogleg.nn.alg.searches.KdTreeSearchNBbf;
+import org.ddogleg.nn.alg.searches.KdTreeSearchNBbfConcurrent;
 import org.ddogleg.struct.FastQueue;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * K-D tree search which searches through multiple trees.  The search is performed using a Best-Bin-First approach
  *
+ * If concurrent is set to true then the trees are constructed in parallel using {@link KdTreeConstructor_MT}. Each
+ * tree has its own copy of the {@link AxisSplitter}.
+ *
+ * If concurrentSearch is set to true then each tree is searched by its own thread to reduce the latency of a
+ * single query. The results are merged in a {@link KdTreeConcurrentTopK} and its threshold is used by all the
+ * threads to prune branches. Each tree is allowed to search maxNodesSearched divided by the number of trees nodes.
+ *
  * @author Peter Abeles
  */
 public class KdForestBbfSearch<P> implements NearestNeighbor<P> {
@@ -40,15 +51,30 @@ public class KdForestBbfSearch<P> implements NearestNeighbor<P> {
 	// creates the set of K-D trees given the same input
 	KdTreeConstructor<P> constructor;
 
-	KdTreeSearch1Bbf search1;
-	KdTreeSearchNBbf searchN;
+	KdTreeSearch1Bbf<P> search1;
+	KdTreeSearchNBbf<P> searchN;
+	// search for a single tree which is used when searching concurrently
+	KdTreeSearchNBbfConcurrent<P> searchTree;
+
+	// maximum number of nodes the searches will consider
+	int maxNodesSearched;
 
 	AxisSplitter<P> splitter;
 
 	KdTreeMemory<P> memory = new KdTreeMemory<>();
 
-	// storage for multiple results
-	FastQueue<KdTreeResult> found = new FastQueue<>(KdTreeResult.class,true);
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch;
+
+	// If true the trees will be constructed concurrently
+	boolean concurrent = false;
+	// Constructors used when concurrent. One for each tree
+	List<KdTreeConstructor_MT<P>> constructorsMT = new ArrayList<>();
+	// Storage for tasks which construct each tree
+	List<ForkJoinTask<KdTree>> tasks = new ArrayList<>();
+
+	// If true each tree will be searched in its own thread
+	boolean concurrentSearch = false;
 
 	public KdForestBbfSearch(int numberOfTrees,
 							 int maxNodesSearched,
@@ -56,9 +82,12 @@ public class KdForestBbfSearch<P> implements NearestNeighbor<P> {
 							 AxisSplitter<P> splitter) {
 		this.forest = new KdTree[ numberOfTrees ];
 		this.splitter = splitter;
+		this.maxNodesSearched = maxNodesSearched;
 		this.search1 = new KdTreeSearch1Bbf<>(distance,maxNodesSearched);
 		this.searchN = new KdTreeSearchNBbf<>(distance,maxNodesSearched);
+		this.searchTree = new KdTreeSearchNBbfConcurrent<>(distance,maxNodesSearched);
 		this.constructor = new KdTreeConstructor<P>(memory,splitter);
+		this.internalSearch = new InternalSearch(search1,searchN);
 	}
 
 	@Override
@@ -67,47 +96,202 @@ public class KdForestBbfSearch<P> implements NearestNeighbor<P> {
 			for( int i = 0; i < forest.length; i++ )
 				memory.recycleGraph(forest[i]);
 		}
-		for( int i = 0; i < forest.length; i++ )
-			forest[i] = constructor.construct(points,trackIndicies);
-		search1.setTrees(forest);
-		searchN.setTrees(forest);
+		if( concurrent ) {
+			constructConcurrent(points, trackIndicies);
+		} else {
+			for( int i = 0; i < forest.length; i++ )
+				forest[i] = constructor.construct(points,trackIndicies);
+		}
+	}
+
+	/**
+	 * Constructs each tree in its own task
+	 */
+	private void constructConcurrent(List<P> points, boolean trackIndicies) {
+		// copy the splitter for each tree once so that random trees are deterministic
+		if( constructorsMT.isEmpty() ) {
+			for( int i = 0; i < forest.length; i++ ) {
+				constructorsMT.add(new KdTreeConstructor_MT<>(memory,splitter.copy()));
+			}
+		}
+
+		tasks.clear();
+		for( int i = 0; i < forest.length; i++ ) {
+			KdTreeConstructor_MT<P> alg = constructorsMT.get(i);
+			alg.setMaxLeafSize(constructor.getMaxLeafSize());
+			tasks.add(ForkJoinPool.commonPool().submit(()->alg.construct(points,trackIndicies)));
+		}
+		for( int i = 0; i < forest.length; i++ ) {
+			forest[i] = tasks.get(i).join();
+		}
+		tasks.clear();
 	}
 
 	@Override
 	public boolean findNearest(P point, double maxDistance, NnData<P> result) {
-		if( maxDistance < 0 )
-			search1.setMaxDistance(Double.MAX_VALUE);
-		else
-			search1.setMaxDistance(maxDistance);
-		KdTree.Node found = search1.findNeighbor(point);
-		if( found == null )
-			return false;
-
-		result.point = (P)found.point;
-		result.index = found.index;
-		result.distance = search1.getDistance();
-
-		return true;
+		return internalSearch.findNearest(point,maxDistance,result);
 	}
 
 	@Override
 	public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
-		results.reset();
-		if( maxDistance <= 0 )
-			searchN.setMaxDistance(Double.MAX_VALUE);
-		else
-			searchN.setMaxDistance(maxDistance);
-
-		found.reset();
-		searchN.findNeighbor(point, numNeighbors, found);
-
-		for( int i = 0; i < found.size; i++ ) {
-			KdTreeResult k = found.get(i);
-			NnData<P> r = results.grow();
-
-			r.point = (P)k.node.point;
-			r.index = k.node.index;
-			r.distance = k.distance;
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<P> createSearch() {
+		return new InternalSearch((KdTreeSearch1Bbf<P>)search1.copy(),(KdTreeSearchNBbf<P>)searchN.copy());
+	}
+
+	/**
+	 * Searches the forest using its own copy of the search algorithms and storage.  The forest is only read.
+	 */
+	private class InternalSearch implements Search<P> {
+		KdTreeSearch1Bbf<P> search1;
+		KdTreeSearchNBbf<P> searchN;
+
+		// storage for multiple results
+		FastQueue<KdTreeResult> found = new FastQueue<>(KdTreeResult.class,true);
+
+		// used when searching concurrently. One search for each tree
+		List<KdTreeSearchNBbfConcurrent<P>> searches = new ArrayList<>();
+		List<ForkJoinTask<?>> searchTasks = new ArrayList<>();
+		KdTreeConcurrentTopK topK = new KdTreeConcurrentTopK();
+
+		InternalSearch(KdTreeSearch1Bbf<P> search1, KdTreeSearchNBbf<P> searchN) {
+			this.search1 = search1;
+			this.searchN = searchN;
+		}
+
+		@Override
+		public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+			if( concurrentSearch ) {
+				searchConcurrent(point,maxDistance < 0 ? Double.MAX_VALUE : maxDistance,1);
+				if( found.size == 0 )
+					return false;
+				KdTreeResult k = found.get(0);
+				result.point = (P)k.point;
+				result.index = k.index;
+				result.distance = k.distance;
+				return true;
+			}
+
+			search1.setTrees(forest);
+			if( maxDistance < 0 )
+				search1.setMaxDistance(Double.MAX_VALUE);
+			else
+				search1.setMaxDistance(maxDistance);
+			KdTree.Node found = search1.findNeighbor(point);
+			if( found == null )
+				return false;
+
+			result.point = search1.getPoint();
+			result.index = search1.getIndex();
+			result.distance = search1.getDistance();
+
+			return true;
 		}
+
+		@Override
+		public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+			results.reset();
+			if( maxDistance <= 0 )
+				maxDistance = Double.MAX_VALUE;
+
+			if( concurrentSearch ) {
+				searchConcurrent(point,maxDistance,numNeighbors);
+			} else {
+				searchN.setTrees(forest);
+				searchN.setMaxDistance(maxDistance);
+				found.reset();
+				searchN.findNeighbor(point, numNeighbors, found);
+			}
+
+			for( int i = 0; i < found.size; i++ ) {
+				KdTreeResult k = found.get(i);
+				NnData<P> r = results.grow();
+
+				r.point = (P)k.point;
+				r.index = k.index;
+				r.distance = k.distance;
+			}
+		}
+
+		/**
+		 * Searches each tree in its own task. The calling thread searches the first tree. Results are
+		 * written to 'found'.
+		 */
+		private void searchConcurrent( P point , double maxDistance , int numNeighbors ) {
+			if( numNeighbors <= 0 )
+				throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+			while( searches.size() < forest.length ) {
+				searches.add(searchTree.copy());
+			}
+
+			topK.reset(numNeighbors,maxDistance);
+			int nodesPerTree = Math.max(1,maxNodesSearched/forest.length);
+			for (int i = 0; i < forest.length; i++) {
+				KdTreeSearchNBbfConcurrent<P> search = searches.get(i);
+				search.setTree(forest[i]);
+				search.setMaxDistance(maxDistance);
+				search.setMaxNodesSearched(nodesPerTree);
+			}
+
+			searchTasks.clear();
+			for (int i = 1; i < forest.length; i++) {
+				KdTreeSearchNBbfConcurrent<P> search = searches.get(i);
+				searchTasks.add(ForkJoinPool.commonPool().submit(()->search.findNeighbor(point,topK)));
+			}
+			searches.get(0).findNeighbor(point,topK);
+			for (int i = 0; i < searchTasks.size(); i++) {
+				searchTasks.get(i).join();
+			}
+			searchTasks.clear();
+
+			topK.getResults(found);
+		}
+	}
+
+	/**
+	 * Specifies the maximum number of points in a leaf. See {@link KdTreeConstructor#setMaxLeafSize(int)}.
+	 * Takes effect the next time {@link #setPoints} is called.
+	 */
+	public void setMaxLeafSize( int maxLeafSize ) {
+		constructor.setMaxLeafSize(maxLeafSize);
+	}
+
+	/**
+	 * Returns the trees created by the most recent call to {@link #setPoints}. Can be saved using
+	 * {@link KdForestMapped#save}.
+	 */
+	public KdTree[] getForest() {
+		return forest;
+	}
+
+	public int getMaxNodesSearched() {
+		return maxNodesSearched;
+	}
+
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
+	public boolean isConcurrentSearch() {
+		return concurrentSearch;
+	}
+
+	/**
+	 * Specifies if each tree should be searched by its own thread. Reduces the latency of a single search but
+	 * should be turned off if many searches are already being run in parallel.
+	 */
+	public void setConcurrentSearch(boolean concurrentSearch) {
+		this.concurrentSearch = concurrentSearch;
+	}
+
+	/**
+	 * Specifies if the trees should be constructed concurrently. Takes effect the next time {@link #setPoints}
+	 * is called.
+	 */
+	public void setConcurrent(boolean concurrent) {
+		this.concurrent = concurrent;
 	}
 }
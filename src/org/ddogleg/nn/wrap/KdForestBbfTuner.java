@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.wrap;
+
+import org.ddogleg.nn.FactoryNearestNeighbor;
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.alg.ExhaustiveNeighbor;
+import org.ddogleg.nn.alg.KdTreeDistance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * Selects the number of trees and maximum number of nodes searched for {@link KdForestBbfSearch}. Each candidate
+ * configuration is evaluated on a sample of the data. Its recall is the fraction of queries where the true nearest
+ * neighbor, found using {@link ExhaustiveNeighbor}, is returned and its speed is the average time to process a
+ * query. The fastest configuration which meets the target recall is selected. Similar to the auto tuning in
+ * FLANN [1].
+ * </p>
+ *
+ * <p>
+ * Queries are randomly selected from the sample and removed from the set of points being searched. For each
+ * number of trees the maximum nodes searched is increased until the target recall is reached, since searching
+ * more nodes will only be slower.
+ * </p>
+ *
+ * <p>
+ * [1] Muja, Marius, and David G. Lowe. "Fast approximate nearest neighbors with automatic algorithm configuration."
+ * VISAPP (1) 2.331-340 (2009): 2.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class KdForestBbfTuner<P> {
+
+	// Specifies how distance is computed between two points
+	KdTreeDistance<P> distance;
+
+	// Number of trees which are considered. Sorted from smallest to largest
+	int[] candidateTrees = new int[]{1,2,4,8,16};
+	// Maximum number of nodes searched which are considered. Sorted from smallest to largest
+	int[] candidateNodes = new int[]{16,32,64,128,256,512,1024,2048,4096};
+
+	// Number of nodes that are considered when generating a tree. See kdRandomForest()
+	int numConsiderSplit = 5;
+
+	// Number of points in the sample used as queries
+	int numQueries = 200;
+
+	// Number of times the queries are timed. The fastest time is used
+	int numTrials = 3;
+
+	// Seed for the random number generator
+	long randomSeed;
+	Random rand;
+
+	// Every configuration which was evaluated
+	List<Configuration> evaluated = new ArrayList<>();
+
+	/**
+	 * Configures the tuner
+	 *
+	 * @param distance Specifies how distance is computed between two points.
+	 * @param randomSeed Seed used to select queries and to generate the trees
+	 */
+	public KdForestBbfTuner( KdTreeDistance<P> distance , long randomSeed ) {
+		this.distance = distance;
+		this.randomSeed = randomSeed;
+	}
+
+	/**
+	 * Finds the fastest configuration that achieves the target recall. If no configuration reaches the target recall
+	 * then the configuration with the highest recall is returned.
+	 *
+	 * @param sample A sample of the points which are to be searched. Not modified.
+	 * @param targetRecall Fraction of queries, from 0 to 1, where the true nearest-neighbor must be found.
+	 * @return The selected configuration
+	 */
+	public Configuration tune( List<P> sample , double targetRecall ) {
+		if( sample.size() < 2 )
+			throw new IllegalArgumentException("The sample must contain at least two points");
+		if( targetRecall < 0 || targetRecall > 1 )
+			throw new IllegalArgumentException("Target recall must be from 0 to 1");
+
+		rand = new Random(randomSeed);
+		evaluated.clear();
+
+		// randomly split the sample into queries and points which will be searched
+		List<P> points = new ArrayList<>(sample);
+		List<P> queries = new ArrayList<>();
+		int numQueries = Math.min(this.numQueries,points.size()/2);
+		for (int i = 0; i < numQueries; i++) {
+			int selected = rand.nextInt(points.size());
+			queries.add(points.get(selected));
+			points.set(selected,points.get(points.size()-1));
+			points.remove(points.size()-1);
+		}
+
+		// Distance to the true nearest-neighbor of each query
+		double[] solutions = new double[queries.size()];
+		ExhaustiveNeighbor<P> exhaustive = new ExhaustiveNeighbor<>(distance);
+		exhaustive.setPoints(points);
+		for (int i = 0; i < queries.size(); i++) {
+			exhaustive.findClosest(queries.get(i),Double.MAX_VALUE);
+			solutions[i] = exhaustive.getBestDistance();
+		}
+
+		Configuration best = null;
+		Configuration bestRecall = null;
+		for( int numTrees : candidateTrees ) {
+			for( int maxNodes : candidateNodes ) {
+				Configuration c = evaluate(numTrees,maxNodes,points,queries,solutions);
+				evaluated.add(c);
+
+				if( bestRecall == null || c.recall > bestRecall.recall )
+					bestRecall = c;
+
+				if( c.recall >= targetRecall ) {
+					if( best == null || c.queryTime < best.queryTime )
+						best = c;
+					break;
+				}
+			}
+		}
+
+		return best != null ? best : bestRecall;
+	}
+
+	/**
+	 * Computes the recall and speed of the specified configuration
+	 */
+	private Configuration evaluate( int numTrees , int maxNodes , List<P> points , List<P> queries ,
+									double[] solutions ) {
+		NearestNeighbor<P> alg = create(numTrees,maxNodes);
+		alg.setPoints(points,false);
+		NearestNeighbor.Search<P> search = alg.createSearch();
+		NnData<P> result = new NnData<>();
+
+		Configuration c = new Configuration();
+		c.numTrees = numTrees;
+		c.maxNodesSearched = maxNodes;
+		c.queryTime = Double.MAX_VALUE;
+
+		for (int trial = 0; trial < numTrials; trial++) {
+			int numCorrect = 0;
+			long before = System.nanoTime();
+			for (int i = 0; i < queries.size(); i++) {
+				// compare distances so that points which are at the same distance are treated as correct
+				if( search.findNearest(queries.get(i),-1,result) && result.distance <= solutions[i] )
+					numCorrect++;
+			}
+			long after = System.nanoTime();
+
+			c.recall = numCorrect/(double)queries.size();
+			c.queryTime = Math.min(c.queryTime,(after-before)*1e-9/queries.size());
+		}
+
+		return c;
+	}
+
+	/**
+	 * Creates a forest with the specified settings
+	 */
+	private NearestNeighbor<P> create( int numTrees , int maxNodes ) {
+		return FactoryNearestNeighbor.kdRandomForest(distance,maxNodes,numTrees,numConsiderSplit,rand.nextLong());
+	}
+
+	/**
+	 * Creates a {@link KdForestBbfSearch} using the configuration
+	 *
+	 * @param c Configuration which was selected
+	 * @param randomSeed Seed for the random number generator
+	 * @return {@link NearestNeighbor} implementation
+	 */
+	public NearestNeighbor<P> create( Configuration c , long randomSeed ) {
+		return FactoryNearestNeighbor.kdRandomForest(distance,c.maxNodesSearched,c.numTrees,numConsiderSplit,randomSeed);
+	}
+
+	/**
+	 * Returns every configuration evaluated in the most recent call to {@link #tune}.
+	 */
+	public List<Configuration> getEvaluated() {
+		return evaluated;
+	}
+
+	public int[] getCandidateTrees() {
+		return candidateTrees;
+	}
+
+	public void setCandidateTrees(int[] candidateTrees) {
+		this.candidateTrees = candidateTrees;
+	}
+
+	public int[] getCandidateNodes() {
+		return candidateNodes;
+	}
+
+	public void setCandidateNodes(int[] candidateNodes) {
+		this.candidateNodes = candidateNodes;
+	}
+
+	public int getNumConsiderSplit() {
+		return numConsiderSplit;
+	}
+
+	public void setNumConsiderSplit(int numConsiderSplit) {
+		this.numConsiderSplit = numConsiderSplit;
+	}
+
+	public int getNumQueries() {
+		return numQueries;
+	}
+
+	public void setNumQueries(int numQueries) {
+		this.numQueries = numQueries;
+	}
+
+	public int getNumTrials() {
+		return numTrials;
+	}
+
+	public void setNumTrials(int numTrials) {
+		this.numTrials = numTrials;
+	}
+
+	/**
+	 * Settings for {@link KdForestBbfSearch} and how well they performed
+	 */
+	public static class Configuration {
+		/** Number of trees in the forest */
+		public int numTrees;
+		/** Maximum number of nodes searched */
+		public int maxNodesSearched;
+		/** Fraction of queries where the true nearest-neighbor was found */
+		public double recall;
+		/** Average time to process a single query in seconds */
+		public double queryTime;
+
+		@Override
+		public String toString() {
+			return String.format("trees=%d nodes=%d recall=%.3f query=%.2e s",
+					numTrees,maxNodesSearched,recall,queryTime);
+		}
+	}
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.wrap;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.alg.AxisSplitterMedian;
+import org.ddogleg.nn.alg.KdTree;
+import org.ddogleg.nn.alg.KdTreeConstructor;
+import org.ddogleg.nn.alg.KdTreeDistance;
+import org.ddogleg.nn.alg.KdTreeMemory;
+import org.ddogleg.struct.BoundedMaxHeap_F64;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_B;
+import org.ddogleg.struct.GrowQueue_I32;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * {@link NearestNeighbor} search using a set of {@link KdTree K-D trees} which can have points added and removed
+ * without rebuilding everything. Points are organized using the logarithmic method. New points are first put into a
+ * small buffer which is searched exhaustively. When the buffer is full it and the smaller trees are merged into a
+ * single tree, where the tree at level i can have at most bufferSize*2<sup>i</sup> points. Removed points are marked
+ * and skipped during the search. A tree is rebuilt once more than half of its points have been removed. Updating
+ * a few points is much cheaper than calling {@link #setPoints} again. Search is exact and distance is Euclidean
+ * squared.
+ * </p>
+ *
+ * <p>
+ * Each point has an index. Points passed in to {@link #setPoints} have the same index as in the list and
+ * {@link #add} returns the index of a new point. The index of a removed point can be reused by a later call to
+ * {@link #add}.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeDynamicNearestNeighbor<P> implements NearestNeighbor<P> {
+
+	// Level of a point which is in the buffer
+	private static final int IN_BUFFER = -1;
+	// Level of an index which is not assigned to a point
+	private static final int UNUSED = -2;
+
+	// used to compute distance between points
+	KdTreeDistance<P> distance;
+	// storage for tree data structures
+	KdTreeMemory<P> memory = new KdTreeMemory<>();
+	// creates the trees
+	KdTreeConstructor<P> constructor;
+
+	// point associated with each index
+	List<P> points = new ArrayList<>();
+	// the level each point is in, IN_BUFFER, or UNUSED
+	GrowQueue_I32 pointLevel = new GrowQueue_I32();
+	// true if the point has been removed but is still inside a tree
+	GrowQueue_B removed = new GrowQueue_B();
+	// indexes which are not assigned to any point and can be reused
+	GrowQueue_I32 unused = new GrowQueue_I32();
+	// number of points which have not been removed
+	int size;
+
+	// new points which have yet to be added to a tree
+	GrowQueue_I32 buffer = new GrowQueue_I32();
+	// maximum number of points in the buffer
+	int bufferSize = 32;
+
+	// trees at each level.  Level i can have up to bufferSize*2^i points
+	List<Level> levels = new ArrayList<>();
+
+	// storage for points and indexes when constructing a tree
+	List<P> workPoints = new ArrayList<>();
+	GrowQueue_I32 workIndexes = new GrowQueue_I32();
+
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch = new InternalSearch();
+
+	public KdTreeDynamicNearestNeighbor( KdTreeDistance<P> distance ) {
+		this.distance = distance;
+		this.constructor = new KdTreeConstructor<>(memory,new AxisSplitterMedian<>(distance));
+	}
+
+	/**
+	 * Removes all the old points and then adds the new points. The index of a point is its index in the list.
+	 * The index of every point is known, so trackIndicies is ignored.
+	 */
+	@Override
+	public void setPoints(List<P> points, boolean trackIndicies) {
+		clear();
+
+		for (int i = 0; i < points.size(); i++) {
+			this.points.add(points.get(i));
+			pointLevel.add(IN_BUFFER);
+			removed.add(false);
+			buffer.add(i);
+		}
+		size = points.size();
+
+		if( buffer.size >= bufferSize )
+			flushBuffer();
+	}
+
+	/**
+	 * Adds a point
+	 *
+	 * @param point The point. A reference is saved.
+	 * @return The index assigned to the point
+	 */
+	public int add( P point ) {
+		int index;
+		if( unused.size > 0 ) {
+			index = unused.pop();
+			points.set(index,point);
+			pointLevel.data[index] = IN_BUFFER;
+			removed.data[index] = false;
+		} else {
+			index = points.size();
+			points.add(point);
+			pointLevel.add(IN_BUFFER);
+			removed.add(false);
+		}
+		buffer.add(index);
+		size++;
+
+		if( buffer.size >= bufferSize )
+			flushBuffer();
+
+		return index;
+	}
+
+	/**
+	 * Removes a point
+	 *
+	 * @param index Index of the point being removed
+	 * @return true if a point was removed or false if no point has that index
+	 */
+	public boolean remove( int index ) {
+		if( index < 0 || index >= points.size() )
+			return false;
+		int level = pointLevel.data[index];
+		if( level == UNUSED || removed.data[index] )
+			return false;
+
+		size--;
+		if( level == IN_BUFFER ) {
+			buffer.remove(buffer.indexOf(index));
+			release(index);
+			return true;
+		}
+
+		removed.data[index] = true;
+		Level l = levels.get(level);
+		l.numRemoved++;
+		if( l.numRemoved*2 > l.indexes.size ) {
+			// rebuild the tree with only the remaining points
+			workPoints.clear();
+			workIndexes.reset();
+			gatherLevel(l);
+			buildLevel(level);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the point associated with the index or null if there is none
+	 */
+	public P getPoint( int index ) {
+		if( index < 0 || index >= points.size() || removed.data[index] )
+			return null;
+		return points.get(index);
+	}
+
+	/**
+	 * Removes all points
+	 */
+	public void clear() {
+		for (int i = 0; i < levels.size(); i++) {
+			Level l = levels.get(i);
+			if( l.tree != null ) {
+				memory.recycleGraph(l.tree);
+				l.tree = null;
+			}
+			l.indexes.reset();
+			l.numRemoved = 0;
+		}
+		points.clear();
+		pointLevel.reset();
+		removed.reset();
+		unused.reset();
+		buffer.reset();
+		size = 0;
+	}
+
+	/**
+	 * Merges the buffer and as many of the smaller trees as needed into one tree.  The smallest level which can hold
+	 * the buffer, itself, and all the smaller levels is selected.
+	 */
+	private void flushBuffer() {
+		workPoints.clear();
+		workIndexes.reset();
+		for (int i = 0; i < buffer.size; i++) {
+			int index = buffer.data[i];
+			workPoints.add(points.get(index));
+			workIndexes.add(index);
+		}
+		buffer.reset();
+
+		int level = 0;
+		while( true ) {
+			if( level == levels.size() )
+				levels.add(new Level());
+			Level l = levels.get(level);
+			int total = workPoints.size() + l.indexes.size - l.numRemoved;
+			gatherLevel(l);
+			if( total <= bufferSize << level )
+				break;
+			level++;
+		}
+		buildLevel(level);
+	}
+
+	/**
+	 * Moves the points which have not been removed from the level into the work lists and empties the level.
+	 * Indexes of removed points are released.
+	 */
+	private void gatherLevel( Level l ) {
+		for (int i = 0; i < l.indexes.size; i++) {
+			int index = l.indexes.data[i];
+			if( removed.data[index] ) {
+				release(index);
+			} else {
+				workPoints.add(points.get(index));
+				workIndexes.add(index);
+			}
+		}
+		l.indexes.reset();
+		l.numRemoved = 0;
+		if( l.tree != null ) {
+			memory.recycleGraph(l.tree);
+			l.tree = null;
+		}
+	}
+
+	/**
+	 * Constructs a tree for the level from the work lists
+	 */
+	private void buildLevel( int level ) {
+		Level l = levels.get(level);
+		l.indexes.setTo(workIndexes);
+		for (int i = 0; i < workIndexes.size; i++) {
+			pointLevel.data[workIndexes.data[i]] = level;
+		}
+		if( workPoints.size() > 0 )
+			l.tree = constructor.construct(workPoints,true);
+		workPoints.clear();
+	}
+
+	private void release( int index ) {
+		points.set(index,null);
+		pointLevel.data[index] = UNUSED;
+		removed.data[index] = false;
+		unused.add(index);
+	}
+
+	/**
+	 * Number of points which have been added and not removed
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of points that are added before a new tree is constructed
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Specifies the number of points that are added before a new tree is constructed.  Only call before any points
+	 * are added.
+	 */
+	public void setBufferSize( int bufferSize ) {
+		if( bufferSize < 1 )
+			throw new IllegalArgumentException("Buffer size must be at least 1");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Specifies the maximum number of points in a leaf of each tree
+	 *
+	 * @see KdTreeConstructor#setMaxLeafSize(int)
+	 */
+	public void setMaxLeafSize( int maxLeafSize ) {
+		constructor.setMaxLeafSize(maxLeafSize);
+	}
+
+	@Override
+	public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<P> createSearch() {
+		return new InternalSearch();
+	}
+
+	/**
+	 * A tree and the index of each point in it
+	 */
+	static class Level {
+		// null if there are no points
+		KdTree tree;
+		// index of each point in the tree
+		GrowQueue_I32 indexes = new GrowQueue_I32();
+		// number of points in the tree which have been removed
+		int numRemoved;
+	}
+
+	/**
+	 * Exact search of the buffer and every tree which skips removed points.  The trees are only read.
+	 */
+	private class InternalSearch implements Search<P> {
+		// point being searched for
+		P target;
+		// the maximum distance a neighbor is allowed to be
+		double maxDistanceSq;
+		// indexes of the points in the tree being searched
+		GrowQueue_I32 treeIndexes;
+
+		// max heap containing the N nearest-neighbors found so far
+		final BoundedMaxHeap_F64 heap = new BoundedMaxHeap_F64();
+
+		@Override
+		public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+			search(point,maxDistance < 0 ? Double.MAX_VALUE : maxDistance,1);
+			if( heap.isEmpty() )
+				return false;
+
+			result.point = points.get(heap.getTopIndex());
+			result.index = heap.getTopIndex();
+			result.distance = heap.getTopValue();
+			return true;
+		}
+
+		@Override
+		public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+			if( numNeighbors <= 0 )
+				throw new IllegalArgumentException("I'm sorry, but I refuse to search for less than or equal to 0 neighbors.");
+			results.reset();
+			search(point,maxDistance <= 0 ? Double.MAX_VALUE : maxDistance,numNeighbors);
+
+			for (int i = 0; i < heap.size; i++) {
+				NnData<P> r = results.grow();
+				r.point = points.get(heap.index[i]);
+				r.index = heap.index[i];
+				r.distance = heap.value[i];
+			}
+		}
+
+		private void search( P target , double maxDistanceSq , int searchN ) {
+			this.target = target;
+			this.maxDistanceSq = maxDistanceSq;
+			heap.reset(searchN);
+
+			for (int i = 0; i < buffer.size; i++) {
+				int index = buffer.data[i];
+				check(index,distance.distance(points.get(index),target,bound()));
+			}
+
+			for (int i = 0; i < levels.size(); i++) {
+				Level l = levels.get(i);
+				if( l.tree == null )
+					continue;
+				treeIndexes = l.indexes;
+				stepClosest(l.tree.root);
+			}
+		}
+
+		/**
+		 * Recursive step for finding the closest points
+		 */
+		private void stepClosest( KdTree.Node node ) {
+			if( node == null )
+				return;
+
+			if( node.isLeaf() ) {
+				if( node.isBucket() ) {
+					for (int i = 0; i < node.bucketSize; i++) {
+						checkNode(node.bucketPoints[i],node.bucketIndexes[i]);
+					}
+				} else if( node.point != null ) {
+					checkNode(node.point,node.index);
+				}
+				return;
+			}
+			checkNode(node.point,node.index);
+
+			// select the most promising branch to investigate first
+			KdTree.Node nearer,further;
+
+			double splitValue = distance.valueAt((P)node.point,node.split);
+			double targetAtSplit = distance.valueAt(target,node.split);
+			if( targetAtSplit <= splitValue ) {
+				nearer = node.left;
+				further = node.right;
+			} else {
+				nearer = node.right;
+				further = node.left;
+			}
+
+			stepClosest(nearer);
+
+			// See if it is possible for 'further' to contain a better node
+			double dx = splitValue - targetAtSplit;
+			if( canImprove(dx*dx) )
+				stepClosest(further);
+		}
+
+		private void checkNode( Object point , int treeIndex ) {
+			int index = treeIndexes.data[treeIndex];
+			if( removed.data[index] )
+				return;
+			check(index,distance.distance((P)point,target,bound()));
+		}
+
+		/**
+		 * Adds the point to the heap if it's one of the N closest found so far
+		 */
+		private void check( int index , double distanceSq ) {
+			if( !canImprove(distanceSq) )
+				return;
+			if( heap.isFull() )
+				heap.replaceTop(index,distanceSq);
+			else
+				heap.push(index,distanceSq);
+		}
+
+		/**
+		 * Points farther than this can't be added to the heap
+		 */
+		private double bound() {
+			return heap.isFull() ? heap.getTopValue() : maxDistanceSq;
+		}
+
+		private boolean canImprove( double distanceSq ) {
+			if( !heap.isFull() )
+				return distanceSq <= maxDistanceSq;
+			return distanceSq < heap.getTopValue();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.wrap;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.alg.KdTreeFlat;
+import org.ddogleg.nn.alg.KdTreeFlatConstructor;
+import org.ddogleg.nn.alg.searches.KdTreeFlatSearch;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+
+import java.util.List;
+
+/**
+ * Wrapper around {@link KdTreeFlat} for {@link NearestNeighbor}
+ *
+ * @author Peter Abeles
+ */
+public class KdTreeFlatNearestNeighbor<P> implements NearestNeighbor<P> {
+
+	// tree being searched
+	KdTreeFlat tree = new KdTreeFlat();
+	// creates a tree from data
+	KdTreeFlatConstructor<P> constructor;
+	// used to create new searches
+	KdTreeFlatSearch<P> search;
+
+	// reference to the input points
+	List<P> points;
+	boolean trackIndices;
+
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch;
+
+	public KdTreeFlatNearestNeighbor(KdTreeFlatConstructor<P> constructor, KdTreeFlatSearch<P> search) {
+		this.constructor = constructor;
+		this.search = search;
+		this.internalSearch = new InternalSearch(search);
+	}
+
+	@Override
+	public void setPoints(List<P> points, boolean trackIndicies) {
+		this.points = points;
+		this.trackIndices = trackIndicies;
+		constructor.construct(points,tree);
+	}
+
+	@Override
+	public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<P> createSearch() {
+		return new InternalSearch(search.copy());
+	}
+
+	/**
+	 * Searches the tree using its own copy of the search algorithm and storage.  The tree is only read.
+	 */
+	private class InternalSearch implements Search<P> {
+		KdTreeFlatSearch<P> search;
+
+		// storage for multiple results
+		GrowQueue_I32 foundPoints = new GrowQueue_I32();
+		GrowQueue_F64 foundDistances = new GrowQueue_F64();
+
+		InternalSearch(KdTreeFlatSearch<P> search) {
+			this.search = search;
+			this.search.setTree(tree);
+		}
+
+		@Override
+		public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+			if( maxDistance < 0 )
+				search.setMaxDistance(Double.MAX_VALUE);
+			else
+				search.setMaxDistance(maxDistance);
+
+			int found = search.findNeighbor(point);
+			if( found < 0 )
+				return false;
+
+			int index = tree.indexes.data[found];
+			result.point = points.get(index);
+			result.index = trackIndices ? index : -1;
+			result.distance = search.getDistance();
+
+			return true;
+		}
+
+		@Override
+		public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+			results.reset();
+
+			if( maxDistance <= 0 )
+				search.setMaxDistance(Double.MAX_VALUE);
+			else
+				search.setMaxDistance(maxDistance);
+
+			search.findNeighbor(point,numNeighbors,foundPoints,foundDistances);
+
+			for( int i = 0; i < foundPoints.size; i++ ) {
+				int index = tree.indexes.data[foundPoints.data[i]];
+				NnData<P> r = results.grow();
+
+				r.point = points.get(index);
+				r.index = trackIndices ? index : -1;
+				r.distance = foundDistances.data[i];
+			}
+		}
+	}
+}
@@ -19,20 +19,26 @@
 package org.ddogleg.nn.wrap;
 
 import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NearestNeighborRadius;
 import org.ddogleg.nn.NnData;
 import org.ddogleg.nn.alg.*;
-import org.ddogleg.nn.alg.searches.KdTreeSearch1Standard;
-import org.ddogleg.nn.alg.searches.KdTreeSearchNStandard;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F32;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_U8;
+import org.ddogleg.nn.alg.searches.*;
+import org.ddogleg.sorting.QuickSortComparator;
 import org.ddogleg.struct.FastQueue;
 
 import java.util.List;
 
 /**
- * Wrapper around {@link KdTree} for {@link NearestNeighbor}
+ * Wrapper around {@link KdTree} for {@link NearestNeighbor}. Radius searches use the provided
+ * {@link KdTreeSearchRadius}. If none is provided then one is selected, see
+ * {@link #KdTreeNearestNeighbor(KdTreeSearch1, KdTreeSearchN, AxisSplitter)}.
  *
  * @author Peter Abeles
  */
-public class KdTreeNearestNeighbor<P> implements NearestNeighbor<P> {
+public class KdTreeNearestNeighbor<P> implements NearestNeighborRadius<P> {
 
 	// tree being searched
 	KdTree tree;
@@ -42,24 +48,111 @@ public class KdTreeNearestNeighbor<P> implements NearestNeighbor<P> {
 	KdTreeSearch1<P> search;
 	// searches the tree for the N nearest neighbors
 	KdTreeSearchN<P> searchN;
+	// searches the tree for all the neighbors inside a radius. Can be null
+	KdTreeSearchRadius<P> searchRadius;
 	// Used internally during tree construction
 	AxisSplitter<P> splitter;
 
-	// storage for multiple results
-	FastQueue<KdTreeResult> found = new FastQueue<KdTreeResult>(KdTreeResult.class,true);
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch;
 
 	// used to recycle memory
 	KdTreeMemory<P> memory = new KdTreeMemory<>();
 
-	public KdTreeNearestNeighbor(KdTreeSearch1<P> search, KdTreeSearchN<P> searchN, AxisSplitter<P> splitter) {
+	public KdTreeNearestNeighbor(KdTreeSearch1<P> search, KdTreeSearchN<P> searchN,
+								 KdTreeSearchRadius<P> searchRadius, AxisSplitter<P> splitter) {
 		this.search = search;
 		this.searchN = searchN;
+		this.searchRadius = searchRadius;
 		this.splitter = splitter;
 		constructor = new KdTreeConstructor<>(memory,splitter);
+		internalSearch = new InternalSearch(search,searchN,searchRadius);
+	}
+
+	/**
+	 * Creates a K-D tree which uses the N-nearest-neighbor search for radius searches, if it supports them.
+	 * Otherwise, e.g. for best-bin-first searches, a {@link KdTreeSearchNStandard} is created from the
+	 * {@link AxisSplitterMedian}'s distance.
+	 */
+	public KdTreeNearestNeighbor(KdTreeSearch1<P> search, KdTreeSearchN<P> searchN, AxisSplitter<P> splitter) {
+		this(search, searchN, selectSearchRadius(searchN,splitter), splitter);
 	}
 
+	/**
+	 * Creates a K-D tree which uses the standard search. If the distance is one of the Euclidean squared distances
+	 * then searches specialized for its point type are used.
+	 */
 	public KdTreeNearestNeighbor( KdTreeDistance<P> distance ) {
-		this( new KdTreeSearch1Standard<>(distance), new KdTreeSearchNStandard<>(distance), new AxisSplitterMedian<>(distance));
+		this( createSearch1(distance), createSearchN(distance), createSearchRadius(distance),
+				new AxisSplitterMedian<>(distance));
+	}
+
+	/**
+	 * Selects the search used for radius searches when one isn't specified. Returns null if there's no way to
+	 * create one.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <P> KdTreeSearchRadius<P> selectSearchRadius( KdTreeSearchN<P> searchN, AxisSplitter<P> splitter ) {
+		// searches which implement both interfaces are assumed to use the same point type for each
+		if( searchN instanceof KdTreeSearchRadius )
+			return (KdTreeSearchRadius<P>)searchN;
+		if( splitter instanceof AxisSplitterMedian )
+			return createSearchRadius(((AxisSplitterMedian<P>)splitter).getDistance());
+		return null;
+	}
+
+	/**
+	 * Creates a {@link KdTreeSearch1Standard} or a version of it specialized for the distance's point type.
+	 * Sub-classes of the distance could change how it's computed and always get the generic search.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <P> KdTreeSearch1<P> createSearch1( KdTreeDistance<P> distance ) {
+		Class<?> type = distance.getClass();
+		Object search;
+		if( type == KdTreeEuclideanSq_F64.class )
+			search = new KdTreeSearch1Standard_F64();
+		else if( type == KdTreeEuclideanSq_F32.class )
+			search = new KdTreeSearch1Standard_F32();
+		else if( type == KdTreeEuclideanSq_U8.class )
+			search = new KdTreeSearch1Standard_U8();
+		else
+			search = new KdTreeSearch1Standard<>(distance);
+		// a specialized search is only selected when its point type is the same as the distance's
+		return (KdTreeSearch1<P>)search;
+	}
+
+	/**
+	 * Creates a {@link KdTreeSearchNStandard} or a version of it specialized for the distance's point type
+	 */
+	@SuppressWarnings("unchecked")
+	public static <P> KdTreeSearchN<P> createSearchN( KdTreeDistance<P> distance ) {
+		return (KdTreeSearchN<P>)createSearchNStandard(distance);
+	}
+
+	/**
+	 * Creates a {@link KdTreeSearchNStandard} for radius searches or a version of it specialized for the
+	 * distance's point type
+	 */
+	@SuppressWarnings("unchecked")
+	public static <P> KdTreeSearchRadius<P> createSearchRadius( KdTreeDistance<P> distance ) {
+		return (KdTreeSearchRadius<P>)createSearchNStandard(distance);
+	}
+
+	/**
+	 * Selects the N-nearest-neighbor search for the distance. All of them also implement {@link KdTreeSearchRadius}.
+	 * A specialized search is only selected when the distance is exactly one of the Euclidean distances, which
+	 * also means its point type is the same as the distance's.
+	 */
+	private static Object createSearchNStandard( KdTreeDistance<?> distance ) {
+		Class<?> type = distance.getClass();
+		if( type == KdTreeEuclideanSq_F64.class )
+			return new KdTreeSearchNStandard_F64();
+		else if( type == KdTreeEuclideanSq_F32.class )
+			return new KdTreeSearchNStandard_F32();
+		else if( type == KdTreeEuclideanSq_U8.class )
+			return new KdTreeSearchNStandard_U8();
+		else
+			return new KdTreeSearchNStandard<>(distance);
 	}
 
 	@Override
@@ -67,46 +160,142 @@ public class KdTreeNearestNeighbor<P> implements NearestNeighbor<P> {
 		if( tree != null )
 			memory.recycleGraph(tree);
 		tree = constructor.construct(points,trackIndicies);
-		search.setTree(tree);
-		searchN.setTree(tree);
 	}
 
 	@Override
 	public boolean findNearest( P point , double maxDistance , NnData<P> result ) {
-		if( maxDistance < 0 )
-			search.setMaxDistance(Double.MAX_VALUE);
-		else
-			search.setMaxDistance(maxDistance);
-		KdTree.Node found = search.findNeighbor(point);
-		if( found == null )
-			return false;
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
 
-		result.point = (P)found.point;
-		result.index = found.index;
-		result.distance = search.getDistance();
+	@Override
+	public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
 
-		return true;
+	@Override
+	public void findRadius(P point, double radius, int maxResults, boolean sorted, FastQueue<NnData<P>> results) {
+		internalSearch.findRadius(point,radius,maxResults,sorted,results);
 	}
 
 	@Override
-	public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
-		results.reset();
+	public SearchRadius<P> createSearch() {
+		return new InternalSearch(search.copy(),searchN.copy(),searchRadius == null ? null : searchRadius.copy());
+	}
 
-		if( maxDistance <= 0 )
-			searchN.setMaxDistance(Double.MAX_VALUE);
-		else
-			searchN.setMaxDistance(maxDistance);
+	/**
+	 * Searches the tree using its own copy of the search algorithms and storage.  The tree is only read.
+	 */
+	private class InternalSearch implements SearchRadius<P> {
+		KdTreeSearch1<P> search;
+		KdTreeSearchN<P> searchN;
+		KdTreeSearchRadius<P> searchRadius;
+
+		// tree that the searches were last configured with
+		KdTree searchTree;
+
+		// storage for multiple results
+		FastQueue<KdTreeResult> found = new FastQueue<>(KdTreeResult.class,true);
+
+		// sorts the results of a radius search by distance
+		QuickSortComparator<NnData<P>> sorter = new QuickSortComparator<>((a,b)->Double.compare(a.distance,b.distance));
+
+		InternalSearch(KdTreeSearch1<P> search, KdTreeSearchN<P> searchN, KdTreeSearchRadius<P> searchRadius) {
+			this.search = search;
+			this.searchN = searchN;
+			this.searchRadius = searchRadius;
+		}
+
+		/**
+		 * Makes sure the searches are using the most recently constructed tree
+		 */
+		private void checkTree() {
+			if( searchTree != tree ) {
+				searchTree = tree;
+				search.setTree(tree);
+				searchN.setTree(tree);
+				if( searchRadius != null )
+					searchRadius.setTree(tree);
+			}
+		}
+
+		@Override
+		public boolean findNearest( P point , double maxDistance , NnData<P> result ) {
+			checkTree();
+			if( maxDistance < 0 )
+				search.setMaxDistance(Double.MAX_VALUE);
+			else
+				search.setMaxDistance(maxDistance);
+			KdTree.Node found = search.findNeighbor(point);
+			if( found == null )
+				return false;
+
+			result.point = search.getPoint();
+			result.index = search.getIndex();
+			result.distance = search.getDistance();
+
+			return true;
+		}
 
-		found.reset();
-		searchN.findNeighbor(point, numNeighbors, found);
+		@Override
+		public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+			checkTree();
+			results.reset();
 
-		for( int i = 0; i < found.size; i++ ) {
-			KdTreeResult k = found.get(i);
-			NnData<P> r = results.grow();
+			if( maxDistance <= 0 )
+				searchN.setMaxDistance(Double.MAX_VALUE);
+			else
+				searchN.setMaxDistance(maxDistance);
 
-			r.point = (P)k.node.point;
-			r.index = k.node.index;
-			r.distance = k.distance;
+			found.reset();
+			searchN.findNeighbor(point, numNeighbors, found);
+
+			for( int i = 0; i < found.size; i++ ) {
+				KdTreeResult k = found.get(i);
+				NnData<P> r = results.grow();
+
+				r.point = (P)k.point;
+				r.index = k.index;
+				r.distance = k.distance;
+			}
+		}
+
+		@Override
+		public void findRadius(P point, double radius, int maxResults, boolean sorted, FastQueue<NnData<P>> results) {
+			if( searchRadius == null )
+				throw new IllegalArgumentException("Radius search not supported. Provide a KdTreeSearchRadius to the constructor.");
+			checkTree();
+			results.reset();
+
+			found.reset();
+			searchRadius.findRadius(point, radius, maxResults, found);
+
+			for( int i = 0; i < found.size; i++ ) {
+				KdTreeResult k = found.get(i);
+				NnData<P> r = results.grow();
+
+				r.point = (P)k.point;
+				r.index = k.index;
+				r.distance = k.distance;
+			}
+
+			if( sorted )
+				sorter.sort(results.data,results.size);
 		}
 	}
+
+	/**
+	 * Returns the tree created by the most recent call to {@link #setPoints}. Can be saved using
+	 * {@link KdForestMapped#save}.
+	 */
+	public KdTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * Specifies the maximum number of points in a leaf. See {@link KdTreeConstructor#setMaxLeafSize(int)}.
+	 * Takes effect the next time {@link #setPoints} is called.
+	 */
+	public void setMaxLeafSize( int maxLeafSize ) {
+		constructor.setMaxLeafSize(maxLeafSize);
+	}
 }
@@ -19,9 +19,11 @@
 package org.ddogleg.nn.wrap;
 
 import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NearestNeighborRadius;
 import org.ddogleg.nn.NnData;
 import org.ddogleg.nn.alg.ExhaustiveNeighbor;
 import org.ddogleg.nn.alg.KdTreeDistance;
+import org.ddogleg.sorting.QuickSortComparator;
 import org.ddogleg.struct.FastQueue;
 import org.ddogleg.struct.GrowQueue_F64;
 import org.ddogleg.struct.GrowQueue_I32;
@@ -33,57 +35,113 @@ import java.util.List;
  *
  * @author Peter Abeles
  */
-public class WrapExhaustiveNeighbor<P> implements NearestNeighbor<P> {
+public class WrapExhaustiveNeighbor<P> implements NearestNeighborRadius<P> {
 
-	ExhaustiveNeighbor<P> alg;
+	KdTreeDistance<P> distance;
 	List<P> points;
 
-	GrowQueue_I32 outputIndex = new GrowQueue_I32();
-	GrowQueue_F64 outputDistance = new GrowQueue_F64();
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch;
 
 	public WrapExhaustiveNeighbor(KdTreeDistance<P> distance ) {
-		alg = new ExhaustiveNeighbor(distance);
+		this.distance = distance;
+		this.internalSearch = new InternalSearch();
 	}
 
 	@Override
 	public void setPoints(List<P> points, boolean trackIndicies) {
-		alg.setPoints(points);
 		this.points = points;
 	}
 
 	@Override
 	public boolean findNearest(P point, double maxDistance, NnData<P> result) {
-		if( maxDistance < 0 )
-			maxDistance = Double.MAX_VALUE;
-
-		int index = alg.findClosest(point,maxDistance);
-		if( index >= 0 ) {
-			result.point = points.get(index);
-			result.distance = alg.getBestDistance();
-			result.index = index;
-			return true;
-		} else {
-			return false;
-		}
+		return internalSearch.findNearest(point,maxDistance,result);
 	}
 
 	@Override
 	public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
-		results.reset();
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public void findRadius(P point, double radius, int maxResults, boolean sorted, FastQueue<NnData<P>> results) {
+		internalSearch.findRadius(point,radius,maxResults,sorted,results);
+	}
+
+	@Override
+	public SearchRadius<P> createSearch() {
+		return new InternalSearch();
+	}
+
+	/**
+	 * Exhaustive search with its own workspace.  The list of points is only read.
+	 */
+	private class InternalSearch implements SearchRadius<P> {
+		ExhaustiveNeighbor<P> alg = new ExhaustiveNeighbor<>(distance);
+
+		GrowQueue_I32 outputIndex = new GrowQueue_I32();
+		GrowQueue_F64 outputDistance = new GrowQueue_F64();
+
+		// sorts the results of a radius search by distance
+		QuickSortComparator<NnData<P>> sorter = new QuickSortComparator<>((a,b)->Double.compare(a.distance,b.distance));
+
+		@Override
+		public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+			if( maxDistance < 0 )
+				maxDistance = Double.MAX_VALUE;
+
+			alg.setPoints(points);
+			int index = alg.findClosest(point,maxDistance);
+			if( index >= 0 ) {
+				result.point = points.get(index);
+				result.distance = alg.getBestDistance();
+				result.index = index;
+				return true;
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+			results.reset();
+
+			if( maxDistance < 0 )
+				maxDistance = Double.MAX_VALUE;
+
+			outputIndex.reset();
+			outputDistance.reset();
+			alg.setPoints(points);
+			alg.findClosestN(point,maxDistance,numNeighbors,outputIndex,outputDistance);
+
+			for( int i = 0; i < outputIndex.size; i++ ) {
+				int index = outputIndex.get(i);
+				NnData<P> r = results.grow();
+				r.distance = outputDistance.get(i);
+				r.point = points.get(index);
+				r.index = index;
+			}
+		}
+
+		@Override
+		public void findRadius(P point, double radius, int maxResults, boolean sorted, FastQueue<NnData<P>> results) {
+			results.reset();
 
-		if( maxDistance < 0 )
-			maxDistance = Double.MAX_VALUE;
+			outputIndex.reset();
+			outputDistance.reset();
+			alg.setPoints(points);
+			alg.findRadius(point,radius,maxResults,outputIndex,outputDistance);
 
-		outputIndex.reset();
-		outputDistance.reset();
-		alg.findClosestN(point,maxDistance,numNeighbors,outputIndex,outputDistance);
+			for( int i = 0; i < outputIndex.size; i++ ) {
+				int index = outputIndex.get(i);
+				NnData<P> r = results.grow();
+				r.distance = outputDistance.get(i);
+				r.point = points.get(index);
+				r.index = index;
+			}
 
-		for( int i = 0; i < outputIndex.size; i++ ) {
-			int index = outputIndex.get(i);
-			NnData<P> r = results.grow();
-			r.distance = outputDistance.get(i);
-			r.point = points.get(index);
-			r.index = index;
+			if( sorted )
+				sorter.sort(results.data,results.size);
 		}
 	}
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.wrap;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.alg.ExhaustiveNeighborBlock;
+import org.ddogleg.nn.alg.KdTreeDistance;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+
+import java.util.List;
+
+/**
+ * Wrapper around {@link ExhaustiveNeighborBlock} for {@link NearestNeighbor}. Points are copied into an array when
+ * {@link #setPoints} is called.
+ *
+ * @author Peter Abeles
+ */
+public class WrapExhaustiveNeighborBlock<P> implements NearestNeighbor<P> {
+
+	KdTreeDistance<P> distance;
+	List<P> points;
+	// copy of the points in row-major order
+	GrowQueue_F64 data = new GrowQueue_F64();
+
+	// search used by the findNearest() functions in this class
+	InternalSearch internalSearch;
+
+	public WrapExhaustiveNeighborBlock(KdTreeDistance<P> distance ) {
+		this.distance = distance;
+		this.internalSearch = new InternalSearch();
+	}
+
+	@Override
+	public void setPoints(List<P> points, boolean trackIndicies) {
+		this.points = points;
+		internalSearch.alg.convert(points,data);
+	}
+
+	@Override
+	public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+		return internalSearch.findNearest(point,maxDistance,result);
+	}
+
+	@Override
+	public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+		internalSearch.findNearest(point,maxDistance,numNeighbors,results);
+	}
+
+	@Override
+	public Search<P> createSearch() {
+		return new InternalSearch();
+	}
+
+	/**
+	 * Exhaustive search with its own workspace.  The array of points is only read.
+	 */
+	private class InternalSearch implements Search<P> {
+		ExhaustiveNeighborBlock<P> alg = new ExhaustiveNeighborBlock<>(distance);
+
+		GrowQueue_I32 outputIndex = new GrowQueue_I32();
+		GrowQueue_F64 outputDistance = new GrowQueue_F64();
+
+		@Override
+		public boolean findNearest(P point, double maxDistance, NnData<P> result) {
+			if( maxDistance < 0 )
+				maxDistance = Double.MAX_VALUE;
+
+			alg.setPoints(data);
+			int index = alg.findClosest(point,maxDistance);
+			if( index >= 0 ) {
+				result.point = points.get(index);
+				result.distance = alg.getBestDistance();
+				result.index = index;
+				return true;
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public void findNearest(P point, double maxDistance, int numNeighbors, FastQueue<NnData<P>> results) {
+			results.reset();
+
+			if( maxDistance < 0 )
+				maxDistance = Double.MAX_VALUE;
+
+			outputIndex.reset();
+			outputDistance.reset();
+			alg.setPoints(data);
+			alg.findClosestN(point,maxDistance,numNeighbors,outputIndex,outputDistance);
+
+			for( int i = 0; i < outputIndex.size; i++ ) {
+				int index = outputIndex.get(i);
+				NnData<P> r = results.grow();
+				r.distance = outputDistance.get(i);
+				r.point = points.get(index);
+				r.index = index;
+			}
+		}
+	}
+}
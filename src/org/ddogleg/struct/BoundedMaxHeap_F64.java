@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.struct;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Max heap which holds up to a fixed number of elements. Each element is an integer index and a double value, e.g.
+ * a point and its distance. The element with the largest value is at the top. Used to keep track of the k
+ * elements with the smallest values, such as the k nearest-neighbors, without creating any objects.
+ * </p>
+ *
+ * <p>
+ * The arrays are public so that elements can be read without a function call. The top is at index 0.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class BoundedMaxHeap_F64 {
+	// index associated with each element
+	public int[] index;
+	// value of each element
+	public double[] value;
+	// number of elements in the heap
+	public int size;
+
+	// maximum number of elements in the heap
+	protected int capacity;
+
+	public BoundedMaxHeap_F64( int capacity ) {
+		index = new int[ Math.max(1,capacity) ];
+		value = new double[ index.length ];
+		this.capacity = capacity;
+	}
+
+	public BoundedMaxHeap_F64() {
+		this(1);
+	}
+
+	/**
+	 * Removes all the elements and changes the capacity
+	 *
+	 * @param capacity Maximum number of elements in the heap
+	 */
+	public void reset( int capacity ) {
+		if( index.length < capacity ) {
+			index = new int[ capacity ];
+			value = new double[ capacity ];
+		}
+		this.capacity = capacity;
+		this.size = 0;
+	}
+
+	/**
+	 * Removes all the elements
+	 */
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * Adds the element if the heap isn't full or if its value is less than the top's value, in which case the
+	 * top is removed.
+	 *
+	 * @return true if the element was added
+	 */
+	public boolean offer( int index , double value ) {
+		if( size < capacity ) {
+			push(index,value);
+			return true;
+		} else if( value < this.value[0] ) {
+			replaceTop(index,value);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds an element to a heap which isn't full
+	 */
+	public void push( int index , double value ) {
+		if( size >= capacity )
+			throw new IllegalStateException("The heap is full");
+
+		int i = size++;
+		while( i > 0 ) {
+			int parent = (i-1)/2;
+			if( this.value[parent] >= value )
+				break;
+			this.index[i] = this.index[parent];
+			this.value[i] = this.value[parent];
+			i = parent;
+		}
+		this.index[i] = index;
+		this.value[i] = value;
+	}
+
+	/**
+	 * Replaces the top element and restores the heap. The heap must not be empty.
+	 */
+	public void replaceTop( int index , double value ) {
+		siftDown(index,value,size);
+	}
+
+	/**
+	 * Removes the top element
+	 */
+	public void pop() {
+		size--;
+		if( size > 0 )
+			siftDown(index[size],value[size],size);
+	}
+
+	/**
+	 * Puts the element at the top and moves it down until the heap is valid
+	 */
+	private void siftDown( int index , double value , int size ) {
+		int i = 0;
+		while( true ) {
+			int child = 2*i+1;
+			if( child >= size )
+				break;
+			if( child+1 < size && this.value[child+1] > this.value[child] )
+				child++;
+			if( this.value[child] <= value )
+				break;
+			this.index[i] = this.index[child];
+			this.value[i] = this.value[child];
+			i = child;
+		}
+		this.index[i] = index;
+		this.value[i] = value;
+	}
+
+	/**
+	 * Sorts the elements from smallest to largest value using heap sort. After this has been called it's no
+	 * longer a heap and {@link #reset} must be called before elements are added again.
+	 */
+	public void sortAscending() {
+		for (int end = size-1; end > 0; end--) {
+			int topIndex = index[0];
+			double topValue = value[0];
+			siftDown(index[end],value[end],end);
+			index[end] = topIndex;
+			value[end] = topValue;
+		}
+	}
+
+	/**
+	 * True if the number of elements is equal to the capacity
+	 */
+	public boolean isFull() {
+		return size >= capacity;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Index of the element with the largest value
+	 */
+	public int getTopIndex() {
+		return index[0];
+	}
+
+	/**
+	 * The largest value in the heap
+	 */
+	public double getTopValue() {
+		return value[0];
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedMaxHeap_F64{size="+size+", capacity="+capacity+
+				", value="+Arrays.toString(Arrays.copyOf(value,size))+"}";
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.struct;
+
+import java.util.Arrays;
+
+/**
+ * Min heap where each element is an integer index and a double value. The element with the smallest value is at
+ * the top, index 0 in the public arrays. The arrays grow as needed. Often used as the priority queue in best first
+ * searches.
+ *
+ * @author Peter Abeles
+ */
+public class MinHeap_F64 {
+	// index associated with each element
+	public int[] index;
+	// value of each element
+	public double[] value;
+	// number of elements in the heap
+	public int size;
+
+	public MinHeap_F64( int initialMaxSize ) {
+		index = new int[ Math.max(1,initialMaxSize) ];
+		value = new double[ index.length ];
+	}
+
+	public MinHeap_F64() {
+		this(16);
+	}
+
+	/**
+	 * Removes all the elements
+	 */
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * Adds an element to the heap
+	 */
+	public void push( int index , double value ) {
+		if( size == this.index.length ) {
+			this.index = Arrays.copyOf(this.index,size*2);
+			this.value = Arrays.copyOf(this.value,size*2);
+		}
+		int i = size++;
+		while( i > 0 ) {
+			int parent = (i-1)/2;
+			if( this.value[parent] <= value )
+				break;
+			this.index[i] = this.index[parent];
+			this.value[i] = this.value[parent];
+			i = parent;
+		}
+		this.index[i] = index;
+		this.value[i] = value;
+	}
+
+	/**
+	 * Removes the element with the smallest value. The heap must not be empty.
+	 *
+	 * @return index of the removed element
+	 */
+	public int pop() {
+		int top = index[0];
+		size--;
+		int index = this.index[size];
+		double value = this.value[size];
+		int i = 0;
+		while( true ) {
+			int child = 2*i+1;
+			if( child >= size )
+				break;
+			if( child+1 < size && this.value[child+1] < this.value[child] )
+				child++;
+			if( value <= this.value[child] )
+				break;
+			this.index[i] = this.index[child];
+			this.value[i] = this.value[child];
+			i = child;
+		}
+		this.index[i] = index;
+		this.value[i] = value;
+		return top;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Index of the element with the smallest value
+	 */
+	public int getTopIndex() {
+		return index[0];
+	}
+
+	/**
+	 * The smallest value in the heap
+	 */
+	public double getTopValue() {
+		return value[0];
+	}
+
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.fitting.modelset.ransac;
+
+import org.ddogleg.fitting.modelset.*;
+import org.ddogleg.fitting.modelset.distance.DistanceFromMeanModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestProsac extends GenericModelMatcherTests {
+
+	public TestProsac() {
+		configure(0.9, 0.05, true);
+	}
+
+	@Override
+	public ModelMatcher<double[],Double> createModelMatcher(ModelManager<double[]> manager,
+															DistanceFromModel<double[],Double> distance,
+															ModelGenerator<double[],Double> generator,
+															ModelFitter<double[],Double> fitter,
+															int minPoints,
+															double fitThreshold) {
+		Prosac<double[],Double> ret = new Prosac<>(344, manager, generator, distance, 200, fitThreshold);
+		ret.setSampleSize(minPoints);
+
+		return ret;
+	}
+
+	/**
+	 * When the best points are inliers it should find the model much sooner than RANSAC
+	 */
+	@Test
+	public void fasterThanRansac() {
+		Random rand = new Random(234);
+		// most of the points are outliers but the best ones are inliers
+		List<Double> samples = createSortedSamples(rand,500,100);
+
+		Prosac<double[],Double> alg = create(2000);
+		assertTrue(alg.process(samples));
+		assertEquals(100,alg.getMatchSet().size());
+		int iterationsProsac = alg.getIteration();
+
+		List<Double> shuffled = new ArrayList<>(samples);
+		Collections.shuffle(shuffled,rand);
+		Ransac<double[],Double> ransac = TestRansac.createMeanRansac(2000);
+		ransac.setConfidence(0.99);
+		assertTrue(ransac.process(shuffled));
+		assertEquals(100,ransac.getMatchSet().size());
+
+		assertTrue(iterationsProsac*5 < ransac.getIteration());
+	}
+
+	/**
+	 * The first sample should be the best points and the pool should grow until it includes all the points
+	 */
+	@Test
+	public void poolGrowth() {
+		List<Double> samples = createSortedSamples(new Random(234),200,100);
+
+		Prosac<double[],Double> alg = create(300);
+		alg.setConfidence(0);
+		alg.process(samples);
+		assertEquals(300,alg.getIteration());
+		// T'_N is a bit larger than T_N so it won't quite be all the points
+		assertTrue(alg.getPoolSize() > 150);
+		assertTrue(alg.getPoolSize() < 200);
+		for (int n = 5; n < 200; n++) {
+			assertTrue(alg.poolLastIteration[n] >= alg.poolLastIteration[n-1]);
+		}
+
+		alg.setMaxIterations(1);
+		alg.process(samples);
+		assertEquals(4,alg.getPoolSize());
+		assertEquals(samples.get(0)+samples.get(1)+samples.get(2)+samples.get(3),
+				alg.getModelParameters()[0]*4,1e-8);
+	}
+
+	/**
+	 * Provide the quality in a separate array and see if it's sorted correctly
+	 */
+	@Test
+	public void process_quality() {
+		Random rand = new Random(234);
+		List<Double> sorted = createSortedSamples(rand,500,100);
+
+		// shuffle the points and assign the quality based on their sorted order
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < sorted.size(); i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order,rand);
+		List<Double> samples = new ArrayList<>();
+		double[] quality = new double[sorted.size()];
+		for (int i = 0; i < order.size(); i++) {
+			samples.add(sorted.get(order.get(i)));
+			quality[i] = -order.get(i);
+		}
+
+		Prosac<double[],Double> alg = create(2000);
+		assertTrue(alg.process(samples,quality));
+		assertEquals(100,alg.getMatchSet().size());
+
+		Prosac<double[],Double> expected = create(2000);
+		assertTrue(expected.process(sorted));
+		assertEquals(expected.getIteration(),alg.getIteration());
+		assertEquals(expected.getModelParameters()[0],alg.getModelParameters()[0],1e-8);
+
+		// indexes should refer to the input list
+		for (int i = 0; i < alg.getMatchSet().size(); i++) {
+			assertSame(alg.getMatchSet().get(i),samples.get(alg.getInputIndex(i)));
+			assertEquals(2.5,samples.get(alg.getInputIndex(i)),0.2);
+		}
+	}
+
+	private Prosac<double[],Double> create( int maxIterations ) {
+		Prosac<double[],Double> alg = new Prosac<>(234,new DoubleArrayManager(1),new MeanModelFitter(),
+				new DistanceFromMeanModel(),maxIterations,0.5);
+		alg.setSampleSize(4);
+		alg.setConfidence(0.99);
+		return alg;
+	}
+
+	/**
+	 * Creates points sorted by quality. All the inliers are at the start with one outlier every 5 points.
+	 */
+	private static List<Double> createSortedSamples( Random rand , int total , int numInliers ) {
+		List<Double> samples = new ArrayList<>();
+		for (int i = 0; i < total; i++) {
+			if( i < numInliers*5/4 && i%5 != 4 ) {
+				samples.add(2.5+(rand.nextDouble()-0.5)*0.4);
+			} else {
+				double sign = rand.nextBoolean() ? 1 : -1;
+				samples.add(2.5+sign*(3+rand.nextDouble()*20));
+			}
+		}
+		return samples;
+	}
+}
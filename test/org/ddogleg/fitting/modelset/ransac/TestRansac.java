@@ -19,10 +19,13 @@
 package org.ddogleg.fitting.modelset.ransac;
 
 import org.ddogleg.fitting.modelset.*;
+import org.ddogleg.fitting.modelset.distance.DistanceFromMeanModel;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -49,6 +52,160 @@ public class TestRansac extends GenericModelMatcherTests {
 		return ret;
 	}
 
+	@Test
+	public void computeIterations() {
+		// 50% inliers, sample size of 4, 99% confidence
+		assertEquals(72,Ransac.computeIterations(50,100,4,0.99,1000));
+		// limited by the max iterations
+		assertEquals(50,Ransac.computeIterations(50,100,4,0.99,50));
+		// more inliers means fewer iterations
+		assertTrue(Ransac.computeIterations(90,100,4,0.99,1000) < 10);
+		// all inliers
+		assertEquals(1,Ransac.computeIterations(100,100,4,0.99,1000));
+		// a good sample is so unlikely that the probability is zero
+		assertEquals(1000,Ransac.computeIterations(1,100000,10,0.99,1000));
+	}
+
+	/**
+	 * With adaptive termination it should stop well before the maximum number of iterations
+	 */
+	@Test
+	public void adaptiveTermination() {
+		Random rand = new Random(234);
+		List<Double> samples = createMeanSamples(rand,200,0.2);
+
+		Ransac<double[],Double> alg = createMeanRansac(1000);
+		alg.setConfidence(0.99);
+
+		assertTrue(alg.process(samples));
+		assertEquals(160,alg.getMatchSet().size());
+		assertTrue(alg.getIteration() < 30);
+
+		// without it, all the iterations are used
+		alg.setConfidence(0);
+		assertTrue(alg.process(samples));
+		assertEquals(160,alg.getMatchSet().size());
+		assertEquals(1000,alg.getIteration());
+	}
+
+	/**
+	 * Good hypotheses can fail the pre-test, so more iterations are needed to reach the same confidence
+	 */
+	@Test
+	public void adaptiveTermination_preTest() {
+		Random rand = new Random(234);
+		List<Double> samples = createMeanSamples(rand,200,0.2);
+
+		Ransac<double[],Double> alg = createMeanRansac(1000);
+		alg.setConfidence(0.99);
+		assertTrue(alg.process(samples));
+		assertEquals(160,alg.getMatchSet().size());
+		int iterationsNoTest = alg.getIteration();
+
+		alg.setPreTestSize(2);
+		assertTrue(alg.process(samples));
+		assertEquals(160,alg.getMatchSet().size());
+		assertEquals(Ransac.computeIterations(160,200,4,0.99,1000),iterationsNoTest);
+		assertEquals(Ransac.computeIterations(160,200,6,0.99,1000),alg.getIteration());
+		assertTrue(alg.getIteration() > iterationsNoTest);
+	}
+
+	/**
+	 * The pre-test should skip scoring most bad hypotheses without changing the solution
+	 */
+	@Test
+	public void preTest() {
+		Random rand = new Random(234);
+		List<Double> samples = createMeanSamples(rand,200,0.5);
+
+		CountDistance distance = new CountDistance();
+		Ransac<double[],Double> alg = new Ransac<>(234,new DoubleArrayManager(1),new MeanModelFitter(),
+				distance,200,0.5);
+		alg.setSampleSize(1);
+
+		assertTrue(alg.process(samples));
+		assertEquals(100,alg.getMatchSet().size());
+		int countNoTest = distance.count;
+
+		distance.count = 0;
+		alg.setPreTestSize(1);
+		assertTrue(alg.process(samples));
+		assertEquals(100,alg.getMatchSet().size());
+		assertTrue(distance.count < countNoTest);
+	}
+
+	/**
+	 * Scoring a hypothesis should stop once it can't beat the best
+	 */
+	@Test
+	public void selectMatchSet_bailOut() {
+		List<Double> samples = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			samples.add(i < 60 ? 0.0 : 10.0);
+		}
+
+		CountDistance distance = new CountDistance();
+		Ransac<double[],Double> alg = new Ransac<>(234,new DoubleArrayManager(1),new MeanModelFitter(),
+				distance,20,0.5);
+		alg.matchToInput = new int[ samples.size() ];
+
+		// nothing to beat so every point is examined
+		alg.selectMatchSet(samples,0.5,new double[]{0});
+		assertEquals(60,alg.candidatePoints.size());
+		assertEquals(100,distance.count);
+
+		// make the 60 inliers the best so far
+		List<Double> tmp = alg.bestFitPoints;
+		alg.bestFitPoints = alg.candidatePoints;
+		alg.candidatePoints = tmp;
+
+		// after the first 40 outliers at 10 it's impossible to beat 60
+		distance.count = 0;
+		alg.selectMatchSet(samples,0.5,new double[]{10});
+		assertEquals(40,distance.count);
+	}
+
+	/**
+	 * Counts the number of times the distance is computed
+	 */
+	static class CountDistance extends DistanceFromMeanModel {
+		int count;
+
+		@Override
+		public double computeDistance(Double pt) {
+			count++;
+			return super.computeDistance(pt);
+		}
+	}
+
+	/**
+	 * Creates RANSAC which estimates the mean of a set of numbers
+	 */
+	static Ransac<double[],Double> createMeanRansac( int maxIterations ) {
+		MeanModelFitter fitter = new MeanModelFitter();
+		Ransac<double[],Double> alg = new Ransac<>(234,new DoubleArrayManager(1),fitter,
+				new DistanceFromMeanModel(),maxIterations,0.5);
+		alg.setSampleSize(4);
+		return alg;
+	}
+
+	/**
+	 * Creates a shuffled set of numbers. Inliers are within 0.2 of 2.5 and outliers are at least 3 away
+	 */
+	static List<Double> createMeanSamples( Random rand , int total , double fracOutlier ) {
+		List<Double> samples = new ArrayList<>();
+		int numOutliers = (int)(total*fracOutlier);
+		for (int i = 0; i < total-numOutliers; i++) {
+			samples.add(2.5+(rand.nextDouble()-0.5)*0.4);
+		}
+		for (int i = 0; i < numOutliers; i++) {
+			double sign = rand.nextBoolean() ? 1 : -1;
+			samples.add(2.5+sign*(3+rand.nextDouble()*20));
+		}
+		Collections.shuffle(samples,rand);
+		return samples;
+	}
+
 	/**
 	 * See if it correctly randomly selects points when the initial set size is
 	 * much smaller than the data set size
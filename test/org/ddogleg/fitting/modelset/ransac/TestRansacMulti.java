@@ -18,13 +18,18 @@
 
 package org.ddogleg.fitting.modelset.ransac;
 
+import org.ddogleg.fitting.modelset.DoubleArrayManager;
 import org.ddogleg.fitting.modelset.GenericModelMatcherMultiTests;
+import org.ddogleg.fitting.modelset.MeanModelFitter;
 import org.ddogleg.fitting.modelset.ModelMatcherMulti;
+import org.ddogleg.fitting.modelset.distance.DistanceFromMeanModel;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -57,6 +62,33 @@ public class TestRansacMulti extends GenericModelMatcherMultiTests {
 		return new RansacMulti<Double>(344, 2000, rm, Double.class );
 	}
 
+	/**
+	 * With adaptive termination it should stop well before the maximum number of iterations
+	 */
+	@Test
+	public void adaptiveTermination() {
+		List<Double> samples = TestRansac.createMeanSamples(new Random(234),200,0.2);
+
+		List<RansacMulti.ObjectType> objectTypes = new ArrayList<>();
+		RansacMulti.ObjectType obj0 = new RansacMulti.ObjectType();
+		obj0.modelManager = new DoubleArrayManager(1);
+		obj0.modelGenerator = new MeanModelFitter();
+		obj0.modelDistance = new DistanceFromMeanModel();
+		obj0.thresholdFit = 0.5;
+		obj0.sampleSize = 4;
+		objectTypes.add(obj0);
+
+		RansacMulti<Double> alg = new RansacMulti<>(234,1000,objectTypes,Double.class);
+		alg.setConfidence(0.99);
+		assertTrue(alg.process(samples));
+		assertEquals(160,alg.getMatchSet().size());
+		assertTrue(alg.getIteration() < 30);
+
+		alg.setConfidence(0);
+		assertTrue(alg.process(samples));
+		assertEquals(1000,alg.getIteration());
+	}
+
 	/**
 	 * See if it will select models with more of the correct points in it
 	 */
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.fitting.modelset.ransac;
+
+import org.ddogleg.fitting.modelset.*;
+import org.ddogleg.fitting.modelset.distance.DistanceFromMeanModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestRansacPreemptive extends GenericModelMatcherTests {
+
+	public TestRansacPreemptive() {
+		configure(0.9, 0.05, true);
+	}
+
+	@Override
+	public ModelMatcher<double[],Double> createModelMatcher(ModelManager<double[]> manager,
+															DistanceFromModel<double[],Double> distance,
+															ModelGenerator<double[],Double> generator,
+															ModelFitter<double[],Double> fitter,
+															int minPoints,
+															double fitThreshold) {
+		RansacPreemptive<double[],Double> ret = new RansacPreemptive<>(344, manager, generator, distance,
+				200, 20, fitThreshold);
+		ret.setSampleSize(minPoints);
+
+		return ret;
+	}
+
+	/**
+	 * Hypotheses should be pruned by half after each block until one is left
+	 */
+	@Test
+	public void pruning() {
+		List<Double> samples = TestRansac.createMeanSamples(new Random(234),1000,0.2);
+
+		RansacPreemptive<double[],Double> alg = create(64,10);
+		assertTrue(alg.process(samples));
+
+		assertEquals(64,alg.getTotalGenerated());
+		// 64 -> 32 -> 16 -> 8 -> 4 -> 2 -> 1
+		assertEquals(60,alg.getNumScored());
+		assertEquals(800,alg.getMatchSet().size());
+		assertEquals(2.5,alg.getModelParameters()[0],0.2);
+	}
+
+	/**
+	 * If there are fewer points than needed then all the points are used and the best remaining is selected
+	 */
+	@Test
+	public void runOutOfPoints() {
+		List<Double> samples = TestRansac.createMeanSamples(new Random(234),40,0.2);
+
+		RansacPreemptive<double[],Double> alg = create(64,10);
+		assertTrue(alg.process(samples));
+
+		assertEquals(40,alg.getNumScored());
+		assertEquals(32,alg.getMatchSet().size());
+	}
+
+	/**
+	 * If stop is requested while generating hypotheses it should stop and select from what it has
+	 */
+	@Test
+	public void requestStop() {
+		List<Double> samples = TestRansac.createMeanSamples(new Random(234),1000,0);
+
+		CountGenerator generator = new CountGenerator();
+		RansacPreemptive<double[],Double> alg = new RansacPreemptive<>(234,new DoubleArrayManager(1),
+				generator, new DistanceFromMeanModel(),64,10,0.5);
+		alg.setSampleSize(4);
+		generator.stopAfter = 5;
+		generator.alg = alg;
+
+		assertTrue(alg.process(samples));
+		assertTrue(alg.isStopRequested());
+		assertEquals(5,alg.getTotalGenerated());
+		assertEquals(0,alg.getNumScored());
+		assertEquals(1000,alg.getMatchSet().size());
+
+		// the flag is reset the next time it's called
+		generator.stopAfter = -1;
+		assertTrue(alg.process(samples));
+		assertFalse(alg.isStopRequested());
+		assertEquals(64,alg.getTotalGenerated());
+	}
+
+	/**
+	 * Generating a hypothesis is made slow so that it will run out of time before they are all generated
+	 */
+	@Test
+	public void timeLimit() {
+		List<Double> samples = TestRansac.createMeanSamples(new Random(234),1000,0);
+
+		SlowGenerator generator = new SlowGenerator();
+		RansacPreemptive<double[],Double> alg = new RansacPreemptive<>(234,new DoubleArrayManager(1),
+				generator, new DistanceFromMeanModel(),64,10,0.5);
+		alg.setSampleSize(4);
+		alg.setTimeLimit(10_000_000L);
+
+		assertTrue(alg.process(samples));
+		assertTrue(alg.getTotalGenerated() > 0);
+		assertTrue(alg.getTotalGenerated() < 64);
+		assertEquals(1000,alg.getMatchSet().size());
+
+		// a generous limit has no effect
+		alg.setTimeLimit(60_000_000_000L);
+		assertTrue(alg.process(samples));
+		assertEquals(64,alg.getTotalGenerated());
+	}
+
+	private RansacPreemptive<double[],Double> create( int numHypotheses , int blockSize ) {
+		RansacPreemptive<double[],Double> alg = new RansacPreemptive<>(234,new DoubleArrayManager(1),
+				new MeanModelFitter(), new DistanceFromMeanModel(),numHypotheses,blockSize,0.5);
+		alg.setSampleSize(4);
+		return alg;
+	}
+
+	/**
+	 * Takes at least 1 ms to generate a model
+	 */
+	static class SlowGenerator extends MeanModelFitter {
+		@Override
+		public boolean generate(List<Double> dataSet, double[] p) {
+			long start = System.nanoTime();
+			while( System.nanoTime() - start < 1_000_000L ) {}
+			return super.generate(dataSet, p);
+		}
+	}
+
+	/**
+	 * Requests that the algorithm stop after a set number of models have been generated
+	 */
+	static class CountGenerator extends MeanModelFitter {
+		RansacPreemptive alg;
+		int stopAfter;
+		int count;
+
+		@Override
+		public boolean generate(List<Double> dataSet, double[] p) {
+			if( ++count == stopAfter )
+				alg.requestStop();
+			return super.generate(dataSet, p);
+		}
+	}
+}
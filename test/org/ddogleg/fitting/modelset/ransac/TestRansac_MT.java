@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.fitting.modelset.ransac;
+
+import org.ddogleg.fitting.modelset.*;
+import org.ddogleg.fitting.modelset.distance.DistanceFromMeanModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestRansac_MT extends GenericModelMatcherTests {
+
+	public TestRansac_MT() {
+		configure(0.9, 0.05, true);
+	}
+
+	@Override
+	public ModelMatcher<double[],Double> createModelMatcher(ModelManager<double[]> manager,
+															DistanceFromModel<double[],Double> distance,
+															ModelGenerator<double[],Double> generator,
+															ModelFitter<double[],Double> fitter,
+															int minPoints,
+															double fitThreshold) {
+		// the generator and distance are stateful so new instances are created for each thread
+		Ransac_MT<double[],Double> ret = new Ransac_MT<>(344, manager,
+				MeanModelFitter::new, DistanceFromMeanModel::new, 200, fitThreshold);
+		ret.setSampleSize(minPoints);
+
+		return ret;
+	}
+
+	/**
+	 * The same results should be found no matter how many threads or how large the blocks are
+	 */
+	@Test
+	public void deterministic() {
+		deterministic(0);
+		deterministic(2);
+	}
+
+	private void deterministic( int preTestSize ) {
+		List<Double> samples = TestRansac.createMeanSamples(new Random(234),300,0.6);
+
+		Ransac_MT<double[],Double> expected = create(new ForkJoinPool(1),64);
+		expected.setPreTestSize(preTestSize);
+		assertTrue(expected.process(samples));
+
+		for( int numThreads : new int[]{2,4} ) {
+			for( int blockSize : new int[]{1,7,64} ) {
+				Ransac_MT<double[],Double> alg = create(new ForkJoinPool(numThreads),blockSize);
+				alg.setPreTestSize(preTestSize);
+				assertTrue(alg.process(samples));
+
+				assertEquals(expected.getIteration(),alg.getIteration());
+				assertEquals(expected.getModelParameters()[0],alg.getModelParameters()[0]);
+				assertEquals(expected.getMatchSet().size(),alg.getMatchSet().size());
+				for (int i = 0; i < alg.getMatchSet().size(); i++) {
+					assertEquals(expected.getInputIndex(i),alg.getInputIndex(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void adaptiveTermination() {
+		List<Double> samples = TestRansac.createMeanSamples(new Random(234),200,0.2);
+
+		Ransac_MT<double[],Double> alg = create(ForkJoinPool.commonPool(),64);
+		alg.setMaxIterations(1000);
+		alg.setConfidence(0.99);
+		assertTrue(alg.process(samples));
+		assertEquals(160,alg.getMatchSet().size());
+		assertTrue(alg.getIteration() < 30);
+
+		alg.setConfidence(0);
+		assertTrue(alg.process(samples));
+		assertEquals(1000,alg.getIteration());
+	}
+
+	/**
+	 * Good hypotheses can fail the pre-test, so more iterations are needed to reach the same confidence
+	 */
+	@Test
+	public void adaptiveTermination_preTest() {
+		List<Double> samples = TestRansac.createMeanSamples(new Random(234),200,0.2);
+
+		Ransac_MT<double[],Double> alg = create(ForkJoinPool.commonPool(),64);
+		alg.setMaxIterations(1000);
+		alg.setConfidence(0.99);
+		assertTrue(alg.process(samples));
+		assertEquals(160,alg.getMatchSet().size());
+		int iterationsNoTest = alg.getIteration();
+
+		alg.setPreTestSize(2);
+		assertTrue(alg.process(samples));
+		assertEquals(160,alg.getMatchSet().size());
+		assertEquals(Ransac.computeIterations(160,200,4,0.99,1000),iterationsNoTest);
+		assertEquals(Ransac.computeIterations(160,200,6,0.99,1000),alg.getIteration());
+		assertTrue(alg.getIteration() > iterationsNoTest);
+	}
+
+	private Ransac_MT<double[],Double> create( ForkJoinPool pool , int blockSize ) {
+		Ransac_MT<double[],Double> alg = new Ransac_MT<>(234,new DoubleArrayManager(1),
+				MeanModelFitter::new, DistanceFromMeanModel::new,500,0.5,pool);
+		alg.setSampleSize(4);
+		alg.setConfidence(0.95);
+		alg.setBlockSize(blockSize);
+		return alg;
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates random sets of points for testing nearest-neighbor algorithms
+ *
+ * @author Peter Abeles
+ */
+public class NearestNeighborPoints {
+	/**
+	 * Points where each element is drawn from a zero mean unit variance Gaussian distribution
+	 */
+	public static List<double[]> gaussian( Random rand , int total , int N ) {
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < total; i++) {
+			double[] p = new double[N];
+			for (int j = 0; j < N; j++) {
+				p[j] = rand.nextGaussian();
+			}
+			points.add(p);
+		}
+		return points;
+	}
+
+	/**
+	 * Points where each element is drawn from a uniform distribution from 0 to max
+	 */
+	public static List<double[]> uniform( Random rand , int total , int N , double max ) {
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < total; i++) {
+			double[] p = new double[N];
+			for (int j = 0; j < N; j++) {
+				p[j] = rand.nextDouble()*max;
+			}
+			points.add(p);
+		}
+		return points;
+	}
+}
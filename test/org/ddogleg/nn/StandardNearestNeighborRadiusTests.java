@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn;
+
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Standard tests for {@link NearestNeighborRadius}. Distance is assumed to be Euclidean squared.
+ *
+ * @author Peter Abeles
+ */
+public abstract class StandardNearestNeighborRadiusTests extends StandardNearestNeighborTests {
+
+	private Random rand = new Random(234);
+
+	private KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+	private NearestNeighborRadius<double[]> alg;
+
+	private FastQueue<NnData<double[]>> found = new FastQueue<>((Class)NnData.class,true);
+
+	public void setAlg(NearestNeighborRadius<double[]> alg) {
+		super.setAlg(alg);
+		this.alg = alg;
+	}
+
+	@Test
+	public void findRadius_zero() {
+		alg.setPoints(new ArrayList<>(),true);
+		found.grow();
+		alg.findRadius(new double[]{1,2},10,-1,true,found);
+		assertEquals(0,found.size);
+	}
+
+	@Test
+	public void findRadius_compareToNaive() {
+		List<double[]> points = NearestNeighborPoints.uniform(rand,200,N,1);
+		alg.setPoints(points,true);
+
+		for (int trial = 0; trial < 20; trial++) {
+			double[] where = randPoint();
+			double radius = rand.nextDouble()*0.3;
+
+			// sorted
+			alg.findRadius(where,radius,-1,true,found);
+			checkSolution(points,where,radius);
+			for (int i = 1; i < found.size; i++) {
+				assertTrue(found.get(i-1).distance <= found.get(i).distance);
+			}
+
+			// unsorted
+			alg.findRadius(where,radius,0,false,found);
+			checkSolution(points,where,radius);
+		}
+	}
+
+	/**
+	 * Zero radius should only find points which are identical
+	 */
+	@Test
+	public void findRadius_zeroRadius() {
+		List<double[]> points = NearestNeighborPoints.uniform(rand,20,N,1);
+		points.add(points.get(5).clone());
+		alg.setPoints(points,true);
+
+		alg.findRadius(points.get(5),0,-1,true,found);
+		assertEquals(2,found.size);
+		assertEquals(0,found.get(0).distance);
+		assertEquals(0,found.get(1).distance);
+	}
+
+	@Test
+	public void findRadius_maxResults() {
+		List<double[]> points = NearestNeighborPoints.uniform(rand,200,N,1);
+		alg.setPoints(points,true);
+
+		double[] where = randPoint();
+		alg.findRadius(where,0.2,-1,false,found);
+		int total = found.size;
+		assertTrue(total > 5);
+
+		alg.findRadius(where,0.2,5,true,found);
+		assertEquals(5,found.size);
+		for (int i = 0; i < found.size; i++) {
+			NnData<double[]> r = found.get(i);
+			assertTrue(r.distance <= 0.2);
+			assertEquals(distance.distance(where,points.get(r.index)),r.distance,1e-8);
+		}
+
+		// the limit is larger than the number of points inside the radius
+		alg.findRadius(where,0.2,total+10,true,found);
+		assertEquals(total,found.size);
+	}
+
+	@Test
+	public void findRadius_createSearch() {
+		List<double[]> points = NearestNeighborPoints.uniform(rand,200,N,1);
+		alg.setPoints(points,true);
+
+		NearestNeighborRadius.SearchRadius<double[]> search = alg.createSearch();
+		FastQueue<NnData<double[]>> foundSearch = new FastQueue<>((Class)NnData.class,true);
+
+		double[] where = randPoint();
+		alg.findRadius(where,0.1,-1,true,found);
+		search.findRadius(where,0.1,-1,true,foundSearch);
+
+		assertEquals(found.size,foundSearch.size);
+		for (int i = 0; i < found.size; i++) {
+			assertEquals(found.get(i).distance,foundSearch.get(i).distance,1e-8);
+		}
+	}
+
+	@Test
+	public void findRadius_negative() {
+		alg.setPoints(NearestNeighborPoints.uniform(rand,10,N,1),true);
+		assertThrows(IllegalArgumentException.class,()->alg.findRadius(randPoint(),-1,-1,true,found));
+	}
+
+	/**
+	 * Compares the found points against a brute force search
+	 */
+	private void checkSolution( List<double[]> points , double[] where , double radius ) {
+		boolean[] inside = new boolean[points.size()];
+		int expected = 0;
+		for (int i = 0; i < points.size(); i++) {
+			if( distance.distance(where,points.get(i)) <= radius ) {
+				inside[i] = true;
+				expected++;
+			}
+		}
+
+		assertEquals(expected,found.size);
+		for (int i = 0; i < found.size; i++) {
+			NnData<double[]> r = found.get(i);
+			assertTrue(inside[r.index]);
+			inside[r.index] = false; // make sure it isn't found twice
+			assertSame(points.get(r.index),r.point);
+			assertEquals(distance.distance(where,r.point),r.distance,1e-8);
+		}
+	}
+
+	private double[] randPoint() {
+		double []ret = new double[N];
+		for( int i = 0; i < N; i++ )
+			ret[i] = rand.nextDouble();
+		return ret;
+	}
+}
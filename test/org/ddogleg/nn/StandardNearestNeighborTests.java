@@ -358,4 +358,59 @@ public abstract class StandardNearestNeighborTests {
 			}
 		}
 	}
+
+	/**
+	 * Searches created by createSearch() are used concurrently and should produce the same results as the
+	 * search in the parent
+	 */
+	@Test
+	public void createSearch_concurrent() throws InterruptedException {
+		List<double[]> points = new ArrayList<>();
+		for( int i = 0; i < 200; i++ )
+			points.add(randPoint(2));
+		List<double[]> targets = new ArrayList<>();
+		for( int i = 0; i < 100; i++ )
+			targets.add(randPoint(2));
+
+		alg.setPoints(points,true);
+
+		// compute the expected solution using the not thread safe functions
+		int[] expected1 = new int[targets.size()];
+		int[] expectedN = new int[targets.size()];
+		for( int i = 0; i < targets.size(); i++ ) {
+			assertTrue(alg.findNearest(targets.get(i),-1,found));
+			expected1[i] = found.index;
+			alg.findNearest(targets.get(i),-1,3,foundN);
+			expectedN[i] = foundN.size;
+		}
+
+		int numThreads = 4;
+		Thread[] threads = new Thread[numThreads];
+		boolean[] success = new boolean[numThreads];
+		for( int threadIdx = 0; threadIdx < numThreads; threadIdx++ ) {
+			final int which = threadIdx;
+			final NearestNeighbor.Search<double[]> search = alg.createSearch();
+			threads[threadIdx] = new Thread(()->{
+				NnData<double[]> result = new NnData<>();
+				FastQueue<NnData<double[]>> resultN = new FastQueue<>((Class)NnData.class,true);
+				for( int trial = 0; trial < 10; trial++ ) {
+					for( int i = 0; i < targets.size(); i++ ) {
+						if( !search.findNearest(targets.get(i),-1,result) || result.index != expected1[i] )
+							return;
+						search.findNearest(targets.get(i),-1,3,resultN);
+						if( resultN.size != expectedN[i] )
+							return;
+					}
+				}
+				success[which] = true;
+			});
+		}
+		for( Thread t : threads )
+			t.start();
+		for( Thread t : threads )
+			t.join();
+
+		for( int i = 0; i < numThreads; i++ )
+			assertTrue(success[i]);
+	}
 }
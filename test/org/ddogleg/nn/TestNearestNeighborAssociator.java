@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn;
+
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestNearestNeighborAssociator {
+	Random rand = new Random(234);
+
+	GrowQueue_I32 matchSrc = new GrowQueue_I32();
+	GrowQueue_I32 matchDst = new GrowQueue_I32();
+	GrowQueue_F64 matchDistance = new GrowQueue_F64();
+
+	/**
+	 * Destination is a shuffled and slightly perturbed copy of the source. Everything should be matched.
+	 */
+	@Test
+	public void perfectMatch() {
+		List<double[]> src = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			src.add(new double[]{rand.nextDouble()*100,rand.nextDouble()*100,rand.nextDouble()*100});
+		}
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < src.size(); i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order,rand);
+		List<double[]> dst = new ArrayList<>();
+		for (int i = 0; i < src.size(); i++) {
+			double[] p = src.get(order.get(i)).clone();
+			p[0] += 1e-4;
+			dst.add(p);
+		}
+
+		NearestNeighborAssociator<double[]> alg = FactoryNearestNeighbor.associator(new KdTreeEuclideanSq_F64(3));
+		alg.setMutual(true);
+		alg.setRatioTest(0.8*0.8);
+		alg.associate(src,dst,matchSrc,matchDst,matchDistance);
+
+		assertEquals(src.size(),matchSrc.size);
+		for (int i = 0; i < matchSrc.size; i++) {
+			assertEquals(i,matchSrc.get(i));
+			assertEquals(i,(int)order.get(matchDst.get(i)));
+			assertEquals(1e-8,matchDistance.get(i),1e-12);
+		}
+	}
+
+	/**
+	 * A source point is about the same distance from two destination points
+	 */
+	@Test
+	public void ratioTest() {
+		List<double[]> src = new ArrayList<>();
+		src.add(new double[]{0,0});
+		src.add(new double[]{10,0});
+		List<double[]> dst = new ArrayList<>();
+		dst.add(new double[]{1,0});
+		dst.add(new double[]{-1.1,0});
+		dst.add(new double[]{10,0.1});
+
+		NearestNeighborAssociator<double[]> alg = FactoryNearestNeighbor.associator(new KdTreeEuclideanSq_F64(2));
+		alg.associate(src,dst,matchSrc,matchDst,null);
+		assertEquals(2,matchSrc.size);
+
+		alg.setRatioTest(0.8*0.8);
+		alg.associate(src,dst,matchSrc,matchDst,null);
+		assertEquals(1,matchSrc.size);
+		assertEquals(1,matchSrc.get(0));
+		assertEquals(2,matchDst.get(0));
+	}
+
+	/**
+	 * Two source points have the same closest destination point. Only the closest should be kept.
+	 */
+	@Test
+	public void uniqueDestination() {
+		List<double[]> src = new ArrayList<>();
+		src.add(new double[]{0,0});
+		src.add(new double[]{1.5,0});
+		List<double[]> dst = new ArrayList<>();
+		dst.add(new double[]{1,0});
+
+		NearestNeighborAssociator<double[]> alg = FactoryNearestNeighbor.associator(new KdTreeEuclideanSq_F64(2));
+		alg.associate(src,dst,matchSrc,matchDst,matchDistance);
+		assertEquals(1,matchSrc.size);
+		assertEquals(1,matchSrc.get(0));
+		assertEquals(0,matchDst.get(0));
+		assertEquals(0.25,matchDistance.get(0),1e-8);
+	}
+
+	@Test
+	public void mutual() {
+		List<double[]> src = new ArrayList<>();
+		src.add(new double[]{0,0});
+		src.add(new double[]{2.6,0});
+		List<double[]> dst = new ArrayList<>();
+		dst.add(new double[]{2,0});
+		dst.add(new double[]{3,0});
+
+		NearestNeighborAssociator<double[]> alg = FactoryNearestNeighbor.associator(new KdTreeEuclideanSq_F64(2));
+		alg.associate(src,dst,matchSrc,matchDst,null);
+		assertEquals(2,matchSrc.size);
+
+		// the closest source point to dst[0] is src[1]
+		alg.setMutual(true);
+		alg.associate(src,dst,matchSrc,matchDst,null);
+		assertEquals(1,matchSrc.size);
+		assertEquals(1,matchSrc.get(0));
+		assertEquals(1,matchDst.get(0));
+	}
+
+	@Test
+	public void maxDistance() {
+		List<double[]> src = new ArrayList<>();
+		src.add(new double[]{0,0});
+		src.add(new double[]{10,0});
+		List<double[]> dst = new ArrayList<>();
+		dst.add(new double[]{1,0});
+		dst.add(new double[]{12,0});
+
+		NearestNeighborAssociator<double[]> alg = FactoryNearestNeighbor.associator(new KdTreeEuclideanSq_F64(2));
+		alg.setMaxDistance(2);
+		alg.associate(src,dst,matchSrc,matchDst,null);
+		assertEquals(1,matchSrc.size);
+		assertEquals(0,matchSrc.get(0));
+		assertEquals(0,matchDst.get(0));
+	}
+
+	/**
+	 * The second best match is just outside the max distance. It should still be used by the ratio test
+	 */
+	@Test
+	public void maxDistance_ratioTest() {
+		List<double[]> src = new ArrayList<>();
+		src.add(new double[]{0,0});
+		List<double[]> dst = new ArrayList<>();
+		dst.add(new double[]{Math.sqrt(0.9),0});
+		dst.add(new double[]{-Math.sqrt(1.05),0});
+
+		NearestNeighborAssociator<double[]> alg = FactoryNearestNeighbor.associator(new KdTreeEuclideanSq_F64(2));
+		alg.setMaxDistance(1.0);
+		alg.associate(src,dst,matchSrc,matchDst,null);
+		assertEquals(1,matchSrc.size);
+		assertEquals(0,matchDst.get(0));
+
+		alg.setRatioTest(0.8);
+		alg.associate(src,dst,matchSrc,matchDst,null);
+		assertEquals(0,matchSrc.size);
+	}
+
+	@Test
+	public void empty() {
+		List<double[]> src = new ArrayList<>();
+		src.add(new double[]{0,0});
+
+		NearestNeighborAssociator<double[]> alg = FactoryNearestNeighbor.associator(new KdTreeEuclideanSq_F64(2));
+		alg.associate(src,new ArrayList<>(),matchSrc,matchDst,null);
+		assertEquals(0,matchSrc.size);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn;
+
+import org.ddogleg.nn.alg.ExhaustiveNeighbor;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestNearestNeighborBatch {
+
+	Random rand = new Random(234);
+	int N = 3;
+	KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+
+	/**
+	 * Compare the results against an exhaustive search for different numbers of neighbors
+	 */
+	@Test
+	public void compareToExhaustive() {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,500,N);
+		List<double[]> queries = NearestNeighborPoints.gaussian(rand,1000,N);
+
+		NearestNeighbor<double[]> nn = FactoryNearestNeighbor.kdtree(distance);
+		nn.setPoints(points,true);
+
+		NearestNeighborBatch<double[]> alg = new NearestNeighborBatch<>(nn);
+		alg.setMinBlockSize(20);
+
+		ExhaustiveNeighbor<double[]> exhaustive = new ExhaustiveNeighbor<>(distance);
+		exhaustive.setPoints(points);
+
+		NnBatchResults results = new NnBatchResults();
+		GrowQueue_I32 expectedIndex = new GrowQueue_I32();
+		GrowQueue_F64 expectedDistance = new GrowQueue_F64();
+
+		for( int numNeighbors : new int[]{1,4} ) {
+			alg.findNearest(queries,-1,numNeighbors,results);
+
+			assertEquals(queries.size(),results.numQueries);
+			for (int query = 0; query < queries.size(); query++) {
+				expectedIndex.reset();
+				expectedDistance.reset();
+				exhaustive.findClosestN(queries.get(query),Double.MAX_VALUE,numNeighbors,expectedIndex,expectedDistance);
+				expectedDistance.sort();
+
+				assertEquals(numNeighbors,results.getCount(query));
+				for (int k = 0; k < numNeighbors; k++) {
+					assertEquals(expectedDistance.get(k),results.getDistance(query,k),1e-8);
+					double[] p = points.get(results.getIndex(query,k));
+					assertEquals(results.getDistance(query,k),distance.distance(p,queries.get(query)),1e-8);
+				}
+			}
+		}
+	}
+
+	/**
+	 * If fewer neighbors are found than requested the remaining elements should be marked
+	 */
+	@Test
+	public void tooFewNeighbors() {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,3,N);
+		List<double[]> queries = NearestNeighborPoints.gaussian(rand,10,N);
+
+		NearestNeighbor<double[]> nn = FactoryNearestNeighbor.exhaustive(distance);
+		nn.setPoints(points,true);
+
+		NnBatchResults results = new NnBatchResults();
+		new NearestNeighborBatch<>(nn).findNearest(queries,-1,5,results);
+
+		for (int query = 0; query < queries.size(); query++) {
+			assertEquals(3,results.getCount(query));
+			for (int k = 0; k < 3; k++) {
+				assertTrue(results.getIndex(query,k) >= 0);
+			}
+			for (int k = 3; k < 5; k++) {
+				assertEquals(-1,results.getIndex(query,k));
+				assertTrue(Double.isNaN(results.getDistance(query,k)));
+			}
+		}
+	}
+}
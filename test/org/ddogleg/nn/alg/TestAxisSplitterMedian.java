@@ -174,6 +174,11 @@ public class TestAxisSplitterMedian {
 		public int select(double[] variance) {
 			return which;
 		}
+
+		@Override
+		public AxisSplitRule copy() {
+			return new DummyRule(which);
+		}
 	}
 
 }
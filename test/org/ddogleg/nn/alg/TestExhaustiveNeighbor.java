@@ -156,6 +156,50 @@ public class TestExhaustiveNeighbor {
 		checkContains(3,outputIndex);
 	}
 
+	/**
+	 * Once N points have been found, the distance to the farthest of them should be the bound so that far points
+	 * can be discarded early
+	 */
+	@Test
+	public void findClosestN_bound() {
+		GrowQueue_F64 bounds = new GrowQueue_F64();
+		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(2) {
+			@Override
+			public double distance(double[] a, double[] b, double bound) {
+				bounds.add(bound);
+				return super.distance(a,b,bound);
+			}
+		};
+
+		List<double[]> list = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			list.add(new double[]{i,0});
+		}
+
+		ExhaustiveNeighbor<double[]> alg = new ExhaustiveNeighbor<>(distance);
+		alg.setPoints(list);
+
+		GrowQueue_I32 outputIndex = new GrowQueue_I32();
+		GrowQueue_F64 outputDistance = new GrowQueue_F64();
+		alg.findClosestN(new double[]{0,0}, Double.MAX_VALUE, 3, outputIndex, outputDistance);
+
+		assertEquals(10,bounds.size);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(Double.MAX_VALUE,bounds.get(i));
+		}
+		// the third closest is at a distance of 2
+		for (int i = 3; i < 10; i++) {
+			assertEquals(4.0,bounds.get(i),1e-8);
+		}
+
+		// results are sorted from closest to farthest
+		assertEquals(3,outputIndex.size);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i,outputIndex.get(i));
+			assertEquals(i*i,outputDistance.get(i),1e-8);
+		}
+	}
+
 	/**
 	 * Make sure it works after multiple calls
 	 */
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestExhaustiveNeighborBlock {
+
+	Random rand = new Random(234);
+
+	/**
+	 * Compare against {@link ExhaustiveNeighbor} for dimensions which do and don't fill the unrolled loop
+	 */
+	@Test
+	public void findClosest_compare() {
+		for( int N : new int[]{1,4,7,33} ) {
+			KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+			List<double[]> points = NearestNeighborPoints.gaussian(rand,500,N);
+
+			ExhaustiveNeighbor<double[]> expected = new ExhaustiveNeighbor<>(distance);
+			expected.setPoints(points);
+			ExhaustiveNeighborBlock<double[]> alg = createAlg(distance,points);
+
+			for (int i = 0; i < 50; i++) {
+				double[] target = NearestNeighborPoints.gaussian(rand,1,N).get(0);
+				assertEquals(expected.findClosest(target,Double.MAX_VALUE),alg.findClosest(target,Double.MAX_VALUE));
+				assertEquals(expected.getBestDistance(),alg.getBestDistance(),1e-8);
+			}
+		}
+	}
+
+	@Test
+	public void findClosest_maxDistance() {
+		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(2);
+		List<double[]> points = TestKdTreeConstructor.createPoints(2,  1,2,  3,4);
+		ExhaustiveNeighborBlock<double[]> alg = createAlg(distance,points);
+
+		assertEquals(0, alg.findClosest(new double[]{1, 2.1}, 10));
+		assertEquals(-1, alg.findClosest(new double[]{1, 200}, 10));
+	}
+
+	@Test
+	public void findClosestN_compare() {
+		int N = 6;
+		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,300,N);
+
+		ExhaustiveNeighbor<double[]> expected = new ExhaustiveNeighbor<>(distance);
+		expected.setPoints(points);
+		ExhaustiveNeighborBlock<double[]> alg = createAlg(distance,points);
+
+		GrowQueue_I32 expectedIndex = new GrowQueue_I32();
+		GrowQueue_F64 expectedDistance = new GrowQueue_F64();
+		GrowQueue_I32 foundIndex = new GrowQueue_I32();
+		GrowQueue_F64 foundDistance = new GrowQueue_F64();
+
+		for (int i = 0; i < 50; i++) {
+			double[] target = NearestNeighborPoints.gaussian(rand,1,N).get(0);
+			expectedIndex.reset(); expectedDistance.reset();
+			foundIndex.reset(); foundDistance.reset();
+			expected.findClosestN(target,Double.MAX_VALUE,7,expectedIndex,expectedDistance);
+			alg.findClosestN(target,Double.MAX_VALUE,7,foundIndex,foundDistance);
+
+			assertEquals(expectedIndex.size,foundIndex.size);
+			for (int j = 0; j < foundIndex.size; j++) {
+				int k = expectedIndex.indexOf(foundIndex.get(j));
+				assertTrue(k >= 0);
+				assertEquals(expectedDistance.get(k),foundDistance.get(j),1e-8);
+			}
+		}
+	}
+
+	/**
+	 * Batch search should produce the same results as searching one at a time.  Blocks are small so that the
+	 * queries and points are split up into several uneven blocks.
+	 */
+	@Test
+	public void findClosest_batch() {
+		int N = 5;
+		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,103,N);
+		List<double[]> queries = NearestNeighborPoints.gaussian(rand,37,N);
+		// make one query have no neighbor within range
+		queries.get(5)[0] = 1000;
+
+		ExhaustiveNeighborBlock<double[]> alg = createAlg(distance,points);
+		alg.setBlockQueries(5);
+		alg.setBlockPoints(10);
+
+		GrowQueue_I32 foundIndex = new GrowQueue_I32();
+		GrowQueue_F64 foundDistance = new GrowQueue_F64();
+		alg.findClosest(queries,50,foundIndex,foundDistance);
+
+		assertEquals(queries.size(),foundIndex.size);
+		assertEquals(queries.size(),foundDistance.size);
+		for (int i = 0; i < queries.size(); i++) {
+			int expected = alg.findClosest(queries.get(i),50);
+			assertEquals(expected,foundIndex.get(i));
+			if( expected == -1 )
+				assertTrue(Double.isNaN(foundDistance.get(i)));
+			else
+				assertEquals(alg.getBestDistance(),foundDistance.get(i),1e-8);
+		}
+		assertEquals(-1,foundIndex.get(5));
+	}
+
+	private ExhaustiveNeighborBlock<double[]> createAlg( KdTreeDistance<double[]> distance , List<double[]> points ) {
+		ExhaustiveNeighborBlock<double[]> alg = new ExhaustiveNeighborBlock<>(distance);
+		GrowQueue_F64 data = new GrowQueue_F64();
+		alg.convert(points,data);
+		alg.setPoints(data);
+		return alg;
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.StandardNearestNeighborTests;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestHierarchicalKMeansTree {
+	Random rand = new Random(234);
+
+	/**
+	 * With no limit on the number of points checked the search is exact
+	 */
+	@Nested
+	public class Exact extends StandardNearestNeighborTests {
+		public Exact() {
+			setAlg(new HierarchicalKMeansTree(3,0,234));
+		}
+	}
+
+	@Nested
+	public class Concurrent extends StandardNearestNeighborTests {
+		public Concurrent() {
+			HierarchicalKMeansTree alg = new HierarchicalKMeansTree(3,0,234);
+			alg.minConcurrentSize = 10;
+			alg.setConcurrent(true);
+			setAlg(alg);
+		}
+	}
+
+	@Test
+	public void compareToExhaustive() {
+		int N = 8;
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,2000,N);
+
+		HierarchicalKMeansTree alg = new HierarchicalKMeansTree(8,0,234);
+		alg.setPoints(points,true);
+
+		ExhaustiveNeighbor<double[]> exhaustive = new ExhaustiveNeighbor<>(new KdTreeEuclideanSq_F64(N));
+		exhaustive.setPoints(points);
+
+		FastQueue<NnData<double[]>> found = new FastQueue(NnData.class,true);
+		GrowQueue_I32 expectedIndex = new GrowQueue_I32();
+		GrowQueue_F64 expectedDistance = new GrowQueue_F64();
+		for (int trial = 0; trial < 20; trial++) {
+			double[] target = NearestNeighborPoints.gaussian(rand,1,N).get(0);
+
+			expectedIndex.reset();
+			expectedDistance.reset();
+			exhaustive.findClosestN(target,Double.MAX_VALUE,5,expectedIndex,expectedDistance);
+			expectedDistance.sort();
+
+			alg.findNearest(target,-1,5,found);
+			assertEquals(5,found.size);
+			for (int i = 0; i < 5; i++) {
+				assertEquals(expectedDistance.get(i),found.get(i).distance,1e-8);
+			}
+		}
+	}
+
+	/**
+	 * The approximate search should find most of the true neighbors and only check a limited number of points
+	 */
+	@Test
+	public void approximate() {
+		int N = 8;
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,2000,N);
+
+		HierarchicalKMeansTree alg = new HierarchicalKMeansTree(8,200,234);
+		alg.setPoints(points,true);
+
+		ExhaustiveNeighbor<double[]> exhaustive = new ExhaustiveNeighbor<>(new KdTreeEuclideanSq_F64(N));
+		exhaustive.setPoints(points);
+
+		NnData<double[]> found = new NnData<>();
+		int numCorrect = 0;
+		for (int trial = 0; trial < 100; trial++) {
+			double[] target = NearestNeighborPoints.gaussian(rand,1,N).get(0);
+			assertTrue(alg.findNearest(target,-1,found));
+			if( found.index == exhaustive.findClosest(target,Double.MAX_VALUE) )
+				numCorrect++;
+		}
+		assertTrue(numCorrect >= 50);
+	}
+
+	/**
+	 * Concurrent construction should produce the same tree
+	 */
+	@Test
+	public void concurrent_identical() {
+		int N = 4;
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,3000,N);
+
+		HierarchicalKMeansTree single = new HierarchicalKMeansTree(4,50,234);
+		HierarchicalKMeansTree concurrent = new HierarchicalKMeansTree(4,50,234);
+		concurrent.minConcurrentSize = 100;
+		concurrent.setConcurrent(true);
+		single.setPoints(points,true);
+		concurrent.setPoints(points,true);
+
+		NnData<double[]> a = new NnData<>();
+		NnData<double[]> b = new NnData<>();
+		for (int trial = 0; trial < 50; trial++) {
+			double[] target = NearestNeighborPoints.gaussian(rand,1,N).get(0);
+			assertTrue(single.findNearest(target,-1,a));
+			assertTrue(concurrent.findNearest(target,-1,b));
+			assertEquals(a.index,b.index);
+		}
+	}
+
+	/**
+	 * Points which are identical can't be split by k-means
+	 */
+	@Test
+	public void identicalPoints() {
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			points.add(new double[]{1,2});
+		}
+		points.add(new double[]{5,2});
+
+		HierarchicalKMeansTree alg = new HierarchicalKMeansTree(4,0,234);
+		alg.setPoints(points,true);
+
+		NnData<double[]> found = new NnData<>();
+		assertTrue(alg.findNearest(new double[]{4.5,2},-1,found));
+		assertEquals(100,found.index);
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.StandardNearestNeighborTests;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestHnswIndex {
+	Random rand = new Random(234);
+
+	@Nested
+	public class Standard extends StandardNearestNeighborTests {
+		public Standard() {
+			setAlg(new HnswIndex(4,20,234));
+		}
+	}
+
+	@Nested
+	public class Concurrent extends StandardNearestNeighborTests {
+		public Concurrent() {
+			HnswIndex alg = new HnswIndex(4,20,234);
+			alg.setConcurrent(true);
+			setAlg(alg);
+		}
+	}
+
+	/**
+	 * Almost all of the true nearest neighbors should be found
+	 */
+	@Test
+	public void recallVersusExhaustive() {
+		int N = 8;
+		List<double[]> points = NearestNeighborPoints.uniform(rand,3000,N,10);
+
+		HnswIndex alg = new HnswIndex(12,100,234);
+		alg.setPoints(points,true);
+		checkRecall(alg,points,N,0.95);
+	}
+
+	@Test
+	public void recallConcurrent() {
+		int N = 8;
+		List<double[]> points = NearestNeighborPoints.uniform(rand,3000,N,10);
+
+		HnswIndex alg = new HnswIndex(12,100,234);
+		alg.setConcurrent(true);
+		alg.setPoints(points,true);
+		assertEquals(points.size(),alg.size());
+		checkRecall(alg,points,N,0.95);
+	}
+
+	/**
+	 * When built concurrently, every node should be linked in all of its layers and the entry point should be in
+	 * the top layer. Two nodes above the old top level used to be linked at the same time, leaving one of them
+	 * out of the layers in between.
+	 */
+	@Test
+	public void concurrent_allLayersLinked() {
+		for (int trial = 0; trial < 5; trial++) {
+			List<double[]> points = NearestNeighborPoints.uniform(rand,1000,4,10);
+
+			// few neighbors so that there are many layers
+			HnswIndex alg = new HnswIndex(2,20,trial);
+			alg.setConcurrent(true);
+			alg.setPoints(points,true);
+
+			int maxLevel = 0;
+			for (int i = 0; i < alg.size(); i++) {
+				maxLevel = Math.max(maxLevel,alg.nodes[i].level);
+			}
+			assertEquals(maxLevel,alg.entry.level);
+
+			for (int layer = 1; layer <= maxLevel; layer++) {
+				int count = 0;
+				for (int i = 0; i < alg.size(); i++) {
+					if( alg.nodes[i].level >= layer )
+						count++;
+				}
+				if( count < 2 )
+					continue;
+				for (int i = 0; i < alg.size(); i++) {
+					if( alg.nodes[i].level >= layer )
+						assertTrue(alg.nodes[i].neighbors.get(layer).length > 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Points are added by several threads while another thread searches
+	 */
+	@Test
+	public void addWhileSearching() throws InterruptedException {
+		int N = 6;
+		List<double[]> points = NearestNeighborPoints.uniform(rand,2000,N,10);
+
+		HnswIndex alg = new HnswIndex(10,80,234);
+
+		int numThreads = 4;
+		Thread[] threads = new Thread[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			final int offset = i;
+			threads[i] = new Thread(() -> {
+				for (int j = offset; j < points.size(); j += numThreads) {
+					alg.add(points.get(j));
+				}
+			});
+		}
+
+		AtomicBoolean failed = new AtomicBoolean(false);
+		AtomicBoolean finished = new AtomicBoolean(false);
+		Thread reader = new Thread(() -> {
+			NearestNeighbor.Search<double[]> search = alg.createSearch();
+			FastQueue<NnData<double[]>> found = new FastQueue(NnData.class,true);
+			Random rand = new Random(2);
+			try {
+				while (!finished.get()) {
+					double[] target = points.get(rand.nextInt(points.size()));
+					search.findNearest(target,-1,5,found);
+					for (int i = 1; i < found.size; i++) {
+						if( found.get(i-1).distance > found.get(i).distance )
+							failed.set(true);
+					}
+				}
+			} catch( RuntimeException e ) {
+				failed.set(true);
+			}
+		});
+
+		reader.start();
+		for (Thread t : threads) t.start();
+		for (Thread t : threads) t.join();
+		finished.set(true);
+		reader.join();
+
+		assertFalse(failed.get());
+		assertEquals(points.size(),alg.size());
+
+		// every point should be found in the graph. Indexes depend on the order points were added
+		NnData<double[]> result = new NnData<>();
+		for (int i = 0; i < points.size(); i += 10) {
+			assertTrue(alg.findNearest(points.get(i),-1,result));
+			assertEquals(0,result.distance,1e-8);
+		}
+	}
+
+	@Test
+	public void add_indexes() {
+		HnswIndex alg = new HnswIndex(4,20,234);
+		List<double[]> points = NearestNeighborPoints.uniform(rand,50,3,10);
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(i,alg.add(points.get(i)));
+		}
+
+		NnData<double[]> result = new NnData<>();
+		for (int i = 0; i < points.size(); i++) {
+			assertTrue(alg.findNearest(points.get(i),-1,result));
+			assertEquals(i,result.index);
+			assertSame(points.get(i),result.point);
+		}
+	}
+
+	@Test
+	public void empty() {
+		HnswIndex alg = new HnswIndex(4,20,234);
+		alg.setPoints(new ArrayList<>(),true);
+		assertFalse(alg.findNearest(new double[]{1,2},-1,new NnData<>()));
+
+		FastQueue<NnData<double[]>> found = new FastQueue(NnData.class,true);
+		alg.findNearest(new double[]{1,2},-1,4,found);
+		assertEquals(0,found.size);
+	}
+
+	private void checkRecall( HnswIndex alg , List<double[]> points , int N , double minRecall ) {
+		ExhaustiveNeighbor<double[]> exhaustive = new ExhaustiveNeighbor<>(new KdTreeEuclideanSq_F64(N));
+		exhaustive.setPoints(points);
+
+		FastQueue<NnData<double[]>> found = new FastQueue(NnData.class,true);
+		GrowQueue_I32 expectedIndex = new GrowQueue_I32();
+		GrowQueue_F64 expectedDistance = new GrowQueue_F64();
+
+		int numK = 10;
+		int total = 0;
+		for (int trial = 0; trial < 50; trial++) {
+			double[] target = NearestNeighborPoints.uniform(rand,1,N,10).get(0);
+
+			expectedIndex.reset();
+			expectedDistance.reset();
+			exhaustive.findClosestN(target,Double.MAX_VALUE,numK,expectedIndex,expectedDistance);
+			alg.findNearest(target,-1,numK,found);
+
+			assertEquals(numK,found.size);
+			for (int i = 0; i < found.size; i++) {
+				if( expectedIndex.contains(found.get(i).index) )
+					total++;
+				if( i > 0 )
+					assertTrue(found.get(i-1).distance <= found.get(i).distance);
+			}
+		}
+		assertTrue(total/(double)(50*numK) >= minRecall);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NnData;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestIvfPqIndex {
+
+	Random rand = new Random(234);
+
+	NnData<double[]> found = new NnData<>();
+	FastQueue<NnData<double[]>> foundN = new FastQueue<>((Class)NnData.class,true);
+
+	@Test
+	public void empty() {
+		IvfPqIndex alg = new IvfPqIndex(4,2,2,0xBEEF);
+		alg.setPoints(new ArrayList<>(),true);
+		assertFalse(alg.findNearest(new double[]{1,2},-1,found));
+		alg.findNearest(new double[]{1,2},-1,3,foundN);
+		assertEquals(0,foundN.size);
+	}
+
+	/**
+	 * Search for points which are in the data set. Most of the time the point itself should be found.
+	 */
+	@Test
+	public void findNearest_recall() {
+		int N = 8;
+		List<double[]> points = createClusteredPoints(2000,N);
+		IvfPqIndex alg = new IvfPqIndex(20,4,4,0xBEEF);
+		alg.setMaxIterations(10);
+		alg.setPoints(points,true);
+		assertTrue(alg.isTrained());
+
+		int correct = 0, correctN = 0;
+		for (int trial = 0; trial < 100; trial++) {
+			int which = rand.nextInt(points.size());
+			double[] target = points.get(which).clone();
+			target[0] += 1e-4;
+
+			assertTrue(alg.findNearest(target,-1,found));
+			assertSame(points.get(found.index),found.point);
+			if( found.index == which )
+				correct++;
+
+			alg.findNearest(target,-1,10,foundN);
+			assertEquals(10,foundN.size);
+			for (int i = 0; i < foundN.size; i++) {
+				if( foundN.get(i).index == which ) {
+					correctN++;
+					break;
+				}
+			}
+		}
+
+		assertTrue(correct >= 50, "correct = "+correct);
+		assertTrue(correctN >= 90, "correctN = "+correctN);
+	}
+
+	/**
+	 * Points which are farther away than the maximum distance should not be returned
+	 */
+	@Test
+	public void maxDistance() {
+		List<double[]> points = createClusteredPoints(200,4);
+		IvfPqIndex alg = new IvfPqIndex(5,2,5,0xBEEF);
+		alg.setMaxIterations(10);
+		alg.setPoints(points,true);
+
+		double[] target = points.get(3);
+		alg.findNearest(target,-1,20,foundN);
+		double max = 0;
+		for (int i = 0; i < foundN.size; i++) {
+			max = Math.max(max,foundN.get(i).distance);
+		}
+
+		alg.findNearest(target,max/2,20,foundN);
+		assertTrue(foundN.size < 20);
+		for (int i = 0; i < foundN.size; i++) {
+			assertTrue(foundN.get(i).distance <= max/2);
+		}
+	}
+
+	/**
+	 * Points are clustered so that the coarse quantizer has structure to learn
+	 */
+	private List<double[]> createClusteredPoints( int total , int N ) {
+		List<double[]> centers = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			double[] c = new double[N];
+			for (int j = 0; j < N; j++) {
+				c[j] = rand.nextGaussian()*10;
+			}
+			centers.add(c);
+		}
+
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < total; i++) {
+			double[] c = centers.get(rand.nextInt(centers.size()));
+			double[] p = new double[N];
+			for (int j = 0; j < N; j++) {
+				p[j] = c[j] + rand.nextGaussian();
+			}
+			points.add(p);
+		}
+		return points;
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.FactoryNearestNeighbor;
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.nn.wrap.KdForestBbfSearch;
+import org.ddogleg.nn.wrap.KdTreeNearestNeighbor;
+import org.ddogleg.struct.FastQueue;
+import org.ddogleg.struct.GrowQueue_F64;
+import org.ddogleg.struct.GrowQueue_I32;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdForestMapped {
+	Random rand = new Random(234);
+
+	int N = 4;
+	KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+
+	@Test
+	public void singleTree() throws IOException {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,300,N);
+
+		KdTreeNearestNeighbor<double[]> tree = new KdTreeNearestNeighbor<>(distance);
+		tree.setPoints(points,true);
+
+		KdForestMapped alg = new KdForestMapped(write(new KdTree[]{tree.getTree()},-1));
+		compareToExhaustive(points,alg);
+	}
+
+	@Test
+	public void singleTree_buckets() throws IOException {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,300,N);
+
+		KdTreeNearestNeighbor<double[]> tree = new KdTreeNearestNeighbor<>(distance);
+		tree.setMaxLeafSize(5);
+		tree.setPoints(points,true);
+
+		KdForestMapped alg = new KdForestMapped(write(new KdTree[]{tree.getTree()},-1));
+		compareToExhaustive(points,alg);
+	}
+
+	/**
+	 * Searching enough nodes should make the forest exact. Points are shared between trees and only saved once.
+	 */
+	@Test
+	public void forest() throws IOException {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,300,N);
+
+		KdForestBbfSearch<double[]> forest = (KdForestBbfSearch<double[]>)
+				FactoryNearestNeighbor.kdRandomForest(distance,100000,5,3,234);
+		forest.setPoints(points,true);
+
+		ByteBuffer buffer = write(forest.getForest(),forest.getMaxNodesSearched());
+		KdForestMapped alg = new KdForestMapped(buffer);
+		assertEquals(300,alg.numPoints);
+		compareToExhaustive(points,alg);
+	}
+
+	/**
+	 * When the number of nodes is limited the results should still be valid
+	 */
+	@Test
+	public void forest_approximate() throws IOException {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,500,N);
+
+		KdForestBbfSearch<double[]> forest = (KdForestBbfSearch<double[]>)
+				FactoryNearestNeighbor.kdRandomForest(distance,5,5,3,234);
+		forest.setPoints(points,true);
+
+		KdForestMapped alg = new KdForestMapped(write(forest.getForest(),forest.getMaxNodesSearched()));
+		FastQueue<NnData<double[]>> found = new FastQueue(NnData.class,true);
+		for (int trial = 0; trial < 20; trial++) {
+			double[] target = NearestNeighborPoints.gaussian(rand,1,N).get(0);
+			alg.findNearest(target,-1,4,found);
+			assertEquals(4,found.size);
+			for (int i = 0; i < found.size; i++) {
+				NnData<double[]> r = found.get(i);
+				assertEquals(distance.distance(target,points.get(r.index)),r.distance,1e-8);
+				if( i > 0 )
+					assertTrue(found.get(i-1).distance <= r.distance);
+			}
+		}
+	}
+
+	@Test
+	public void saveLoadFile() throws IOException {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,100,N);
+
+		KdTreeNearestNeighbor<double[]> tree = new KdTreeNearestNeighbor<>(distance);
+		tree.setPoints(points,true);
+
+		File file = File.createTempFile("kdforest",".bin");
+		file.deleteOnExit();
+		KdForestMapped.save(new KdTree[]{tree.getTree()},-1,file);
+		KdForestMapped alg = KdForestMapped.load(file);
+
+		compareToExhaustive(points,alg);
+		assertTrue(file.delete());
+	}
+
+	@Test
+	public void empty() throws IOException {
+		KdTreeNearestNeighbor<double[]> tree = new KdTreeNearestNeighbor<>(distance);
+		tree.setPoints(new ArrayList<>(),true);
+
+		KdForestMapped alg = new KdForestMapped(write(new KdTree[]{tree.getTree()},-1));
+		assertFalse(alg.findNearest(new double[N],-1,new NnData<>()));
+	}
+
+	@Test
+	public void wrongFileType() {
+		ByteBuffer buffer = ByteBuffer.allocate(100);
+		assertThrows(IllegalArgumentException.class,()->new KdForestMapped(buffer));
+	}
+
+	/**
+	 * Files are written in the native byte order so that values are read without swapping bytes
+	 */
+	@Test
+	public void nativeByteOrder() throws IOException {
+		KdTreeNearestNeighbor<double[]> tree = new KdTreeNearestNeighbor<>(distance);
+		tree.setPoints(NearestNeighborPoints.gaussian(rand,20,N),true);
+
+		ByteBuffer buffer = write(new KdTree[]{tree.getTree()},-1);
+		assertEquals(KdForestMapped.MAGIC,buffer.order(ByteOrder.nativeOrder()).getInt(0));
+
+		KdForestMapped alg = new KdForestMapped(buffer);
+		assertEquals(ByteOrder.nativeOrder(),alg.points.order());
+		assertEquals(ByteOrder.nativeOrder(),alg.nodeLeft.order());
+	}
+
+	/**
+	 * The byte order is found from the magic number, so a file written on a different machine can be read
+	 */
+	@Test
+	public void fileOrder() {
+		for( ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN,ByteOrder.LITTLE_ENDIAN} ) {
+			ByteBuffer buffer = ByteBuffer.allocate(16).order(order);
+			buffer.putInt(0,KdForestMapped.MAGIC);
+			buffer.putInt(4,12345);
+			buffer.order(ByteOrder.BIG_ENDIAN);
+
+			ByteBuffer found = KdForestMapped.fileOrder(buffer,KdForestMapped.MAGIC,"bad");
+			assertEquals(order,found.order());
+			assertEquals(12345,found.getInt(4));
+		}
+	}
+
+	/**
+	 * Sizes in the header which would go past the end of the buffer, or overflow an int, should be caught
+	 */
+	@Test
+	public void corruptHeader() {
+		ByteBuffer buffer = ByteBuffer.allocate(100).order(ByteOrder.nativeOrder());
+		buffer.putInt(0,KdForestMapped.MAGIC);
+		buffer.putInt(4,KdForestMapped.VERSION);
+		buffer.putInt(8,1000);
+		buffer.putInt(12,Integer.MAX_VALUE/100);
+		buffer.putInt(16,0);
+		assertThrows(IllegalArgumentException.class,()->new KdForestMapped(buffer));
+	}
+
+	private ByteBuffer write( KdTree[] forest , int maxNodesSearched ) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		KdForestMapped.save(forest,maxNodesSearched,bytes);
+		return ByteBuffer.wrap(bytes.toByteArray());
+	}
+
+	private void compareToExhaustive( List<double[]> points , NearestNeighbor<double[]> alg ) {
+		ExhaustiveNeighbor<double[]> exhaustive = new ExhaustiveNeighbor<>(distance);
+		exhaustive.setPoints(points);
+
+		NnData<double[]> result = new NnData<>();
+		FastQueue<NnData<double[]>> found = new FastQueue(NnData.class,true);
+		GrowQueue_I32 expectedIndex = new GrowQueue_I32();
+		GrowQueue_F64 expectedDistance = new GrowQueue_F64();
+
+		for (int trial = 0; trial < 20; trial++) {
+			double[] target = NearestNeighborPoints.gaussian(rand,1,N).get(0);
+
+			int best = exhaustive.findClosest(target,Double.MAX_VALUE);
+			assertTrue(alg.findNearest(target,-1,result));
+			assertEquals(exhaustive.getBestDistance(),result.distance,1e-8);
+			assertEquals(best,result.index);
+			assertArrayEquals(points.get(best),result.point,1e-8);
+
+			expectedIndex.reset();
+			expectedDistance.reset();
+			exhaustive.findClosestN(target,Double.MAX_VALUE,6,expectedIndex,expectedDistance);
+			expectedDistance.sort();
+			alg.findNearest(target,-1,6,found);
+			assertEquals(6,found.size);
+			for (int i = 0; i < 6; i++) {
+				assertEquals(expectedDistance.get(i),found.get(i).distance,1e-8);
+			}
+
+			// max distance
+			double maxDistance = expectedDistance.get(2);
+			alg.findNearest(target,maxDistance,6,found);
+			assertEquals(3,found.size);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdTreeConcurrentTopK {
+
+	@Test
+	public void offer_sorted() {
+		KdTreeConcurrentTopK alg = new KdTreeConcurrentTopK();
+		alg.reset(3,10);
+
+		assertEquals(10,alg.getThreshold());
+		assertTrue(alg.offer(null,"a",0,5));
+		assertTrue(alg.offer(null,"b",1,2));
+		assertFalse(alg.offer(null,"c",2,11));
+		assertEquals(10,alg.getThreshold());
+		assertTrue(alg.offer(null,"d",3,7));
+		assertEquals(7,alg.getThreshold());
+
+		// can't improve on the farthest point
+		assertFalse(alg.offer(null,"e",4,7));
+		assertTrue(alg.offer(null,"f",5,1));
+		assertEquals(5,alg.getThreshold());
+
+		FastQueue<KdTreeResult> found = new FastQueue<>(KdTreeResult.class,true);
+		alg.getResults(found);
+		assertEquals(3,found.size);
+		assertEquals("f",found.get(0).point);
+		assertEquals("b",found.get(1).point);
+		assertEquals("a",found.get(2).point);
+		assertEquals(5,found.get(0).index);
+		assertEquals(2,found.get(1).distance);
+	}
+
+	/**
+	 * The same point should only be added once
+	 */
+	@Test
+	public void offer_duplicate() {
+		KdTreeConcurrentTopK alg = new KdTreeConcurrentTopK();
+		alg.reset(3,10);
+
+		String p = "a";
+		assertTrue(alg.offer(null,p,0,5));
+		assertFalse(alg.offer(null,p,0,5));
+		assertEquals(1,alg.size());
+	}
+
+	@Test
+	public void reset() {
+		KdTreeConcurrentTopK alg = new KdTreeConcurrentTopK();
+		alg.reset(1,10);
+		alg.offer(null,"a",0,5);
+		alg.reset(2,3);
+		assertEquals(0,alg.size());
+		assertEquals(3,alg.getThreshold());
+	}
+
+	/**
+	 * Several threads offer the same set of points in different orders. The result should be the same as
+	 * if it was done by a single thread.
+	 */
+	@Test
+	public void offer_concurrent() throws InterruptedException {
+		Random rand = new Random(234);
+		int total = 5000;
+		List<Object> points = new ArrayList<>();
+		double[] distances = new double[total];
+		for (int i = 0; i < total; i++) {
+			points.add(new Object());
+			distances[i] = rand.nextDouble();
+		}
+
+		KdTreeConcurrentTopK expected = new KdTreeConcurrentTopK();
+		expected.reset(20,Double.MAX_VALUE);
+		for (int i = 0; i < total; i++) {
+			expected.offer(null,points.get(i),i,distances[i]);
+		}
+
+		KdTreeConcurrentTopK alg = new KdTreeConcurrentTopK();
+		alg.reset(20,Double.MAX_VALUE);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t*total/threads.length;
+			threads[t] = new Thread(()->{
+				for (int i = 0; i < total; i++) {
+					int index = (i+offset)%total;
+					alg.offer(null,points.get(index),index,distances[index]);
+				}
+			});
+		}
+		for (Thread t : threads) t.start();
+		for (Thread t : threads) t.join();
+
+		FastQueue<KdTreeResult> foundExpected = new FastQueue<>(KdTreeResult.class,true);
+		FastQueue<KdTreeResult> found = new FastQueue<>(KdTreeResult.class,true);
+		expected.getResults(foundExpected);
+		alg.getResults(found);
+
+		assertEquals(20,found.size);
+		for (int i = 0; i < found.size; i++) {
+			assertSame(foundExpected.get(i).point,found.get(i).point);
+		}
+	}
+}
@@ -24,6 +24,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -138,6 +139,55 @@ public class TestKdTreeConstructor {
 
 
 
+	/**
+	 * Sets of points at or below the max leaf size should be put into a bucket
+	 */
+	@Test
+	public void construct_maxLeafSize() {
+		KdTreeConstructor<double[]> alg = new KdTreeConstructor<>(distance);
+		alg.setMaxLeafSize(3);
+
+		Random rand = new Random(234);
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			points.add(new double[]{rand.nextGaussian(),rand.nextGaussian()});
+		}
+
+		KdTree tree = alg.construct(points,true);
+
+		// Every point should be in the tree exactly once with the correct index
+		boolean[] found = new boolean[points.size()];
+		List<KdTree.Node> open = new ArrayList<>();
+		open.add(tree.root);
+		int numBuckets = 0;
+		while( !open.isEmpty() ) {
+			KdTree.Node n = open.remove(open.size()-1);
+			if( n == null )
+				continue;
+			if( n.isBucket() ) {
+				assertTrue(n.isLeaf());
+				assertTrue(n.bucketSize >= 2 && n.bucketSize <= 3);
+				numBuckets++;
+				for (int i = 0; i < n.bucketSize; i++) {
+					int index = n.bucketIndexes[i];
+					assertSame(points.get(index),n.bucketPoints[i]);
+					assertFalse(found[index]);
+					found[index] = true;
+				}
+			} else {
+				assertFalse(found[n.index]);
+				assertSame(points.get(n.index),n.point);
+				found[n.index] = true;
+				open.add(n.left);
+				open.add(n.right);
+			}
+		}
+		assertTrue(numBuckets > 0);
+		for (int i = 0; i < found.length; i++) {
+			assertTrue(found[i]);
+		}
+	}
+
 	public static List<double[]> createPoints( int dimen , double ...v ) {
 
 		List<double[]> ret = new ArrayList<double[]>();
@@ -237,6 +287,11 @@ public class TestKdTreeConstructor {
 		public int getPointLength() {
 			return 2;
 		}
+
+		@Override
+		public AxisSplitter<double[]> copy() {
+			return new DummySplitter(splitIndex,splitPoint,splitAxis,left,leftIndex,right,rightIndex);
+		}
 	}
 
 }
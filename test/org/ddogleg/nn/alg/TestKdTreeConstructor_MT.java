@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdTreeConstructor_MT {
+
+	Random rand = new Random(234);
+	KdTreeDistance<double[]> distance = new KdTreeEuclideanSq_F64(3);
+
+	/**
+	 * With a deterministic split rule it should produce the same tree as the single threaded version
+	 */
+	@Test
+	public void compareToSingleThread() {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,2000,3);
+
+		for( int maxLeafSize : new int[]{1,5} ) {
+			KdTreeConstructor<double[]> expected = new KdTreeConstructor<>(distance);
+			KdTreeConstructor_MT<double[]> alg = new KdTreeConstructor_MT<>(distance);
+			expected.setMaxLeafSize(maxLeafSize);
+			alg.setMaxLeafSize(maxLeafSize);
+			alg.setMinParallelSize(50);
+
+			for( boolean track : new boolean[]{true,false}) {
+				KdTree treeA = expected.construct(points,track);
+				KdTree treeB = alg.construct(points,track);
+
+				assertEquals(treeA.N,treeB.N);
+				checkIdentical(treeA.root, treeB.root, track);
+			}
+		}
+	}
+
+	/**
+	 * Random trees should be the same when constructed again from the same seed
+	 */
+	@Test
+	public void deterministic_random() {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,2000,3);
+
+		KdTree[] trees = new KdTree[2];
+		for (int trial = 0; trial < 2; trial++) {
+			AxisSplitterMedian<double[]> splitter =
+					new AxisSplitterMedian<>(distance,new AxisSplitRuleRandomK(new Random(345),2));
+			KdTreeConstructor_MT<double[]> alg = new KdTreeConstructor_MT<>(new KdTreeMemory<>(),splitter);
+			alg.setMinParallelSize(50);
+			trees[trial] = alg.construct(points,true);
+		}
+
+		checkIdentical(trees[0].root, trees[1].root, true);
+	}
+
+	@Test
+	public void empty() {
+		KdTreeConstructor_MT<double[]> alg = new KdTreeConstructor_MT<>(distance);
+		KdTree tree = alg.construct(new ArrayList<>(),false);
+		assertNull(tree.root);
+	}
+
+	private void checkIdentical( KdTree.Node a , KdTree.Node b , boolean track ) {
+		if( a == null ) {
+			assertNull(b);
+			return;
+		}
+		assertNotNull(b);
+		assertEquals(a.split,b.split);
+		assertSame(a.point,b.point);
+		if( track )
+			assertEquals(a.index,b.index);
+		assertEquals(a.bucketSize,b.bucketSize);
+		for (int i = 0; i < a.bucketSize; i++) {
+			assertSame(a.bucketPoints[i],b.bucketPoints[i]);
+			assertEquals(a.bucketIndexes[i],b.bucketIndexes[i]);
+		}
+		checkIdentical(a.left,b.left,track);
+		checkIdentical(a.right,b.right,track);
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdTreeFlatConstructor {
+
+	Random rand = new Random(234);
+	int N = 3;
+	KdTreeDistance<double[]> distance = new KdTreeEuclideanSq_F64(N);
+
+	@Test
+	public void empty() {
+		KdTreeFlatConstructor<double[]> alg = new KdTreeFlatConstructor<>(distance,4);
+		KdTreeFlat tree = new KdTreeFlat();
+		alg.construct(new ArrayList<>(),tree);
+
+		assertEquals(0,tree.numNodes);
+		assertEquals(0,tree.numPoints);
+		assertEquals(N,tree.N);
+	}
+
+	@Test
+	public void singleLeaf() {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,4,N);
+		KdTreeFlatConstructor<double[]> alg = new KdTreeFlatConstructor<>(distance,4);
+		KdTreeFlat tree = new KdTreeFlat();
+		alg.construct(points,tree);
+
+		assertEquals(1,tree.numNodes);
+		assertTrue(tree.isLeaf(0));
+		assertEquals(0,tree.begin.get(0));
+		assertEquals(4,tree.end.get(0));
+		checkPoints(points, tree);
+	}
+
+	/**
+	 * Checks the structure of a larger tree, including a point set with duplicates
+	 */
+	@Test
+	public void checkStructure() {
+		for( int maxLeafSize : new int[]{1,3,10} ) {
+			List<double[]> points = NearestNeighborPoints.gaussian(rand,200,N);
+			for (int i = 0; i < 20; i++) {
+				points.add(points.get(i).clone());
+			}
+			KdTreeFlatConstructor<double[]> alg = new KdTreeFlatConstructor<>(distance,maxLeafSize);
+			KdTreeFlat tree = new KdTreeFlat();
+			alg.construct(points,tree);
+
+			checkPoints(points, tree);
+			assertEquals(points.size(),checkNode(tree,0,maxLeafSize));
+		}
+	}
+
+	/**
+	 * Makes sure the tree can be reused
+	 */
+	@Test
+	public void reuseTree() {
+		KdTreeFlatConstructor<double[]> alg = new KdTreeFlatConstructor<>(distance,2);
+		KdTreeFlat tree = new KdTreeFlat();
+		alg.construct(NearestNeighborPoints.gaussian(rand,100,N),tree);
+
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,30,N);
+		alg.construct(points,tree);
+		checkPoints(points, tree);
+		assertEquals(points.size(),checkNode(tree,0,2));
+	}
+
+	/**
+	 * Makes sure every point was copied and its index is correct
+	 */
+	private void checkPoints(List<double[]> points, KdTreeFlat tree) {
+		assertEquals(points.size(),tree.numPoints);
+		boolean[] used = new boolean[points.size()];
+		for (int i = 0; i < tree.numPoints; i++) {
+			int index = tree.indexes.get(i);
+			assertFalse(used[index]);
+			used[index] = true;
+			for (int j = 0; j < N; j++) {
+				assertEquals(points.get(index)[j],tree.valueAt(i,j));
+			}
+		}
+	}
+
+	/**
+	 * Recursively checks the node and returns the number of points in the sub-tree
+	 */
+	private int checkNode( KdTreeFlat tree , int node , int maxLeafSize ) {
+		int begin = tree.begin.get(node);
+		int end = tree.end.get(node);
+		if( tree.isLeaf(node) ) {
+			assertTrue(end-begin <= maxLeafSize);
+			assertTrue(end-begin >= 1);
+			return end-begin;
+		}
+
+		int axis = tree.axis.get(node);
+		double split = tree.split.get(node);
+		int left = node+1;
+		int right = tree.right.get(node);
+
+		assertEquals(begin,tree.begin.get(left));
+		assertEquals(tree.end.get(left),tree.begin.get(right));
+		assertEquals(end,tree.end.get(right));
+
+		for (int i = tree.begin.get(left); i < tree.end.get(left); i++) {
+			assertTrue(tree.valueAt(i,axis) <= split);
+		}
+		for (int i = tree.begin.get(right); i < tree.end.get(right); i++) {
+			assertTrue(tree.valueAt(i,axis) >= split);
+		}
+
+		return checkNode(tree,left,maxLeafSize) + checkNode(tree,right,maxLeafSize);
+	}
+}
@@ -18,10 +18,13 @@
 
 package org.ddogleg.nn.alg;
 
+import org.ddogleg.struct.GrowQueue_I32;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Abeles
@@ -64,6 +67,35 @@ public class TestKdTreeMemory {
 		assertTrue(m.split==-1);
 	}
 
+	@Test
+	public void requestBucket() {
+		KdTreeMemory<double[]> alg = new KdTreeMemory<>();
+
+		List<double[]> points = new ArrayList<>();
+		points.add(new double[2]);
+		points.add(new double[2]);
+		GrowQueue_I32 indexes = GrowQueue_I32.array(5,6);
+
+		KdTree.Node n = alg.requestBucket(points,indexes);
+		assertTrue(n.isLeaf());
+		assertTrue(n.isBucket());
+		assertNull(n.point);
+		assertEquals(2,n.bucketSize);
+		assertSame(points.get(1),n.bucketPoints[1]);
+		assertEquals(6,n.bucketIndexes[1]);
+
+		// recycling should remove references to the points
+		alg.recycle(n);
+		assertFalse(n.isBucket());
+		assertNull(n.bucketPoints[0]);
+		assertNull(n.bucketPoints[1]);
+
+		// No indexes
+		KdTree.Node m = alg.requestBucket(points,null);
+		assertSame(n,m);
+		assertEquals(-1,m.bucketIndexes[0]);
+	}
+
 	@Test
 	public void requestTree() {
 		KdTreeMemory alg = new KdTreeMemory();
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestMultiIndexHashing {
+
+	Random rand = new Random(234);
+
+	NnData<long[]> found = new NnData<>();
+	FastQueue<NnData<long[]>> foundN = new FastQueue<>((Class)NnData.class,true);
+
+	@Test
+	public void hamming() {
+		long[] a = new long[]{0b1011L,-1L};
+		long[] b = new long[]{0b0010L,0L};
+
+		assertEquals(2+64,MultiIndexHashing.hamming(a,b));
+		assertEquals(0,MultiIndexHashing.hamming(a,a));
+	}
+
+	@Test
+	public void extract() {
+		long[] bits = new long[]{0xFL << 60,0b1011L};
+
+		assertEquals(0b1111L,MultiIndexHashing.extract(bits,60,4));
+		// crosses the boundary between two words
+		assertEquals(0b101111L,MultiIndexHashing.extract(bits,62,6));
+		assertEquals(0b1011L,MultiIndexHashing.extract(bits,64,4));
+	}
+
+	@Test
+	public void findNearest_empty() {
+		MultiIndexHashing alg = new MultiIndexHashing();
+		alg.setPoints(new ArrayList<>(),true);
+		assertFalse(alg.findNearest(new long[]{1,2},-1,found));
+		alg.findNearest(new long[]{1,2},-1,4,foundN);
+		assertEquals(0,foundN.size);
+	}
+
+	/**
+	 * Compare the results against a brute force search. Targets are created by flipping a few bits in a
+	 * descriptor, so that the tables are used, and randomly, so that the exhaustive search is used.
+	 */
+	@Test
+	public void compareToBruteForce() {
+		for( int numTables : new int[]{0,4,16} ) {
+			List<long[]> points = createPoints(2000,4);
+			MultiIndexHashing alg = new MultiIndexHashing(numTables);
+			alg.setPoints(points,true);
+
+			for (int trial = 0; trial < 100; trial++) {
+				long[] target;
+				if( trial % 2 == 0 ) {
+					target = points.get(rand.nextInt(points.size())).clone();
+					for (int i = 0; i < 6; i++) {
+						int bit = rand.nextInt(256);
+						target[bit/64] ^= 1L << (bit%64);
+					}
+				} else {
+					target = createPoints(1,4).get(0);
+				}
+
+				int[] distances = new int[points.size()];
+				for (int i = 0; i < points.size(); i++) {
+					distances[i] = MultiIndexHashing.hamming(points.get(i),target);
+				}
+				int[] sorted = distances.clone();
+				Arrays.sort(sorted);
+
+				assertTrue(alg.findNearest(target,-1,found));
+				assertEquals(sorted[0],(int)found.distance);
+				assertEquals(distances[found.index],(int)found.distance);
+				assertSame(points.get(found.index),found.point);
+
+				alg.findNearest(target,-1,10,foundN);
+				assertEquals(10,foundN.size);
+				for (int i = 0; i < foundN.size; i++) {
+					NnData<long[]> r = foundN.get(i);
+					assertEquals(distances[r.index],(int)r.distance);
+					assertTrue(r.distance <= sorted[9]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void maxDistance() {
+		List<long[]> points = createPoints(500,2);
+		MultiIndexHashing alg = new MultiIndexHashing();
+		alg.setPoints(points,true);
+
+		long[] target = points.get(10).clone();
+		target[0] ^= 0b111;
+
+		assertTrue(alg.findNearest(target,3,found));
+		assertEquals(10,found.index);
+		assertEquals(3,found.distance);
+		assertFalse(alg.findNearest(target,2,found));
+
+		alg.findNearest(target,3,5,foundN);
+		assertEquals(1,foundN.size);
+		assertEquals(10,foundN.get(0).index);
+	}
+
+	@Test
+	public void createSearch() {
+		List<long[]> points = createPoints(300,1);
+		MultiIndexHashing alg = new MultiIndexHashing();
+		alg.setPoints(points,true);
+
+		NearestNeighbor.Search<long[]> search = alg.createSearch();
+		for (int i = 0; i < 20; i++) {
+			long[] target = createPoints(1,1).get(0);
+			assertTrue(alg.findNearest(target,-1,found));
+			NnData<long[]> found2 = new NnData<>();
+			assertTrue(search.findNearest(target,-1,found2));
+			assertEquals(found.distance,found2.distance);
+		}
+	}
+
+	private List<long[]> createPoints( int total , int numWords ) {
+		List<long[]> points = new ArrayList<>();
+		for (int i = 0; i < total; i++) {
+			long[] p = new long[numWords];
+			for (int j = 0; j < numWords; j++) {
+				p[j] = rand.nextLong();
+			}
+			points.add(p);
+		}
+		return points;
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighborPoints;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestProductQuantizer {
+
+	Random rand = new Random(234);
+
+	/**
+	 * Distance computed with the table must be the same as the distance to the decoded vector
+	 */
+	@Test
+	public void distance_matchesDecoded() {
+		List<double[]> vectors = NearestNeighborPoints.gaussian(rand,400,7);
+		ProductQuantizer alg = new ProductQuantizer(0xBEEF);
+		alg.setMaxIterations(10);
+		alg.train(vectors,7,3,16);
+
+		assertEquals(3,alg.getNumSubspaces());
+		assertEquals(16,alg.getNumCodes());
+
+		byte[] code = new byte[3];
+		double[] decoded = new double[7];
+		double[] table = new double[3*16];
+		for (int trial = 0; trial < 20; trial++) {
+			double[] v = vectors.get(trial);
+			double[] target = NearestNeighborPoints.gaussian(rand,1,7).get(0);
+
+			alg.encode(v,code,0);
+			alg.decode(code,0,decoded);
+			alg.computeTable(target,table);
+
+			assertEquals(ExhaustiveNeighborBlock.distanceSq(decoded,0,target,0,7),alg.distance(table,code,0),1e-8);
+		}
+	}
+
+	/**
+	 * If there are fewer vectors than codes, then each vector should be encoded perfectly
+	 */
+	@Test
+	public void encode_perfect() {
+		List<double[]> vectors = NearestNeighborPoints.gaussian(rand,20,4);
+		ProductQuantizer alg = new ProductQuantizer(0xBEEF);
+		alg.train(vectors,4,2,256);
+		assertEquals(20,alg.getNumCodes());
+
+		byte[] code = new byte[2];
+		double[] decoded = new double[4];
+		for( double[] v : vectors ) {
+			alg.encode(v,code,0);
+			alg.decode(code,0,decoded);
+			assertArrayEquals(v,decoded,1e-8);
+		}
+	}
+
+	/**
+	 * Codes above 127 must be handled correctly
+	 */
+	@Test
+	public void decode_unsigned() {
+		List<double[]> vectors = NearestNeighborPoints.gaussian(rand,300,2);
+		ProductQuantizer alg = new ProductQuantizer(0xBEEF);
+		alg.setMaxIterations(5);
+		alg.train(vectors,2,1,256);
+
+		byte[] code = new byte[]{(byte)200};
+		double[] decoded = new double[2];
+		alg.decode(code,0,decoded);
+		alg.encode(decoded,code,0);
+		assertEquals(200,code[0]&0xFF);
+	}
+}
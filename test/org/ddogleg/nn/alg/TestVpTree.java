@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighbor;
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.alg.distance.MetricAngular_F64;
+import org.ddogleg.nn.alg.distance.MetricHamming_I64;
+import org.ddogleg.nn.alg.distance.MetricManhattan_F64;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link VpTree} with metrics other than Euclidean. Euclidean is tested by TestVpTreeNearestNeighbor
+ *
+ * @author Peter Abeles
+ */
+public class TestVpTree {
+	Random rand = new Random(234);
+
+	@Test
+	public void editDistance() {
+		List<String> points = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			char[] c = new char[2+rand.nextInt(6)];
+			for (int j = 0; j < c.length; j++) {
+				c[j] = (char)('a'+rand.nextInt(4));
+			}
+			points.add(new String(c));
+		}
+		List<String> queries = new ArrayList<>();
+		queries.add("abcd");
+		queries.add("dddddddd");
+		queries.add("b");
+
+		compareToBruteForce(new Levenshtein(),points,queries);
+	}
+
+	@Test
+	public void hamming() {
+		List<long[]> points = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			points.add(new long[]{rand.nextLong(),rand.nextLong()});
+		}
+		List<long[]> queries = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			queries.add(new long[]{rand.nextLong(),rand.nextLong()});
+		}
+
+		compareToBruteForce(new MetricHamming_I64(),points,queries);
+	}
+
+	@Test
+	public void manhattan() {
+		compareToBruteForce(new MetricManhattan_F64(),
+				NearestNeighborPoints.gaussian(rand,300,5),NearestNeighborPoints.gaussian(rand,10,5));
+	}
+
+	@Test
+	public void angular() {
+		compareToBruteForce(new MetricAngular_F64(),
+				NearestNeighborPoints.gaussian(rand,300,5),NearestNeighborPoints.gaussian(rand,10,5));
+	}
+
+	/**
+	 * The max distance is in the metric's units
+	 */
+	@Test
+	public void maxDistance() {
+		List<String> points = new ArrayList<>();
+		points.add("aaaa");
+		points.add("bbbb");
+
+		NearestNeighbor<String> alg = new VpTree<>(new Levenshtein(),234);
+		alg.setPoints(points,true);
+
+		NnData<String> result = new NnData<>();
+		assertFalse(alg.findNearest("aabb",1.9,result));
+		assertTrue(alg.findNearest("aabb",2,result));
+		assertEquals(2,result.distance,1e-8);
+
+		FastQueue<NnData<String>> found = new FastQueue(NnData.class,true);
+		alg.findNearest("aaab",3,5,found);
+		assertEquals(2,found.size);
+		assertEquals("aaaa",found.get(0).point);
+		assertEquals(1,found.get(0).distance,1e-8);
+		assertEquals(3,found.get(1).distance,1e-8);
+	}
+
+	private <P> void compareToBruteForce( DistanceMetric<P> metric , List<P> points , List<P> queries ) {
+		NearestNeighbor<P> alg = new VpTree<>(metric,2344);
+		alg.setPoints(points,true);
+
+		int K = 7;
+		NnData<P> result = new NnData<>();
+		FastQueue<NnData<P>> found = new FastQueue(NnData.class,true);
+
+		for( P query : queries ) {
+			List<Double> expected = new ArrayList<>();
+			for( P p : points ) {
+				expected.add(metric.distance(query,p));
+			}
+			Collections.sort(expected, Comparator.naturalOrder());
+
+			assertTrue(alg.findNearest(query,-1,result));
+			assertEquals(expected.get(0),result.distance,1e-8);
+			assertEquals(result.distance,metric.distance(query,points.get(result.index)),1e-8);
+
+			alg.findNearest(query,-1,K,found);
+			assertEquals(K,found.size);
+			for (int i = 0; i < K; i++) {
+				NnData<P> r = found.get(i);
+				assertEquals(expected.get(i),r.distance,1e-8);
+				assertEquals(r.distance,metric.distance(query,points.get(r.index)),1e-8);
+			}
+		}
+	}
+
+	/**
+	 * Edit distance between two strings. Used to test a metric on points which are not vectors.
+	 */
+	private static class Levenshtein implements DistanceMetric<String> {
+		@Override
+		public double distance(String a, String b) {
+			int[] prev = new int[b.length()+1];
+			int[] curr = new int[b.length()+1];
+			for (int j = 0; j <= b.length(); j++) {
+				prev[j] = j;
+			}
+			for (int i = 1; i <= a.length(); i++) {
+				curr[0] = i;
+				for (int j = 1; j <= b.length(); j++) {
+					int cost = a.charAt(i-1) == b.charAt(j-1) ? 0 : 1;
+					curr[j] = Math.min(Math.min(curr[j-1]+1,prev[j]+1),prev[j-1]+cost);
+				}
+				int[] tmp = prev; prev = curr; curr = tmp;
+			}
+			return prev[b.length()];
+		}
+	}
+}
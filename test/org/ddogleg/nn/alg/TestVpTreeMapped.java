@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg;
+
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.alg.distance.MetricEuclidean_F64;
+import org.ddogleg.nn.alg.distance.MetricManhattan_F64;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestVpTreeMapped {
+	Random rand = new Random(234);
+
+	int N = 4;
+
+	/**
+	 * Results should be identical to the tree it was saved from
+	 */
+	@Test
+	public void compareToOriginal() throws IOException {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,300,N);
+		VpTree<double[]> tree = new VpTree<>(new MetricEuclidean_F64(),234);
+		tree.setPoints(points,true);
+
+		VpTreeMapped alg = new VpTreeMapped(write(tree));
+		compare(tree,alg);
+	}
+
+	@Test
+	public void saveLoadFile() throws IOException {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,100,N);
+		VpTree<double[]> tree = new VpTree<>(new MetricEuclidean_F64(),234);
+		tree.setPoints(points,true);
+
+		File file = File.createTempFile("vptree",".bin");
+		file.deleteOnExit();
+		VpTreeMapped.save(tree,file);
+		VpTreeMapped alg = VpTreeMapped.load(file);
+
+		compare(tree,alg);
+		assertTrue(file.delete());
+	}
+
+	@Test
+	public void empty() throws IOException {
+		VpTree<double[]> tree = new VpTree<>(new MetricEuclidean_F64(),234);
+		tree.setPoints(new ArrayList<>(),true);
+
+		VpTreeMapped alg = new VpTreeMapped(write(tree));
+		assertFalse(alg.findNearest(new double[N],-1,new NnData<>()));
+	}
+
+	@Test
+	public void onlyEuclidean() {
+		VpTree<double[]> tree = new VpTree<>(new MetricManhattan_F64(),234);
+		tree.setPoints(NearestNeighborPoints.gaussian(rand,10,N),true);
+		assertThrows(IllegalArgumentException.class,()->write(tree));
+	}
+
+	private void compare( VpTree<double[]> tree , VpTreeMapped alg ) {
+		NnData<double[]> expected = new NnData<>();
+		NnData<double[]> found = new NnData<>();
+		FastQueue<NnData<double[]>> expectedN = new FastQueue(NnData.class,true);
+		FastQueue<NnData<double[]>> foundN = new FastQueue(NnData.class,true);
+
+		for (int trial = 0; trial < 20; trial++) {
+			double[] target = NearestNeighborPoints.gaussian(rand,1,N).get(0);
+
+			assertTrue(tree.findNearest(target,-1,expected));
+			assertTrue(alg.findNearest(target,-1,found));
+			assertEquals(expected.index,found.index);
+			assertEquals(expected.distance,found.distance,1e-8);
+			assertArrayEquals(expected.point,found.point,1e-8);
+
+			tree.findNearest(target,0.5,7,expectedN);
+			alg.findNearest(target,0.5,7,foundN);
+			assertEquals(expectedN.size,foundN.size);
+			for (int i = 0; i < expectedN.size; i++) {
+				assertEquals(expectedN.get(i).index,foundN.get(i).index);
+				assertEquals(expectedN.get(i).distance,foundN.get(i).distance,1e-8);
+			}
+		}
+	}
+
+	/**
+	 * Files are written in the native byte order so that values are read without swapping bytes
+	 */
+	@Test
+	public void nativeByteOrder() throws IOException {
+		VpTree<double[]> tree = new VpTree<>(new MetricEuclidean_F64(),234);
+		tree.setPoints(NearestNeighborPoints.gaussian(rand,20,N),true);
+
+		ByteBuffer buffer = write(tree);
+		assertEquals(VpTreeMapped.MAGIC,buffer.order(ByteOrder.nativeOrder()).getInt(0));
+
+		VpTreeMapped alg = new VpTreeMapped(buffer);
+		assertEquals(ByteOrder.nativeOrder(),alg.items.order());
+		assertEquals(ByteOrder.nativeOrder(),alg.nodeLeft.order());
+		compare(tree,alg);
+	}
+
+	private ByteBuffer write( VpTree<double[]> tree ) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		VpTreeMapped.save(tree,bytes);
+		return ByteBuffer.wrap(bytes.toByteArray());
+	}
+}
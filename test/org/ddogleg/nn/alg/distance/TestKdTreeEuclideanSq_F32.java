@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg.distance;
+
+import org.ejml.UtilEjml;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdTreeEuclideanSq_F32 {
+	@Test
+	public void distance() {
+		float a[] = {1,2,3,4};
+		float b[] = {1,2,3,7};
+
+		KdTreeEuclideanSq_F32 alg = new KdTreeEuclideanSq_F32(4);
+		assertEquals( 9,alg.distance(a,b) , UtilEjml.TEST_F32);
+	}
+
+	/**
+	 * The exact distance is returned when inside the bound, otherwise something larger than the bound
+	 */
+	@Test
+	public void distance_bound() {
+		float a[] = new float[20];
+		float b[] = new float[20];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = (float)(i+1);
+			b[i] = (float)(i+3);
+		}
+
+		KdTreeEuclideanSq_F32 alg = new KdTreeEuclideanSq_F32(20);
+		assertEquals( 80,alg.distance(a,b,80) , UtilEjml.TEST_F32);
+		assertEquals( 80,alg.distance(a,b,1000) , UtilEjml.TEST_F32);
+		assertTrue( alg.distance(a,b,79) > 79 );
+		assertTrue( alg.distance(a,b,5) > 5 );
+	}
+
+	@Test
+	public void valueAt() {
+		KdTreeEuclideanSq_F32 alg = new KdTreeEuclideanSq_F32(4);
+
+		float a[] = {1,2,3,4};
+		for (int i = 0; i < 4; i++) {
+			assertEquals( i+1,alg.valueAt(a,i) , UtilEjml.TEST_F32);
+		}
+	}
+}
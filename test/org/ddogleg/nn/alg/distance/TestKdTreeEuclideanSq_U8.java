@@ -22,6 +22,7 @@ import org.ejml.UtilEjml;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Peter Abeles
@@ -36,6 +37,25 @@ public class TestKdTreeEuclideanSq_U8 {
 		assertEquals( 9,alg.distance(a,b) , UtilEjml.TEST_F64);
 	}
 
+	/**
+	 * The exact distance is returned when inside the bound, otherwise something larger than the bound
+	 */
+	@Test
+	public void distance_bound() {
+		byte a[] = new byte[20];
+		byte b[] = new byte[20];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = (byte)(i+1);
+			b[i] = (byte)(i+3);
+		}
+
+		KdTreeEuclideanSq_U8 alg = new KdTreeEuclideanSq_U8(20);
+		assertEquals( 80,alg.distance(a,b,80) , UtilEjml.TEST_F64);
+		assertEquals( 80,alg.distance(a,b,1000) , UtilEjml.TEST_F64);
+		assertTrue( alg.distance(a,b,79) > 79 );
+		assertTrue( alg.distance(a,b,5) > 5 );
+	}
+
 	@Test
 	public void valueAt() {
 		KdTreeEuclideanSq_U8 alg = new KdTreeEuclideanSq_U8(4);
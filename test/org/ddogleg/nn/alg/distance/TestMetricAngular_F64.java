@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg.distance;
+
+import org.ejml.UtilEjml;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestMetricAngular_F64 {
+	MetricAngular_F64 alg = new MetricAngular_F64();
+
+	@Test
+	public void distance() {
+		double a[] = {1,0,0};
+		double b[] = {0,2,0};
+		double c[] = {-3,0,0};
+		double d[] = {2,2,0};
+
+		assertEquals( Math.PI/2,alg.distance(a,b) , UtilEjml.TEST_F64);
+		assertEquals( Math.PI,alg.distance(a,c) , UtilEjml.TEST_F64);
+		assertEquals( Math.PI/4,alg.distance(a,d) , UtilEjml.TEST_F64);
+		assertEquals( 0,alg.distance(d,d) , UtilEjml.TEST_F64);
+	}
+
+	@Test
+	public void zeroNorm() {
+		double a[] = {1,0,0};
+		double z[] = {0,0,0};
+
+		assertEquals( Math.PI/2,alg.distance(a,z) , UtilEjml.TEST_F64);
+		assertEquals( Math.PI/2,alg.distance(z,a) , UtilEjml.TEST_F64);
+		// the distance from a point to itself must be zero for it to be a metric
+		assertEquals( 0,alg.distance(z,z) , UtilEjml.TEST_F64);
+		assertEquals( 0,alg.distance(z,new double[3]) , UtilEjml.TEST_F64);
+	}
+
+	/**
+	 * With zero vectors mixed in the triangle inequality should still hold
+	 */
+	@Test
+	public void zeroNorm_triangle() {
+		double[][] points = {{1,0,0},{-1,0,0},{0,0,0},{0.5,0.5,0},{0,0,-2}};
+
+		for( double[] a : points ) {
+			for( double[] b : points ) {
+				for( double[] c : points ) {
+					double ac = alg.distance(a,c);
+					double sum = alg.distance(a,b) + alg.distance(b,c);
+					assertTrue( ac <= sum + UtilEjml.TEST_F64 );
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg.searches;
+
+import org.ddogleg.nn.alg.*;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares searches which are specialized for a point type against the generic searches
+ *
+ * @author Peter Abeles
+ */
+public abstract class CompareToGenericSearchTests<P> {
+
+	protected Random rand = new Random(234);
+	protected int N = 5;
+
+	KdTreeDistance<P> distance;
+
+	protected CompareToGenericSearchTests( KdTreeDistance<P> distance ) {
+		this.distance = distance;
+	}
+
+	public abstract P createPoint();
+
+	public abstract KdTreeSearch1<P> createSearch1();
+
+	public abstract KdTreeSearchN<P> createSearchN();
+
+	@Test
+	public void search1() {
+		for( int maxLeafSize : new int[]{1,4} ) {
+			KdTree tree = createTree(maxLeafSize);
+
+			KdTreeSearch1<P> expected = new KdTreeSearch1Standard<>(distance);
+			KdTreeSearch1<P> found = createSearch1();
+			expected.setTree(tree);
+			found.setTree(tree);
+
+			for (int i = 0; i < 100; i++) {
+				P target = createPoint();
+				assertSame(expected.findNeighbor(target),found.findNeighbor(target));
+				assertSame(expected.getPoint(),found.getPoint());
+				assertEquals(expected.getIndex(),found.getIndex());
+				assertEquals(expected.getDistance(),found.getDistance(),1e-4);
+			}
+		}
+	}
+
+	@Test
+	public void searchN() {
+		FastQueue<KdTreeResult> resultsExpected = new FastQueue<>(KdTreeResult.class,true);
+		FastQueue<KdTreeResult> resultsFound = new FastQueue<>(KdTreeResult.class,true);
+
+		for( int maxLeafSize : new int[]{1,4} ) {
+			KdTree tree = createTree(maxLeafSize);
+
+			KdTreeSearchN<P> expected = new KdTreeSearchNStandard<>(distance);
+			KdTreeSearchN<P> found = createSearchN();
+			expected.setTree(tree);
+			found.setTree(tree);
+
+			for (int i = 0; i < 100; i++) {
+				P target = createPoint();
+				resultsExpected.reset();
+				resultsFound.reset();
+				expected.findNeighbor(target,6,resultsExpected);
+				found.findNeighbor(target,6,resultsFound);
+
+				assertEquals(resultsExpected.size,resultsFound.size);
+				for (int j = 0; j < resultsFound.size; j++) {
+					KdTreeResult f = resultsFound.get(j);
+					boolean matched = false;
+					for (int k = 0; k < resultsExpected.size; k++) {
+						if( resultsExpected.get(k).index == f.index ) {
+							matched = true;
+							assertEquals(resultsExpected.get(k).distance,f.distance,1e-4);
+						}
+					}
+					assertTrue(matched);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void searchRadius() {
+		FastQueue<KdTreeResult> resultsExpected = new FastQueue<>(KdTreeResult.class,true);
+		FastQueue<KdTreeResult> resultsFound = new FastQueue<>(KdTreeResult.class,true);
+
+		for( int maxLeafSize : new int[]{1,4} ) {
+			KdTree tree = createTree(maxLeafSize);
+
+			KdTreeSearchNStandard<P> expected = new KdTreeSearchNStandard<>(distance);
+			KdTreeSearchRadius<P> found = (KdTreeSearchRadius<P>)createSearchN();
+			expected.setTree(tree);
+			found.setTree(tree);
+
+			for (int i = 0; i < 100; i++) {
+				P target = createPoint();
+
+				// select a radius which will contain several points
+				resultsExpected.reset();
+				expected.findNeighbor(target,8,resultsExpected);
+				double radius = 0;
+				for (int j = 0; j < resultsExpected.size; j++) {
+					radius = Math.max(radius,resultsExpected.get(j).distance);
+				}
+
+				resultsExpected.reset();
+				resultsFound.reset();
+				expected.findRadius(target,radius,0,resultsExpected);
+				found.findRadius(target,radius,0,resultsFound);
+
+				assertEquals(resultsExpected.size,resultsFound.size);
+				for (int j = 0; j < resultsFound.size; j++) {
+					KdTreeResult f = resultsFound.get(j);
+					boolean matched = false;
+					for (int k = 0; k < resultsExpected.size; k++) {
+						if( resultsExpected.get(k).index == f.index ) {
+							matched = true;
+							assertEquals(resultsExpected.get(k).distance,f.distance,1e-4);
+						}
+					}
+					assertTrue(matched);
+				}
+			}
+		}
+	}
+
+	private KdTree createTree( int maxLeafSize ) {
+		List<P> points = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			points.add(createPoint());
+		}
+		KdTreeConstructor<P> constructor = new KdTreeConstructor<>(distance);
+		constructor.setMaxLeafSize(maxLeafSize);
+		return constructor.construct(points,true);
+	}
+}
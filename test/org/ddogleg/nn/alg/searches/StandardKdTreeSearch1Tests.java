@@ -20,8 +20,11 @@ package org.ddogleg.nn.alg.searches;
 
 import org.ddogleg.nn.alg.KdTree;
 import org.ddogleg.nn.alg.KdTreeSearch1;
+import org.ddogleg.struct.GrowQueue_I32;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -67,6 +70,23 @@ public abstract class StandardKdTreeSearch1Tests {
 		assertSame(found, tree.root.left.left);
 	}
 
+	/**
+	 * The copy should produce identical results and not be the same instance
+	 */
+	@Test
+	public void copy() {
+		KdTreeSearch1<double[]> alg = createAlg();
+		KdTreeSearch1<double[]> copy = alg.copy();
+		assertNotSame(alg,copy);
+
+		KdTree tree = createTreeA();
+		copy.setTree(tree);
+		copy.setMaxDistance(Double.MAX_VALUE);
+
+		KdTree.Node found = copy.findNeighbor(new double[]{11, 8});
+		assertSame(found, tree.root.right.right);
+	}
+
 	public static KdTree createTreeA() {
 
 		KdTree tree = new KdTree(2);
@@ -89,6 +109,47 @@ public abstract class StandardKdTreeSearch1Tests {
 		return tree;
 	}
 
+	/**
+	 * Tree with leaf buckets.  The point and index inside the bucket should be returned
+	 */
+	@Test
+	public void findClosest_bucket() {
+		KdTreeSearch1<double[]> alg = createAlg();
+
+		KdTree tree = createTreeBucket();
+		alg.setTree(tree);
+		alg.setMaxDistance(Double.MAX_VALUE);
+
+		KdTree.Node found = alg.findNeighbor(new double[]{10, 4.9});
+		assertSame(found, tree.root.right);
+		assertSame(tree.root.right.bucketPoints[1], alg.getPoint());
+		assertEquals(11, alg.getIndex());
+		assertEquals(0.01, alg.getDistance(), 1e-8);
+
+		// the branch's point is the closest
+		found = alg.findNeighbor(new double[]{1, 2.1});
+		assertSame(found, tree.root);
+		assertSame(tree.root.point, alg.getPoint());
+		assertEquals(0, alg.getIndex());
+	}
+
+	/**
+	 * Creates a tree where the children of the root are leaves with buckets
+	 */
+	public static KdTree createTreeBucket() {
+		KdTree tree = new KdTree(2);
+
+		tree.root = new KdTree.Node(new double[]{1,2},0);
+		tree.root.split = 1;
+		tree.root.left = new KdTree.Node();
+		tree.root.left.setBucket(Arrays.asList(new double[]{-2,0.5},new double[]{2,0.8}), GrowQueue_I32.array(1,2));
+		tree.root.right = new KdTree.Node();
+		tree.root.right.setBucket(Arrays.asList(new double[]{12,10},new double[]{10,5},new double[]{-3,7}),
+				GrowQueue_I32.array(10,11,12));
+
+		return tree;
+	}
+
 	/**
 	 * See if it can handle a null leaf
 	 */
@@ -83,6 +83,57 @@ public abstract class StandardKdTreeSearchNTests {
 		assertTrue(found.data[0].node == tree.root.left.left);
 	}
 
+	/**
+	 * The copy should produce identical results and not be the same instance
+	 */
+	@Test
+	public void copy() {
+		KdTreeSearchN<double[]> alg = createAlg();
+		KdTreeSearchN<double[]> copy = alg.copy();
+		assertNotSame(alg,copy);
+
+		KdTree tree = StandardKdTreeSearch1Tests.createTreeA();
+		copy.setTree(tree);
+		copy.setMaxDistance(Double.MAX_VALUE);
+
+		found.reset();
+		copy.findNeighbor(new double[]{11, 8}, 1, found);
+		assertEquals(1,found.size);
+		assertTrue(found.data[0].node == tree.root.right.right);
+	}
+
+	/**
+	 * Tree with leaf buckets.  The point and index inside the bucket should be returned
+	 */
+	@Test
+	public void findClosest_bucket() {
+		KdTreeSearchN<double[]> alg = createAlg();
+
+		KdTree tree = StandardKdTreeSearch1Tests.createTreeBucket();
+		alg.setTree(tree);
+		alg.setMaxDistance(Double.MAX_VALUE);
+
+		found.reset();
+		alg.findNeighbor(new double[]{11, 7}, 2, found);
+		assertEquals(2,found.size);
+
+		boolean found10 = false, found11 = false;
+		for (int i = 0; i < found.size; i++) {
+			KdTreeResult r = found.get(i);
+			assertSame(tree.root.right,r.node);
+			double[] p = (double[])r.point;
+			assertEquals((p[0]-11)*(p[0]-11)+(p[1]-7)*(p[1]-7),r.distance,1e-8);
+			if( r.index == 10 ) {
+				assertSame(tree.root.right.bucketPoints[0],r.point);
+				found10 = true;
+			} else if( r.index == 11 ) {
+				assertSame(tree.root.right.bucketPoints[1],r.point);
+				found11 = true;
+			}
+		}
+		assertTrue(found10 && found11);
+	}
+
 	/**
 	 * See if it can handle a null leaf
 	 */
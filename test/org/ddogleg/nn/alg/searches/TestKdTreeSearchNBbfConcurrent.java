@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.alg.searches;
+
+import org.ddogleg.nn.alg.KdTree;
+import org.ddogleg.nn.alg.KdTreeConcurrentTopK;
+import org.ddogleg.nn.alg.KdTreeResult;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdTreeSearchNBbfConcurrent {
+
+	/**
+	 * Two trees are searched separately and share the same results
+	 */
+	@Test
+	public void sharedResults() {
+		KdTree treeA = StandardKdTreeSearch1Tests.createTreeA();
+		KdTree treeB = new KdTree(2);
+		treeB.root = new KdTree.Node(new double[]{12,2});
+
+		KdTreeConcurrentTopK results = new KdTreeConcurrentTopK();
+		results.reset(2,Double.MAX_VALUE);
+
+		KdTreeSearchNBbfConcurrent<double[]> alg = new KdTreeSearchNBbfConcurrent<>(new KdTreeEuclideanSq_F64(2),200);
+		alg.setTree(treeA);
+		alg.findNeighbor(new double[]{12,3},results);
+		alg.setTree(treeB);
+		alg.findNeighbor(new double[]{12,3},results);
+
+		FastQueue<KdTreeResult> found = new FastQueue<>(KdTreeResult.class,true);
+		results.getResults(found);
+		assertEquals(2,found.size);
+		assertSame(treeB.root,found.get(0).node);
+		assertEquals(1,found.get(0).distance,1e-8);
+	}
+
+	/**
+	 * The same tree searched twice shouldn't produce duplicate results
+	 */
+	@Test
+	public void noDuplicates() {
+		KdTree tree = StandardKdTreeSearch1Tests.createTreeA();
+
+		KdTreeConcurrentTopK results = new KdTreeConcurrentTopK();
+		results.reset(20,Double.MAX_VALUE);
+
+		KdTreeSearchNBbfConcurrent<double[]> alg = new KdTreeSearchNBbfConcurrent<>(new KdTreeEuclideanSq_F64(2),200);
+		alg.setTree(tree);
+		alg.findNeighbor(new double[]{12,3},results);
+		int size = results.size();
+		alg.findNeighbor(new double[]{12,3},results);
+		assertEquals(size,results.size());
+	}
+}
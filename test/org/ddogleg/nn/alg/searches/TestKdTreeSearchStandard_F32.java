@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg.searches;
+
+import org.ddogleg.nn.alg.KdTreeSearch1;
+import org.ddogleg.nn.alg.KdTreeSearchN;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F32;
+
+/**
+ * Tests {@link KdTreeSearch1Standard_F32} and {@link KdTreeSearchNStandard_F32}
+ *
+ * @author Peter Abeles
+ */
+public class TestKdTreeSearchStandard_F32 extends CompareToGenericSearchTests<float[]> {
+
+	public TestKdTreeSearchStandard_F32() {
+		super(new KdTreeEuclideanSq_F32(5));
+	}
+
+	@Override
+	public float[] createPoint() {
+		float[] p = new float[N];
+		for (int i = 0; i < N; i++) {
+			p[i] = (float)rand.nextGaussian();
+		}
+		return p;
+	}
+
+	@Override
+	public KdTreeSearch1<float[]> createSearch1() {
+		return new KdTreeSearch1Standard_F32();
+	}
+
+	@Override
+	public KdTreeSearchN<float[]> createSearchN() {
+		return new KdTreeSearchNStandard_F32();
+	}
+}
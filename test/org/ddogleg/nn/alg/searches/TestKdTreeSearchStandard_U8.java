@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.alg.searches;
+
+import org.ddogleg.nn.alg.KdTreeSearch1;
+import org.ddogleg.nn.alg.KdTreeSearchN;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_U8;
+
+/**
+ * Tests {@link KdTreeSearch1Standard_U8} and {@link KdTreeSearchNStandard_U8}
+ *
+ * @author Peter Abeles
+ */
+public class TestKdTreeSearchStandard_U8 extends CompareToGenericSearchTests<byte[]> {
+
+	public TestKdTreeSearchStandard_U8() {
+		super(new KdTreeEuclideanSq_U8(5));
+	}
+
+	@Override
+	public byte[] createPoint() {
+		byte[] p = new byte[N];
+		rand.nextBytes(p);
+		return p;
+	}
+
+	@Override
+	public KdTreeSearch1<byte[]> createSearch1() {
+		return new KdTreeSearch1Standard_U8();
+	}
+
+	@Override
+	public KdTreeSearchN<byte[]> createSearchN() {
+		return new KdTreeSearchNStandard_U8();
+	}
+}
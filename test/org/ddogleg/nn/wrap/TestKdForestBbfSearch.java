@@ -23,6 +23,7 @@ import org.ddogleg.nn.alg.AxisSplitRule;
 import org.ddogleg.nn.alg.AxisSplitRuleRandomK;
 import org.ddogleg.nn.alg.AxisSplitterMedian;
 import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.junit.jupiter.api.Nested;
 
 import java.util.Random;
 
@@ -38,4 +39,40 @@ public class TestKdForestBbfSearch extends StandardNearestNeighborTests {
 		setAlg(new KdForestBbfSearch<>(5,10000,distance,
 				new AxisSplitterMedian<>(distance,rule)));
 	}
+
+	@Nested
+	public class LeafBuckets extends StandardNearestNeighborTests {
+		public LeafBuckets() {
+			AxisSplitRule rule = new AxisSplitRuleRandomK(new Random(234),1);
+			KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+			KdForestBbfSearch<double[]> alg = new KdForestBbfSearch<>(5,10000,distance,
+					new AxisSplitterMedian<>(distance,rule));
+			alg.setMaxLeafSize(4);
+			setAlg(alg);
+		}
+	}
+
+	@Nested
+	public class Concurrent extends StandardNearestNeighborTests {
+		public Concurrent() {
+			AxisSplitRule rule = new AxisSplitRuleRandomK(new Random(234),1);
+			KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+			KdForestBbfSearch<double[]> alg = new KdForestBbfSearch<>(5,10000,distance,
+					new AxisSplitterMedian<>(distance,rule));
+			alg.setConcurrent(true);
+			setAlg(alg);
+		}
+	}
+
+	@Nested
+	public class ConcurrentSearch extends StandardNearestNeighborTests {
+		public ConcurrentSearch() {
+			AxisSplitRule rule = new AxisSplitRuleRandomK(new Random(234),1);
+			KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+			KdForestBbfSearch<double[]> alg = new KdForestBbfSearch<>(5,10000,distance,
+					new AxisSplitterMedian<>(distance,rule));
+			alg.setConcurrentSearch(true);
+			setAlg(alg);
+		}
+	}
 }
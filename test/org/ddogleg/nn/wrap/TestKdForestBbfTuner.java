@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ddogleg.nn.wrap;
+
+import org.ddogleg.nn.NearestNeighborPoints;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdForestBbfTuner {
+	Random rand = new Random(234);
+
+	int N = 6;
+	KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+
+	@Test
+	public void tune() {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,1000,N);
+
+		KdForestBbfTuner<double[]> alg = new KdForestBbfTuner<>(distance,234);
+		alg.setCandidateTrees(new int[]{1,4});
+		alg.setCandidateNodes(new int[]{4,16,64,256,2048});
+		alg.setNumTrials(1);
+
+		KdForestBbfTuner.Configuration found = alg.tune(points,0.8);
+		assertTrue(found.recall >= 0.8);
+
+		// for each number of trees it should stop once the target is reached
+		for( KdForestBbfTuner.Configuration c : alg.getEvaluated() ) {
+			assertTrue(c.recall >= 0 && c.recall <= 1);
+			assertTrue(c.queryTime > 0);
+			if( c.recall >= 0.8 )
+				assertTrue(found.queryTime <= c.queryTime);
+		}
+		for (int i = 1; i < alg.getEvaluated().size(); i++) {
+			KdForestBbfTuner.Configuration prev = alg.getEvaluated().get(i-1);
+			KdForestBbfTuner.Configuration c = alg.getEvaluated().get(i);
+			if( prev.numTrees == c.numTrees )
+				assertTrue(prev.recall < 0.8);
+		}
+
+		assertNotNull(alg.create(found,234));
+	}
+
+	/**
+	 * If the target can't be reached then the configuration with the best recall is returned
+	 */
+	@Test
+	public void tune_unreachable() {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,1000,N);
+
+		KdForestBbfTuner<double[]> alg = new KdForestBbfTuner<>(distance,234);
+		alg.setCandidateTrees(new int[]{1,2});
+		alg.setCandidateNodes(new int[]{1,2});
+		alg.setNumTrials(1);
+
+		KdForestBbfTuner.Configuration found = alg.tune(points,1.0);
+		assertEquals(4,alg.getEvaluated().size());
+		for( KdForestBbfTuner.Configuration c : alg.getEvaluated() ) {
+			assertTrue(found.recall >= c.recall);
+		}
+	}
+
+	/**
+	 * Searching everything will always find the true nearest-neighbor
+	 */
+	@Test
+	public void tune_perfect() {
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,200,N);
+
+		KdForestBbfTuner<double[]> alg = new KdForestBbfTuner<>(distance,234);
+		alg.setCandidateTrees(new int[]{1});
+		alg.setCandidateNodes(new int[]{1000});
+
+		KdForestBbfTuner.Configuration found = alg.tune(points,1.0);
+		assertEquals(1.0,found.recall,1e-8);
+	}
+}
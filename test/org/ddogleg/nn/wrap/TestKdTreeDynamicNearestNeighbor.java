@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.wrap;
+
+import org.ddogleg.nn.FactoryNearestNeighbor;
+import org.ddogleg.nn.NnData;
+import org.ddogleg.nn.StandardNearestNeighborTests;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdTreeDynamicNearestNeighbor {
+
+	Random rand = new Random(234);
+	KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(2);
+
+	@Nested
+	public class DefaultSettings extends StandardNearestNeighborTests {
+		public DefaultSettings() {
+			setAlg(FactoryNearestNeighbor.kdtreeDynamic(new KdTreeEuclideanSq_F64(N)));
+		}
+	}
+
+	@Nested
+	public class SmallBuffer extends StandardNearestNeighborTests {
+		public SmallBuffer() {
+			KdTreeDynamicNearestNeighbor<double[]> alg = FactoryNearestNeighbor.kdtreeDynamic(new KdTreeEuclideanSq_F64(N));
+			alg.setBufferSize(2);
+			alg.setMaxLeafSize(3);
+			setAlg(alg);
+		}
+	}
+
+	/**
+	 * Randomly add and remove points and compare the results against a brute force search
+	 */
+	@Test
+	public void addRemove_compareToBruteForce() {
+		KdTreeDynamicNearestNeighbor<double[]> alg = FactoryNearestNeighbor.kdtreeDynamic(distance);
+		alg.setBufferSize(4);
+
+		List<double[]> expected = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+
+		NnData<double[]> found = new NnData<>();
+		FastQueue<NnData<double[]>> foundN = new FastQueue<>((Class)NnData.class,true);
+
+		for (int trial = 0; trial < 2000; trial++) {
+			if( expected.isEmpty() || rand.nextDouble() < 0.6 ) {
+				double[] p = new double[]{rand.nextGaussian(),rand.nextGaussian()};
+				expected.add(p);
+				indexes.add(alg.add(p));
+			} else {
+				int which = rand.nextInt(expected.size());
+				assertTrue(alg.remove(indexes.get(which)));
+				expected.remove(which);
+				indexes.remove(which);
+			}
+			assertEquals(expected.size(),alg.size());
+
+			if( trial % 10 != 0 )
+				continue;
+
+			double[] target = new double[]{rand.nextGaussian(),rand.nextGaussian()};
+
+			// single nearest neighbor
+			int best = -1;
+			double bestDistance = Double.MAX_VALUE;
+			for (int i = 0; i < expected.size(); i++) {
+				double d = distance.distance(expected.get(i),target);
+				if( d < bestDistance ) {
+					bestDistance = d;
+					best = i;
+				}
+			}
+			assertTrue(alg.findNearest(target,-1,found));
+			assertSame(expected.get(best),found.point);
+			assertEquals((int)indexes.get(best),found.index);
+			assertEquals(bestDistance,found.distance,1e-8);
+
+			// N nearest neighbors
+			int numNeighbors = Math.min(5,expected.size());
+			alg.findNearest(target,-1,5,foundN);
+			assertEquals(numNeighbors,foundN.size);
+			List<Double> distances = new ArrayList<>();
+			for (double[] p : expected) {
+				distances.add(distance.distance(p,target));
+			}
+			distances.sort(Double::compare);
+			double threshold = distances.get(numNeighbors-1);
+			for (int i = 0; i < foundN.size; i++) {
+				NnData<double[]> r = foundN.get(i);
+				assertTrue(r.distance <= threshold);
+				assertSame(expected.get(indexes.indexOf(r.index)),r.point);
+			}
+		}
+	}
+
+	@Test
+	public void remove() {
+		KdTreeDynamicNearestNeighbor<double[]> alg = FactoryNearestNeighbor.kdtreeDynamic(distance);
+		alg.setBufferSize(2);
+
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			points.add(new double[]{i,0});
+		}
+		alg.setPoints(points,true);
+
+		assertTrue(alg.remove(4));
+		assertFalse(alg.remove(4));
+		assertFalse(alg.remove(-1));
+		assertFalse(alg.remove(10));
+		assertNull(alg.getPoint(4));
+		assertEquals(9,alg.size());
+
+		NnData<double[]> found = new NnData<>();
+		assertTrue(alg.findNearest(new double[]{4.1,0},-1,found));
+		assertEquals(5,found.index);
+
+		// remove everything
+		for (int i = 0; i < 10; i++) {
+			if( i != 4 )
+				assertTrue(alg.remove(i));
+		}
+		assertEquals(0,alg.size());
+		assertFalse(alg.findNearest(new double[]{4.1,0},-1,found));
+	}
+
+	/**
+	 * Index of a removed point can be reused once it's no longer in any tree
+	 */
+	@Test
+	public void add_reuseIndex() {
+		KdTreeDynamicNearestNeighbor<double[]> alg = FactoryNearestNeighbor.kdtreeDynamic(distance);
+
+		double[] a = new double[]{1,2};
+		double[] b = new double[]{3,4};
+		assertEquals(0,alg.add(a));
+		assertEquals(1,alg.add(b));
+		assertTrue(alg.remove(0));
+		assertEquals(0,alg.add(b));
+		assertSame(b,alg.getPoint(0));
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.nn.wrap;
+
+import org.ddogleg.nn.*;
+import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.struct.FastQueue;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestKdTreeFlatNearestNeighbor {
+	@Nested
+	public class LeafSize1 extends StandardNearestNeighborTests {
+		public LeafSize1() {
+			setAlg(FactoryNearestNeighbor.kdtreeFlat(new KdTreeEuclideanSq_F64(N),1));
+		}
+	}
+
+	@Nested
+	public class LeafSize5 extends StandardNearestNeighborTests {
+		public LeafSize5() {
+			setAlg(FactoryNearestNeighbor.kdtreeFlat(new KdTreeEuclideanSq_F64(N),5));
+		}
+	}
+
+	/**
+	 * Enough dimensions that distances to points in a leaf are stopped early. Results should be the same as
+	 * an exhaustive search
+	 */
+	@Test
+	public void highDimension() {
+		Random rand = new Random(234);
+		int N = 20;
+		List<double[]> points = NearestNeighborPoints.gaussian(rand,500,N);
+
+		NearestNeighbor<double[]> alg = FactoryNearestNeighbor.kdtreeFlat(new KdTreeEuclideanSq_F64(N),5);
+		NearestNeighbor<double[]> exhaustive = FactoryNearestNeighbor.exhaustive(new KdTreeEuclideanSq_F64(N));
+		alg.setPoints(points,true);
+		exhaustive.setPoints(points,true);
+		NearestNeighbor.Search<double[]> found = alg.createSearch();
+		NearestNeighbor.Search<double[]> expected = exhaustive.createSearch();
+
+		NnData<double[]> resultFound = new NnData<>();
+		NnData<double[]> resultExpected = new NnData<>();
+		FastQueue<NnData<double[]>> foundN = new FastQueue<>((Class)NnData.class,true);
+		FastQueue<NnData<double[]>> expectedN = new FastQueue<>((Class)NnData.class,true);
+
+		for( double[] target : NearestNeighborPoints.gaussian(rand,50,N) ) {
+			assertTrue(found.findNearest(target,-1,resultFound));
+			assertTrue(expected.findNearest(target,-1,resultExpected));
+			assertEquals(resultExpected.index,resultFound.index);
+			assertEquals(resultExpected.distance,resultFound.distance,1e-8);
+
+			found.findNearest(target,-1,6,foundN);
+			expected.findNearest(target,-1,6,expectedN);
+			assertEquals(expectedN.size,foundN.size);
+			Set<Integer> indexes = new HashSet<>();
+			for (int i = 0; i < expectedN.size; i++) {
+				indexes.add(expectedN.get(i).index);
+			}
+			for (int i = 0; i < foundN.size; i++) {
+				assertTrue(indexes.contains(foundN.get(i).index));
+			}
+		}
+	}
+}
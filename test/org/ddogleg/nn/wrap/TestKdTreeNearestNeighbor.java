@@ -19,16 +19,66 @@
 package org.ddogleg.nn.wrap;
 
 import org.ddogleg.nn.FactoryNearestNeighbor;
-import org.ddogleg.nn.StandardNearestNeighborTests;
+import org.ddogleg.nn.StandardNearestNeighborRadiusTests;
+import org.ddogleg.nn.alg.AxisSplitterMedian;
 import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
+import org.ddogleg.nn.alg.searches.*;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
  * @author Peter Abeles
  */
-public class TestKdTreeNearestNeighbor extends StandardNearestNeighborTests {
+public class TestKdTreeNearestNeighbor extends StandardNearestNeighborRadiusTests {
 
 	public TestKdTreeNearestNeighbor() {
 		setAlg(FactoryNearestNeighbor.kdtree(new KdTreeEuclideanSq_F64(N)));
 	}
 
+	/**
+	 * Specialized searches should only be used with the exact distance they were written for
+	 */
+	@Test
+	public void createSearch_specialized() {
+		KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+		assertSame(KdTreeSearch1Standard_F64.class,KdTreeNearestNeighbor.createSearch1(distance).getClass());
+		assertSame(KdTreeSearchNStandard_F64.class,KdTreeNearestNeighbor.createSearchN(distance).getClass());
+		assertSame(KdTreeSearchNStandard_F64.class,KdTreeNearestNeighbor.createSearchRadius(distance).getClass());
+
+		// a sub-class could compute the distance differently
+		KdTreeEuclideanSq_F64 scaled = new KdTreeEuclideanSq_F64(N) {
+			@Override
+			public double distance(double[] a, double[] b) {
+				return 2*super.distance(a,b);
+			}
+		};
+		assertSame(KdTreeSearch1Standard.class,KdTreeNearestNeighbor.createSearch1(scaled).getClass());
+		assertSame(KdTreeSearchNStandard.class,KdTreeNearestNeighbor.createSearchN(scaled).getClass());
+		assertSame(KdTreeSearchNStandard.class,KdTreeNearestNeighbor.createSearchRadius(scaled).getClass());
+	}
+
+	@Nested
+	public class LeafBuckets extends StandardNearestNeighborRadiusTests {
+		public LeafBuckets() {
+			KdTreeNearestNeighbor<double[]> alg = new KdTreeNearestNeighbor<>(new KdTreeEuclideanSq_F64(N));
+			alg.setMaxLeafSize(4);
+			setAlg(alg);
+		}
+	}
+
+	/**
+	 * The N-nearest-neighbor search doesn't support radius searches, so one needs to be created for it
+	 */
+	@Nested
+	public class NoSearchRadius extends StandardNearestNeighborRadiusTests {
+		public NoSearchRadius() {
+			KdTreeEuclideanSq_F64 distance = new KdTreeEuclideanSq_F64(N);
+			// enough nodes are searched that the results are exact
+			setAlg(new KdTreeNearestNeighbor<>(new KdTreeSearch1Bbf<>(distance,10000),
+					new KdTreeSearchNBbf<>(distance,10000),new AxisSplitterMedian<>(distance)));
+		}
+	}
+
 }
@@ -19,12 +19,12 @@
 package org.ddogleg.nn.wrap;
 
 import org.ddogleg.nn.FactoryNearestNeighbor;
-import org.ddogleg.nn.StandardNearestNeighborTests;
+import org.ddogleg.nn.StandardNearestNeighborRadiusTests;
 
 /**
  * @author Karel Petránek
  */
-public class TestVpTreeNearestNeighbor extends StandardNearestNeighborTests {
+public class TestVpTreeNearestNeighbor extends StandardNearestNeighborRadiusTests {
 	public TestVpTreeNearestNeighbor() {
 		setAlg(FactoryNearestNeighbor.<Double>vptree(345345));
 	}
@@ -19,13 +19,13 @@
 package org.ddogleg.nn.wrap;
 
 import org.ddogleg.nn.FactoryNearestNeighbor;
-import org.ddogleg.nn.StandardNearestNeighborTests;
+import org.ddogleg.nn.StandardNearestNeighborRadiusTests;
 import org.ddogleg.nn.alg.distance.KdTreeEuclideanSq_F64;
 
 /**
  * @author Peter Abeles
  */
-public class TestWrapExhaustiveNeighbor extends StandardNearestNeighborTests {
+public class TestWrapExhaustiveNeighbor extends StandardNearestNeighborRadiusTests {
 
 	public TestWrapExhaustiveNeighbor() {
 		setAlg(FactoryNearestNeighbor.exhaustive(new KdTreeEuclideanSq_F64(N)));
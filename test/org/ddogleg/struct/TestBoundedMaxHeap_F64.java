@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.struct;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestBoundedMaxHeap_F64 {
+
+	Random rand = new Random(234);
+
+	/**
+	 * Offer random values and see if it keeps the smallest ones
+	 */
+	@Test
+	public void offer_keepSmallest() {
+		BoundedMaxHeap_F64 alg = new BoundedMaxHeap_F64();
+
+		for( int capacity : new int[]{1,2,7,20} ) {
+			alg.reset(capacity);
+			double[] values = new double[100];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = rand.nextDouble();
+				alg.offer(i,values[i]);
+			}
+			assertEquals(capacity,alg.size);
+			assertTrue(alg.isFull());
+
+			alg.sortAscending();
+			double[] sorted = values.clone();
+			Arrays.sort(sorted);
+			for (int i = 0; i < capacity; i++) {
+				assertEquals(sorted[i],alg.value[i]);
+				assertEquals(values[alg.index[i]],alg.value[i]);
+			}
+		}
+	}
+
+	@Test
+	public void offer_returned() {
+		BoundedMaxHeap_F64 alg = new BoundedMaxHeap_F64(2);
+		assertTrue(alg.offer(0,5));
+		assertTrue(alg.offer(1,3));
+		// larger than or equal to the top and full
+		assertFalse(alg.offer(2,6));
+		assertFalse(alg.offer(3,5));
+		assertTrue(alg.offer(4,4));
+		assertEquals(4,alg.getTopIndex());
+		assertEquals(4,alg.getTopValue());
+	}
+
+	@Test
+	public void push_full() {
+		BoundedMaxHeap_F64 alg = new BoundedMaxHeap_F64(1);
+		alg.push(0,1);
+		assertThrows(IllegalStateException.class,()->alg.push(1,2));
+	}
+
+	@Test
+	public void pop() {
+		BoundedMaxHeap_F64 alg = new BoundedMaxHeap_F64(10);
+		for (int i = 0; i < 10; i++) {
+			alg.push(i,(i*7)%10);
+		}
+		for (int i = 9; i >= 0; i--) {
+			assertEquals(i,alg.getTopValue());
+			alg.pop();
+		}
+		assertTrue(alg.isEmpty());
+	}
+
+	@Test
+	public void replaceTop() {
+		BoundedMaxHeap_F64 alg = new BoundedMaxHeap_F64(3);
+		alg.push(0,1);
+		alg.push(1,2);
+		alg.push(2,3);
+		alg.replaceTop(3,0);
+		assertEquals(1,alg.getTopIndex());
+		assertEquals(2,alg.getTopValue());
+	}
+
+	/**
+	 * Grow the capacity after it has been used
+	 */
+	@Test
+	public void reset_capacity() {
+		BoundedMaxHeap_F64 alg = new BoundedMaxHeap_F64(2);
+		alg.push(0,1);
+		alg.reset(5);
+		assertEquals(0,alg.size);
+		assertEquals(5,alg.getCapacity());
+		for (int i = 0; i < 5; i++) {
+			alg.push(i,i);
+		}
+		assertEquals(4,alg.getTopValue());
+
+		// shrinking the capacity doesn't shrink the arrays
+		alg.reset(1);
+		assertEquals(5,alg.index.length);
+		alg.push(0,1);
+		assertTrue(alg.isFull());
+	}
+}
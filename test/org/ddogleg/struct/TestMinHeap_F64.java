@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012-2019, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of DDogleg (http://ddogleg.org).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ddogleg.struct;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestMinHeap_F64 {
+
+	Random rand = new Random(234);
+
+	/**
+	 * Elements should come out from smallest to largest. Starts small to test growing the arrays
+	 */
+	@Test
+	public void pushPop() {
+		MinHeap_F64 alg = new MinHeap_F64(1);
+
+		double[] values = new double[100];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = rand.nextDouble();
+			alg.push(i,values[i]);
+		}
+		assertEquals(100,alg.size());
+
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(sorted[i],alg.getTopValue());
+			int index = alg.pop();
+			assertEquals(sorted[i],values[index]);
+		}
+		assertTrue(alg.isEmpty());
+	}
+
+	/**
+	 * Push and pop in between
+	 */
+	@Test
+	public void interleaved() {
+		MinHeap_F64 alg = new MinHeap_F64();
+		alg.push(0,5);
+		alg.push(1,2);
+		assertEquals(1,alg.pop());
+		alg.push(2,1);
+		alg.push(3,7);
+		assertEquals(2,alg.getTopIndex());
+		assertEquals(2,alg.pop());
+		assertEquals(0,alg.pop());
+		assertEquals(3,alg.pop());
+		assertTrue(alg.isEmpty());
+
+		alg.push(4,1);
+		alg.reset();
+		assertTrue(alg.isEmpty());
+	}
+}